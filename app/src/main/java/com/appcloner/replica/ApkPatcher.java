@@ -0,0 +1,174 @@
+package com.appcloner.replica;
+
+import android.util.Log;
+
+import com.android.apksig.ApkSigner;
+import com.android.apksig.ApkSignerEngine;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.apk.ApkUtils;
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSources;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * Fast path for replacing a handful of entries in an APK that was signed before.
+ *
+ * Every other entry is copied with its original compressed payload, and the JAR signature
+ * reuses the per-entry digests already listed in the old {@code META-INF/MANIFEST.MF}, so
+ * only replaced entries are inflated and hashed for v1. The v2/v3 signatures cover the whole
+ * file and are recomputed, which is a sequential read of the output and no compression work.
+ */
+public class ApkPatcher {
+    private static final String TAG = "ApkPatcher";
+
+    private static final String JAR_MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String ANDROID_MANIFEST = "AndroidManifest.xml";
+    private static final Pattern SIG_PATH = Pattern.compile(
+            "^META-INF/(.+\\.(RSA|DSA|EC|SF)|MANIFEST\\.MF)$", Pattern.CASE_INSENSITIVE);
+
+    private ApkPatcher() {}
+
+    /**
+     * Writes a signed copy of {@code source} to {@code out} with the given entries replaced.
+     *
+     * @param replacements entry name to new content; new names are appended
+     */
+    public static void patch(File source, File out, Map<String, File> replacements,
+                             ApkSigner.SignerConfig signer, boolean v3Enabled) throws Exception {
+        long start = System.nanoTime();
+        try (ApkZipReader reader = ApkZipReader.open(source)) {
+            DefaultApkSignerEngine.SignerConfig engineSigner = new DefaultApkSignerEngine.SignerConfig.Builder(
+                    signer.getName(), signer.getPrivateKey(), signer.getCertificates()).build();
+            DefaultApkSignerEngine engine = new DefaultApkSignerEngine.Builder(
+                    Collections.singletonList(engineSigner), readMinSdkVersion(reader))
+                    .setV1SigningEnabled(true)
+                    .setV2SigningEnabled(true)
+                    .setV3SigningEnabled(v3Enabled)
+                    .build();
+            try {
+                Set<String> kept = new LinkedHashSet<>();
+                for (ApkZipReader.Entry e : reader.getEntries()) {
+                    String name = e.getName();
+                    if (name.isEmpty() || e.isDirectory()) continue;
+                    if (SIG_PATH.matcher(name).matches() || replacements.containsKey(name)) continue;
+                    kept.add(name);
+                }
+                Set<String> reused = reuseJarDigests(engine, reader, kept);
+
+                try (ApkZipWriter zw = new ApkZipWriter(out)) {
+                    zw.setCompressor(ParallelDeflater.shared());
+                    for (String name : kept) {
+                        ApkZipReader.Entry e = reader.getEntry(name);
+                        zw.copyEntry(reader, e);
+                        if (!reused.contains(name)) {
+                            try (InputStream in = reader.openStream(e)) {
+                                inspect(engine, name, in);
+                            }
+                        }
+                    }
+                    for (Map.Entry<String, File> r : replacements.entrySet()) {
+                        // The settings blob is mapped straight out of the APK at runtime.
+                        int method = SettingsBlobWriter.ENTRY.equals(r.getKey())
+                                ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                        zw.writeEntry(r.getKey(), r.getValue(), method);
+                        try (InputStream in = new FileInputStream(r.getValue())) {
+                            inspect(engine, r.getKey(), in);
+                        }
+                    }
+
+                    ApkSignerEngine.OutputJarSignatureRequest jarSignature = engine.outputJarEntries();
+                    if (jarSignature != null) {
+                        for (ApkSignerEngine.OutputJarSignatureRequest.JarEntry je
+                                : jarSignature.getAdditionalJarEntries()) {
+                            byte[] data = je.getData();
+                            zw.writeEntry(je.getName(), data, ZipEntry.DEFLATED);
+                            inspect(engine, je.getName(), new ByteArrayInputStream(data));
+                        }
+                        jarSignature.done();
+                    }
+
+                    zw.close((entries, entriesSize, centralDir, eocd) -> {
+                        try {
+                            ApkSignerEngine.OutputApkSigningBlockRequest2 block = engine.outputZipSections2(
+                                    DataSources.asDataSource(entries, 0, entriesSize),
+                                    DataSources.asDataSource(centralDir),
+                                    DataSources.asDataSource(eocd));
+                            if (block == null) return null;
+                            byte[] signingBlock = block.getApkSigningBlock();
+                            int padding = block.getPaddingSizeBeforeApkSigningBlock();
+                            byte[] inserted = new byte[padding + signingBlock.length];
+                            System.arraycopy(signingBlock, 0, inserted, padding, signingBlock.length);
+                            block.done();
+                            return inserted;
+                        } catch (GeneralSecurityException e) {
+                            throw new IOException("Failed to compute APK Signing Block", e);
+                        }
+                    });
+                    Log.i(TAG, "Patched " + replacements.keySet() + ", reused " + reused.size() + "/"
+                            + kept.size() + " JAR digests: " + zw.getStats());
+                }
+                engine.outputDone();
+            } finally {
+                engine.close();
+            }
+        } catch (Exception e) {
+            out.delete();
+            throw e;
+        }
+        Log.i(TAG, "Incremental update signed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Seeds the engine with the digests from the previous JAR manifest for entries copied
+     * verbatim. Returns the names the engine accepted; those need no {@code outputJarEntry}.
+     */
+    private static Set<String> reuseJarDigests(ApkSignerEngine engine, ApkZipReader reader,
+                                               Set<String> kept) {
+        ApkZipReader.Entry mf = reader.getEntry(JAR_MANIFEST);
+        if (mf == null) return Collections.emptySet();
+        try {
+            Set<String> reused = engine.initWith(reader.read(mf), kept);
+            return reused != null ? reused : Collections.<String>emptySet();
+        } catch (IOException | UnsupportedOperationException e) {
+            Log.w(TAG, "Cannot reuse JAR digests, hashing all entries", e);
+            return Collections.emptySet();
+        }
+    }
+
+    private static void inspect(ApkSignerEngine engine, String name, InputStream in) throws IOException {
+        ApkSignerEngine.InspectJarEntryRequest request = engine.outputJarEntry(name);
+        if (request == null) return;
+        DataSink sink = request.getDataSink();
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            sink.consume(buf, 0, n);
+        }
+        request.done();
+    }
+
+    private static int readMinSdkVersion(ApkZipReader reader) {
+        ApkZipReader.Entry manifest = reader.getEntry(ANDROID_MANIFEST);
+        if (manifest != null) {
+            try {
+                return ApkUtils.getMinSdkVersionFromBinaryAndroidManifest(ByteBuffer.wrap(reader.read(manifest)));
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot read minSdkVersion, assuming 1", e);
+            }
+        }
+        return 1;
+    }
+}
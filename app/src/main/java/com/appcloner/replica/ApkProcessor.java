@@ -4,9 +4,14 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import com.android.apksig.ApkSigner;
+import com.android.apksig.ApkVerifier;
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSource;
+import com.android.apksig.util.DataSources;
 import com.reandroid.arsc.chunk.xml.ResXmlAttribute;
 import com.reandroid.arsc.chunk.xml.ResXmlDocument;
 import com.reandroid.arsc.chunk.xml.ResXmlElement;
@@ -16,21 +21,19 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.security.KeyStore;
-import java.security.PrivateKey;
-import java.security.cert.X509Certificate;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 public class ApkProcessor {
     private static final String TAG = "ApkProcessor";
 
     private static final String ANDROID_MANIFEST = "AndroidManifest.xml";
+    private static final String CLONER_JSON_ENTRY = "assets/cloner.json";
 
     private static final String E_MANIFEST     = "manifest";
     private static final String E_APPLICATION  = "application";
@@ -69,11 +72,6 @@ public class ApkProcessor {
     private static final Pattern DEX_NAME = Pattern.compile(
             "^classes(\\d*)\\.dex$", Pattern.CASE_INSENSITIVE);
 
-    private static final String KEYSTORE_ASSET = "debug.keystore";
-    private static final String STORE_PWD      = "appklown";
-    private static final String KEY_PWD        = "appklown";
-    private static final String ALIAS          = "Harrygp";
-
     private static final String IPC_PERMISSION = "com.appcloner.replica.permission.REPLICA_IPC";
     private static final String PERM_READ_EXTERNAL = "android.permission.READ_EXTERNAL_STORAGE";
     private static final String PERM_WRITE_EXTERNAL = "android.permission.WRITE_EXTERNAL_STORAGE";
@@ -98,11 +96,31 @@ public class ApkProcessor {
     private static final String PROVIDER_AUTHORITY = "com.applisto.appcloner.DefaultProvider";
 
     private final Context ctx;
+    private boolean verifyOutput;
+    private ProgressListener progressListener;
 
     public ApkProcessor(Context ctx) {
         this.ctx = ctx.getApplicationContext();
     }
 
+    /** Re-verifies the signed output after writing it; off by default since it re-reads the APK. */
+    public void setVerifyOutput(boolean verifyOutput) {
+        this.verifyOutput = verifyOutput;
+    }
+
+    /** Receives coarse progress of one {@code injectHook} call, on the calling thread. */
+    public interface ProgressListener {
+        String STAGE_WRITE = "write";
+        String STAGE_SIGN = "sign";
+
+        /** {@code done} and {@code total} are bytes of source payload for the write stage. */
+        void onProgress(String stage, long done, long total);
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
     public void injectHook(Uri inApk,
                            Uri outApk,
                            File hookDex,
@@ -111,37 +129,89 @@ public class ApkProcessor {
                            File bundledDataFile,
                            File liveVideoFile,
                            File iconFile) throws Exception {
-        if (inApk == null || outApk == null || hookDex == null || clonerJson == null) {
+        if (inApk == null) {
             throw new IllegalArgumentException("Required parameters cannot be null");
         }
+        // Index the input APK through its central directory; nothing is extracted to disk.
+        try (ApkZipReader reader = openInputApk(inApk)) {
+            injectHook(reader, outApk, hookDex, clonerJson, nativeLibDir, bundledDataFile,
+                    liveVideoFile, iconFile);
+        }
+    }
 
-        File tempRoot = new File(ctx.getCacheDir(), "apk_" + System.currentTimeMillis());
-        if (!tempRoot.mkdirs()) throw new IOException("mkdir failed: " + tempRoot);
+    /**
+     * Same as {@link #injectHook(Uri, Uri, File, File, File, File, File, File)} for a source
+     * the caller opened, so several jobs can share one mapping. The reader is not closed.
+     */
+    public void injectHook(ApkZipReader reader,
+                           Uri outApk,
+                           File hookDex,
+                           File clonerJson,
+                           File nativeLibDir,
+                           File bundledDataFile,
+                           File liveVideoFile,
+                           File iconFile) throws Exception {
+        if (outApk == null || clonerJson == null) {
+            throw new IllegalArgumentException("Required parameters cannot be null");
+        }
+        injectHookVariants(reader, Collections.singletonList(new Variant(outApk, clonerJson, 0)),
+                hookDex, nativeLibDir, bundledDataFile, liveVideoFile, iconFile);
+    }
+
+    /** One output of {@link #injectHookVariants}. */
+    public static final class Variant {
+        final Uri output;
+        final File clonerJson;
+        final int index;
+
+        /**
+         * @param clonerJson settings of this variant, e.g. its own {@code cloning_mode} or
+         *                   {@code custom_package_name}
+         * @param index      distinguishes variants in {@code generate_new_package} mode: variant
+         *                   {@code i} gets the {@code i + 1}-th generated package name
+         */
+        public Variant(Uri output, File clonerJson, int index) {
+            if (output == null || clonerJson == null) {
+                throw new IllegalArgumentException("Variant output and cloner.json are required");
+            }
+            this.output = output;
+            this.clonerJson = clonerJson;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Builds several clones of one source APK in a single pass over its entries.
+     *
+     * The source is indexed once and every variant gets its own patched manifest and
+     * cloner.json; all other entries are copied or compressed once and written to every output.
+     * The outputs are signed in parallel.
+     */
+    public void injectHookVariants(ApkZipReader reader,
+                                   List<Variant> variants,
+                                   File hookDex,
+                                   File nativeLibDir,
+                                   File bundledDataFile,
+                                   File liveVideoFile,
+                                   File iconFile) throws Exception {
+        if (reader == null || variants == null || variants.isEmpty() || hookDex == null) {
+            throw new IllegalArgumentException("Required parameters cannot be null");
+        }
 
         Set<Integer> dexNumbers = new HashSet<>();
         Set<String> abiDirs = new HashSet<>();
         byte[] manifestRaw = null;
 
-        String basePath;
-        try {
-            basePath = tempRoot.getCanonicalPath() + File.separator;
-        } catch (IOException e) {
-            deleteRec(tempRoot);
-            throw e;
+        int k = variants.size();
+        List<File> unsignedApks = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            unsignedApks.add(new File(ctx.getCacheDir(), "unsigned_" + System.nanoTime() + "_" + i + ".apk"));
         }
-
-        // Unpack input APK (strip signatures, capture manifest and dex indices)
-        try (InputStream is = ctx.getContentResolver().openInputStream(inApk);
-             ZipInputStream zis = new ZipInputStream(new BufferedInputStream(is))) {
-
-            ZipEntry ze;
-            while ((ze = zis.getNextEntry()) != null) {
+        try {
+            for (ApkZipReader.Entry ze : reader.getEntries()) {
                 String name = ze.getName();
                 if (name == null || name.isEmpty()) continue;
 
-                // Remove all existing signature files
-                if (SIG_PATH.matcher(name).matches()) continue;
-
                 // Track ABIs
                 if (name.startsWith("lib/") && name.endsWith(".so")) {
                     int slash = name.indexOf('/', 4);
@@ -156,202 +226,295 @@ public class ApkProcessor {
                     Log.d(TAG, "Found DEX: " + name + " -> index " + idx);
                 }
 
-                // Read manifest into memory, don't write original out
                 if (ANDROID_MANIFEST.equals(name)) {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    copyStream(zis, baos);
-                    manifestRaw = baos.toByteArray();
-                    continue;
-                }
-
-                File out = safeResolve(tempRoot, basePath, name);
-                if (ze.isDirectory()) {
-                    if (!out.exists() && !out.mkdirs()) {
-                        throw new IOException("Failed to create dir: " + out);
-                    }
-                    continue;
-                }
-                File parent = out.getParentFile();
-                if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                    throw new IOException("Failed to create parent: " + parent);
-                }
-                try (FileOutputStream fos = new FileOutputStream(out)) {
-                    copyStream(zis, fos);
+                    manifestRaw = reader.read(ze);
                 }
             }
-        }
-
-        if (manifestRaw == null) {
-            deleteRec(tempRoot);
-            throw new IOException("AndroidManifest.xml missing in APK");
-        }
 
-        // Read cloner.json
-        JSONObject clonerConfig;
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(clonerJson), "UTF-8")) {
-            StringBuilder sb = new StringBuilder();
-            char[] buffer = new char[4096];
-            int read;
-            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
-                sb.append(buffer, 0, read);
+            if (manifestRaw == null) {
+                throw new IOException("AndroidManifest.xml missing in APK");
             }
-            clonerConfig = new JSONObject(sb.toString());
-        } catch (IOException | JSONException e) {
-            Log.e(TAG, "Failed to read or parse cloner.json, using default empty config.", e);
-            clonerConfig = new JSONObject();
-        }
 
-        // Patch manifest with validation + safe fallback + retry logic
-        byte[] patchedManifest;
-        try {
-            ManifestPatchResult manifestResult = patchManifest(manifestRaw, clonerConfig);
-            patchedManifest = manifestResult.manifestBytes;
-            validateManifest(patchedManifest);
-            Log.d(TAG, "Manifest patched and validated successfully.");
-        } catch (Throwable t) {
-            Log.e(TAG, "Manifest patching/validation failed on first attempt", t);
-            // Try a safer patching approach without icon/label modifications
-            try {
-                Log.d(TAG, "Attempting safe manifest patch without app name modification...");
-                JSONObject safeConfig = clonerConfig != null ? new JSONObject(clonerConfig.toString()) : new JSONObject();
-                safeConfig.remove("app_name");  // Remove app name modification
-                ManifestPatchResult safeResult = patchManifest(manifestRaw, safeConfig);
-                patchedManifest = safeResult.manifestBytes;
-                validateManifest(patchedManifest);
-                Log.d(TAG, "Safe manifest patch succeeded.");
-            } catch (Throwable t2) {
-                Log.e(TAG, "Safe manifest patching also failed; falling back to original manifest", t2);
-                patchedManifest = manifestRaw;
+            // Patch one manifest per variant on the pool. ARSCLib documents are mutable and
+            // cannot be copied, so each variant parses the raw bytes extracted above.
+            ParallelDeflater deflater = ParallelDeflater.shared();
+            final byte[] sourceManifest = manifestRaw;
+            List<Future<ParallelDeflater.Compressed>> manifestJobs = new ArrayList<>(k);
+            List<Future<ParallelDeflater.Compressed>> clonerJsonJobs = new ArrayList<>(k);
+            List<Future<byte[]>> settingsBlobJobs = new ArrayList<>(k);
+            for (Variant v : variants) {
+                manifestJobs.add(deflater.submit(() -> {
+                    byte[] patched = buildPatchedManifest(sourceManifest, readClonerConfig(v.clonerJson), v.index);
+                    return deflater.compress(patched, ParallelDeflater.levelFor(ANDROID_MANIFEST, patched.length));
+                }));
+                clonerJsonJobs.add(deflater.submit(v.clonerJson,
+                        ParallelDeflater.levelFor(CLONER_JSON_ENTRY, v.clonerJson.length())));
+                settingsBlobJobs.add(deflater.submit(() -> encodeSettingsBlob(v.clonerJson)));
             }
-        }
 
-        // Decide next DEX index and add hook dex
-        int nextIdx = dexNumbers.isEmpty() ? 2 : Collections.max(dexNumbers) + 1;
-        String dexName = (nextIdx == 1) ? "classes.dex" : "classes" + nextIdx + ".dex";
-        Log.d(TAG, "Adding hook DEX as: " + dexName + " (nextIdx=" + nextIdx + ")");
-        copyFile(hookDex, new File(tempRoot, dexName));
+            // Entries added on the fly, keyed by their path in the output APK and shared by all
+            // variants. Anything listed here shadows the entry of the same name in the input.
+            Map<String, File> injected = new LinkedHashMap<>();
 
-        // Copy cloner.json into assets
-        File assetsDir = new File(tempRoot, "assets");
-        if (!assetsDir.exists() && !assetsDir.mkdirs()) {
-            deleteRec(tempRoot);
-            throw new IOException("Failed to create assets dir");
-        }
-        copyFile(clonerJson, new File(assetsDir, "cloner.json"));
+            // Decide next DEX index and add hook dex
+            int nextIdx = dexNumbers.isEmpty() ? 2 : Collections.max(dexNumbers) + 1;
+            String dexName = (nextIdx == 1) ? "classes.dex" : "classes" + nextIdx + ".dex";
+            Log.d(TAG, "Adding hook DEX as: " + dexName + " (nextIdx=" + nextIdx + ")");
+            injected.put(dexName, hookDex);
 
-        // Optional live video file
-        if (liveVideoFile != null && liveVideoFile.exists()) {
-             copyFile(liveVideoFile, new File(assetsDir, "fake_video.mp4"));
-             Log.d(TAG, "Bundled fake_video.mp4 into assets");
-        }
+            // Optional live video file
+            if (liveVideoFile != null && liveVideoFile.exists()) {
+                injected.put("assets/fake_video.mp4", liveVideoFile);
+                Log.d(TAG, "Bundled fake_video.mp4 into assets");
+            }
 
-        // Optional icon file (copy to root)
-        if (iconFile != null && iconFile.exists()) {
-            copyFile(iconFile, new File(tempRoot, "_launcher_icon.png"));
-            int replacedIcons = replaceLauncherIcons(tempRoot, iconFile);
-            Log.d(TAG, "Added modified icon to root as _launcher_icon.png and replaced " + replacedIcons + " launcher resources");
-        }
+            // Optional icon file (copy to root)
+            Map<String, byte[]> replacedIcons = Collections.emptyMap();
+            if (iconFile != null && iconFile.exists()) {
+                injected.put("_launcher_icon.png", iconFile);
+                replacedIcons = buildLauncherIconReplacements(reader, iconFile);
+                Log.d(TAG, "Added modified icon to root as _launcher_icon.png and replaced " + replacedIcons.size() + " launcher resources");
+            }
 
-        // Optional bundled app data
-        if (bundledDataFile != null && bundledDataFile.exists()) {
-            try {
+            // Optional bundled app data
+            if (bundledDataFile != null && bundledDataFile.exists()) {
                 if (isProbablyZip(bundledDataFile) && bundledDataFile.length() <= 100L * 1024 * 1024) {
-                    copyFile(bundledDataFile, new File(assetsDir, "app_data_export.zip"));
+                    injected.put("assets/app_data_export.zip", bundledDataFile);
                     Log.d(TAG, "App data bundled into assets/app_data_export.zip");
                 } else {
                     Log.w(TAG, "Bundled data file rejected (not a ZIP or too large). Skipping.");
                 }
-            } catch (IOException e) {
-                Log.e(TAG, "Error bundling app data. Skipping.", e);
-            }
-        }
-
-        // Inject native libs for appropriate ABI(s)
-        // Check for both arm64 and armv7 support in the target APK
-        boolean hasArm64 = abiDirs.contains("lib/arm64-v8a/");
-        boolean hasArmV7 = abiDirs.contains("lib/armeabi-v7a/");
-
-        // If neither is detected but we are here, it might be an APK without native libs (Java only)
-        // In that case, we might default to injecting both or just one.
-        // For now, if no libs are found, we assume it supports at least armv7 or both.
-        if (!hasArm64 && !hasArmV7) {
-            // Default behavior for pure Java apps: inject both if we have them
-            hasArm64 = true;
-            hasArmV7 = true;
-        }
-
-        if (nativeLibDir != null) {
-            // Helper to copy libs for a specific ABI
-            if (hasArm64) {
-                File arm64Source = new File(nativeLibDir, "arm64-v8a");
-                if (arm64Source.exists() && arm64Source.isDirectory()) {
-                     File dstDir = new File(tempRoot, "lib/arm64-v8a/");
-                     if (!dstDir.exists() && !dstDir.mkdirs()) {
-                         deleteRec(tempRoot);
-                         throw new IOException("Failed to create ABI dir: " + dstDir);
-                     }
-                     File[] soFiles = arm64Source.listFiles((d, n) -> n != null && n.endsWith(".so"));
-                     if (soFiles != null) {
-                         for (File so : soFiles) {
-                             copyFile(so, new File(dstDir, so.getName()));
-                         }
-                     }
+            }
+
+            // Inject native libs for appropriate ABI(s)
+            // Check for both arm64 and armv7 support in the target APK
+            boolean hasArm64 = abiDirs.contains("lib/arm64-v8a/");
+            boolean hasArmV7 = abiDirs.contains("lib/armeabi-v7a/");
+
+            // If neither is detected but we are here, it might be an APK without native libs (Java only)
+            // In that case, we might default to injecting both or just one.
+            // For now, if no libs are found, we assume it supports at least armv7 or both.
+            if (!hasArm64 && !hasArmV7) {
+                // Default behavior for pure Java apps: inject both if we have them
+                hasArm64 = true;
+                hasArmV7 = true;
+            }
+
+            if (nativeLibDir != null) {
+                if (hasArm64) {
+                    collectNativeLibs(new File(nativeLibDir, "arm64-v8a"), "lib/arm64-v8a/", injected);
+                }
+                if (hasArmV7) {
+                    collectNativeLibs(new File(nativeLibDir, "armeabi-v7a"), "lib/armeabi-v7a/", injected);
                 }
             }
 
-            if (hasArmV7) {
-                File armV7Source = new File(nativeLibDir, "armeabi-v7a");
-                if (armV7Source.exists() && armV7Source.isDirectory()) {
-                     File dstDir = new File(tempRoot, "lib/armeabi-v7a/");
-                     if (!dstDir.exists() && !dstDir.mkdirs()) {
-                         deleteRec(tempRoot);
-                         throw new IOException("Failed to create ABI dir: " + dstDir);
-                     }
-                     File[] soFiles = armV7Source.listFiles((d, n) -> n != null && n.endsWith(".so"));
-                     if (soFiles != null) {
-                         for (File so : soFiles) {
-                             copyFile(so, new File(dstDir, so.getName()));
-                         }
-                     }
+            // Deflate the changed entries on the fork-join compressor while the untouched ones are
+            // being copied; results are consumed below in a fixed order, so the archive is the
+            // same as with a serial compressor.
+            Map<String, Future<ParallelDeflater.Compressed>> jobs = new HashMap<>();
+            for (Map.Entry<String, byte[]> e : replacedIcons.entrySet()) {
+                ApkZipReader.Entry original = reader.getEntry(e.getKey());
+                if (original.getMethod() == ZipEntry.DEFLATED) {
+                    jobs.put(e.getKey(), deflater.submit(e.getValue(),
+                            ParallelDeflater.levelFor(e.getKey(), e.getValue().length)));
+                }
+            }
+            for (Map.Entry<String, File> e : injected.entrySet()) {
+                File f = e.getValue();
+                if (compressionMethodFor(e.getKey()) == ZipEntry.DEFLATED
+                        && f.length() <= ParallelDeflater.PRESUBMIT_LIMIT) {
+                    jobs.put(e.getKey(), deflater.submit(f, ParallelDeflater.levelFor(e.getKey(), f.length())));
                 }
             }
-        }
 
-        // Repack unsigned APK
-        File unsignedApk = new File(ctx.getCacheDir(), "unsigned_" + System.nanoTime() + ".apk");
-        zipDir(tempRoot, unsignedApk, patchedManifest);
-        deleteRec(tempRoot);
+            // Stream the unsigned APKs side by side: manifest first, untouched entries as raw
+            // compressed bytes, then everything injected above. Large injected files are only
+            // compressed for the first variant; the others copy its payload.
+            long writeStart = System.nanoTime();
+            long total = reader.getCentralDirectoryOffset();
+            for (File f : injected.values()) total += f.length();
+            long done = 0;
+            List<ApkZipWriter> writers = new ArrayList<>(k);
+            try {
+                for (int i = 0; i < k; i++) {
+                    ApkZipWriter zw = new ApkZipWriter(unsignedApks.get(i));
+                    zw.setCompressor(deflater);
+                    writers.add(zw);
+                    zw.writeEntry(ANDROID_MANIFEST, ParallelDeflater.await(manifestJobs.get(i)));
+                }
+                for (ApkZipReader.Entry ze : reader.getEntries()) {
+                    String name = ze.getName();
+                    done += ze.getCompressedSize();
+                    if (name == null || name.isEmpty() || ze.isDirectory()) continue;
+                    // Remove all existing signature files
+                    if (SIG_PATH.matcher(name).matches()) continue;
+                    if (ANDROID_MANIFEST.equals(name) || CLONER_JSON_ENTRY.equals(name)
+                            || SettingsBlobWriter.ENTRY.equals(name) || injected.containsKey(name)) continue;
+                    reportProgress(ProgressListener.STAGE_WRITE, done, total);
+
+                    Future<ParallelDeflater.Compressed> job = jobs.get(name);
+                    byte[] icon = replacedIcons.get(name);
+                    for (ApkZipWriter zw : writers) {
+                        if (job != null) {
+                            zw.replaceEntry(reader, ze, name, ParallelDeflater.await(job));
+                        } else if (icon != null) {
+                            zw.replaceEntry(reader, ze, name, icon, ze.getMethod());
+                        } else {
+                            zw.copyEntry(reader, ze);
+                        }
+                    }
+                }
+                ApkZipReader.Entry originalJson = reader.getEntry(CLONER_JSON_ENTRY);
+                for (int i = 0; i < k; i++) {
+                    writers.get(i).replaceEntry(reader, originalJson, CLONER_JSON_ENTRY,
+                            ParallelDeflater.await(clonerJsonJobs.get(i)));
+                }
+                // Stored, so the runtime can map it straight out of the APK.
+                ApkZipReader.Entry originalBlob = reader.getEntry(SettingsBlobWriter.ENTRY);
+                for (int i = 0; i < k; i++) {
+                    byte[] blob = ParallelDeflater.await(settingsBlobJobs.get(i));
+                    if (blob != null) {
+                        writers.get(i).replaceEntry(reader, originalBlob, SettingsBlobWriter.ENTRY,
+                                blob, ZipEntry.STORED);
+                    }
+                }
+                for (Map.Entry<String, File> e : injected.entrySet()) {
+                    String name = e.getKey();
+                    // Many apps already ship an identical libc++_shared.so etc.; keep their payload.
+                    ApkZipReader.Entry original = SIG_PATH.matcher(name).matches() ? null : reader.getEntry(name);
+                    Future<ParallelDeflater.Compressed> job = jobs.get(name);
+                    if (job != null) {
+                        for (ApkZipWriter zw : writers) {
+                            zw.replaceEntry(reader, original, name, ParallelDeflater.await(job));
+                        }
+                    } else {
+                        ApkZipWriter first = writers.get(0);
+                        first.replaceEntry(reader, original, name, e.getValue(), compressionMethodFor(name));
+                        for (int i = 1; i < k; i++) {
+                            writers.get(i).copyEntry(first, name);
+                        }
+                    }
+                    done += e.getValue().length();
+                    reportProgress(ProgressListener.STAGE_WRITE, done, total);
+                }
+                for (ApkZipWriter zw : writers) {
+                    zw.close();
+                }
+                Log.i(TAG, k + " unsigned APK(s) written in " + (System.nanoTime() - writeStart) / 1_000_000
+                        + " ms: " + writers.get(0).getStats());
+            } finally {
+                for (ApkZipWriter zw : writers) {
+                    closeQuietly(zw);
+                }
+                for (Future<ParallelDeflater.Compressed> job : manifestJobs) job.cancel(false);
+                for (Future<ParallelDeflater.Compressed> job : clonerJsonJobs) job.cancel(false);
+                for (Future<byte[]> job : settingsBlobJobs) job.cancel(false);
+                for (Future<ParallelDeflater.Compressed> job : jobs.values()) {
+                    job.cancel(false);
+                }
+            }
 
-        // Sign APK
-        File signedApk = new File(ctx.getCacheDir(), "signed_" + System.nanoTime() + ".apk");
-        try {
-            signApk(unsignedApk, signedApk);
+            // Sign straight into the output Uris
+            reportProgress(ProgressListener.STAGE_SIGN, 0, k);
+            if (k == 1) {
+                signApk(unsignedApks.get(0), variants.get(0).output);
+            } else {
+                signAll(deflater, unsignedApks, variants);
+            }
+            reportProgress(ProgressListener.STAGE_SIGN, k, k);
         } catch (Exception e) {
-            Log.e(TAG, "Signing failed", e);
-            unsignedApk.delete();
-            signedApk.delete();
+            Log.e(TAG, "APK injection failed", e);
             throw e;
+        } finally {
+            for (File f : unsignedApks) {
+                f.delete();
+            }
         }
-        // Delete unsigned file
-        unsignedApk.delete();
 
-        // Write to output Uri
-        try (OutputStream os = ctx.getContentResolver().openOutputStream(outApk)) {
-            if (os == null) {
-                throw new IOException("Cannot open output stream for: " + outApk);
+        Log.i(TAG, "APK injection + signing completed successfully");
+    }
+
+    /** Signs every variant on the pool and rethrows the first failure once all are done. */
+    private void signAll(ParallelDeflater pool, List<File> unsignedApks, List<Variant> variants)
+            throws Exception {
+        List<Future<Void>> signing = new ArrayList<>(variants.size());
+        for (int i = 0; i < variants.size(); i++) {
+            File unsigned = unsignedApks.get(i);
+            Uri out = variants.get(i).output;
+            signing.add(pool.submit(() -> {
+                signApk(unsigned, out);
+                return null;
+            }));
+        }
+        IOException first = null;
+        for (Future<Void> f : signing) {
+            try {
+                ParallelDeflater.await(f);
+            } catch (IOException e) {
+                if (first == null) first = e;
             }
-            copyFileToStream(signedApk, os);
-        } catch (Exception e) {
-            Log.e(TAG, "Error writing output APK", e);
-            signedApk.delete();
-            throw e;
         }
+        if (first != null) throw first;
+    }
 
-        signedApk.delete();
-        Log.i(TAG, "APK injection + signing completed successfully");
+    /**
+     * Compiles the variant's cloner.json into the settings blob, or returns null so the clone
+     * ships without one and the runtime parses the JSON instead.
+     */
+    private static byte[] encodeSettingsBlob(File clonerJson) {
+        try {
+            return SettingsBlobWriter.encode(clonerJson);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot compile settings blob; clone will parse cloner.json", e);
+            return null;
+        }
+    }
+
+    private static JSONObject readClonerConfig(File clonerJson) {
+        try (InputStreamReader jsonReader = new InputStreamReader(new FileInputStream(clonerJson), "UTF-8")) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = jsonReader.read(buffer, 0, buffer.length)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return new JSONObject(sb.toString());
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to read or parse cloner.json, using default empty config.", e);
+            return new JSONObject();
+        }
+    }
+
+    /** Patches the manifest with validation + safe fallback + retry logic. */
+    private byte[] buildPatchedManifest(byte[] manifestRaw, JSONObject clonerConfig, int variantIndex) {
+        try {
+            ManifestPatchResult manifestResult = patchManifest(manifestRaw, clonerConfig, variantIndex);
+            byte[] patchedManifest = manifestResult.manifestBytes;
+            validateManifest(patchedManifest);
+            Log.d(TAG, "Manifest patched and validated successfully.");
+            return patchedManifest;
+        } catch (Throwable t) {
+            Log.e(TAG, "Manifest patching/validation failed on first attempt", t);
+        }
+        // Try a safer patching approach without icon/label modifications
+        try {
+            Log.d(TAG, "Attempting safe manifest patch without app name modification...");
+            JSONObject safeConfig = clonerConfig != null ? new JSONObject(clonerConfig.toString()) : new JSONObject();
+            safeConfig.remove("app_name");  // Remove app name modification
+            ManifestPatchResult safeResult = patchManifest(manifestRaw, safeConfig, variantIndex);
+            byte[] patchedManifest = safeResult.manifestBytes;
+            validateManifest(patchedManifest);
+            Log.d(TAG, "Safe manifest patch succeeded.");
+            return patchedManifest;
+        } catch (Throwable t2) {
+            Log.e(TAG, "Safe manifest patching also failed; falling back to original manifest", t2);
+            return manifestRaw;
+        }
     }
 
-    private ManifestPatchResult patchManifest(byte[] raw, JSONObject clonerConfig) throws IOException {
+    private ManifestPatchResult patchManifest(byte[] raw, JSONObject clonerConfig, int variantIndex)
+            throws IOException {
         ResXmlDocument doc = new ResXmlDocument();
         doc.readBytes(new ByteArrayInputStream(raw));
         ResXmlElement root = doc.getDocumentElement();
@@ -417,7 +580,10 @@ public class ApkProcessor {
             cloningMode = clonerConfig.optString(CLONING_MODE_KEY, CLONING_MODE_REPLACE);
         }
         if (CLONING_MODE_GENERATE.equalsIgnoreCase(cloningMode)) {
-            String generatedPkg = generateVariantPackageName(pkg);
+            String generatedPkg = pkg;
+            for (int i = 0; i <= variantIndex; i++) {
+                generatedPkg = generateVariantPackageName(generatedPkg);
+            }
             if (generatedPkg != null && !generatedPkg.isEmpty() && !generatedPkg.equals(pkg)) {
                 Log.d(TAG, "Cloning mode enabled: package will change from " + pkg + " to " + generatedPkg);
                 pkgAttr.setValueAsString(generatedPkg);
@@ -893,7 +1059,13 @@ public class ApkProcessor {
         return result;
     }
 
-    private String generateVariantPackageName(String pkg) {
+    /**
+     * The next name in the variant sequence: the last letter counts up like an odometer digit,
+     * carrying into the letters before it and growing the run by one letter once it is all
+     * z's (app -> apq, apz -> aqa, zz -> aaa). Every step gives a name not seen before, so any
+     * number of variants get distinct packages.
+     */
+    private static String generateVariantPackageName(String pkg) {
         if (pkg == null) {
             return null;
         }
@@ -901,19 +1073,30 @@ public class ApkProcessor {
         if (trimmed.isEmpty()) {
             return pkg;
         }
-        char[] chars = trimmed.toCharArray();
-        for (int i = chars.length - 1; i >= 0; i--) {
-            char c = chars[i];
-            if (Character.isLetter(c)) {
-                if (Character.isUpperCase(c)) {
-                    chars[i] = (c == 'Z') ? 'A' : (char) (c + 1);
-                } else {
-                    chars[i] = (c == 'z') ? 'a' : (char) (c + 1);
-                }
-                return new String(chars);
+        StringBuilder sb = new StringBuilder(trimmed);
+        int i = sb.length() - 1;
+        while (i >= 0 && !isAsciiLetter(sb.charAt(i))) i--;
+        if (i < 0) {
+            return trimmed + "a";
+        }
+        while (true) {
+            char c = sb.charAt(i);
+            if (c != 'z' && c != 'Z') {
+                sb.setCharAt(i, (char) (c + 1));
+                return sb.toString();
             }
+            char first = c == 'z' ? 'a' : 'A';
+            sb.setCharAt(i, first);
+            if (i == 0 || !isAsciiLetter(sb.charAt(i - 1))) {
+                sb.insert(i, first);
+                return sb.toString();
+            }
+            i--;
         }
-        return trimmed + "a";
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 
     private boolean isValidPackageName(String packageName) {
@@ -1147,232 +1330,317 @@ public class ApkProcessor {
         }
     }
 
-    // --- ZIP packing ---
+    // --- ZIP streaming ---
 
-    private void zipDir(File root, File outFile, byte[] manifestBytes) throws IOException {
-        if (manifestBytes == null || manifestBytes.length == 0) {
-            throw new IOException("Manifest bytes are null/empty when zipping APK");
+    private void reportProgress(String stage, long done, long total) {
+        ProgressListener l = progressListener;
+        if (l != null) l.onProgress(stage, done, total);
+    }
+
+    /**
+     * Opens the input APK for random access by memory-mapping it. Document providers normally
+     * hand out a seekable descriptor that can be mapped directly; for the ones that only stream
+     * (pipes, some cloud providers) the APK is spooled to the cache dir once and mapped from there.
+     */
+    public ApkZipReader openInputApk(Uri inApk) throws IOException {
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = ctx.getContentResolver().openFileDescriptor(inApk, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            Log.w(TAG, "No file descriptor for " + inApk + ", spooling input", e);
+        }
+        if (pfd != null) {
+            FileInputStream fis = new FileInputStream(pfd.getFileDescriptor());
+            FileChannel channel = fis.getChannel();
+            boolean seekable;
+            try {
+                channel.position(0);
+                seekable = channel.size() > 0;
+            } catch (IOException e) {
+                seekable = false;
+            }
+            ByteBuffer mapped = null;
+            try {
+                if (seekable) mapped = ApkZipReader.map(channel);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot map " + inApk + ", spooling input", e);
+            } finally {
+                fis.close();
+                pfd.close();
+            }
+            if (mapped != null) {
+                // The mapping outlives the descriptor, so nothing has to stay open.
+                return new ApkZipReader(mapped);
+            }
+        }
+
+        File spool = new File(ctx.getCacheDir(), "input_" + System.nanoTime() + ".apk");
+        try (InputStream is = ctx.getContentResolver().openInputStream(inApk);
+             OutputStream os = new FileOutputStream(spool)) {
+            if (is == null) {
+                throw new IOException("Cannot open input stream for: " + inApk);
+            }
+            copyStream(is, os);
+        } catch (IOException | RuntimeException e) {
+            spool.delete();
+            throw e;
         }
-        try (OutputStream os = new FileOutputStream(outFile);
-             ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os))) {
-            zos.setLevel(9);
-            writeZip(root, zos, manifestBytes);
+        try (RandomAccessFile raf = new RandomAccessFile(spool, "r")) {
+            return new ApkZipReader(ApkZipReader.map(raf.getChannel()), () -> spool.delete());
+        } catch (IOException | RuntimeException e) {
+            spool.delete();
+            throw e;
         }
     }
 
-    private void writeZip(File root, ZipOutputStream zos, byte[] manifestBytes) throws IOException {
-        // Write manifest first
-        ZipEntry manifestEntry = createZipEntry(ANDROID_MANIFEST, manifestBytes);
-        zos.putNextEntry(manifestEntry);
-        zos.write(manifestBytes);
-        zos.closeEntry();
+    private static void collectNativeLibs(File abiSource, String abiPath, Map<String, File> injected) {
+        if (!abiSource.isDirectory()) return;
+        File[] soFiles = abiSource.listFiles((d, n) -> n != null && n.endsWith(".so"));
+        if (soFiles == null) return;
+        for (File so : soFiles) {
+            injected.put(abiPath + so.getName(), so);
+        }
+    }
 
-        // Then all other files
-        addRec(root, root.getAbsolutePath(), zos);
+    private static int compressionMethodFor(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        // Store resources.arsc and native libs uncompressed; everything else deflated.
+        boolean store = lower.endsWith(".arsc") ||
+                        (lower.startsWith("lib/") && lower.endsWith(".so"));
+        return store ? ZipEntry.STORED : ZipEntry.DEFLATED;
     }
 
-    private int replaceLauncherIcons(File apkRoot, File newIconFile) {
-        File resDir = new File(apkRoot, "res");
-        if (!resDir.isDirectory()) {
-            Log.w(TAG, "No res directory found when attempting to replace launcher icons");
-            return 0;
+    /**
+     * Returns the replacement bytes for every launcher icon resource in the APK, keyed by
+     * entry name. PNG targets get the processed icon as-is; WebP targets get one lossless
+     * re-encode that is shared across densities.
+     */
+    private Map<String, byte[]> buildLauncherIconReplacements(ApkZipReader reader, File newIconFile) {
+        List<String> targets = new ArrayList<>();
+        for (ApkZipReader.Entry e : reader.getEntries()) {
+            if (isLauncherIconEntry(e.getName())) {
+                targets.add(e.getName());
+            }
         }
-
-        java.util.List<File> targets = new ArrayList<>();
-        collectLauncherIconTargets(resDir, targets);
         if (targets.isEmpty()) {
             Log.w(TAG, "No launcher icon resources found to replace");
-            return 0;
+            return Collections.emptyMap();
         }
 
-        Bitmap cachedBitmap = null;
-        int replaced = 0;
-        for (File target : targets) {
-            try {
-                String nameLower = target.getName().toLowerCase(Locale.US);
-                if (nameLower.endsWith(".webp")) {
-                    if (cachedBitmap == null) {
-                        cachedBitmap = BitmapFactory.decodeFile(newIconFile.getAbsolutePath());
-                    }
-                    if (cachedBitmap != null) {
-                        try (FileOutputStream fos = new FileOutputStream(target)) {
-                            cachedBitmap.compress(Bitmap.CompressFormat.WEBP_LOSSLESS, 100, fos);
-                            replaced++;
-                        }
-                    } else {
-                        Log.w(TAG, "Failed to decode processed icon for WebP conversion; skipping " + target.getAbsolutePath());
-                    }
-                } else {
-                    copyFile(newIconFile, target);
-                    replaced++;
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Failed to replace launcher icon at " + target.getAbsolutePath(), e);
+        byte[] pngBytes;
+        try {
+            pngBytes = readFileBytes(newIconFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read processed icon " + newIconFile, e);
+            return Collections.emptyMap();
+        }
+
+        // Every density gets the processed icon scaled to the size of the resource it replaces;
+        // encoded results come from the icon cache when this icon was used before.
+        Bitmap[] decoded = new Bitmap[1];
+        Map<String, byte[]> replacements = new HashMap<>();
+        for (String target : targets) {
+            boolean webp = target.toLowerCase(Locale.US).endsWith(".webp");
+            int[] size = readImageSize(reader, reader.getEntry(target));
+            byte[] encoded;
+            if (size == null) {
+                // Unknown size: keep the old behaviour of using the processed icon as is.
+                encoded = webp ? IconProcessor.encodeScaled(ctx, pngBytes, decoded, -1, -1,
+                        Bitmap.CompressFormat.WEBP_LOSSLESS) : pngBytes;
+            } else {
+                encoded = IconProcessor.encodeScaled(ctx, pngBytes, decoded, size[0], size[1],
+                        webp ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.PNG);
+            }
+            if (encoded != null) {
+                replacements.put(target, encoded);
+            } else {
+                Log.w(TAG, "Failed to decode processed icon; skipping " + target);
             }
         }
+        if (decoded[0] != null) decoded[0].recycle();
+        return replacements;
+    }
 
-        return replaced;
+    /** Width and height of an image entry from its header only, or null if it cannot be read. */
+    private static int[] readImageSize(ApkZipReader reader, ApkZipReader.Entry e) {
+        try {
+            byte[] data = reader.read(e);
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+            return opts.outWidth > 0 && opts.outHeight > 0 ? new int[] {opts.outWidth, opts.outHeight} : null;
+        } catch (IOException ex) {
+            Log.w(TAG, "Cannot read " + e.getName(), ex);
+            return null;
+        }
     }
 
-    private void collectLauncherIconTargets(File dir, java.util.List<File> targets) {
-        File[] files = dir.listFiles();
-        if (files == null) return;
+    private static boolean isLauncherIconEntry(String name) {
+        // res/<mipmap*|drawable*>/<launcher-like name>.(png|webp)
+        if (name == null || !name.startsWith("res/")) return false;
+        int slash = name.indexOf('/', 4);
+        if (slash < 0 || name.indexOf('/', slash + 1) >= 0) return false;
+
+        String dirLower = name.substring(4, slash).toLowerCase(Locale.US);
+        if (!dirLower.startsWith("mipmap") && !dirLower.startsWith("drawable")) return false;
+
+        String nameLower = name.substring(slash + 1).toLowerCase(Locale.US);
+        boolean looksLikeLauncher = nameLower.startsWith("ic_launcher") ||
+                nameLower.startsWith("ic_launcher_round") ||
+                nameLower.startsWith("ic_launcher_foreground") ||
+                nameLower.startsWith("ic_launcher_background") ||
+                nameLower.startsWith("app_icon") ||
+                nameLower.startsWith("launcher_icon");
+        boolean supportedExt = nameLower.endsWith(".png") || nameLower.endsWith(".webp");
+        return looksLikeLauncher && supportedExt;
+    }
 
-        for (File f : files) {
-            if (f.isDirectory()) {
-                String nameLower = f.getName().toLowerCase(Locale.US);
-                if (nameLower.startsWith("mipmap") || nameLower.startsWith("drawable")) {
-                    collectLauncherIconTargets(f, targets);
-                }
-                continue;
-            }
+    // --- Signing ---
 
-            String nameLower = f.getName().toLowerCase(Locale.US);
-            boolean looksLikeLauncher = nameLower.startsWith("ic_launcher") ||
-                    nameLower.startsWith("ic_launcher_round") ||
-                    nameLower.startsWith("ic_launcher_foreground") ||
-                    nameLower.startsWith("ic_launcher_background") ||
-                    nameLower.startsWith("app_icon") ||
-                    nameLower.startsWith("launcher_icon");
-            boolean supportedExt = nameLower.endsWith(".png") || nameLower.endsWith(".webp");
-            if (looksLikeLauncher && supportedExt) {
-                targets.add(f);
-            }
+    /**
+     * Signs the unsigned archive into {@code outApk}. The input is read from a mapping of the
+     * unsigned file, and the signer writes through the output descriptor directly and reads back
+     * what it wrote from the same descriptor when computing the v2/v3 digests. Only Uris without
+     * a seekable descriptor go through an intermediate signed file.
+     *
+     * Both directions share the descriptor's file offset, and the digests are read on worker
+     * threads while the signer is still writing. Writes therefore go through
+     * {@link PositionalDataSink}, which never uses or moves the offset; only the reads do, and
+     * FileChannelDataSource serializes those on the channel.
+     */
+    private void signApk(File in, Uri outApk) throws Exception {
+        Log.d(TAG, "Loading signer config...");
+        ApkSigner.SignerConfig signer = SignerCache.getInstance().getSelected(ctx);
+
+        DataSource input;
+        try (RandomAccessFile raf = new RandomAccessFile(in, "r")) {
+            input = DataSources.asDataSource(ApkZipReader.map(raf.getChannel()));
         }
-    }
 
-    private void addRec(File node, String base, ZipOutputStream zos) throws IOException {
-        if (node.isDirectory()) {
-            File[] kids = node.listFiles();
-            if (kids != null) {
-                for (File k : kids) {
-                    addRec(k, base, zos);
+        ParcelFileDescriptor pfd = openSeekableOutput(outApk);
+        if (pfd == null) {
+            File signedApk = new File(ctx.getCacheDir(), "signed_" + System.nanoTime() + ".apk");
+            try {
+                sign(signer, newSignerBuilder(signer, input).setOutputApk(signedApk));
+                try (OutputStream os = ctx.getContentResolver().openOutputStream(outApk)) {
+                    if (os == null) {
+                        throw new IOException("Cannot open output stream for: " + outApk);
+                    }
+                    copyFileToStream(signedApk, os);
+                }
+                if (verifyOutput) {
+                    try (RandomAccessFile raf = new RandomAccessFile(signedApk, "r")) {
+                        verifyApk(DataSources.asDataSource(raf.getChannel()));
+                    }
                 }
+            } finally {
+                signedApk.delete();
             }
             return;
         }
 
-        String rel = node.getAbsolutePath()
-                .substring(base.length() + 1)
-                .replace(File.separatorChar, '/');
-
-        // Manifest already written
-        if (ANDROID_MANIFEST.equals(rel)) return;
-
-        ZipEntry entry = createZipEntry(rel, node);
-        zos.putNextEntry(entry);
-        try (FileInputStream fis = new FileInputStream(node)) {
-            copyStream(fis, zos);
+        try (FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
+             FileInputStream readBack = new FileInputStream(pfd.getFileDescriptor())) {
+            sign(signer, newSignerBuilder(signer, input).setOutputApk(
+                    new PositionalDataSink(out.getChannel()), DataSources.asDataSource(readBack.getChannel())));
+            out.getFD().sync();
+            if (verifyOutput) {
+                // A fresh data source over the read-back channel sees the file as it now is on disk.
+                verifyApk(DataSources.asDataSource(readBack.getChannel()));
+            }
+        } finally {
+            pfd.close();
         }
-        zos.closeEntry();
     }
 
-    private ZipEntry createZipEntry(String name, byte[] data) {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        // Manifest can be safely compressed
-        e.setMethod(ZipEntry.DEFLATED);
-        return e;
+    private static ApkSigner.Builder newSignerBuilder(ApkSigner.SignerConfig signer, DataSource input) {
+        return new ApkSigner.Builder(Collections.singletonList(signer))
+                .setInputApk(input)
+                .setV1SigningEnabled(true)    // V1 for Android < 7.0 compatibility
+                .setV2SigningEnabled(true)    // V2 for Android 7.0+
+                .setV3SigningEnabled(true);   // V3 for Android 9.0+ (required for newer devices)
     }
 
-    private ZipEntry createZipEntry(String name, File file) throws IOException {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        String lower = name.toLowerCase(Locale.US);
-
-        // Store resources.arsc and native libs uncompressed; everything else deflated.
-        boolean store = lower.endsWith(".arsc") ||
-                        (lower.startsWith("lib/") && lower.endsWith(".so"));
+    private static void sign(ApkSigner.SignerConfig signer, ApkSigner.Builder builder) throws Exception {
+        long start = System.nanoTime();
+        Log.d(TAG, "Calling apkSigner.sign() as " + signer.getName() + "...");
+        builder.build().sign();
+        Log.d(TAG, "APK signed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
 
-        if (store) {
-            e.setMethod(ZipEntry.STORED);
-            long size = file.length();
-            e.setSize(size);
-            e.setCompressedSize(size);
-
-            CRC32 crc = new CRC32();
-            try (InputStream in = new FileInputStream(file)) {
-                byte[] buf = new byte[8192];
-                int r;
-                while ((r = in.read(buf)) != -1) {
-                    crc.update(buf, 0, r);
-                }
-            }
-            e.setCrc(crc.getValue());
-        } else {
-            e.setMethod(ZipEntry.DEFLATED);
+    /**
+     * Opens {@code outApk} truncated for reading and writing, or returns null when the provider
+     * only offers a stream (pipes, some cloud providers).
+     */
+    private ParcelFileDescriptor openSeekableOutput(Uri outApk) {
+        ParcelFileDescriptor pfd;
+        try {
+            pfd = ctx.getContentResolver().openFileDescriptor(outApk, "rwt");
+        } catch (FileNotFoundException | SecurityException | IllegalArgumentException e) {
+            Log.w(TAG, "No read-write descriptor for " + outApk + ", signing to a temp file", e);
+            return null;
+        }
+        if (pfd == null) return null;
+        try (FileInputStream probe = new FileInputStream(pfd.getFileDescriptor())) {
+            FileChannel channel = probe.getChannel();
+            channel.position(0);
+            // Streams built on a ParcelFileDescriptor's descriptor do not own it.
+            if (channel.size() == 0) return pfd;
+            Log.w(TAG, "Output " + outApk + " was not truncated, signing to a temp file");
+        } catch (IOException e) {
+            Log.w(TAG, "Output " + outApk + " is not seekable, signing to a temp file", e);
         }
-        return e;
+        try {
+            pfd.close();
+        } catch (IOException ignored) {
+        }
+        return null;
     }
 
-    // --- Signing ---
-
-    private void signApk(File in, File out) throws Exception {
-        Log.d(TAG, "Loading signer config...");
-        ApkSigner.SignerConfig signer = loadSignerConfig();
-        Log.d(TAG, "Signer config loaded. Building ApkSigner...");
-
-        ApkSigner apkSigner = new ApkSigner.Builder(Collections.singletonList(signer))
-                .setInputApk(in)
-                .setOutputApk(out)
-                .setV1SigningEnabled(true)    // V1 for Android < 7.0 compatibility
-                .setV2SigningEnabled(true)    // V2 for Android 7.0+
-                .setV3SigningEnabled(true)    // V3 for Android 9.0+ (required for newer devices)
-                .build();
-
-        Log.d(TAG, "Calling apkSigner.sign()...");
-        apkSigner.sign();
-        Log.d(TAG, "APK signed successfully.");
-
-        // Best-effort verification (for logging only)
+    /** Best-effort verification of the signed output, for logging only. */
+    private static void verifyApk(DataSource apk) {
         try {
             Log.d(TAG, "Attempting APK verification...");
-            Class<?> builderClass = Class.forName("com.android.apksig.ApkVerifier$Builder");
-            Object builderInstance = builderClass.getConstructor(File.class).newInstance(out);
-            Object apkVerifierInstance = builderClass.getMethod("build").invoke(builderInstance);
-            Object vRes = apkVerifierInstance.getClass().getMethod("verify").invoke(apkVerifierInstance);
-            Boolean isVerified = (Boolean) vRes.getClass().getMethod("isVerified").invoke(vRes);
-            if (isVerified != null && !isVerified) {
-                Log.w(TAG, "APK verification result: NOT VERIFIED (continuing)");
+            ApkVerifier.Result result = new ApkVerifier.Builder(apk).build().verify();
+            if (!result.isVerified()) {
+                Log.w(TAG, "APK verification result: NOT VERIFIED (continuing); errors: " + result.getErrors());
             } else {
-                Log.d(TAG, "APK signature verification passed (or skipped).");
+                Log.d(TAG, "APK signature verification passed (v1=" + result.isVerifiedUsingV1Scheme()
+                        + ", v2=" + result.isVerifiedUsingV2Scheme() + ", v3=" + result.isVerifiedUsingV3Scheme() + ")");
             }
         } catch (Throwable t) {
             Log.w(TAG, "Verification skipped due to error", t);
         }
-        Log.d(TAG, "Signing process completed.");
     }
 
-    private ApkSigner.SignerConfig loadSignerConfig() throws Exception {
-        Log.d(TAG, "Loading keystore: " + KEYSTORE_ASSET + " with alias: " + ALIAS);
-        try (InputStream ksStream = ctx.getAssets().open(KEYSTORE_ASSET)) {
-            KeyStore ks = KeyStore.getInstance("BKS");
-            ks.load(ksStream, STORE_PWD.toCharArray());
-
-            PrivateKey key = (PrivateKey) ks.getKey(ALIAS, KEY_PWD.toCharArray());
-            if (key == null) {
-                throw new IllegalStateException("Private key is null for alias: " + ALIAS);
-            }
-            X509Certificate cert = (X509Certificate) ks.getCertificate(ALIAS);
-            if (cert == null) {
-                throw new IllegalStateException("Certificate is null for alias: " + ALIAS);
-            }
+    /**
+     * Appends through {@link FileChannel#write(ByteBuffer, long)}, which leaves the descriptor's
+     * file offset alone, so reads through another stream on the same descriptor cannot move
+     * where the next bytes land.
+     */
+    private static final class PositionalDataSink implements DataSink {
+        private final FileChannel channel;
+        private long position;
 
-            return new ApkSigner.SignerConfig.Builder(ALIAS, key, Collections.singletonList(cert)).build();
+        PositionalDataSink(FileChannel channel) {
+            this.channel = channel;
         }
-    }
 
-    // --- Utils ---
+        @Override
+        public void consume(byte[] buf, int offset, int length) throws IOException {
+            consume(ByteBuffer.wrap(buf, offset, length));
+        }
 
-    private static File safeResolve(File root, String basePath, String entryName) throws IOException {
-        File out = new File(root, entryName);
-        String outPath = out.getCanonicalPath();
-        if (!outPath.startsWith(basePath)) {
-            throw new IOException("Blocked zip path traversal: " + entryName);
+        @Override
+        public void consume(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                position += channel.write(buf, position);
+            }
         }
-        return out;
     }
 
+    // --- Utils ---
+
     private static boolean isProbablyZip(File f) {
         if (!f.isFile() || f.length() < 4) return false;
         try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
@@ -1388,25 +1656,6 @@ public class ApkProcessor {
         }
     }
 
-    private static void copyFile(File source, File dest) throws IOException {
-        if (source == null || dest == null) {
-            throw new IllegalArgumentException("Source and destination files cannot be null");
-        }
-        if (!source.exists() || !source.isFile()) {
-            throw new IOException("Source file does not exist: " + source);
-        }
-
-        File parent = dest.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            throw new IOException("Failed to create directory: " + parent);
-        }
-
-        try (InputStream in = new FileInputStream(source);
-             OutputStream out = new FileOutputStream(dest)) {
-            copyStream(in, out);
-        }
-    }
-
     private static void copyFileToStream(File source, OutputStream dest) throws IOException {
         if (source == null || dest == null) {
             throw new IllegalArgumentException("Source file and destination stream cannot be null");
@@ -1419,6 +1668,14 @@ public class ApkProcessor {
         }
     }
 
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Close failed", e);
+        }
+    }
+
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
         byte[] buf = new byte[8192];
         int n;
@@ -1427,15 +1684,12 @@ public class ApkProcessor {
         }
     }
 
-    private static void deleteRec(File f) {
-        if (f.isDirectory()) {
-            File[] kids = f.listFiles();
-            if (kids != null) {
-                for (File k : kids) deleteRec(k);
-            }
+    private static byte[] readFileBytes(File f) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(32, f.length()));
+            copyStream(in, out);
+            return out.toByteArray();
         }
-        //noinspection ResultOfMethodCallIgnored
-        f.delete();
     }
 
     private void removeAttribute(ResXmlElement element, String name) {
@@ -0,0 +1,360 @@
+package com.appcloner.replica;
+
+import com.android.apksig.util.DataSource;
+import com.android.apksig.util.DataSources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Random-access reader for APK (ZIP) archives backed by a memory-mapped buffer.
+ *
+ * Entries are discovered from the central directory instead of walking local headers, so
+ * the payload of every entry can be located without reading the ones before it. Payloads
+ * are exposed as zero-copy {@link ByteBuffer} slices of the mapping, either raw (still
+ * compressed) for verbatim copying into another archive, or inflated when the content itself
+ * is needed. The whole archive is also available as an apksig {@link DataSource}.
+ */
+public class ApkZipReader implements Closeable {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG  = 0x02014b50;
+    private static final int LOC_SIG  = 0x04034b50;
+
+    private static final int EOCD_SIZE       = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT     = 0xFFFF;
+
+    private static final int FLAG_ENCRYPTED = 0x0001;
+    private static final int FLAG_UTF8      = 0x0800;
+
+    private final ByteBuffer archive;
+    private final Closeable[] resources;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+    private final long centralDirOffset;
+
+    /**
+     * @param archive   the whole archive; only read through absolute accessors and slices
+     * @param resources closed together with this reader (descriptor, spool file cleanup, ...)
+     */
+    public ApkZipReader(ByteBuffer archive, Closeable... resources) throws IOException {
+        this.archive = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.archive.clear();
+        this.resources = resources;
+
+        ByteBuffer eocd = findEocd();
+        int count = eocd.getShort(10) & 0xFFFF;
+        long cdSize = eocd.getInt(12) & 0xFFFFFFFFL;
+        long cdOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives are not supported");
+        }
+        if (cdOffset + cdSize > this.archive.capacity()) {
+            throw new IOException("Central directory out of range");
+        }
+        this.centralDirOffset = cdOffset;
+
+        ByteBuffer cd = slice(cdOffset, cdSize);
+        List<Entry> list = new ArrayList<>(count);
+        Map<String, Entry> map = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            Entry e = parseCentralRecord(cd);
+            list.add(e);
+            map.put(e.name, e);
+        }
+        this.entries = Collections.unmodifiableList(list);
+        this.byName = map;
+    }
+
+    public static ApkZipReader open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the file is closed.
+            return new ApkZipReader(map(raf.getChannel()));
+        }
+    }
+
+    /** Maps {@code channel} read-only in full; the channel must be seekable. */
+    public static MappedByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("APK too large to map: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /** The whole archive as an apksig data source, sharing the mapping. */
+    public DataSource asDataSource() {
+        return DataSources.asDataSource(archive.duplicate());
+    }
+
+    /** Offset of the central directory, i.e. the end of the last entry's data. */
+    public long getCentralDirectoryOffset() {
+        return centralDirOffset;
+    }
+
+    /** Returns the absolute offset of the entry's (possibly compressed) payload. */
+    public long getDataOffset(Entry e) throws IOException {
+        if (e.dataOffset < 0) {
+            ByteBuffer loc = slice(e.localHeaderOffset, LOC_HEADER_SIZE);
+            if (loc.getInt(0) != LOC_SIG) {
+                throw new IOException("Bad local header for " + e.name);
+            }
+            int nameLen = loc.getShort(26) & 0xFFFF;
+            int extraLen = loc.getShort(28) & 0xFFFF;
+            e.dataOffset = e.localHeaderOffset + LOC_HEADER_SIZE + nameLen + extraLen;
+        }
+        return e.dataOffset;
+    }
+
+    /** Zero-copy view of the entry payload exactly as stored in the archive. */
+    public ByteBuffer getRawData(Entry e) throws IOException {
+        return slice(getDataOffset(e), e.compressedSize);
+    }
+
+    /** Stream over the entry payload exactly as stored in the archive. */
+    public InputStream openRawStream(Entry e) throws IOException {
+        return new BufferInputStream(getRawData(e), false);
+    }
+
+    /** Stream over the uncompressed entry content. */
+    public InputStream openStream(Entry e) throws IOException {
+        if (e.method == ZipEntry.STORED) {
+            return openRawStream(e);
+        }
+        if (e.method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + e.method + " for " + e.name);
+        }
+        // Raw inflaters may need one byte past the end of the stream, same as ZipFile does.
+        InputStream raw = new BufferInputStream(getRawData(e), true);
+        Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(raw, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        };
+    }
+
+    public byte[] read(Entry e) throws IOException {
+        if (e.size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Entry too large to buffer: " + e.name);
+        }
+        if (e.method == ZipEntry.STORED) {
+            byte[] out = new byte[(int) e.size];
+            getRawData(e).get(out);
+            return out;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) e.size);
+        byte[] buf = new byte[8192];
+        try (InputStream in = openStream(e)) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Copies the stored payload of {@code e} to {@code target} without decompressing it. */
+    public void transferRaw(Entry e, WritableByteChannel target) throws IOException {
+        ByteBuffer data = getRawData(e);
+        while (data.hasRemaining()) {
+            if (target.write(data) <= 0 && data.hasRemaining()) {
+                throw new IOException("Short write while copying " + e.name);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (Closeable c : resources) {
+            if (c == null) continue;
+            try {
+                c.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // --- Parsing ---
+
+    private ByteBuffer findEocd() throws IOException {
+        long size = archive.capacity();
+        if (size < EOCD_SIZE) {
+            throw new IOException("Not a ZIP archive (too small)");
+        }
+        int window = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT);
+        ByteBuffer tail = slice(size - window, window);
+        for (int i = window - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIG) {
+                int commentLen = tail.getShort(i + 20) & 0xFFFF;
+                if (i + EOCD_SIZE + commentLen == window) {
+                    ByteBuffer eocd = tail.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                    eocd.position(i);
+                    return eocd.slice().order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    private Entry parseCentralRecord(ByteBuffer cd) throws IOException {
+        int p = cd.position();
+        if (cd.remaining() < CEN_HEADER_SIZE || cd.getInt(p) != CEN_SIG) {
+            throw new IOException("Corrupt central directory at " + (centralDirOffset + p));
+        }
+        Entry e = new Entry();
+        e.flags = cd.getShort(p + 8) & 0xFFFF;
+        e.method = cd.getShort(p + 10) & 0xFFFF;
+        e.time = cd.getShort(p + 12) & 0xFFFF;
+        e.date = cd.getShort(p + 14) & 0xFFFF;
+        e.crc = cd.getInt(p + 16) & 0xFFFFFFFFL;
+        e.compressedSize = cd.getInt(p + 20) & 0xFFFFFFFFL;
+        e.size = cd.getInt(p + 24) & 0xFFFFFFFFL;
+        int nameLen = cd.getShort(p + 28) & 0xFFFF;
+        int extraLen = cd.getShort(p + 30) & 0xFFFF;
+        int commentLen = cd.getShort(p + 32) & 0xFFFF;
+        e.localHeaderOffset = cd.getInt(p + 42) & 0xFFFFFFFFL;
+
+        if ((e.flags & FLAG_ENCRYPTED) != 0) {
+            throw new IOException("Encrypted entries are not supported");
+        }
+        if (e.compressedSize == 0xFFFFFFFFL || e.size == 0xFFFFFFFFL
+                || e.localHeaderOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 entries are not supported");
+        }
+
+        e.rawName = new byte[nameLen];
+        cd.position(p + CEN_HEADER_SIZE);
+        cd.get(e.rawName);
+        // APK tooling writes names as UTF-8 whether or not the EFS flag is set.
+        e.name = new String(e.rawName, StandardCharsets.UTF_8);
+        cd.position(p + CEN_HEADER_SIZE + nameLen + extraLen + commentLen);
+        return e;
+    }
+
+    private ByteBuffer slice(long offset, long len) throws IOException {
+        if (offset < 0 || len < 0 || offset + len > archive.capacity()) {
+            throw new IOException("Unexpected end of archive");
+        }
+        ByteBuffer dup = archive.duplicate();
+        dup.position((int) offset);
+        dup.limit((int) (offset + len));
+        return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static final class Entry {
+        String name;
+        byte[] rawName;
+        int flags;
+        int method;
+        int time;
+        int date;
+        long crc;
+        long compressedSize;
+        long size;
+        long localHeaderOffset;
+        volatile long dataOffset = -1;
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        boolean isUtf8() {
+            return (flags & FLAG_UTF8) != 0;
+        }
+    }
+
+    /** Stream over a slice, so concurrent readers never share a cursor. */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer data;
+        private boolean padByte;
+
+        BufferInputStream(ByteBuffer data, boolean padByte) {
+            this.data = data;
+            this.padByte = padByte;
+        }
+
+        @Override
+        public int read() {
+            if (data.hasRemaining()) return data.get() & 0xFF;
+            if (padByte) {
+                padByte = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!data.hasRemaining()) {
+                if (padByte) {
+                    padByte = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            int n = Math.min(len, data.remaining());
+            data.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+    }
+}
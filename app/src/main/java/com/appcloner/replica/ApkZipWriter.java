@@ -0,0 +1,490 @@
+package com.appcloner.replica;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Sequential APK (ZIP) writer that can splice entries from an {@link ApkZipReader} verbatim.
+ *
+ * Copied entries keep their original compressed payload, CRC and sizes; only entries that are
+ * added through {@link #writeEntry} are compressed, and {@link #replaceEntry} falls back to a
+ * verbatim copy when the new bytes match the source. Local headers are always written with
+ * final sizes (no data descriptors), which keeps the output friendly to apksig and zipalign.
+ */
+public class ApkZipWriter implements Closeable {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG  = 0x02014b50;
+    private static final int LOC_SIG  = 0x04034b50;
+
+    private static final int EOCD_SIZE       = 22;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+
+    // Extra field used by zipalign/apksig to record the alignment of STORED entries.
+    private static final int ALIGNMENT_EXTRA_ID   = 0xd935;
+    private static final int ALIGNMENT_EXTRA_SIZE = 6;
+    private static final int DEFAULT_ALIGNMENT    = 4;
+    private static final int NATIVE_LIB_ALIGNMENT = 4096;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8            = 0x0800;
+
+    // 1980-01-01 00:00, the earliest DOS timestamp, so rebuilt entries are reproducible.
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Record> records = new ArrayList<>();
+    private final Map<String, Record> byName = new HashMap<>();
+    private final Stats stats = new Stats();
+    private long offset;
+    private ParallelDeflater compressor = ParallelDeflater.serial();
+    private boolean closed;
+
+    public ApkZipWriter(File out) throws IOException {
+        this.file = new RandomAccessFile(out, "rw");
+        this.file.setLength(0);
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Compressor used for entries deflated by this writer. Levels are chosen per entry through
+     * {@link ParallelDeflater#levelFor}; output does not depend on the compressor's parallelism.
+     */
+    public void setCompressor(ParallelDeflater compressor) {
+        this.compressor = compressor;
+    }
+
+    public boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /** Copies {@code e} from {@code src} without inflating or re-deflating its payload. */
+    public void copyEntry(ApkZipReader src, ApkZipReader.Entry e) throws IOException {
+        Record r = newRecord(e.name, e.rawName);
+        r.flags = e.flags & ~FLAG_DATA_DESCRIPTOR;
+        r.method = e.method;
+        r.time = e.time;
+        r.date = e.date;
+        r.crc = e.crc;
+        r.compressedSize = e.compressedSize;
+        r.size = e.size;
+        writeLocalHeader(r);
+        flushBuffer();
+        src.transferRaw(e, channel);
+        offset += e.compressedSize;
+        channel.position(offset);
+        stats.copiedEntries++;
+        stats.copiedBytes += e.compressedSize;
+    }
+
+    /**
+     * Copies entry {@code name} that {@code other} has already written, without compressing it
+     * again. Used when several archives are built side by side from the same inputs.
+     */
+    public void copyEntry(ApkZipWriter other, String name) throws IOException {
+        Record o = other.byName.get(name);
+        if (o == null) {
+            throw new IOException("Entry not written yet: " + name);
+        }
+        other.flushBuffer();
+        Record r = newRecord(name, o.rawName);
+        r.flags = o.flags;
+        r.method = o.method;
+        r.time = o.time;
+        r.date = o.date;
+        r.crc = o.crc;
+        r.compressedSize = o.compressedSize;
+        r.size = o.size;
+        writeLocalHeader(r);
+        flushBuffer();
+        long pos = 0;
+        while (pos < o.compressedSize) {
+            long n = other.channel.transferTo(o.dataOffset + pos, o.compressedSize - pos, channel);
+            if (n <= 0) throw new IOException("Short transfer while copying " + name);
+            pos += n;
+        }
+        offset += o.compressedSize;
+        channel.position(offset);
+        stats.copiedEntries++;
+        stats.copiedBytes += o.compressedSize;
+    }
+
+    /**
+     * Writes {@code data} as the new content of {@code original}. When the bytes are identical
+     * to what the source archive already holds, the original payload is spliced instead, so
+     * unchanged content is never inflated or re-deflated.
+     */
+    public void replaceEntry(ApkZipReader src, ApkZipReader.Entry original, String name, byte[] data,
+                             int method) throws IOException {
+        if (original != null && original.size == data.length) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            if (crc.getValue() == original.crc) {
+                copyEntry(src, original);
+                return;
+            }
+        }
+        writeEntry(name, data, method);
+    }
+
+    /** File-backed variant of {@link #replaceEntry(ApkZipReader, ApkZipReader.Entry, String, byte[], int)}. */
+    public void replaceEntry(ApkZipReader src, ApkZipReader.Entry original, String name, File data,
+                             int method) throws IOException {
+        if (original != null && original.size == data.length() && original.crc == crc32(data)) {
+            copyEntry(src, original);
+            return;
+        }
+        writeEntry(name, data, method);
+    }
+
+    /** Precompressed variant of {@link #replaceEntry(ApkZipReader, ApkZipReader.Entry, String, byte[], int)}. */
+    public void replaceEntry(ApkZipReader src, ApkZipReader.Entry original, String name,
+                             ParallelDeflater.Compressed c) throws IOException {
+        if (original != null && original.size == c.size && original.crc == c.crc) {
+            copyEntry(src, original);
+            return;
+        }
+        writeEntry(name, c);
+    }
+
+    /** Adds an in-memory entry, deflating it unless {@code method} is {@link ZipEntry#STORED}. */
+    public void writeEntry(String name, byte[] data, int method) throws IOException {
+        if (method == ZipEntry.DEFLATED) {
+            long start = System.nanoTime();
+            ParallelDeflater.Compressed c = compressor.compress(data, ParallelDeflater.levelFor(name, data.length));
+            writeCompressed(name, c, System.nanoTime() - start);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        writeCompressed(name, new ParallelDeflater.Compressed(ZipEntry.STORED, crc.getValue(), data.length, data), 0);
+    }
+
+    /** Adds an entry whose payload was produced ahead of time, e.g. by {@link ParallelDeflater#submit}. */
+    public void writeEntry(String name, ParallelDeflater.Compressed c) throws IOException {
+        writeCompressed(name, c, 0);
+    }
+
+    /** Adds an entry streamed from {@code source}; the file is never held in memory whole. */
+    public void writeEntry(String name, File source, int method) throws IOException {
+        Record r = newRecord(name, null);
+        r.method = method;
+        r.size = source.length();
+
+        if (method == ZipEntry.STORED) {
+            r.crc = crc32(source);
+            r.compressedSize = r.size;
+            writeLocalHeader(r);
+            flushBuffer();
+            try (FileInputStream in = new FileInputStream(source)) {
+                FileChannel src = in.getChannel();
+                long pos = 0;
+                while (pos < r.size) {
+                    long n = src.transferTo(pos, r.size - pos, channel);
+                    if (n <= 0) throw new IOException("Short transfer while adding " + name);
+                    pos += n;
+                }
+            }
+            offset += r.size;
+            channel.position(offset);
+            stats.recordCompressed(r.size, r.size, 0);
+            return;
+        }
+
+        // Deflated: write a placeholder header, stream the blocks, then patch CRC and sizes.
+        writeLocalHeader(r);
+        long dataStart = offset;
+        long start = System.nanoTime();
+        r.crc = compressor.deflate(source, ParallelDeflater.levelFor(name, r.size), this::put);
+        r.compressedSize = offset - dataStart;
+        patchLocalSizes(r);
+        stats.recordCompressed(r.size, r.compressedSize, System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(null);
+    }
+
+    /**
+     * Writes the central directory and end record, first letting {@code sealer} insert data
+     * (an APK Signing Block) between the last entry and the central directory.
+     */
+    public void close(Sealer sealer) throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flushBuffer();
+            long cdStart = offset;
+            ByteBuffer cd = ByteBuffer.allocate(centralDirectorySize()).order(ByteOrder.LITTLE_ENDIAN);
+            for (Record r : records) {
+                writeCentralRecord(cd, r);
+            }
+            cd.flip();
+            if (records.size() > 0xFFFF || cdStart + cd.remaining() > 0xFFFFFFFFL) {
+                throw new IOException("Archive needs ZIP64, which is not supported");
+            }
+            ByteBuffer eocd = ByteBuffer.allocate(EOCD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            eocd.putInt(EOCD_SIG);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) records.size());
+            eocd.putShort((short) records.size());
+            eocd.putInt(cd.remaining());
+            eocd.putInt((int) cdStart);
+            eocd.putShort((short) 0);
+            eocd.flip();
+
+            if (sealer != null) {
+                byte[] inserted = sealer.beforeCentralDirectory(channel, cdStart,
+                        cd.asReadOnlyBuffer(), eocd.asReadOnlyBuffer());
+                // The sealer may have read through the channel and moved its position.
+                channel.position(offset);
+                if (inserted != null && inserted.length > 0) {
+                    put(inserted, 0, inserted.length);
+                    eocd.putInt(16, (int) (cdStart + inserted.length));
+                }
+            }
+            put(cd.array(), 0, cd.limit());
+            put(eocd.array(), 0, eocd.limit());
+            flushBuffer();
+            channel.truncate(offset);
+        } finally {
+            file.close();
+        }
+    }
+
+    // --- Internals ---
+
+    private void writeCompressed(String name, ParallelDeflater.Compressed c, long nanos) throws IOException {
+        Record r = newRecord(name, null);
+        r.method = c.method;
+        r.crc = c.crc;
+        r.compressedSize = c.payload.length;
+        r.size = c.size;
+        writeLocalHeader(r);
+        put(c.payload, 0, c.payload.length);
+        stats.recordCompressed(r.size, r.compressedSize, nanos);
+    }
+
+    private Record newRecord(String name, byte[] rawName) throws IOException {
+        if (byName.containsKey(name)) {
+            throw new IOException("Duplicate ZIP entry: " + name);
+        }
+        Record r = new Record();
+        byName.put(name, r);
+        r.name = name;
+        r.rawName = rawName != null ? rawName : name.getBytes(StandardCharsets.UTF_8);
+        r.flags = isAscii(name) ? 0 : FLAG_UTF8;
+        r.time = DOS_TIME;
+        r.date = DOS_DATE;
+        records.add(r);
+        return r;
+    }
+
+    private void writeLocalHeader(Record r) throws IOException {
+        r.localHeaderOffset = offset;
+        ensure(LOC_HEADER_SIZE);
+        buf.putInt(LOC_SIG);
+        buf.putShort((short) versionNeeded(r));
+        buf.putShort((short) r.flags);
+        buf.putShort((short) r.method);
+        buf.putShort((short) r.time);
+        buf.putShort((short) r.date);
+        buf.putInt((int) r.crc);
+        buf.putInt((int) r.compressedSize);
+        buf.putInt((int) r.size);
+        buf.putShort((short) r.rawName.length);
+        int padding = alignmentPadding(r);
+        buf.putShort((short) (padding < 0 ? 0 : ALIGNMENT_EXTRA_SIZE + padding));
+        offset += LOC_HEADER_SIZE;
+        put(r.rawName, 0, r.rawName.length);
+        if (padding >= 0) {
+            ensure(ALIGNMENT_EXTRA_SIZE);
+            buf.putShort((short) ALIGNMENT_EXTRA_ID);
+            buf.putShort((short) (2 + padding));
+            buf.putShort((short) alignmentFor(r));
+            offset += ALIGNMENT_EXTRA_SIZE;
+            put(new byte[padding], 0, padding);
+        }
+        r.dataOffset = offset;
+    }
+
+    /**
+     * Zero bytes to append to the alignment extra field so a STORED entry's data starts on its
+     * boundary, as zipalign/apksig lay it out; -1 when the entry gets no alignment extra.
+     */
+    private int alignmentPadding(Record r) {
+        if (r.method != ZipEntry.STORED) return -1;
+        int alignment = alignmentFor(r);
+        long dataStart = offset + LOC_HEADER_SIZE + r.rawName.length + ALIGNMENT_EXTRA_SIZE;
+        return (int) ((alignment - (dataStart % alignment)) % alignment);
+    }
+
+    private static int alignmentFor(Record r) {
+        // Page-align native libraries so they can be mapped straight from the APK.
+        return r.name.endsWith(".so") ? NATIVE_LIB_ALIGNMENT : DEFAULT_ALIGNMENT;
+    }
+
+    private void patchLocalSizes(Record r) throws IOException {
+        flushBuffer();
+        ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int) r.crc);
+        patch.putInt((int) r.compressedSize);
+        patch.putInt((int) r.size);
+        patch.flip();
+        long pos = r.localHeaderOffset + 14;
+        while (patch.hasRemaining()) {
+            pos += channel.write(patch, pos);
+        }
+    }
+
+    private int centralDirectorySize() {
+        int size = 0;
+        for (Record r : records) {
+            size += CEN_HEADER_SIZE + r.rawName.length;
+        }
+        return size;
+    }
+
+    private static void writeCentralRecord(ByteBuffer cd, Record r) {
+        cd.putInt(CEN_SIG);
+        cd.putShort((short) 20);
+        cd.putShort((short) versionNeeded(r));
+        cd.putShort((short) r.flags);
+        cd.putShort((short) r.method);
+        cd.putShort((short) r.time);
+        cd.putShort((short) r.date);
+        cd.putInt((int) r.crc);
+        cd.putInt((int) r.compressedSize);
+        cd.putInt((int) r.size);
+        cd.putShort((short) r.rawName.length);
+        cd.putShort((short) 0);
+        cd.putShort((short) 0);
+        cd.putShort((short) 0);
+        cd.putShort((short) 0);
+        cd.putInt(0);
+        cd.putInt((int) r.localHeaderOffset);
+        cd.put(r.rawName);
+    }
+
+    private void put(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buf.hasRemaining()) flushBuffer();
+            int n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+            offset += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buf.remaining() < bytes) flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    private static int versionNeeded(Record r) {
+        return r.method == ZipEntry.DEFLATED ? 20 : 10;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    static long crc32(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(f)) {
+            byte[] b = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                crc.update(b, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Byte accounting for one archive, logged after each build so the cost of re-deflation
+     * can be compared against verbatim copies on real APKs.
+     */
+    public static final class Stats {
+        public int copiedEntries;
+        public long copiedBytes;
+        public int writtenEntries;
+        public long writtenInputBytes;
+        public long writtenOutputBytes;
+        public long compressNanos;
+
+        void recordCompressed(long in, long out, long nanos) {
+            writtenEntries++;
+            writtenInputBytes += in;
+            writtenOutputBytes += out;
+            compressNanos += nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "copied " + copiedEntries + " entries (" + copiedBytes + " bytes) verbatim, wrote "
+                    + writtenEntries + " entries (" + writtenInputBytes + " -> " + writtenOutputBytes
+                    + " bytes) in " + (compressNanos / 1_000_000) + " ms of compression";
+        }
+    }
+
+    /** Hook to insert data, such as an APK Signing Block, in front of the central directory. */
+    public interface Sealer {
+        /**
+         * @param entries     channel holding the finished entries in {@code [0, entriesSize)}
+         * @param centralDir  central directory as it will be written
+         * @param eocd        end of central directory record, pointing at {@code entriesSize}
+         * @return bytes to place right before the central directory, or {@code null}
+         */
+        byte[] beforeCentralDirectory(FileChannel entries, long entriesSize, ByteBuffer centralDir,
+                                      ByteBuffer eocd) throws IOException;
+    }
+
+    private static final class Record {
+        String name;
+        byte[] rawName;
+        int flags;
+        int method;
+        int time;
+        int date;
+        long crc;
+        long compressedSize;
+        long size;
+        long localHeaderOffset;
+        long dataOffset;
+    }
+}
@@ -0,0 +1,558 @@
+package com.appcloner.replica;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.StatFs;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs clone jobs on a small bounded pool.
+ *
+ * Concurrency is capped by the core count (every job already deflates on all cores through
+ * {@link ParallelDeflater#shared()}, so extra jobs mainly overlap I/O with compression) and,
+ * at admission time, by free space in the cache dir: a job only starts once its temp files fit
+ * next to the ones reserved by running jobs. The hook dex and native libs are extracted from
+ * the assets once per process, and jobs cloning the same input Uri at the same time share one
+ * mapping of the source APK.
+ *
+ * The cloner.json is copied when a job is enqueued, so edits made for later clones while the
+ * job waits in the queue do not leak into it.
+ */
+public final class CloneJobScheduler {
+    private static final String TAG = "CloneJobScheduler";
+
+    private static final String HOOK_DEX_ASSET = "dash";
+    private static final String[] HOOK_ABIS = {"arm64-v8a", "armeabi-v7a"};
+    private static final String[] HOOK_LIBS = {"libaliuhook.so", "liblsplant.so", "libc++_shared.so"};
+
+    /** Left free in the cache dir on top of what jobs reserve. */
+    private static final long DISK_HEADROOM = 64L * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;
+
+    private static volatile CloneJobScheduler instance;
+
+    private final Context ctx;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Uri, SharedSource> sources = new HashMap<>();
+    private final Object diskLock = new Object();
+    private long reservedDisk;
+    private int admittedJobs;
+    private HookAssets hookAssets;
+
+    private CloneJobScheduler(Context ctx) {
+        this.ctx = ctx.getApplicationContext();
+        int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger threadId = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "clone-job-" + threadId.getAndIncrement());
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static CloneJobScheduler getInstance(Context ctx) {
+        CloneJobScheduler s = instance;
+        if (s == null) {
+            synchronized (CloneJobScheduler.class) {
+                s = instance;
+                if (s == null) {
+                    s = new CloneJobScheduler(ctx);
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Snapshots the request's cloner.json with its overrides applied, then queues the job. */
+    public Job enqueue(Request request, Listener listener) throws IOException {
+        Job job = newJob(request, listener);
+        executor.execute(() -> run(Collections.singletonList(job)));
+        return job;
+    }
+
+    /**
+     * Enqueues several clones of one app, e.g. package variants, as one group: the source is
+     * read once and all outputs are written in the same pass and signed in parallel by
+     * {@link ApkProcessor#injectHookVariants}. In {@code generate_new_package} mode request
+     * {@code i} gets the {@code i + 1}-th generated package name. The requests must share the
+     * input, bundled data and live video; the icon factory of the first one is used for all.
+     */
+    public List<Job> enqueueAll(List<Request> requests, Listener listener) throws IOException {
+        Request first = requests.get(0);
+        for (Request r : requests) {
+            if (!r.input.equals(first.input) || !Objects.equals(r.bundledDataFile, first.bundledDataFile)
+                    || !Objects.equals(r.liveVideoFile, first.liveVideoFile)) {
+                throw new IllegalArgumentException("Grouped requests must share input, bundled data and live video");
+            }
+        }
+        List<Job> group = new ArrayList<>(requests.size());
+        try {
+            for (Request r : requests) group.add(newJob(r, listener));
+        } catch (IOException e) {
+            for (Job j : group) j.clonerJson.delete();
+            throw e;
+        }
+        executor.execute(() -> run(group));
+        return group;
+    }
+
+    private Job newJob(Request request, Listener listener) throws IOException {
+        int id = nextId.getAndIncrement();
+        File clonerJson = new File(ctx.getCacheDir(), "cloner_job" + id + ".json");
+        try {
+            writeMergedSettings(request.clonerJson, request.settingsOverrides, clonerJson);
+        } catch (JSONException e) {
+            clonerJson.delete();
+            throw new IOException("Invalid cloner.json: " + e.getMessage(), e);
+        }
+        return new Job(id, request, clonerJson, listener);
+    }
+
+    /**
+     * Extracts the hook dex and native libs on first use; later calls return the same files as
+     * long as they are still there with the size they were extracted with. The system may
+     * clear the cache dir at any time, in which case they are extracted again.
+     */
+    public synchronized HookAssets getHookAssets() throws IOException {
+        if (hookAssets == null || !hookAssets.isIntact()) {
+            long start = System.nanoTime();
+            File hookDex = new File(ctx.getCacheDir(), "hook.dex");
+            File libDir = new File(ctx.getCacheDir(), "hook_libs");
+            Map<File, Long> sizes = new HashMap<>();
+            sizes.put(hookDex, copyAsset(HOOK_DEX_ASSET, hookDex));
+            for (String abi : HOOK_ABIS) {
+                File abiDir = new File(libDir, abi);
+                abiDir.mkdirs();
+                for (String lib : HOOK_LIBS) {
+                    File dst = new File(abiDir, lib);
+                    sizes.put(dst, copyAsset("lib/" + abi + "/" + lib, dst));
+                }
+            }
+            hookAssets = new HookAssets(hookDex, libDir, sizes);
+            Log.d(TAG, "Hook assets extracted in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return hookAssets;
+    }
+
+    // --- Job execution ---
+
+    /** Runs one job, or a group from {@link #enqueueAll} that shares the lead job's inputs. */
+    private void run(List<Job> group) {
+        Job lead = group.get(0);
+        Request r = lead.request;
+        long start = System.nanoTime();
+        for (Job job : group) {
+            job.startNanos = start;
+            job.state = Job.STATE_RUNNING;
+        }
+        setStage(group, "prepare");
+
+        SharedSource source = null;
+        long reserved = 0;
+        try {
+            HookAssets hook = getHookAssets();
+            source = acquireSource(r.input);
+            long needed = group.size() * estimateDiskUsage(source.reader, r);
+            reserveDisk(group, needed);
+            reserved = needed;
+
+            File icon = null;
+            if (r.iconFactory != null) {
+                setStage(group, "icon");
+                try {
+                    icon = r.iconFactory.create(lead.clonerJson);
+                } catch (Exception e) {
+                    Log.e(TAG, "Icon processing failed for job " + lead.id, e);
+                }
+            }
+
+            List<ApkProcessor.Variant> variants = new ArrayList<>(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                Job job = group.get(i);
+                variants.add(new ApkProcessor.Variant(job.request.output, job.clonerJson, i));
+            }
+            ApkProcessor processor = new ApkProcessor(ctx);
+            processor.setVerifyOutput(r.verifyOutput);
+            processor.setProgressListener((stage, done, total) -> {
+                for (Job job : group) {
+                    job.stage = stage;
+                    if (ApkProcessor.ProgressListener.STAGE_WRITE.equals(stage)) {
+                        job.bytesDone = done;
+                        job.bytesTotal = total;
+                    }
+                    job.notifyListenerThrottled();
+                }
+            });
+            processor.injectHookVariants(source.reader, variants, hook.hookDex, hook.nativeLibDir,
+                    r.bundledDataFile, r.liveVideoFile, icon);
+            for (Job job : group) job.finish(Job.STATE_DONE, null);
+        } catch (Exception e) {
+            Log.e(TAG, "Clone job " + lead.id + (group.size() > 1 ? " (+" + (group.size() - 1) + " variants)" : "")
+                    + " failed", e);
+            for (Job job : group) job.finish(Job.STATE_FAILED, e);
+        } finally {
+            for (Job job : group) job.clonerJson.delete();
+            releaseDisk(reserved);
+            if (source != null) releaseSource(r.input, source);
+        }
+        for (Job job : group) {
+            Log.i(TAG, "Clone job " + job.id + " " + job);
+            job.notifyListener();
+        }
+    }
+
+    private static void setStage(List<Job> group, String stage) {
+        for (Job job : group) {
+            job.stage = stage;
+            job.notifyListener();
+        }
+    }
+
+    private SharedSource acquireSource(Uri input) throws IOException {
+        synchronized (sources) {
+            SharedSource s = sources.get(input);
+            if (s != null) {
+                s.refs++;
+                return s;
+            }
+        }
+        // Mapping happens outside the lock; a racing job for the same Uri just maps it twice.
+        ApkZipReader reader = new ApkProcessor(ctx).openInputApk(input);
+        synchronized (sources) {
+            SharedSource s = sources.get(input);
+            if (s != null) {
+                s.refs++;
+                closeQuietly(reader);
+                return s;
+            }
+            s = new SharedSource(reader);
+            sources.put(input, s);
+            return s;
+        }
+    }
+
+    private void releaseSource(Uri input, SharedSource s) {
+        synchronized (sources) {
+            if (--s.refs > 0) return;
+            sources.remove(input);
+        }
+        closeQuietly(s.reader);
+    }
+
+    /** Per output: the unsigned temp APK plus, when the output lands on the same volume, the signed copy. */
+    private static long estimateDiskUsage(ApkZipReader reader, Request r) {
+        long extras = length(r.bundledDataFile) + length(r.liveVideoFile);
+        return 2 * (reader.getCentralDirectoryOffset() + extras);
+    }
+
+    private void reserveDisk(List<Job> group, long bytes) throws InterruptedException {
+        synchronized (diskLock) {
+            boolean logged = false;
+            // A job that runs alone is always admitted and fails on its own if space runs out.
+            while (admittedJobs > 0 && availableDisk() - reservedDisk - DISK_HEADROOM < bytes) {
+                if (!logged) {
+                    setStage(group, "waiting for disk");
+                    Log.i(TAG, "Job " + group.get(0).id + " waits for " + bytes / (1024 * 1024) + " MB of cache space");
+                    logged = true;
+                }
+                diskLock.wait();
+            }
+            reservedDisk += bytes;
+            admittedJobs++;
+        }
+    }
+
+    private void releaseDisk(long bytes) {
+        synchronized (diskLock) {
+            if (bytes > 0) {
+                reservedDisk -= bytes;
+                admittedJobs--;
+            }
+            diskLock.notifyAll();
+        }
+    }
+
+    private long availableDisk() {
+        try {
+            return new StatFs(ctx.getCacheDir().getPath()).getAvailableBytes();
+        } catch (IllegalArgumentException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void writeMergedSettings(File base, JSONObject overrides, File out)
+            throws IOException, JSONException {
+        JSONObject json = new JSONObject(new String(readFile(base), StandardCharsets.UTF_8));
+        if (overrides != null) {
+            for (Iterator<String> it = overrides.keys(); it.hasNext(); ) {
+                String key = it.next();
+                json.put(key, overrides.get(key));
+            }
+        }
+        try (OutputStream os = new FileOutputStream(out)) {
+            os.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Returns the number of bytes copied. */
+    private long copyAsset(String assetPath, File dst) throws IOException {
+        long total = 0;
+        try (InputStream in = ctx.getAssets().open(assetPath);
+             OutputStream out = new FileOutputStream(dst)) {
+            byte[] buf = new byte[8_192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    private static byte[] readFile(File f) throws IOException {
+        byte[] data = new byte[(int) f.length()];
+        try (InputStream in = new FileInputStream(f)) {
+            int off = 0;
+            while (off < data.length) {
+                int n = in.read(data, off, data.length - off);
+                if (n < 0) throw new IOException("Unexpected EOF in " + f);
+                off += n;
+            }
+        }
+        return data;
+    }
+
+    private static long length(File f) {
+        return f != null ? f.length() : 0;
+    }
+
+    private static void closeQuietly(ApkZipReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close source APK", e);
+        }
+    }
+
+    private static final class SharedSource {
+        final ApkZipReader reader;
+        int refs = 1;
+
+        SharedSource(ApkZipReader reader) {
+            this.reader = reader;
+        }
+    }
+
+    /** Hook payload shared by every job. */
+    public static final class HookAssets {
+        public final File hookDex;
+        public final File nativeLibDir;
+        private final Map<File, Long> sizes;
+
+        HookAssets(File hookDex, File nativeLibDir, Map<File, Long> sizes) {
+            this.hookDex = hookDex;
+            this.nativeLibDir = nativeLibDir;
+            this.sizes = sizes;
+        }
+
+        boolean isIntact() {
+            for (Map.Entry<File, Long> e : sizes.entrySet()) {
+                if (e.getKey().length() != e.getValue()) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Called on the job's worker thread; post to the UI thread as needed. */
+    public interface Listener {
+        void onJobUpdated(Job job);
+    }
+
+    /** Renders a clone's launcher icon from the job's own cloner.json; may return null. */
+    public interface IconFactory {
+        File create(File clonerJson) throws Exception;
+    }
+
+    /** One clone to produce. The cloner.json is only read; overrides go to a per-job copy. */
+    public static final class Request {
+        final Uri input;
+        final Uri output;
+        final File clonerJson;
+        File bundledDataFile;
+        File liveVideoFile;
+        IconFactory iconFactory;
+        JSONObject settingsOverrides;
+        String label;
+        boolean verifyOutput;
+
+        public Request(Uri input, Uri output, File clonerJson) {
+            if (input == null || output == null || clonerJson == null) {
+                throw new IllegalArgumentException("Input, output and cloner.json are required");
+            }
+            this.input = input;
+            this.output = output;
+            this.clonerJson = clonerJson;
+        }
+
+        public Request setBundledDataFile(File bundledDataFile) {
+            this.bundledDataFile = bundledDataFile;
+            return this;
+        }
+
+        public Request setLiveVideoFile(File liveVideoFile) {
+            this.liveVideoFile = liveVideoFile;
+            return this;
+        }
+
+        /** Produces the processed launcher icon on the worker thread; may return null. */
+        public Request setIconFactory(IconFactory iconFactory) {
+            this.iconFactory = iconFactory;
+            return this;
+        }
+
+        /** Keys merged over the cloner.json, e.g. {@code cloning_mode}/{@code custom_package_name}. */
+        public Request setSettingsOverrides(JSONObject settingsOverrides) {
+            this.settingsOverrides = settingsOverrides;
+            return this;
+        }
+
+        public Request setLabel(String label) {
+            this.label = label;
+            return this;
+        }
+
+        /** Runs apksig's verifier over the signed output; failures are only logged. */
+        public Request setVerifyOutput(boolean verifyOutput) {
+            this.verifyOutput = verifyOutput;
+            return this;
+        }
+    }
+
+    public static final class Job {
+        public static final int STATE_QUEUED = 0;
+        public static final int STATE_RUNNING = 1;
+        public static final int STATE_DONE = 2;
+        public static final int STATE_FAILED = 3;
+
+        private final int id;
+        private final Request request;
+        private final File clonerJson;
+        private final Listener listener;
+        private final long enqueuedNanos = System.nanoTime();
+        volatile int state = STATE_QUEUED;
+        volatile String stage = "queued";
+        volatile long bytesDone;
+        volatile long bytesTotal;
+        volatile long startNanos;
+        volatile long endNanos;
+        volatile Exception error;
+        private long lastNotifyNanos;
+
+        Job(int id, Request request, File clonerJson, Listener listener) {
+            this.id = id;
+            this.request = request;
+            this.clonerJson = clonerJson;
+            this.listener = listener;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getLabel() {
+            return request.label != null ? request.label : String.valueOf(request.input);
+        }
+
+        public Uri getOutput() {
+            return request.output;
+        }
+
+        public int getState() {
+            return state;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public boolean isFinished() {
+            return state == STATE_DONE || state == STATE_FAILED;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        /** Fraction of the source payload written so far, 0..1. */
+        public float getProgress() {
+            if (state == STATE_DONE) return 1f;
+            long total = bytesTotal;
+            return total > 0 ? Math.min(1f, (float) bytesDone / total) : 0f;
+        }
+
+        /** Source bytes processed per second while running. */
+        public long getThroughput() {
+            long start = startNanos;
+            if (start == 0) return 0;
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            long elapsed = Math.max(1, end - start);
+            return bytesDone * 1_000_000_000L / elapsed;
+        }
+
+        public long getQueuedMillis() {
+            long start = startNanos != 0 ? startNanos : System.nanoTime();
+            return (start - enqueuedNanos) / 1_000_000;
+        }
+
+        void finish(int state, Exception error) {
+            this.error = error;
+            this.endNanos = System.nanoTime();
+            this.stage = state == STATE_DONE ? "done" : "failed";
+            this.state = state;
+            if (state == STATE_DONE) bytesDone = bytesTotal;
+        }
+
+        void notifyListener() {
+            lastNotifyNanos = System.nanoTime();
+            if (listener != null) listener.onJobUpdated(this);
+        }
+
+        void notifyListenerThrottled() {
+            if (System.nanoTime() - lastNotifyNanos >= PROGRESS_INTERVAL_NANOS) notifyListener();
+        }
+
+        @Override
+        public String toString() {
+            long runMs = ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1_000_000;
+            return "#" + id + " " + getLabel() + " [" + stage + "] "
+                    + Math.round(getProgress() * 100) + "%, " + getThroughput() / 1024 + " KB/s, "
+                    + runMs + " ms running, " + getQueuedMillis() + " ms queued";
+        }
+    }
+}
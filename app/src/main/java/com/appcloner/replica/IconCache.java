@@ -0,0 +1,150 @@
+package com.appcloner.replica;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Content-addressed disk cache for encoded launcher icons.
+ *
+ * Keys are digests of everything that determines the output bytes (source pixels, icon_*
+ * settings, target size, encoding), so an entry never needs to be invalidated; it is only
+ * evicted. Reads touch the file's modification time and writes trim the directory back to
+ * {@link #MAX_BYTES} by dropping the least recently used files.
+ */
+public final class IconCache {
+    private static final String TAG = "IconCache";
+    private static final String DIR_NAME = "icon_cache";
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private static volatile IconCache instance;
+
+    private final File dir;
+    private long sizeBytes = -1;
+
+    private IconCache(File dir) {
+        this.dir = dir;
+    }
+
+    public static IconCache getInstance(Context ctx) {
+        IconCache c = instance;
+        if (c == null) {
+            synchronized (IconCache.class) {
+                c = instance;
+                if (c == null) {
+                    c = new IconCache(new File(ctx.getApplicationContext().getCacheDir(), DIR_NAME));
+                    instance = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** Hex SHA-256 over the string forms of {@code parts}, for building cache keys. */
+    public static String key(Object... parts) {
+        MessageDigest md = sha256();
+        for (Object p : parts) {
+            byte[] b = p instanceof byte[] ? (byte[]) p : String.valueOf(p).getBytes(StandardCharsets.UTF_8);
+            md.update(b);
+            md.update((byte) 0);
+        }
+        return hex(md.digest());
+    }
+
+    /** Returns the cached bytes for {@code key}, or null. */
+    public synchronized byte[] get(String key) {
+        File f = new File(dir, key);
+        if (!f.isFile()) return null;
+        try {
+            byte[] data = readFully(f);
+            f.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable cache entry " + key, e);
+            f.delete();
+            sizeBytes = -1;
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, byte[] data) {
+        if (data == null || data.length > MAX_BYTES / 4) return;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return;
+        }
+        File f = new File(dir, key);
+        File tmp = new File(dir, key + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache icon " + key, e);
+            tmp.delete();
+            return;
+        }
+        long previous = f.length();
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            return;
+        }
+        if (sizeBytes >= 0) sizeBytes += data.length - previous;
+        trim();
+    }
+
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        if (sizeBytes < 0) {
+            sizeBytes = 0;
+            for (File f : files) sizeBytes += f.length();
+        }
+        if (sizeBytes <= MAX_BYTES) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (sizeBytes <= MAX_BYTES * 3 / 4) break;
+            long len = f.length();
+            if (f.delete()) sizeBytes -= len;
+        }
+        Log.d(TAG, "Trimmed icon cache to " + sizeBytes + " bytes");
+    }
+
+    private static byte[] readFully(File f) throws IOException {
+        byte[] data = new byte[(int) f.length()];
+        try (InputStream in = new FileInputStream(f)) {
+            int off = 0;
+            while (off < data.length) {
+                int n = in.read(data, off, data.length - off);
+                if (n < 0) throw new IOException("Truncated cache entry " + f);
+                off += n;
+            }
+        }
+        return data;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b) {
+            sb.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
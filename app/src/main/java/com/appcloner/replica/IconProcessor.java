@@ -2,6 +2,7 @@ package com.appcloner.replica;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
@@ -17,9 +18,13 @@ import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class IconProcessor {
     private static final String TAG = "IconProcessor";
@@ -50,13 +55,63 @@ public class IconProcessor {
                                           boolean autoHue, boolean invertColors, boolean sepia,
                                           String badgeText, int badgePos, File outFile) throws IOException {
 
-        Bitmap bitmap = processIconDrawable(original, colorHex, rotation, flipH, flipV,
-                hue, saturation, lightness, autoHue, invertColors, sepia, badgeText, badgePos);
+        Bitmap source = drawableToBitmap(original);
+        if (source == null) {
+            throw new IOException("Failed to convert drawable to bitmap");
+        }
+
+        // Same source pixels and settings always give the same PNG, so reuse it across clones.
+        IconCache cache = IconCache.getInstance(context);
+        String key = IconCache.key("processed", pixelHash(source), source.getWidth(), source.getHeight(),
+                colorHex, rotation, flipH, flipV, hue, saturation, lightness, autoHue, invertColors,
+                sepia, badgeText, badgePos, "png");
+        byte[] png = cache.get(key);
+        if (png == null) {
+            Bitmap bitmap = processBitmap(source, colorHex, rotation, flipH, flipV,
+                    hue, saturation, lightness, autoHue, invertColors, sepia, badgeText, badgePos);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, baos);
+            png = baos.toByteArray();
+            cache.put(key, png);
+        } else {
+            Log.d(TAG, "Processed icon served from cache");
+        }
 
         // Save to file
         try (FileOutputStream out = new FileOutputStream(outFile)) {
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.write(png);
+        }
+    }
+
+    /**
+     * Returns {@code png} re-encoded as {@code format} at {@code width}x{@code height}, e.g. for one
+     * mipmap density of a launcher icon. Results are cached by content, so only sizes and formats
+     * not produced before are scaled and encoded.
+     *
+     * @param decoded lazily decoded {@code png}, shared between calls for the same icon
+     * @param width   target width, or -1 together with {@code height} to keep the icon's size
+     */
+    public static byte[] encodeScaled(Context context, byte[] png, Bitmap[] decoded, int width, int height,
+                                      Bitmap.CompressFormat format) {
+        IconCache cache = IconCache.getInstance(context);
+        String key = IconCache.key("scaled", png, width, height, format);
+        byte[] cached = cache.get(key);
+        if (cached != null) return cached;
+
+        if (decoded[0] == null) {
+            decoded[0] = BitmapFactory.decodeByteArray(png, 0, png.length);
+            if (decoded[0] == null) return null;
         }
+        Bitmap src = decoded[0];
+        boolean keepSize = width <= 0 || height <= 0
+                || (src.getWidth() == width && src.getHeight() == height);
+        Bitmap scaled = keepSize ? src : Bitmap.createScaledBitmap(src, width, height, true);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        scaled.compress(format, 100, baos);
+        if (scaled != src) scaled.recycle();
+        byte[] out = baos.toByteArray();
+        cache.put(key, out);
+        return out;
     }
 
     /**
@@ -71,7 +126,15 @@ public class IconProcessor {
         if (bitmap == null) {
             throw new IOException("Failed to convert drawable to bitmap");
         }
+        return processBitmap(bitmap, colorHex, rotation, flipH, flipV,
+                hue, saturation, lightness, autoHue, invertColors, sepia, badgeText, badgePos);
+    }
 
+    private static Bitmap processBitmap(Bitmap bitmap, String colorHex,
+                                        int rotation, boolean flipH, boolean flipV,
+                                        float hue, float saturation, float lightness,
+                                        boolean autoHue, boolean invertColors, boolean sepia,
+                                        String badgeText, int badgePos) {
         // Apply modifications
         bitmap = applyColor(bitmap, colorHex, hue, saturation, lightness, autoHue, invertColors, sepia);
         bitmap = applyRotationAndFlip(bitmap, rotation, flipH, flipV);
@@ -79,6 +142,18 @@ public class IconProcessor {
         return bitmap;
     }
 
+    private static byte[] pixelHash(Bitmap bitmap) {
+        Bitmap argb = bitmap.getConfig() == Bitmap.Config.ARGB_8888
+                ? bitmap : bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        ByteBuffer pixels = ByteBuffer.allocate(argb.getByteCount());
+        argb.copyPixelsToBuffer(pixels);
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(pixels.array());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static Bitmap drawableToBitmap(Drawable drawable) {
         if (drawable instanceof BitmapDrawable) {
             return ((BitmapDrawable) drawable).getBitmap();
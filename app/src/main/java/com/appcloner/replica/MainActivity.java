@@ -16,6 +16,7 @@ import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
 import android.text.InputFilter;
 import android.text.InputType;
 import android.text.method.DigitsKeyListener;
@@ -45,18 +46,14 @@ import org.json.JSONObject;
 import java.io.*;
 import java.math.BigDecimal;
 import java.nio.channels.FileChannel;
-import java.security.KeyStore;
-import java.security.PrivateKey;
 import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
-import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
@@ -64,13 +61,16 @@ public class MainActivity extends AppCompatActivity {
     private static final Pattern SIG_PATH = Pattern.compile(
             "^META-INF/(.+\\.(RSA|DSA|EC|SF)|MANIFEST\\.MF)$", Pattern.CASE_INSENSITIVE);
     private static final String ANDROID_MANIFEST = "AndroidManifest.xml";
-    private static final String KEYSTORE_ASSET = "debug.keystore";
-    private static final String STORE_PWD      = "appklown";
-    private static final String KEY_PWD        = "appklown";
-    private static final String ALIAS          = "Harrygp";
+    private static final String CLONER_JSON_ENTRY = "assets/cloner.json";
     private static final String IPC_PERMISSION = "com.appcloner.replica.permission.REPLICA_IPC";
     private static final String BUNDLE_DATA_SETTING_KEY = "bundle_app_data";
+    /** Builder-side option in cloner.json: re-verify the signature of each written clone. */
+    private static final String VERIFY_SIGNED_APK_KEY = "verify_signed_apk";
+    /** Builder-side option in cloner.json: how many package variants generate_new_package makes. */
+    private static final String VARIANT_COUNT_KEY = "variant_count";
+    private static final int MAX_VARIANTS = 10;
     private static final String LIVE_VIDEO_SETTING_KEY = "live_video_file";
+    private static final String SIGNING_KEY_SETTING_KEY = "signing_keystore";
     private static final String CLONING_MODE_KEY = "cloning_mode";
     private static final String CLONING_MODE_REPLACE = "replace_original";
     private static final String CLONING_MODE_GENERATE = "generate_new_package";
@@ -268,12 +268,14 @@ public class MainActivity extends AppCompatActivity {
     private File liveVideoFileForCloning = null;
     private String liveVideoDisplayName = null;
     private Setting liveVideoSetting = null;
+    private Setting signingKeySetting = null;
     private File processedIconFile = null;
     private SettingsAdapter currentSettingsAdapter = null;
     private TextView bundleDataDialogSummary = null;
     private Button bundleDataDialogClearButton = null;
     private JSONObject currentSettingsJson = null;
     private File currentSettingsFile = null;
+    private int pendingVariantCount = 1;
     private boolean currentSettingsIsClonedApp = false;
     private AppInfo currentSettingsApp = null;
     private Uri inputApkUri, outputApkUri;
@@ -350,6 +352,20 @@ public class MainActivity extends AppCompatActivity {
                     }
                 }
             });
+    private final ActivityResultLauncher<Intent> pickOutputDir =
+            registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), res -> {
+                if (res.getResultCode() == Activity.RESULT_OK && res.getData() != null) {
+                    Uri treeUri = res.getData().getData();
+                    if (treeUri != null) {
+                        List<Uri> outputs = createVariantOutputs(treeUri, pendingVariantCount);
+                        if (outputs != null) {
+                            outputApkUri = outputs.get(0);
+                            statusTxt.setText("Processing...");
+                            startProcessing(outputs);
+                        }
+                    }
+                }
+            });
     private final ActivityResultLauncher<Intent> pickDataFile =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), res -> {
                 if (res.getResultCode() == Activity.RESULT_OK && res.getData() != null) {
@@ -424,6 +440,15 @@ public class MainActivity extends AppCompatActivity {
                     }
                 }
             });
+    private final ActivityResultLauncher<Intent> pickKeystoreFile =
+            registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), res -> {
+                if (res.getResultCode() == Activity.RESULT_OK && res.getData() != null) {
+                    Uri keystoreUri = res.getData().getData();
+                    if (keystoreUri != null) {
+                        importKeystore(keystoreUri);
+                    }
+                }
+            });
     private final ActivityResultLauncher<Intent> uninstallLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), res -> {
                 int resultCode = res.getResultCode();
@@ -539,6 +564,11 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        if (SIGNING_KEY_SETTING_KEY.equals(setting.key)) {
+            showSigningKeyDialog(setting);
+            return;
+        }
+
         if (CLONING_MODE_KEY.equals(setting.key)) {
             showCloningModeDialog(setting, json, adapter);
             return;
@@ -2580,6 +2610,197 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private String getSigningKeySummary() {
+        SignerCache.Source source = SignerCache.getInstance().getSelectedSource(this);
+        return source != null ? "Keystore: " + source.file.getName() : "Bundled debug key";
+    }
+
+    private void showSigningKeyDialog(final Setting setting) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Signing Key");
+
+        signingKeySetting = setting;
+
+        float density = getResources().getDisplayMetrics().density;
+        int padding = (int) (16 * density);
+
+        LinearLayout container = new LinearLayout(this);
+        container.setOrientation(LinearLayout.VERTICAL);
+        container.setPadding(padding, padding, padding, padding);
+
+        TextView statusText = new TextView(this);
+        statusText.setText(getSigningKeySummary());
+        container.addView(statusText);
+
+        TextView hintText = new TextView(this);
+        LinearLayout.LayoutParams hintParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        hintParams.topMargin = (int) (8 * density);
+        hintText.setLayoutParams(hintParams);
+        hintText.setText("Clones and updates are signed with this key. A clone can only be updated with the key it was installed with.");
+        container.addView(hintText);
+
+        Button selectButton = new Button(this);
+        LinearLayout.LayoutParams selectParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        selectParams.topMargin = (int) (16 * density);
+        selectButton.setLayoutParams(selectParams);
+        selectButton.setText("Select Keystore (PKCS12, JKS, BKS)");
+        container.addView(selectButton);
+
+        Button clearButton = new Button(this);
+        LinearLayout.LayoutParams clearParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        clearParams.topMargin = (int) (12 * density);
+        clearButton.setLayoutParams(clearParams);
+        clearButton.setText("Use Bundled Key");
+        container.addView(clearButton);
+        clearButton.setEnabled(SignerCache.getInstance().getSelectedSource(this) != null);
+
+        builder.setView(container);
+        builder.setNegativeButton("Close", null);
+        AlertDialog dialog = builder.show();
+
+        selectButton.setOnClickListener(v -> {
+            dialog.dismiss();
+            pickKeystoreFile();
+        });
+
+        clearButton.setOnClickListener(v -> {
+            SignerCache.Source old = SignerCache.getInstance().getSelectedSource(this);
+            SignerCache.getInstance().select(this, null);
+            if (old != null && !old.file.delete()) {
+                Log.w(TAG, "Failed to delete imported keystore: " + old.file);
+            }
+            Toast.makeText(MainActivity.this, "Signing with the bundled key", Toast.LENGTH_SHORT).show();
+            statusText.setText(getSigningKeySummary());
+            clearButton.setEnabled(false);
+            refreshSigningKeyUi();
+        });
+    }
+
+    private void pickKeystoreFile() {
+        try {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("*/*");
+            intent.putExtra(Intent.EXTRA_TITLE, "Select Signing Keystore");
+            pickKeystoreFile.launch(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error launching file picker", e);
+            Toast.makeText(this, "Error opening file picker: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /** Copies the picked keystore into private storage, then asks how to unlock it. */
+    private void importKeystore(Uri keystoreUri) {
+        String name = keystoreUri.getLastPathSegment();
+        if (name != null) name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(':')) + 1);
+        if (name == null || name.trim().isEmpty()) name = "keystore";
+        File dir = new File(getFilesDir(), "signing");
+        // A new name per import, so the selected keystore stays intact until the new one unlocks.
+        File target = new File(dir, System.currentTimeMillis() + "_" + name.replaceAll("[^A-Za-z0-9._-]", "_"));
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            try (InputStream is = getContentResolver().openInputStream(keystoreUri);
+                 FileOutputStream fos = new FileOutputStream(target)) {
+                if (is == null) throw new IOException("Cannot open " + keystoreUri);
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = is.read(buffer)) > 0) {
+                    fos.write(buffer, 0, len);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error copying selected keystore", e);
+            Toast.makeText(this, "Error selecting keystore: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            target.delete();
+            return;
+        }
+        showKeystorePasswordDialog(target);
+    }
+
+    private void showKeystorePasswordDialog(File keystore) {
+        float density = getResources().getDisplayMetrics().density;
+        int padding = (int) (16 * density);
+
+        LinearLayout container = new LinearLayout(this);
+        container.setOrientation(LinearLayout.VERTICAL);
+        container.setPadding(padding, padding, padding, padding);
+
+        EditText storePasswordInput = new EditText(this);
+        storePasswordInput.setHint("Keystore password");
+        storePasswordInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        container.addView(storePasswordInput);
+
+        EditText aliasInput = new EditText(this);
+        aliasInput.setHint("Key alias (empty for the first key)");
+        aliasInput.setInputType(InputType.TYPE_CLASS_TEXT);
+        container.addView(aliasInput);
+
+        EditText keyPasswordInput = new EditText(this);
+        keyPasswordInput.setHint("Key password (empty if same as keystore)");
+        keyPasswordInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        container.addView(keyPasswordInput);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Unlock " + keystore.getName().substring(keystore.getName().indexOf('_') + 1))
+                .setView(container)
+                .setCancelable(false)
+                .setPositiveButton("Use Key", (d, w) -> {
+                    String alias = aliasInput.getText().toString().trim();
+                    String keyPassword = keyPasswordInput.getText().toString();
+                    SignerCache.Source source = SignerCache.Source.file(keystore, null,
+                            storePasswordInput.getText().toString().toCharArray(),
+                            alias.isEmpty() ? null : alias,
+                            keyPassword.isEmpty() ? null : keyPassword.toCharArray());
+                    selectKeystore(source);
+                })
+                .setNegativeButton("Cancel", (d, w) -> keystore.delete())
+                .show();
+    }
+
+    /** Unlocks {@code source} off the UI thread and only selects it if that worked. */
+    private void selectKeystore(SignerCache.Source source) {
+        new Thread(() -> {
+            SignerCache cache = SignerCache.getInstance();
+            try {
+                ApkSigner.SignerConfig signer = cache.get(this, source);
+                SignerCache.Source old = cache.getSelectedSource(this);
+                cache.select(this, source);
+                if (old != null && !old.file.equals(source.file) && !old.file.delete()) {
+                    Log.w(TAG, "Failed to delete previous keystore: " + old.file);
+                }
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "Signing with " + signer.getName(), Toast.LENGTH_SHORT).show();
+                    refreshSigningKeyUi();
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot unlock keystore " + source.file, e);
+                // Nothing was selected: drop the failed slot and the copy.
+                cache.invalidate(source);
+                source.file.delete();
+                runOnUiThread(() -> Toast.makeText(this, "Cannot use keystore: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show());
+            }
+        }).start();
+    }
+
+    private void refreshSigningKeyUi() {
+        if (signingKeySetting != null) {
+            signingKeySetting.value = getSigningKeySummary();
+            signingKeySetting.valueClass = String.class;
+        }
+        if (currentSettingsAdapter != null) {
+            currentSettingsAdapter.notifyDataSetChanged();
+        }
+    }
+
     private void refreshLiveVideoUi() {
         if (liveVideoSetting != null) {
             liveVideoSetting.value = liveVideoDisplayName;
@@ -4598,15 +4819,35 @@ public class MainActivity extends AppCompatActivity {
         customPackageInput.setText(currentCustomPackage);
         container.addView(customPackageInput);
 
+        // Number of package variants made in one pass, for generate mode
+        TextView variantLabel = new TextView(this);
+        variantLabel.setText("Number of variants (1-" + MAX_VARIANTS + "):");
+        LinearLayout.LayoutParams variantLabelParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        variantLabelParams.topMargin = (int) (12 * density);
+        variantLabel.setLayoutParams(variantLabelParams);
+        container.addView(variantLabel);
+
+        final EditText variantCountInput = new EditText(this);
+        variantCountInput.setSingleLine(true);
+        variantCountInput.setInputType(InputType.TYPE_CLASS_NUMBER);
+        variantCountInput.setText(String.valueOf(Math.max(1, json.optInt(VARIANT_COUNT_KEY, 1))));
+        container.addView(variantCountInput);
+
         // Show/hide custom package input based on selection
         boolean isCustomMode = selectedIndex == 2;
         customLabel.setVisibility(isCustomMode ? View.VISIBLE : View.GONE);
         customPackageInput.setVisibility(isCustomMode ? View.VISIBLE : View.GONE);
+        boolean isGenerateMode = selectedIndex == 1;
+        variantLabel.setVisibility(isGenerateMode ? View.VISIBLE : View.GONE);
+        variantCountInput.setVisibility(isGenerateMode ? View.VISIBLE : View.GONE);
 
         radioGroup.setOnCheckedChangeListener((group, checkedId) -> {
             boolean showCustomInput = checkedId == 2;
             customLabel.setVisibility(showCustomInput ? View.VISIBLE : View.GONE);
             customPackageInput.setVisibility(showCustomInput ? View.VISIBLE : View.GONE);
+            variantLabel.setVisibility(checkedId == 1 ? View.VISIBLE : View.GONE);
+            variantCountInput.setVisibility(checkedId == 1 ? View.VISIBLE : View.GONE);
             
             // Auto-fill the custom package input with current package name when switching to custom mode
             if (showCustomInput && customPackageInput.getText().toString().trim().isEmpty()) {
@@ -4642,6 +4883,19 @@ public class MainActivity extends AppCompatActivity {
                         }
                         json.put(CUSTOM_PACKAGE_NAME_KEY, customPkg);
                     }
+                    if (CLONING_MODE_GENERATE.equals(newValue)) {
+                        int variants;
+                        try {
+                            variants = Integer.parseInt(variantCountInput.getText().toString().trim());
+                        } catch (NumberFormatException e) {
+                            variants = 0;
+                        }
+                        if (variants < 1 || variants > MAX_VARIANTS) {
+                            Toast.makeText(MainActivity.this, "Number of variants must be 1 to " + MAX_VARIANTS + ".", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        json.put(VARIANT_COUNT_KEY, variants);
+                    }
 
                     setting.value = newValue;
                     setting.valueClass = String.class;
@@ -5211,6 +5465,9 @@ public class MainActivity extends AppCompatActivity {
                 bundleDataSetting = null;
                 liveVideoSetting = null;
             }
+            // Updates are signed too, and must use the key the clone was made with.
+            signingKeySetting = new Setting(SIGNING_KEY_SETTING_KEY, getSigningKeySummary(), String.class);
+            settingsList.add(signingKeySetting);
             final SettingsAdapter adapter = new SettingsAdapter(settingsList, json);
             settingsListView.setAdapter(adapter);
             currentSettingsAdapter = isClonedApp ? null : adapter;
@@ -5344,6 +5601,7 @@ public class MainActivity extends AppCompatActivity {
         liveVideoFileForCloning = null;
         liveVideoDisplayName = null;
         liveVideoSetting = null;
+        signingKeySetting = null;
 
         currentSettingsAdapter = null;
         bundleDataDialogSummary = null;
@@ -5500,6 +5758,17 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     private void pickOutput() {
+        pendingVariantCount = getVariantCount();
+        if (pendingVariantCount > 1) {
+            // One document per variant, so they are created in a folder the user picks.
+            try {
+                pickOutputDir.launch(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE));
+            } catch (Exception e) {
+                Log.e(TAG, "Error launching output folder picker", e);
+                Toast.makeText(this, "Error opening folder picker: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+            return;
+        }
         try {
             Intent i = new Intent(Intent.ACTION_CREATE_DOCUMENT)
                     .addCategory(Intent.CATEGORY_OPENABLE)
@@ -5511,6 +5780,42 @@ public class MainActivity extends AppCompatActivity {
             Toast.makeText(this, "Error opening file picker: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
+    /** Number of clones to make in one pass; only generate_new_package can make more than one. */
+    private int getVariantCount() {
+        JSONObject json = currentSettingsJson;
+        if (json == null || !CLONING_MODE_GENERATE.equals(json.optString(CLONING_MODE_KEY))) {
+            return 1;
+        }
+        return Math.max(1, Math.min(MAX_VARIANTS, json.optInt(VARIANT_COUNT_KEY, 1)));
+    }
+
+    /** Creates {@code count} empty APK documents in the picked folder, or returns null. */
+    private List<Uri> createVariantOutputs(Uri treeUri, int count) {
+        String base = selectedAppInfo != null && selectedAppInfo.appName != null
+                ? selectedAppInfo.appName.replaceAll("[^A-Za-z0-9._-]", "_") : "patched";
+        List<Uri> outputs = new ArrayList<>(count);
+        try {
+            Uri dir = DocumentsContract.buildDocumentUriUsingTree(treeUri, DocumentsContract.getTreeDocumentId(treeUri));
+            for (int i = 1; i <= count; i++) {
+                Uri doc = DocumentsContract.createDocument(getContentResolver(), dir,
+                        "application/vnd.android.package-archive", base + "_variant" + i + ".apk");
+                if (doc == null) throw new IOException("Cannot create output " + i + " in " + treeUri);
+                outputs.add(doc);
+            }
+            return outputs;
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating variant outputs", e);
+            Toast.makeText(this, "Cannot create output files: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            for (Uri doc : outputs) {
+                try {
+                    DocumentsContract.deleteDocument(getContentResolver(), doc);
+                } catch (Exception ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
     private void handleProcessAction() {
         if (currentSettingsIsClonedApp) {
             if (!persistCurrentSettings()) {
@@ -5568,7 +5873,15 @@ public class MainActivity extends AppCompatActivity {
         hideSettingsEditor();
     }
     private void startProcessing() {
-        if (inputApkUri == null || outputApkUri == null) {
+        startProcessing(outputApkUri != null ? Collections.singletonList(outputApkUri) : Collections.emptyList());
+    }
+
+    /**
+     * Clones the input once per output. Several outputs are package variants, written in one
+     * pass over the source by {@link CloneJobScheduler#enqueueAll}.
+     */
+    private void startProcessing(List<Uri> outputs) {
+        if (inputApkUri == null || outputs.isEmpty()) {
             Toast.makeText(this, "Pick input & output first", Toast.LENGTH_LONG).show();
             return;
         }
@@ -5577,10 +5890,6 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         try {
-            File hookDex    = new File(getCacheDir(), "hook.dex");
-            File libWorkDir = new File(getCacheDir(), "hook_libs");
-            libWorkDir.mkdirs();
-            copyAsset("dash", hookDex);
             if (!clonerJsonFile.exists()) {
                 CloneSettings.generateClonerJson(this, clonerJsonFile);
             }
@@ -5588,152 +5897,107 @@ public class MainActivity extends AppCompatActivity {
             // Update bundle_app_data boolean based on whether we have a file
             // This ensures cloner.json has the correct boolean trigger for AppDataManager
             // We do this AFTER ensuring clonerJsonFile exists (via generateClonerJson above)
+            boolean hasBundle = bundledDataFileForCloning != null || bundledDataDisplayName != null;
+            JSONObject overrides = new JSONObject();
+            boolean verifyOutput = false;
             if (clonerJsonFile.exists()) {
                 try {
                     String content = readString(clonerJsonFile);
                     JSONObject json = new JSONObject(content);
-                    boolean hasBundle = bundledDataFileForCloning != null || bundledDataDisplayName != null;
+                    verifyOutput = json.optBoolean(VERIFY_SIGNED_APK_KEY, false);
                     json.put(BUNDLE_DATA_SETTING_KEY, hasBundle);
                     try (FileWriter fw = new FileWriter(clonerJsonFile)) {
                         fw.write(json.toString(2));
                     }
+                    // The job copies cloner.json when it is enqueued; the override pins the flag in that copy.
+                    overrides.put(BUNDLE_DATA_SETTING_KEY, hasBundle);
                 } catch (Exception e) {
                      Log.e(TAG, "Failed to update bundle_app_data flag in cloner.json", e);
                 }
             }
 
-            // Copy arm64-v8a libs
-            File arm64Dir = new File(libWorkDir, "arm64-v8a");
-            arm64Dir.mkdirs();
-            copyAsset("lib/arm64-v8a/libaliuhook.so",   new File(arm64Dir, "libaliuhook.so"));
-            copyAsset("lib/arm64-v8a/liblsplant.so",    new File(arm64Dir, "liblsplant.so"));
-            copyAsset("lib/arm64-v8a/libc++_shared.so", new File(arm64Dir, "libc++_shared.so"));
-
-            // Copy armeabi-v7a libs
-            File armDir = new File(libWorkDir, "armeabi-v7a");
-            armDir.mkdirs();
-            copyAsset("lib/armeabi-v7a/libaliuhook.so",   new File(armDir, "libaliuhook.so"));
-            copyAsset("lib/armeabi-v7a/liblsplant.so",    new File(armDir, "liblsplant.so"));
-            copyAsset("lib/armeabi-v7a/libc++_shared.so", new File(armDir, "libc++_shared.so"));
-
-            new Thread(() -> {
-                try {
-                    // Process Icon (inside thread)
-                    File processedIconFile = new File(getCacheDir(), "_launcher_icon.png");
-                    if (processedIconFile.exists()) {
-                        processedIconFile.delete();
-                    }
-
-                    try {
-                        // Read settings from cloner.json or current settings
-                        JSONObject json = new JSONObject(readString(clonerJsonFile));
-                        String color = json.optString("icon_color", CloneSettings.DEFAULT_ICON_COLOR);
-                        float hue = (float) json.optDouble("icon_hue", CloneSettings.DEFAULT_ICON_HUE);
-                        float saturation = (float) json.optDouble("icon_saturation", CloneSettings.DEFAULT_ICON_SATURATION);
-                        float lightness = (float) json.optDouble("icon_lightness", CloneSettings.DEFAULT_ICON_LIGHTNESS);
-                        boolean autoHue = json.optBoolean("icon_auto_hue", CloneSettings.DEFAULT_ICON_AUTO_HUE);
-                        boolean invertColors = json.optBoolean("icon_invert_colors", CloneSettings.DEFAULT_ICON_INVERT_COLORS);
-                        boolean sepia = json.optBoolean("icon_sepia", CloneSettings.DEFAULT_ICON_SEPIA);
-                        int rotation = json.optInt("icon_rotation", CloneSettings.DEFAULT_ICON_ROTATION);
-                        boolean flipH = json.optBoolean("icon_flip_horizontal", CloneSettings.DEFAULT_ICON_FLIP_HORIZONTAL);
-                        boolean flipV = json.optBoolean("icon_flip_vertical", CloneSettings.DEFAULT_ICON_FLIP_VERTICAL);
-                        String badge = json.optString("icon_badge", CloneSettings.DEFAULT_ICON_BADGE);
-                        int badgePos = json.optInt("icon_badge_position", CloneSettings.DEFAULT_ICON_BADGE_POSITION);
-
-                        Drawable originalIcon = null;
-                        if (selectedAppInfo != null) {
-                            // Re-load full res icon if possible
-                            try {
-                                // Check if we have the cached source APK
-                                if (selectedAppInfo.cachedApkFile != null && selectedAppInfo.cachedApkFile.exists()) {
-                                    android.content.pm.PackageManager pm = getPackageManager();
-                                    android.content.pm.PackageInfo pi = pm.getPackageArchiveInfo(selectedAppInfo.cachedApkFile.getAbsolutePath(), 0);
-                                    if (pi != null) {
-                                        pi.applicationInfo.sourceDir = selectedAppInfo.cachedApkFile.getAbsolutePath();
-                                        pi.applicationInfo.publicSourceDir = selectedAppInfo.cachedApkFile.getAbsolutePath();
-                                        originalIcon = pi.applicationInfo.loadIcon(pm);
-                                    }
-                                }
-
-                                // Fallback to memory
-                                if (originalIcon == null && selectedAppInfo.packageName != null) {
-                                    android.content.pm.ApplicationInfo ai = getPackageManager().getApplicationInfo(selectedAppInfo.packageName, 0);
-                                    originalIcon = ai.loadIcon(getPackageManager());
-                                }
-                            } catch (Exception e) {
-                                Log.w(TAG, "Failed to load high-res icon, using default", e);
-                            }
-                        }
-
-                        if (originalIcon != null) {
-                            IconProcessor.processAndSaveIcon(MainActivity.this, originalIcon, color, rotation, flipH, flipV,
-                                    hue, saturation, lightness, autoHue, invertColors, sepia,
-                                    badge, badgePos, processedIconFile);
-                        } else {
-                            processedIconFile = null; // No icon to process
-                        }
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "Icon processing failed", e);
-                        processedIconFile = null;
-                    }
-
-                    // Ensure ApkProcessor.java is present in the correct package location
-                    new ApkProcessor(MainActivity.this).injectHook(
-                            inputApkUri, outputApkUri, hookDex, clonerJsonFile, libWorkDir, bundledDataFileForCloning, liveVideoFileForCloning, processedIconFile);
-
-                    File finalProcessedIconFile = processedIconFile;
-                    runOnUiThread(() -> {
+            // The job owns everything it needs from here on; the activity fields are reset
+            // so the next clone can be configured while this one runs.
+            final Uri jobOutput = outputs.get(0);
+            final File jobBundledData = bundledDataFileForCloning;
+            final File jobLiveVideo = liveVideoFileForCloning;
+            final AppInfo jobApp = selectedAppInfo;
+            final File processedIconFile = new File(getCacheDir(), "_launcher_icon_" + System.nanoTime() + ".png");
+
+            List<CloneJobScheduler.Request> requests = new ArrayList<>(outputs.size());
+            for (int i = 0; i < outputs.size(); i++) {
+                String label = jobApp != null ? jobApp.appName : null;
+                if (label != null && outputs.size() > 1) label += " (" + (i + 1) + "/" + outputs.size() + ")";
+                requests.add(new CloneJobScheduler.Request(inputApkUri, outputs.get(i), clonerJsonFile)
+                        .setBundledDataFile(jobBundledData)
+                        .setLiveVideoFile(jobLiveVideo)
+                        .setSettingsOverrides(overrides)
+                        .setLabel(label)
+                        .setVerifyOutput(verifyOutput)
+                        .setIconFactory(jobJson -> processLauncherIcon(jobApp, jobJson, processedIconFile)));
+            }
+
+            final AtomicInteger pending = new AtomicInteger(requests.size());
+            final AtomicInteger failed = new AtomicInteger();
+            CloneJobScheduler.Listener listener = job -> {
+                if (!job.isFinished()) {
+                    runOnUiThread(() -> statusTxt.setText(formatJobStatus(job)));
+                    return;
+                }
+                if (job.getError() != null) failed.incrementAndGet();
+                // The inputs are shared by the whole group; clean up after its last job.
+                if (pending.decrementAndGet() > 0) return;
+                if (requests.size() > 1) {
+                    onVariantsFinished(requests.size(), failed.get(), job.getError(), jobOutput,
+                            jobBundledData, jobLiveVideo, processedIconFile);
+                    return;
+                }
+                if (jobBundledData != null && jobBundledData.exists()) {
+                    jobBundledData.delete();
+                }
+                if (jobLiveVideo != null && jobLiveVideo.exists()) {
+                    jobLiveVideo.delete();
+                }
+                if (processedIconFile.exists()) {
+                    processedIconFile.delete();
+                }
+                Exception error = job.getError();
+                runOnUiThread(() -> {
+                    if (error == null) {
                         statusTxt.setText("Done");
                         Toast.makeText(this, "APK patched successfully!", Toast.LENGTH_LONG).show();
-                        boolean hadBundledData = bundledDataFileForCloning != null || bundledDataDisplayName != null;
-                        if (bundledDataFileForCloning != null && bundledDataFileForCloning.exists()) {
-                            bundledDataFileForCloning.delete();
-                        }
-                        if (hadBundledData) {
-                            bundledDataFileForCloning = null;
-                            bundledDataDisplayName = null;
-                            refreshBundleDataUi();
-                        }
-
-                        boolean hadLiveVideo = liveVideoFileForCloning != null || liveVideoDisplayName != null;
-                        if (liveVideoFileForCloning != null && liveVideoFileForCloning.exists()) {
-                            liveVideoFileForCloning.delete();
-                        }
-                        if (hadLiveVideo) {
-                            liveVideoFileForCloning = null;
-                            liveVideoDisplayName = null;
-                            refreshLiveVideoUi();
-                        }
-
-                        if (finalProcessedIconFile != null && finalProcessedIconFile.exists()) {
-                            finalProcessedIconFile.delete();
-                        }
                         // Proceed directly with installation (no signing note dialog)
-                        proceedWithInstallation(outputApkUri);
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Patch error", e);
-                    runOnUiThread(() -> {
-                        statusTxt.setText("Error: " + e.getMessage());
-                        Toast.makeText(this, "Failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                        boolean hadBundledData = bundledDataFileForCloning != null || bundledDataDisplayName != null;
-                        if (bundledDataFileForCloning != null && bundledDataFileForCloning.exists()) {
-                            bundledDataFileForCloning.delete();
-                        }
-                        if (hadBundledData) {
-                            bundledDataFileForCloning = null;
-                            bundledDataDisplayName = null;
-                            refreshBundleDataUi();
+                        proceedWithInstallation(jobOutput);
+                    } else {
+                        statusTxt.setText("Error: " + error.getMessage());
+                        Toast.makeText(this, "Failed: " + error.getMessage(), Toast.LENGTH_LONG).show();
+                        if (jobOutput.equals(outputApkUri)) {
+                            clearSelection();
+                            outputApkUri = null;
                         }
-                        clearSelection();
-                        outputApkUri = null;
-                    });
-                }
-            }).start();
-        } catch (IOException e) {
-            Log.e(TAG, "Asset copy error", e);
-            statusTxt.setText("Asset error: " + e.getMessage());
+                    }
+                });
+            };
+            if (requests.size() == 1) {
+                CloneJobScheduler.getInstance(this).enqueue(requests.get(0), listener);
+            } else {
+                CloneJobScheduler.getInstance(this).enqueueAll(requests, listener);
+            }
+
+            if (hasBundle) {
+                bundledDataFileForCloning = null;
+                bundledDataDisplayName = null;
+                refreshBundleDataUi();
+            }
+            boolean hadLiveVideo = liveVideoFileForCloning != null || liveVideoDisplayName != null;
+            if (hadLiveVideo) {
+                liveVideoFileForCloning = null;
+                liveVideoDisplayName = null;
+                refreshLiveVideoUi();
+            }
+        } catch (RuntimeException | IOException e) {
+            Log.e(TAG, "Failed to start clone job", e);
+            statusTxt.setText("Error: " + e.getMessage());
             boolean hadBundledData = bundledDataFileForCloning != null || bundledDataDisplayName != null;
             if (bundledDataFileForCloning != null && bundledDataFileForCloning.exists()) {
                 bundledDataFileForCloning.delete();
@@ -5747,6 +6011,97 @@ public class MainActivity extends AppCompatActivity {
             outputApkUri = null;
         }
     }
+
+    private void onVariantsFinished(int count, int failed, Exception lastError, Uri firstOutput,
+                                    File bundledData, File liveVideo, File iconFile) {
+        for (File f : new File[] {bundledData, liveVideo, iconFile}) {
+            if (f != null && f.exists()) f.delete();
+        }
+        runOnUiThread(() -> {
+            if (failed == 0) {
+                statusTxt.setText("Done");
+                Toast.makeText(this, count + " variants saved", Toast.LENGTH_LONG).show();
+            } else {
+                String reason = lastError != null ? ": " + lastError.getMessage() : "";
+                statusTxt.setText("Error: " + failed + " of " + count + " variants failed" + reason);
+                Toast.makeText(this, failed + " of " + count + " variants failed", Toast.LENGTH_LONG).show();
+                if (firstOutput.equals(outputApkUri)) {
+                    clearSelection();
+                    outputApkUri = null;
+                }
+            }
+        });
+    }
+
+    private static String formatJobStatus(CloneJobScheduler.Job job) {
+        String stage = job.getStage();
+        if (ApkProcessor.ProgressListener.STAGE_WRITE.equals(stage)) {
+            return String.format(Locale.US, "Cloning %s... %d%% (%.1f MB/s)", job.getLabel(),
+                    Math.round(job.getProgress() * 100), job.getThroughput() / (1024f * 1024f));
+        }
+        if (ApkProcessor.ProgressListener.STAGE_SIGN.equals(stage)) {
+            return "Signing " + job.getLabel() + "...";
+        }
+        return "Cloning " + job.getLabel() + " (" + stage + ")...";
+    }
+
+    /**
+     * Renders the launcher icon for a clone from the icon_* settings of the job's own copy of
+     * cloner.json; runs on the job thread.
+     */
+    private File processLauncherIcon(AppInfo app, File jobClonerJson, File processedIconFile) {
+        try {
+            JSONObject json = new JSONObject(readString(jobClonerJson));
+            String color = json.optString("icon_color", CloneSettings.DEFAULT_ICON_COLOR);
+            float hue = (float) json.optDouble("icon_hue", CloneSettings.DEFAULT_ICON_HUE);
+            float saturation = (float) json.optDouble("icon_saturation", CloneSettings.DEFAULT_ICON_SATURATION);
+            float lightness = (float) json.optDouble("icon_lightness", CloneSettings.DEFAULT_ICON_LIGHTNESS);
+            boolean autoHue = json.optBoolean("icon_auto_hue", CloneSettings.DEFAULT_ICON_AUTO_HUE);
+            boolean invertColors = json.optBoolean("icon_invert_colors", CloneSettings.DEFAULT_ICON_INVERT_COLORS);
+            boolean sepia = json.optBoolean("icon_sepia", CloneSettings.DEFAULT_ICON_SEPIA);
+            int rotation = json.optInt("icon_rotation", CloneSettings.DEFAULT_ICON_ROTATION);
+            boolean flipH = json.optBoolean("icon_flip_horizontal", CloneSettings.DEFAULT_ICON_FLIP_HORIZONTAL);
+            boolean flipV = json.optBoolean("icon_flip_vertical", CloneSettings.DEFAULT_ICON_FLIP_VERTICAL);
+            String badge = json.optString("icon_badge", CloneSettings.DEFAULT_ICON_BADGE);
+            int badgePos = json.optInt("icon_badge_position", CloneSettings.DEFAULT_ICON_BADGE_POSITION);
+
+            Drawable originalIcon = null;
+            if (app != null) {
+                // Re-load full res icon if possible
+                try {
+                    // Check if we have the cached source APK
+                    if (app.cachedApkFile != null && app.cachedApkFile.exists()) {
+                        android.content.pm.PackageManager pm = getPackageManager();
+                        android.content.pm.PackageInfo pi = pm.getPackageArchiveInfo(app.cachedApkFile.getAbsolutePath(), 0);
+                        if (pi != null) {
+                            pi.applicationInfo.sourceDir = app.cachedApkFile.getAbsolutePath();
+                            pi.applicationInfo.publicSourceDir = app.cachedApkFile.getAbsolutePath();
+                            originalIcon = pi.applicationInfo.loadIcon(pm);
+                        }
+                    }
+
+                    // Fallback to memory
+                    if (originalIcon == null && app.packageName != null) {
+                        android.content.pm.ApplicationInfo ai = getPackageManager().getApplicationInfo(app.packageName, 0);
+                        originalIcon = ai.loadIcon(getPackageManager());
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to load high-res icon, using default", e);
+                }
+            }
+
+            if (originalIcon == null) {
+                return null; // No icon to process
+            }
+            IconProcessor.processAndSaveIcon(MainActivity.this, originalIcon, color, rotation, flipH, flipV,
+                    hue, saturation, lightness, autoHue, invertColors, sepia,
+                    badge, badgePos, processedIconFile);
+            return processedIconFile;
+        } catch (Exception e) {
+            Log.e(TAG, "Icon processing failed", e);
+            return null;
+        }
+    }
     private void proceedWithInstallation(Uri apkUri) {
         if (apkUri == null) {
             Log.e(TAG, "proceedWithInstallation: APK URI is null");
@@ -6096,48 +6451,6 @@ public class MainActivity extends AppCompatActivity {
             return false;
         }
     }
-    private void copyAsset(String assetPath, File dst) throws IOException {
-        if (assetPath == null || assetPath.isEmpty()) {
-            throw new IllegalArgumentException("Asset path cannot be null or empty");
-        }
-        if (dst == null) {
-            throw new IllegalArgumentException("Destination file cannot be null");
-        }
-        try (InputStream in = getAssets().open(assetPath);
-             OutputStream out = new FileOutputStream(dst)) {
-            byte[] buf = new byte[8_192];
-            int n;
-            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
-        }
-    }
-
-    private static void copyFile(File source, File dest) throws IOException {
-        if (source == null || dest == null) {
-            throw new IllegalArgumentException("Source and destination files cannot be null");
-        }
-        if (!source.exists() || !source.isFile()) {
-            throw new IOException("Source file does not exist: " + source);
-        }
-        File parent = dest.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            throw new IOException("Failed to create directory: " + parent);
-        }
-        try (InputStream in = new FileInputStream(source);
-             OutputStream out = new FileOutputStream(dest)) {
-            copyStream(in, out);
-        }
-    }
-
-    private static byte[] readAllBytes(File file) throws IOException {
-        if (file == null || !file.exists() || !file.isFile()) {
-            throw new IOException("File does not exist: " + file);
-        }
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             InputStream in = new FileInputStream(file)) {
-            copyStream(in, baos);
-            return baos.toByteArray();
-        }
-    }
     private String readString(File file) throws IOException {
         if (file == null || !file.exists()) {
             throw new IOException("File does not exist: " + file);
@@ -6277,55 +6590,28 @@ public class MainActivity extends AppCompatActivity {
     private void injectUpdatedJsonAndInstall(File updatedClonerJson, File sourceApkFile, AppInfo clonedApp) {
         statusTxt.setText("Updating & Installing...");
         new Thread(() -> {
-            File tempRoot = new File(getCacheDir(), "update_" + System.currentTimeMillis());
+            File signedApk = new File(getCacheDir(), "signed_updated_" + System.nanoTime() + ".apk");
+            File settingsBlob = new File(getCacheDir(), "cloner_" + System.nanoTime() + ".bin");
             try {
-                if (!tempRoot.mkdirs()) throw new IOException("Failed to create temp directory: " + tempRoot);
-                String basePath = tempRoot.getCanonicalPath() + File.separator;
-                boolean manifestFound = false;
-                try (ZipInputStream zis = new ZipInputStream(new FileInputStream(sourceApkFile))) {
-                    ZipEntry ze;
-                    while ((ze = zis.getNextEntry()) != null) {
-                        String name = ze.getName();
-                        if (name == null || name.isEmpty()) continue;
-                        if (SIG_PATH.matcher(name).matches()) continue;
-                        if ("assets/cloner.json".equals(name)) continue;
-                        if (ANDROID_MANIFEST.equals(name)) {
-                            manifestFound = true;
-                        }
-                        File outFile = safeResolve(tempRoot, basePath, name);
-                        if (ze.isDirectory()) {
-                            if (!outFile.exists() && !outFile.mkdirs()) {
-                                throw new IOException("Failed to mkdirs: " + outFile);
-                            }
-                            continue;
-                        }
-                        File parent = outFile.getParentFile();
-                        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                            throw new IOException("Failed to create parent: " + parent);
-                        }
-                        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                            copyStream(zis, fos);
-                        }
+                // Only cloner.json (and its compiled blob) change, so patch them in place and
+                // reuse the existing JAR digests; fall back to a full rebuild + sign if the fast
+                // path fails.
+                Map<String, File> replacements = new LinkedHashMap<>();
+                replacements.put(CLONER_JSON_ENTRY, updatedClonerJson);
+                byte[] blob = encodeSettingsBlob(updatedClonerJson);
+                if (blob != null) {
+                    try (OutputStream out = new FileOutputStream(settingsBlob)) {
+                        out.write(blob);
                     }
+                    replacements.put(SettingsBlobWriter.ENTRY, settingsBlob);
                 }
-                if (!manifestFound) {
-                    throw new IOException("AndroidManifest.xml not found in source APK");
-                }
-                File assetsDir = new File(tempRoot, "assets");
-                if (!assetsDir.exists() && !assetsDir.mkdirs()) {
-                    throw new IOException("Failed to create assets dir");
-                }
-                copyFile(updatedClonerJson, new File(assetsDir, "cloner.json"));
-                File unsignedApk = new File(getCacheDir(), "unsigned_updated_" + System.nanoTime() + ".apk");
-                File manifestFile = new File(tempRoot, ANDROID_MANIFEST);
-                byte[] manifestBytes = readAllBytes(manifestFile);
-                zipDir(tempRoot, unsignedApk, manifestBytes);
-                File signedApk = new File(getCacheDir(), "signed_updated_" + System.nanoTime() + ".apk");
                 try {
-                    signUpdatedApk(unsignedApk, signedApk);
-                } finally {
-                    unsignedApk.delete();
-                    deleteRec(tempRoot);
+                    ApkPatcher.patch(sourceApkFile, signedApk, replacements,
+                            SignerCache.getInstance().getSelected(MainActivity.this), false);
+                } catch (Exception e) {
+                    Log.w(TAG, "Incremental update failed, rebuilding APK", e);
+                    signedApk.delete();
+                    rebuildUpdatedApk(sourceApkFile, updatedClonerJson, signedApk);
                 }
                 runOnUiThread(() -> installApk(signedApk, clonedApp));
             } catch (Exception e) {
@@ -6338,12 +6624,57 @@ public class MainActivity extends AppCompatActivity {
                     }
                     hideSettingsEditor();
                 });
-                deleteRec(tempRoot);
+                signedApk.delete();
+            } finally {
+                settingsBlob.delete();
             }
         }).start();
     }
+
+    /** Compiled settings for an updated clone, or null to ship cloner.json alone. */
+    private static byte[] encodeSettingsBlob(File clonerJson) {
+        try {
+            return SettingsBlobWriter.encode(clonerJson);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot compile settings blob; clone will parse cloner.json", e);
+            return null;
+        }
+    }
+
+    private void rebuildUpdatedApk(File sourceApkFile, File updatedClonerJson, File signedApk) throws Exception {
+        File unsignedApk = new File(getCacheDir(), "unsigned_updated_" + System.nanoTime() + ".apk");
+        try {
+            // Rewrite the installed APK in one pass: every entry except the settings and the
+            // old signature files is copied with its original compressed payload.
+            long writeStart = System.nanoTime();
+            try (ApkZipReader reader = ApkZipReader.open(sourceApkFile);
+                 ApkZipWriter zw = new ApkZipWriter(unsignedApk)) {
+                if (reader.getEntry(ANDROID_MANIFEST) == null) {
+                    throw new IOException("AndroidManifest.xml not found in source APK");
+                }
+                for (ApkZipReader.Entry ze : reader.getEntries()) {
+                    String name = ze.getName();
+                    if (name == null || name.isEmpty() || ze.isDirectory()) continue;
+                    if (SIG_PATH.matcher(name).matches()) continue;
+                    if (CLONER_JSON_ENTRY.equals(name) || SettingsBlobWriter.ENTRY.equals(name)) continue;
+                    zw.copyEntry(reader, ze);
+                }
+                zw.setCompressor(ParallelDeflater.shared());
+                zw.writeEntry(CLONER_JSON_ENTRY, updatedClonerJson, ZipEntry.DEFLATED);
+                byte[] blob = encodeSettingsBlob(updatedClonerJson);
+                if (blob != null) {
+                    zw.writeEntry(SettingsBlobWriter.ENTRY, blob, ZipEntry.STORED);
+                }
+                Log.i(TAG, "Updated APK written in " + (System.nanoTime() - writeStart) / 1_000_000
+                        + " ms: " + zw.getStats());
+            }
+            signUpdatedApk(unsignedApk, signedApk);
+        } finally {
+            unsignedApk.delete();
+        }
+    }
     private void signUpdatedApk(File unsignedApk, File signedApk) throws Exception {
-        ApkSigner.SignerConfig signer = loadSignerConfigForUpdate();
+        ApkSigner.SignerConfig signer = SignerCache.getInstance().getSelected(this);
         ApkSigner apkSigner = new ApkSigner.Builder(Collections.singletonList(signer))
                 .setInputApk(unsignedApk)
                 .setOutputApk(signedApk)
@@ -6385,98 +6716,11 @@ public class MainActivity extends AppCompatActivity {
             apkToInstall.delete();
         }
     }
-    private ApkSigner.SignerConfig loadSignerConfigForUpdate() throws Exception {
-        try (InputStream ksStream = getAssets().open(KEYSTORE_ASSET)) {
-            KeyStore ks = KeyStore.getInstance("BKS");
-            ks.load(ksStream, STORE_PWD.toCharArray());
-            PrivateKey key = (PrivateKey) ks.getKey(ALIAS, KEY_PWD.toCharArray());
-            if (key == null) throw new IllegalStateException("Private key is null for alias: " + ALIAS);
-            X509Certificate cert = (X509Certificate) ks.getCertificate(ALIAS);
-            if (cert == null) throw new IllegalStateException("Certificate is null for alias: " + ALIAS);
-            return new ApkSigner.SignerConfig.Builder(ALIAS, key, Collections.singletonList(cert)).build();
-        }
-    }
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
         byte[] buf = new byte[8192];
         int n;
         while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
     }
-    private static void deleteRec(File f) {
-        if (f.isDirectory()) {
-            File[] kids = f.listFiles();
-            if (kids != null) for (File k : kids) deleteRec(k);
-        }
-        f.delete();
-    }
-    private void zipDir(File root, File outFile, byte[] manifestBytes) throws IOException {
-        try (OutputStream os = new FileOutputStream(outFile);
-             ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os))) {
-            zos.setLevel(9);
-            writeZip(root, zos, manifestBytes);
-        }
-    }
-    private void writeZip(File root, ZipOutputStream zos, byte[] manifestBytes) throws IOException {
-        ZipEntry manifestEntry = createZipEntry(ANDROID_MANIFEST, manifestBytes);
-        zos.putNextEntry(manifestEntry);
-        zos.write(manifestBytes);
-        zos.closeEntry();
-        addRec(root, root.getAbsolutePath(), zos);
-    }
-    private void addRec(File node, String base, ZipOutputStream zos) throws IOException {
-        if (node.isDirectory()) {
-            File[] kids = node.listFiles();
-            if (kids != null) for (File k : kids) addRec(k, base, zos);
-            return;
-        }
-        String rel = node.getAbsolutePath().substring(base.length() + 1).replace(File.separatorChar, '/');
-        if (ANDROID_MANIFEST.equals(rel)) return;
-        ZipEntry entry = createZipEntry(rel, node);
-        zos.putNextEntry(entry);
-        try (FileInputStream fis = new FileInputStream(node)) {
-            copyStream(fis, zos);
-        }
-        zos.closeEntry();
-    }
-    private ZipEntry createZipEntry(String name, byte[] data) {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        e.setMethod(ZipEntry.STORED);
-        e.setSize(data.length);
-        CRC32 crc = new CRC32();
-        crc.update(data);
-        e.setCrc(crc.getValue());
-        return e;
-    }
-    private ZipEntry createZipEntry(String name, File file) throws IOException {
-        ZipEntry e = new ZipEntry(name);
-        e.setTime(0L);
-        String lower = name.toLowerCase(Locale.US);
-        boolean store = lower.endsWith(".so") || lower.endsWith(".arsc") || lower.endsWith(".dex");
-        if (store) {
-            e.setMethod(ZipEntry.STORED);
-            e.setSize(file.length());
-            CRC32 crc = new CRC32();
-            try (InputStream in = new FileInputStream(file)) {
-                byte[] buf = new byte[8192];
-                int r;
-                while ((r = in.read(buf)) != -1) {
-                    crc.update(buf, 0, r);
-                }
-            }
-            e.setCrc(crc.getValue());
-        } else {
-            e.setMethod(ZipEntry.DEFLATED);
-        }
-        return e;
-    }
-    private static File safeResolve(File root, String basePath, String entryName) throws IOException {
-        File out = new File(root, entryName);
-        String outPath = out.getCanonicalPath();
-        if (!outPath.startsWith(basePath)) {
-            throw new IOException("Blocked zip path traversal: " + entryName);
-        }
-        return out;
-    }
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -6901,6 +7145,14 @@ public class MainActivity extends AppCompatActivity {
                 return convertView;
             }
 
+            if (SIGNING_KEY_SETTING_KEY.equals(setting.key)) {
+                valueTextView.setText(getSigningKeySummary());
+                iconContainer.setVisibility(View.VISIBLE);
+                iconView.setImageResource(R.drawable.ic_identity);
+                chevronView.setVisibility(View.VISIBLE);
+                return convertView;
+            }
+
             if (value instanceof JSONObject) {
                 valueTextView.setText("Tap to configure advanced options");
                 chevronView.setVisibility(View.VISIBLE);
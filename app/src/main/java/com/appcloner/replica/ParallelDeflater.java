@@ -0,0 +1,259 @@
+package com.appcloner.replica;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Fork-join deflate stage for entries that have to be (re)compressed.
+ *
+ * Independent entries are deflated on separate workers, and entries larger than one block are
+ * split pigz-style: every {@link #BLOCK_SIZE} block is deflated on its own, primed with the last
+ * 32 KiB of the preceding block as dictionary and ended with a sync flush, so the concatenated
+ * blocks form one valid raw deflate stream. The block layout does not depend on the number of
+ * workers, which makes {@link #serial()} and a parallel instance produce byte-identical output.
+ */
+public class ParallelDeflater {
+    public static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int DICT_SIZE = 32 * 1024;
+
+    /** Entries up to this size are read fully into memory when submitted ahead of time. */
+    public static final long PRESUBMIT_LIMIT = 4L * BLOCK_SIZE;
+
+    private static volatile ParallelDeflater shared;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    private ParallelDeflater(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    /** Runs every block on the calling thread. */
+    public static ParallelDeflater serial() {
+        return new ParallelDeflater(1);
+    }
+
+    /** Process-wide instance with one worker per core. */
+    public static ParallelDeflater shared() {
+        ParallelDeflater d = shared;
+        if (d == null) {
+            synchronized (ParallelDeflater.class) {
+                d = shared;
+                if (d == null) {
+                    d = new ParallelDeflater(Runtime.getRuntime().availableProcessors());
+                    shared = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Compression level per entry class: small text-like entries get maximum compression, big or
+     * already-compressed blobs get the fastest level since deflate barely shrinks them.
+     */
+    public static int levelFor(String name, long size) {
+        String lower = name.toLowerCase(Locale.US);
+        if (lower.endsWith(".zip") || lower.endsWith(".jar") || lower.endsWith(".apk")
+                || lower.endsWith(".mp4") || lower.endsWith(".webm") || lower.endsWith(".mp3")
+                || lower.endsWith(".ogg") || lower.endsWith(".png") || lower.endsWith(".webp")
+                || lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return Deflater.BEST_SPEED;
+        }
+        if (size <= 256 * 1024 || lower.endsWith(".json") || lower.endsWith(".xml")
+                || lower.endsWith(".txt") || lower.endsWith(".properties")) {
+            return Deflater.BEST_COMPRESSION;
+        }
+        return size >= 8L * BLOCK_SIZE ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION;
+    }
+
+    /** Starts compressing {@code data} and returns immediately unless this instance is serial. */
+    public Future<Compressed> submit(byte[] data, int level) {
+        return start(ForkJoinTask.adapt(() -> compress(data, level)));
+    }
+
+    /** Reads and compresses {@code file}; meant for entries below {@link #PRESUBMIT_LIMIT}. */
+    public Future<Compressed> submit(File file, int level) {
+        return start(ForkJoinTask.adapt(() -> compress(readFully(file), level)));
+    }
+
+    /** Runs other per-entry work (manifest patching, signing) on the same pool. */
+    public <T> Future<T> submit(Callable<T> task) {
+        return start(ForkJoinTask.adapt(task));
+    }
+
+    /** Deflates a whole in-memory entry, forking its blocks across the pool. */
+    public Compressed compress(byte[] data, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        int blocks = Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            final int off = i * BLOCK_SIZE;
+            final int len = Math.min(BLOCK_SIZE, data.length - off);
+            final int dictLen = Math.min(DICT_SIZE, off);
+            final boolean last = i == blocks - 1;
+            tasks.add(ForkJoinTask.adapt(() ->
+                    deflateBlock(data, off, len, data, off - dictLen, dictLen, level, last)));
+        }
+        if (pool == null || blocks == 1) {
+            for (ForkJoinTask<byte[]> t : tasks) t.invoke();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        for (ForkJoinTask<byte[]> t : tasks) {
+            byte[] b = t.join();
+            out.write(b, 0, b.length);
+        }
+        return new Compressed(ZipEntry.DEFLATED, crc.getValue(), data.length, out.toByteArray());
+    }
+
+    /**
+     * Streams {@code file} through the block compressor into {@code sink} in block order,
+     * keeping at most two blocks per worker in flight.
+     *
+     * @return CRC-32 of the uncompressed file
+     */
+    public long deflate(File file, int level, BlockSink sink) throws IOException {
+        CRC32 crc = new CRC32();
+        long remaining = file.length();
+        ArrayDeque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+        int window = parallelism * 2;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] prev = null;
+            do {
+                int len = (int) Math.min(BLOCK_SIZE, remaining);
+                byte[] block = new byte[len];
+                readBlock(in, block);
+                crc.update(block, 0, len);
+                remaining -= len;
+
+                final byte[] dict = prev;
+                final int dictLen = dict == null ? 0 : Math.min(DICT_SIZE, dict.length);
+                final boolean last = remaining == 0;
+                ForkJoinTask<byte[]> task = ForkJoinTask.adapt(() -> deflateBlock(block, 0, len,
+                        dict, dict == null ? 0 : dict.length - dictLen, dictLen, level, last));
+                inFlight.add(start(task));
+                prev = block;
+
+                while (inFlight.size() >= window || (last && !inFlight.isEmpty())) {
+                    byte[] out = await(inFlight.poll());
+                    sink.write(out, 0, out.length);
+                }
+            } while (remaining > 0);
+        }
+        return crc.getValue();
+    }
+
+    /** Waits for a submitted task, unwrapping failures into {@link IOException}. */
+    public static <T> T await(Future<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a pool task", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Pool task failed", cause);
+        }
+    }
+
+    // --- Internals ---
+
+    private <T> ForkJoinTask<T> start(ForkJoinTask<T> task) {
+        if (pool == null) {
+            task.invoke();
+            return task;
+        }
+        return pool.submit(task);
+    }
+
+    private static byte[] deflateBlock(byte[] buf, int off, int len, byte[] dict, int dictOff,
+                                       int dictLen, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictLen > 0) {
+                deflater.setDictionary(dict, dictOff, dictLen);
+            }
+            deflater.setInput(buf, off, len);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, len / 2));
+            byte[] chunk = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    out.write(chunk, 0, n);
+                }
+            } else {
+                // A sync flush byte-aligns the output so the next block can start its own stream.
+                int n;
+                do {
+                    n = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                    out.write(chunk, 0, n);
+                } while (n == chunk.length || !deflater.needsInput());
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void readBlock(InputStream in, byte[] block) throws IOException {
+        int off = 0;
+        while (off < block.length) {
+            int n = in.read(block, off, block.length - off);
+            if (n < 0) throw new IOException("File shrank while compressing");
+            off += n;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            readBlock(in, data);
+        }
+        return data;
+    }
+
+    /** Receives compressed blocks in stream order. */
+    public interface BlockSink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    /** Compressed payload of one entry, ready to be spliced into an archive. */
+    public static final class Compressed {
+        final int method;
+        final long crc;
+        final long size;
+        final byte[] payload;
+
+        Compressed(int method, long crc, long size, byte[] payload) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.payload = payload;
+        }
+    }
+}
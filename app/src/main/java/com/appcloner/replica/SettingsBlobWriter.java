@@ -0,0 +1,194 @@
+package com.appcloner.replica;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles cloner.json into assets/cloner.bin, the binary settings blob the hook runtime maps
+ * instead of parsing JSON at every launch.
+ *
+ * Layout (little-endian; must match the hook's SettingsBlob reader): a 32-byte header with
+ * magic, version, CRC-32 and length of the source JSON and the offsets of the string index,
+ * string data and root value; then the values, 4-byte aligned, each a one-byte tag followed by
+ * its payload; then the string index and the UTF-8 string data. Object keys are sorted so the
+ * reader can binary-search them, and equal strings are stored once.
+ *
+ * The blob is only a cache of the JSON: the runtime ignores it when the recorded CRC or length
+ * do not match the cloner.json next to it, so it is always safe to leave it out.
+ */
+public final class SettingsBlobWriter {
+    public static final String ENTRY = "assets/cloner.bin";
+
+    private static final int MAGIC = 0x31424C43; // "CLB1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_ARRAY = 6;
+    private static final int TAG_OBJECT = 7;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<byte[]> strings = new ArrayList<>();
+    private ByteBuffer out = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private SettingsBlobWriter() {
+        out.position(HEADER_SIZE);
+    }
+
+    /** Encodes the cloner.json file at {@code json}. */
+    public static byte[] encode(File json) throws IOException {
+        try (InputStream in = new FileInputStream(json)) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream((int) Math.max(32, json.length()));
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) buf.write(chunk, 0, n);
+            return encode(buf.toByteArray());
+        }
+    }
+
+    /**
+     * Encodes cloner.json. {@code json} must be exactly the bytes that are packaged as
+     * assets/cloner.json, since the blob records their checksum.
+     */
+    public static byte[] encode(byte[] json) throws IOException {
+        JSONObject root;
+        try {
+            root = new JSONObject(new String(json, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException("cloner.json is not valid JSON", e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(json, 0, json.length);
+        return new SettingsBlobWriter().write(root, (int) crc.getValue(), json.length);
+    }
+
+    private byte[] write(JSONObject root, int crc, int jsonLength) throws IOException {
+        int rootOffset = writeValue(root);
+
+        int stringIndex = out.position();
+        ensure(strings.size() * 8);
+        int offset = 0;
+        for (byte[] s : strings) {
+            out.putInt(offset).putInt(s.length);
+            offset += s.length;
+        }
+        int stringData = out.position();
+        ensure(offset);
+        for (byte[] s : strings) out.put(s);
+        int length = out.position();
+
+        out.putInt(0, MAGIC)
+                .putShort(4, (short) VERSION)
+                .putShort(6, (short) HEADER_SIZE)
+                .putInt(8, crc)
+                .putInt(12, jsonLength)
+                .putInt(16, strings.size())
+                .putInt(20, stringIndex)
+                .putInt(24, stringData)
+                .putInt(28, rootOffset);
+        byte[] blob = new byte[length];
+        out.position(0);
+        out.get(blob);
+        return blob;
+    }
+
+    /** Writes {@code value} (children first) and returns its offset. */
+    private int writeValue(Object value) throws IOException {
+        if (value instanceof JSONObject) {
+            JSONObject obj = (JSONObject) value;
+            List<String> keys = new ArrayList<>(obj.length());
+            Iterator<String> it = obj.keys();
+            while (it.hasNext()) keys.add(it.next());
+            Collections.sort(keys);
+            int[] children = new int[keys.size()];
+            for (int i = 0; i < children.length; i++) children[i] = writeValue(obj.opt(keys.get(i)));
+            int at = header(TAG_OBJECT, 4 + 8 * children.length);
+            out.putInt(children.length);
+            for (int i = 0; i < children.length; i++) {
+                out.putInt(stringId(keys.get(i))).putInt(children[i]);
+            }
+            return at;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray arr = (JSONArray) value;
+            int[] children = new int[arr.length()];
+            for (int i = 0; i < children.length; i++) children[i] = writeValue(arr.opt(i));
+            int at = header(TAG_ARRAY, 4 + 4 * children.length);
+            out.putInt(children.length);
+            for (int child : children) out.putInt(child);
+            return at;
+        }
+        if (value == null || value == JSONObject.NULL) {
+            return header(TAG_NULL, 0);
+        }
+        if (value instanceof Boolean) {
+            return header((Boolean) value ? TAG_TRUE : TAG_FALSE, 0);
+        }
+        if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            int at = header(TAG_LONG, 8);
+            out.putLong(((Number) value).longValue());
+            return at;
+        }
+        if (value instanceof Number) {
+            int at = header(TAG_DOUBLE, 8);
+            out.putDouble(((Number) value).doubleValue());
+            return at;
+        }
+        if (value instanceof String) {
+            int id = stringId((String) value);
+            int at = header(TAG_STRING, 4);
+            out.putInt(id);
+            return at;
+        }
+        throw new IOException("Unsupported value in cloner.json: " + value.getClass().getName());
+    }
+
+    private int header(int tag, int payload) {
+        ensure(4 + payload);
+        int at = out.position();
+        out.put((byte) tag).put((byte) 0).putShort((short) 0);
+        return at;
+    }
+
+    private int stringId(String s) {
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(s, id);
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private void ensure(int bytes) {
+        if (out.remaining() >= bytes) return;
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.flip();
+        grown.put(out);
+        out = grown;
+    }
+}
@@ -0,0 +1,288 @@
+package com.appcloner.replica;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.android.apksig.ApkSigner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of decrypted signing keys.
+ *
+ * Opening and decrypting a keystore costs a provider lookup plus the PBE key derivation, which
+ * used to happen on every clone and every settings update. Each {@link Source} is decrypted the
+ * first time a signer is requested from it and the resulting {@link ApkSigner.SignerConfig},
+ * which is immutable, is shared by all later jobs until the source is invalidated. Keystore
+ * files are also reloaded when their size or modification time changes.
+ *
+ * Clones and updates are signed with the {@linkplain #select selected} keystore, or the bundled
+ * debug key when none is selected. The selection, passwords included, is kept in the app's
+ * private preferences: updates of a clone must be signed with the key it was cloned with.
+ */
+public final class SignerCache {
+    private static final String TAG = "SignerCache";
+
+    private static final String BUNDLED_KEYSTORE = "debug.keystore";
+    private static final String BUNDLED_STORE_PWD = "appklown";
+    private static final String BUNDLED_KEY_PWD = "appklown";
+    private static final String BUNDLED_ALIAS = "Harrygp";
+
+    private static final String PREFS = "signer";
+    private static final String PREF_FILE = "file";
+    private static final String PREF_TYPE = "type";
+    private static final String PREF_STORE_PWD = "store_password";
+    private static final String PREF_ALIAS = "alias";
+    private static final String PREF_KEY_PWD = "key_password";
+
+    private static final SignerCache INSTANCE = new SignerCache();
+
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private Source selected;
+    private boolean selectionLoaded;
+
+    private SignerCache() {}
+
+    public static SignerCache getInstance() {
+        return INSTANCE;
+    }
+
+    /** The debug key bundled in the app's assets; used when the user did not pick a keystore. */
+    public static Source bundled() {
+        return Source.asset(BUNDLED_KEYSTORE, "BKS", BUNDLED_STORE_PWD.toCharArray(),
+                BUNDLED_ALIAS, BUNDLED_KEY_PWD.toCharArray());
+    }
+
+    /** The signer clones and updates use: the selected keystore, or the bundled key. */
+    public ApkSigner.SignerConfig getSelected(Context ctx) throws IOException {
+        Source source = getSelectedSource(ctx);
+        return get(ctx, source != null ? source : bundled());
+    }
+
+    /** The user's keystore, or null when signing with the bundled key. */
+    public synchronized Source getSelectedSource(Context ctx) {
+        if (!selectionLoaded) {
+            selected = loadSelection(ctx.getApplicationContext());
+            selectionLoaded = true;
+        }
+        return selected;
+    }
+
+    /**
+     * Signs later clones and updates with the keystore file {@code source}, or with the bundled
+     * key for null. The key of the previous selection is dropped from the cache.
+     */
+    public synchronized void select(Context ctx, Source source) {
+        if (source != null && source.file == null) {
+            throw new IllegalArgumentException("Only keystore files can be selected: " + source.name);
+        }
+        Source old = getSelectedSource(ctx);
+        selected = source;
+        SharedPreferences.Editor prefs = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit().clear();
+        if (source != null) {
+            prefs.putString(PREF_FILE, source.file.getAbsolutePath())
+                    .putString(PREF_TYPE, source.type)
+                    .putString(PREF_STORE_PWD, new String(source.storePassword))
+                    .putString(PREF_ALIAS, source.alias)
+                    .putString(PREF_KEY_PWD, new String(source.keyPassword));
+        }
+        prefs.apply();
+        if (old != null && (source == null || !old.key.equals(source.key))) invalidate(old);
+    }
+
+    private static Source loadSelection(Context ctx) {
+        SharedPreferences prefs = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String path = prefs.getString(PREF_FILE, null);
+        String storePassword = prefs.getString(PREF_STORE_PWD, null);
+        if (path == null || storePassword == null) return null;
+        File file = new File(path);
+        if (!file.isFile()) {
+            Log.w(TAG, "Selected keystore is gone, signing with the bundled key: " + path);
+            return null;
+        }
+        String keyPassword = prefs.getString(PREF_KEY_PWD, null);
+        return Source.file(file, prefs.getString(PREF_TYPE, null), storePassword.toCharArray(),
+                prefs.getString(PREF_ALIAS, null), keyPassword != null ? keyPassword.toCharArray() : null);
+    }
+
+    /** Returns the signer for {@code source}, decrypting the keystore only on first use. */
+    public ApkSigner.SignerConfig get(Context ctx, Source source) throws IOException {
+        Slot slot = slots.get(source.key);
+        if (slot == null) {
+            Slot created = new Slot(source);
+            slot = slots.putIfAbsent(source.key, created);
+            if (slot == null) slot = created;
+        }
+        return slot.get(ctx.getApplicationContext());
+    }
+
+    /** Drops the cached key for {@code source}; the next request decrypts it again. */
+    public void invalidate(Source source) {
+        if (slots.remove(source.key) != null) {
+            Log.d(TAG, "Invalidated signer " + source.name);
+        }
+    }
+
+    /**
+     * Where a signing key lives and how to unlock it. Sources differing only in their passwords
+     * get separate slots, so a wrong password is never answered with a key unlocked by another;
+     * {@code name} is the same without the password digest, for logs.
+     */
+    public static final class Source {
+        final String key;
+        final String name;
+        final String assetName;
+        final File file;
+        final String type;
+        final char[] storePassword;
+        final String alias;
+        final char[] keyPassword;
+
+        private Source(String assetName, File file, String type, char[] storePassword,
+                       String alias, char[] keyPassword) {
+            this.assetName = assetName;
+            this.file = file;
+            this.type = type;
+            this.storePassword = storePassword.clone();
+            this.alias = alias;
+            this.keyPassword = keyPassword != null ? keyPassword.clone() : this.storePassword;
+            this.name = (assetName != null ? "asset:" + assetName : "file:" + file.getAbsolutePath())
+                    + "#" + type + "#" + alias;
+            this.key = name + "#" + passwordDigest(this.storePassword, this.keyPassword);
+        }
+
+        private static String passwordDigest(char[] storePassword, char[] keyPassword) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                for (char[] password : new char[][] {storePassword, keyPassword}) {
+                    ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+                    md.update(ByteBuffer.allocate(4).putInt(bytes.remaining()).array());
+                    md.update(bytes);
+                }
+                StringBuilder hex = new StringBuilder();
+                for (byte b : md.digest()) hex.append(String.format(Locale.US, "%02x", b));
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // SHA-256 is always available
+            }
+        }
+
+        public static Source asset(String assetName, String type, char[] storePassword,
+                                   String alias, char[] keyPassword) {
+            return new Source(assetName, null, type, storePassword, alias, keyPassword);
+        }
+
+        /**
+         * A user-supplied keystore.
+         *
+         * @param type  keystore type, or null to derive it from the file extension
+         * @param alias key alias, or null to use the first private key entry
+         * @param keyPassword null when the key shares the store password
+         */
+        public static Source file(File file, String type, char[] storePassword,
+                                  String alias, char[] keyPassword) {
+            return new Source(null, file, type != null ? type : typeFor(file), storePassword,
+                    alias, keyPassword);
+        }
+
+        static String typeFor(File file) {
+            String name = file.getName().toLowerCase(Locale.US);
+            if (name.endsWith(".p12") || name.endsWith(".pfx")) return "PKCS12";
+            if (name.endsWith(".jks")) return "JKS";
+            return "BKS";
+        }
+    }
+
+    private static final class Slot {
+        private final Source source;
+        private ApkSigner.SignerConfig signer;
+        private long fileLength = -1;
+        private long fileModified = -1;
+
+        Slot(Source source) {
+            this.source = source;
+        }
+
+        synchronized ApkSigner.SignerConfig get(Context ctx) throws IOException {
+            if (signer != null && !isStale()) return signer;
+            long start = System.nanoTime();
+            if (source.file != null) {
+                fileLength = source.file.length();
+                fileModified = source.file.lastModified();
+            }
+            signer = load(ctx);
+            Log.i(TAG, "Loaded signer " + source.name + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return signer;
+        }
+
+        private boolean isStale() {
+            return source.file != null && (source.file.length() != fileLength
+                    || source.file.lastModified() != fileModified);
+        }
+
+        private ApkSigner.SignerConfig load(Context ctx) throws IOException {
+            try (InputStream in = source.assetName != null
+                    ? ctx.getAssets().open(source.assetName)
+                    : new FileInputStream(source.file)) {
+                KeyStore ks;
+                try {
+                    ks = KeyStore.getInstance(source.type);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("Keystore type " + source.type + " is not supported here", e);
+                }
+                ks.load(in, source.storePassword);
+
+                String alias = source.alias != null ? source.alias : firstKeyAlias(ks);
+                Key key = ks.getKey(alias, source.keyPassword);
+                if (!(key instanceof PrivateKey)) {
+                    throw new IOException("Private key is null for alias: " + alias);
+                }
+                List<X509Certificate> certs = new ArrayList<>();
+                Certificate[] chain = ks.getCertificateChain(alias);
+                if (chain != null) {
+                    for (Certificate c : chain) certs.add((X509Certificate) c);
+                } else if (ks.getCertificate(alias) != null) {
+                    certs.add((X509Certificate) ks.getCertificate(alias));
+                }
+                if (certs.isEmpty()) {
+                    throw new IOException("Certificate is null for alias: " + alias);
+                }
+                return new ApkSigner.SignerConfig.Builder(alias, (PrivateKey) key,
+                        Collections.unmodifiableList(certs)).build();
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cannot unlock keystore " + source.name, e);
+            }
+        }
+
+        private static String firstKeyAlias(KeyStore ks) throws GeneralSecurityException, IOException {
+            Enumeration<String> aliases = ks.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                if (ks.isKeyEntry(alias)) return alias;
+            }
+            throw new IOException("No private key in keystore");
+        }
+    }
+}
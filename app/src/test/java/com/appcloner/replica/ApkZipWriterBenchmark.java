@@ -0,0 +1,180 @@
+package com.appcloner.replica;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rewriting a whole APK: every entry spliced with its original compressed payload, against
+ * inflating every entry and deflating it again at level 9 the way the ZipOutputStream path did.
+ * The sample is a generated ~35 MB APK shaped like a real one (two dex files, 1500 compressed
+ * images, 800 layouts, a stored resources.arsc and native lib); pass {@code -Dapk=<path>} to
+ * use a real APK instead. One rewrite takes seconds, so every invocation is timed on its own.
+ * Run on a desktop JVM with {@code main} (or any JMH runner) from the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ApkZipWriterBenchmark {
+    private File dir;
+    private File out;
+    private ApkZipReader reader;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("apkzip", "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("Cannot create " + dir);
+        out = new File(dir, "out.apk");
+        String apk = System.getProperty("apk");
+        File input = apk != null ? new File(apk) : writeSample(new File(dir, "sample.apk"));
+        reader = ApkZipReader.open(input);
+
+        passthrough();
+        checkSameContent(input, out);
+        redeflate();
+        checkSameContent(input, out);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public long passthrough() throws IOException {
+        try (ApkZipWriter w = new ApkZipWriter(out)) {
+            for (ApkZipReader.Entry e : reader.getEntries()) {
+                w.copyEntry(reader, e);
+            }
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    public long redeflate() throws IOException {
+        ParallelDeflater deflater = ParallelDeflater.serial();
+        try (ApkZipWriter w = new ApkZipWriter(out)) {
+            for (ApkZipReader.Entry e : reader.getEntries()) {
+                byte[] data = reader.read(e);
+                if (e.getMethod() == ZipEntry.STORED) {
+                    w.writeEntry(e.getName(), data, ZipEntry.STORED);
+                } else {
+                    w.writeEntry(e.getName(), deflater.compress(data, Deflater.BEST_COMPRESSION));
+                }
+            }
+        }
+        return out.length();
+    }
+
+    private static File writeSample(File file) throws IOException {
+        Random random = new Random(1);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+            zos.setLevel(Deflater.BEST_COMPRESSION);
+            put(zos, "AndroidManifest.xml", text(random, 8 * 1024), false);
+            put(zos, "classes.dex", code(random, 6 * 1024 * 1024), false);
+            put(zos, "classes2.dex", code(random, 4 * 1024 * 1024), false);
+            put(zos, "resources.arsc", code(random, 3 * 1024 * 1024), true);
+            put(zos, "lib/arm64-v8a/libnative.so", code(random, 4 * 1024 * 1024), true);
+            for (int i = 0; i < 1500; i++) {
+                // Already compressed image data: deflate cannot shrink it.
+                byte[] image = new byte[2048 + random.nextInt(14 * 1024)];
+                random.nextBytes(image);
+                put(zos, "res/drawable-xxhdpi/image_" + i + ".png", image, false);
+            }
+            for (int i = 0; i < 800; i++) {
+                put(zos, "res/layout/layout_" + i + ".xml", text(random, 1024 + random.nextInt(5 * 1024)), false);
+            }
+        }
+        return file;
+    }
+
+    private static void put(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    /** Bytecode-like data: a small alphabet with repeated runs, about 2-3x compressible. */
+    private static byte[] code(Random random, int size) {
+        byte[] data = new byte[size];
+        int i = 0;
+        while (i < size) {
+            if (i > 64 && random.nextInt(4) == 0) {
+                int len = Math.min(size - i, 4 + random.nextInt(28));
+                System.arraycopy(data, i - 1 - random.nextInt(Math.min(i - len, 4096)), data, i, len);
+                i += len;
+            } else {
+                data[i++] = (byte) random.nextInt(48);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] text(Random random, int size) {
+        String[] words = {"<LinearLayout", "android:layout_width=\"match_parent\"", "android:id=\"@+id/",
+                "android:text=\"@string/", "android:orientation=\"vertical\"", "/>", "</LinearLayout>",
+                "<TextView", "android:padding=\"16dp\"", "\n    "};
+        StringBuilder sb = new StringBuilder(size + 64);
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void checkSameContent(File expected, File actual) throws IOException {
+        try (ZipFile a = new ZipFile(expected); ZipFile b = new ZipFile(actual)) {
+            if (a.size() != b.size()) throw new IllegalStateException("Entry count differs");
+            Enumeration<? extends ZipEntry> entries = a.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry e = entries.nextElement();
+                ZipEntry copy = b.getEntry(e.getName());
+                if (copy == null || copy.getCrc() != e.getCrc() || copy.getSize() != e.getSize()) {
+                    throw new IllegalStateException("Rewritten entry differs: " + e.getName());
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ApkZipWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
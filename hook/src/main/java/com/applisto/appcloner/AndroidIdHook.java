@@ -8,6 +8,8 @@ import android.util.Log;
 
 import java.lang.reflect.Method;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import top.canyie.pine.Pine;
@@ -20,14 +22,24 @@ public class AndroidIdHook {
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
     private static final SecureRandom random = new SecureRandom();
-    private static String sFakeId = null;
+    private static volatile String sFakeId = null;
+    // Removed again when the setting goes back to nochange, so Settings lookups cost nothing
+    private static final List<Hooking.Registration> sHooks = new ArrayList<>();
 
     public void init(Context context) {
-        String configValue = ClonerSettings.get(context).androidId();
+        apply(ClonerSettings.get(context).androidId());
 
+        // A regenerated or pushed ID takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings.androidId()), "android_id");
+    }
+
+    private synchronized void apply(String configValue) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configValue) || MODE_NO_CHANGE.equalsIgnoreCase(configValue)) {
+            sFakeId = null;
             Log.i(TAG, "android_id set to NO_CHANGE, using system value.");
+            for (Hooking.Registration hook : sHooks) hook.unhook();
+            sHooks.clear();
             return;
         }
 
@@ -39,12 +51,13 @@ public class AndroidIdHook {
             sFakeId = configValue;
             Log.i(TAG, "android_id set to CUSTOM: " + sFakeId);
         }
+        if (!sHooks.isEmpty()) return;
 
         Log.i(TAG, "Installing Android-ID hook → " + sFakeId);
 
-        hookSettingsMethod(Settings.Secure.class, sFakeId);
-        hookSettingsMethod(Settings.System.class, sFakeId);
-        hookSettingsMethod(Settings.Global.class, sFakeId);
+        hookSettingsMethod(Settings.Secure.class);
+        hookSettingsMethod(Settings.System.class);
+        hookSettingsMethod(Settings.Global.class);
     }
 
     /**
@@ -61,17 +74,18 @@ public class AndroidIdHook {
         return sFakeId;
     }
 
-    private void hookSettingsMethod(Class<?> settingsClass, final String fakeId) {
+    private void hookSettingsMethod(Class<?> settingsClass) {
         try {
             Method target = settingsClass.getDeclaredMethod(
                     "getString", ContentResolver.class, String.class);
 
-            Hooking.pineHook(target, new MethodHook() {
+            Hooking.Registration hook = Hooking.hook(target, new MethodHook() {
                 @Override
                 public void beforeCall(Pine.CallFrame frame) throws Throwable {
                     try {
                         String key = (String) frame.args[1];
-                        if (Settings.Secure.ANDROID_ID.equals(key)) {
+                        String fakeId = sFakeId;
+                        if (fakeId != null && Settings.Secure.ANDROID_ID.equals(key)) {
                             Log.d(TAG, "Returning fake ANDROID_ID for " + settingsClass.getSimpleName() + ": " + fakeId);
                             frame.setResult(fakeId);
                         }
@@ -79,7 +93,8 @@ public class AndroidIdHook {
                         Log.w(TAG, "Error in getString hook", t);
                     }
                 }
-            });
+            }, Hooking.PRIORITY_DEFAULT);
+            if (hook != null) sHooks.add(hook);
             Log.d(TAG, "Hooked " + settingsClass.getSimpleName() + ".getString");
 
         } catch (Throwable t) {
@@ -92,12 +107,13 @@ public class AndroidIdHook {
             Method targetForUser = settingsClass.getDeclaredMethod(
                     "getStringForUser", ContentResolver.class, String.class, int.class);
 
-            Hooking.pineHook(targetForUser, new MethodHook() {
+            Hooking.Registration hook = Hooking.hook(targetForUser, new MethodHook() {
                 @Override
                 public void beforeCall(Pine.CallFrame frame) throws Throwable {
                     try {
                         String key = (String) frame.args[1];
-                        if (Settings.Secure.ANDROID_ID.equals(key)) {
+                        String fakeId = sFakeId;
+                        if (fakeId != null && Settings.Secure.ANDROID_ID.equals(key)) {
                             Log.d(TAG, "Returning fake ANDROID_ID for " + settingsClass.getSimpleName() + ".getStringForUser: " + fakeId);
                             frame.setResult(fakeId);
                         }
@@ -105,7 +121,8 @@ public class AndroidIdHook {
                         Log.w(TAG, "Error in getStringForUser hook", t);
                     }
                 }
-            });
+            }, Hooking.PRIORITY_DEFAULT);
+            if (hook != null) sHooks.add(hook);
             Log.d(TAG, "Hooked " + settingsClass.getSimpleName() + ".getStringForUser");
         } catch (Throwable t) {
             // Method might not exist on all Android versions
@@ -27,13 +27,20 @@ public final class BtMacHook {
     private static final String TAG = "BtMacHook";
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
-    private static String sFakeMac = null;
+    private static volatile String sFakeMac = null;
+    private static boolean sHooked;
 
     public void init(Context ctx) {
-        String configMac = ClonerSettings.get(ctx).bluetoothMac();
-        
+        apply(ctx, ClonerSettings.get(ctx).bluetoothMac());
+
+        // A regenerated or pushed MAC takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(ctx, settings.bluetoothMac()), "bluetooth_mac");
+    }
+
+    private synchronized void apply(Context ctx, String configMac) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configMac) || MODE_NO_CHANGE.equalsIgnoreCase(configMac)) {
+            sFakeMac = null;
             Log.i(TAG, "Bluetooth MAC set to NO_CHANGE, using system value.");
             return;
         }
@@ -46,6 +53,8 @@ public final class BtMacHook {
             sFakeMac = configMac.toUpperCase();
             Log.i(TAG, "Bluetooth MAC set to CUSTOM: " + sFakeMac);
         }
+        if (sHooked) return;
+        sHooked = true;
         
         Log.i(TAG, "Installing Bluetooth MAC hook → " + sFakeMac);
 
@@ -63,10 +72,11 @@ public final class BtMacHook {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
                     Object orig = cf.getResult();
+                    String fake = sFakeMac;
                     // Only replace if result is not null (i.e. BT is enabled)
-                    if (orig != null) {
-                        cf.setResult(sFakeMac);
-                        Log.d(TAG, "Bluetooth MAC spoofed: " + orig + " → " + sFakeMac);
+                    if (orig != null && fake != null) {
+                        cf.setResult(fake);
+                        Log.d(TAG, "Bluetooth MAC spoofed: " + orig + " → " + fake);
                     }
                 }
             });
@@ -91,10 +101,11 @@ public final class BtMacHook {
                     Object[] args = cf.args;
                     if (args.length >= 2 && args[1] != null) {
                         String key = (String) args[1];
-                        if ("bluetooth_address".equals(key)) {
+                        String fake = sFakeMac;
+                        if ("bluetooth_address".equals(key) && fake != null) {
                             Object orig = cf.getResult();
-                            cf.setResult(sFakeMac);
-                            Log.d(TAG, "Settings.Secure bluetooth_address spoofed: " + orig + " → " + sFakeMac);
+                            cf.setResult(fake);
+                            Log.d(TAG, "Settings.Secure bluetooth_address spoofed: " + orig + " → " + fake);
                         }
                     }
                 }
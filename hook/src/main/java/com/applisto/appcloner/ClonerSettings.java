@@ -3,115 +3,579 @@ package com.applisto.appcloner;
 import android.content.Context;
 import android.util.Log;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
+/**
+ * Immutable, typed view of cloner.json.
+ *
+ * The settings are read once, from the precompiled cloner.bin when it is present and current
+ * and from the JSON otherwise (see {@link SettingsBlob}). Every setting is copied into a final
+ * field (lists and rule sets pre-parsed and unmodifiable), so accessors are plain field reads
+ * that are safe to call from hooked methods on any thread. The current snapshot is published
+ * through a volatile reference, making {@link #get(Context)} lock-free after the first call.
+ *
+ * {@link #reload(Context)} (run by {@link SettingsWatcher} when files/cloner.json changes, or via
+ * the provider's {@code reload_settings} call) builds a new snapshot, swaps it in and notifies
+ * the {@link Listener}s subscribed to the keys that changed. Each snapshot carries a
+ * {@link #version()}, so code that caches derived state can tell whether it is current.
+ */
 public final class ClonerSettings {
+    private static final String TAG = "ClonerSettings";
     private static final String ASSET_FILE   = "cloner.json";
     private static final String RUNTIME_FILE = "cloner.json"; // inside /data/data/<pkg>/files/
-    private static ClonerSettings INSTANCE;
+    private static volatile ClonerSettings INSTANCE;
+    private static final AtomicLong sVersions = new AtomicLong();
+    private static final Object RELOAD_LOCK = new Object();
+    private static final List<Subscription> sSubscriptions = new CopyOnWriteArrayList<>();
 
-    private final JSONObject cfg;
+    private final SettingsSource cfg;
     private final Context mContext;
+    private final long version;
+    private volatile JSONObject raw;
+
+    private final String androidId;
+    private final String wifiMac;
+    private final String bluetoothMac;
+    private final boolean identityNotificationsEnabled;
+    private final boolean identityNotificationsClearCache;
+    private final boolean identityNotificationsClearData;
+    private final boolean identityNotificationsRestartApp;
+    private final boolean identityNotificationsPersistent;
+    private final boolean identityNotificationsRandomizeBuildProps;
+    private final String userAgent;
+    private final boolean userAgentHookEnabled;
+    private final boolean internalBrowserEnabled;
+
+    private final boolean socksProxy;
+    private final String socksProxyHost;
+    private final int socksProxyPort;
+    private final String socksProxyUser;
+    private final String socksProxyPass;
+
+    private final String signatureSpoofSha1;
+    private final String signatureSpoofSha256;
+    private final String signatureSpoofMd5;
+
+    private final boolean accessibleDataDirInternalEnabled;
+    private final boolean accessibleDataDirExternalEnabled;
+    private final String accessibleDataDirMode;
+    private final boolean accessibleDataDirAdvancedMode;
+    private final long accessibleDataDirAdvancedInterval;
+    private final boolean bundleAppData;
+
+    private final String originalPackageName;
+    private final boolean userAgentWorkaround;
+    private final boolean userAgentWorkaroundUriSchemeWorkaround;
+    private final boolean packageNameWorkaround;
+    private final Boolean facebookWebViewLoginCookies;
+
+    private final boolean fakeCalculatorEnabled;
+    private final String fakeCalculatorPasscode;
+    private final boolean fakeCalculatorAskOnce;
+
+    private final boolean buildPropsEnabled;
+    private final boolean buildPropsHookSystemProperties;
+    private final boolean buildPropsRandomizeFingerprint;
+    private final String buildPropsDevicePreset;
+
+    private final boolean fakeCameraEnabled;
+    private final boolean fakeCameraAlternativeMode;
+    private final boolean fakeCameraAppSupport;
+    private final boolean fakeCameraCloseStreamWorkaround;
+    private final boolean fakeCameraFixOrientation;
+    private final boolean fakeCameraFlipHorizontally;
+    private final boolean fakeCameraOpenStreamWorkaround;
+    private final boolean fakeCameraRandomizeImage;
+    private final int fakeCameraRandomizeStrength;
+    private final boolean fakeCameraFloatingMenuEnabled;
+    private final boolean fakeCameraResizeImage;
+    private final String fakeCameraRotation;
+    private final boolean fakeCameraUseOriginalImageFile;
+    private final String fakeCameraImagePath;
+    private final boolean fakeCameraAddExifAttributes;
+    private final boolean fakeCameraAddSpoofedLocation;
+    private final boolean forcedBackCamera;
+    private final boolean liveVideoHookEnabled;
+
+    private final String serialNumber;
+    private final String imei;
+    private final String imsi;
+
+    private final boolean dialogBlockerEnabled;
+    private final boolean blockUpdateDialogs;
+    private final boolean blockRatingDialogs;
+    private final boolean blockAdDialogs;
+    private final boolean blockSubscriptionDialogs;
+    private final String dialogBlockKeywords;
+
+    private final List<String> skipDialogs;
+    private final List<String> skipDialogsStacktraces;
+    private final boolean monitorStacktraces;
+
+    private final boolean keepPlayingMedia;
+    private final boolean keepPlayingMediaCompatibilityMode;
+    private final String customBuildProps;
+
+    private final String mockWifiConnection;
+    private final String mockMobileConnection;
+    private final String mockEthernetConnection;
+
+    private final boolean screenshotDetectionBlockerEnabled;
+    private final boolean allowScreenshots;
+    private final boolean disableLicenseValidation;
+    private final boolean localWebConsoleEnabled;
+    private final boolean hostMonitorEnabled;
+    private final boolean headerMonitorEnabled;
+    private final boolean preferencesMonitorEnabled;
+    private final List<String> hostMonitorFilter;
+    private final boolean hideRoot;
+    private final boolean hideEmulator;
+    private final boolean disableNetworkingWithoutVpn;
+    private final boolean noBackgroundServices;
+
+    private final boolean spoofLocationEnabled;
+    private final double spoofLocationLatitude;
+    private final double spoofLocationLongitude;
+    private final double spoofLocationAltitude;
+    private final float spoofLocationAccuracy;
+    private final boolean spoofLocationRandomize;
+    private final boolean spoofLocationUseIp;
+
+    private final boolean disableBackgroundNetworking;
+    private final int disableBackgroundNetworkingDelay;
+    private final boolean disableBackgroundNetworkingSilent;
+    private final boolean changeSystemUserAgent;
+    private final String systemUserAgent;
+    private final boolean hideCpuInfo;
+    private final String customCpuInfo;
+    private final boolean hideGpuInfo;
+    private final String gpuVendor;
+    private final String gpuRenderer;
+    private final String gpuVersion;
+    private final boolean hideDnsServers;
+    private final boolean hideDnsServersCompletely;
+    private final List<String> spoofedDnsServers;
+    private final boolean hideSimOperator;
+    private final String spoofedOperatorName;
+    private final String spoofedOperatorNumeric;
+    private final String spoofedSimCountryIso;
+
+    private final List<PreferenceOverride> overrideSharedPreferences;
+    private final boolean overrideSharedPreferencesPlaceholders;
+    private final List<UrlDataFilter> urlDataFilters;
+    private final JSONObject webViewFilter;
 
     private ClonerSettings(Context c) {
+        this(c, load(c.getApplicationContext(), false));
+    }
+
+    ClonerSettings(Context c, JSONObject cfg) {
+        this(c, new SettingsSource.Json(cfg));
+    }
+
+    ClonerSettings(Context c, SettingsSource cfg) {
         mContext = c.getApplicationContext();
+        this.cfg = cfg;
+        version = sVersions.incrementAndGet();
+
+        androidId = cfg.optString("android_id", "");
+        wifiMac = cfg.optString("wifi_mac", "");
+        bluetoothMac = cfg.optString("bluetooth_mac", "");
+        identityNotificationsEnabled = cfg.optBoolean("identity_notifications", false);
+        identityNotificationsClearCache = cfg.optBoolean("identity_notifications_clear_cache", true);
+        identityNotificationsClearData = cfg.optBoolean("identity_notifications_clear_data", true);
+        identityNotificationsRestartApp = cfg.optBoolean("identity_notifications_restart_app", true);
+        identityNotificationsPersistent = cfg.optBoolean("identity_notifications_persistent", false);
+        identityNotificationsRandomizeBuildProps = cfg.optBoolean("identity_notifications_randomize_build_props", true);
+        userAgent = cfg.optString("user_agent", "");
+        userAgentHookEnabled = cfg.optBoolean("user_agent_hook_enabled", false);
+        internalBrowserEnabled = cfg.optBoolean("internal_browser_enabled", false);
+
+        socksProxy = cfg.optBoolean("socks_proxy", false);
+        socksProxyHost = cfg.optString("socks_proxy_host", "");
+        socksProxyPort = cfg.optInt("socks_proxy_port", 1080);
+        socksProxyUser = cfg.optString("socks_proxy_user", "");
+        socksProxyPass = cfg.optString("socks_proxy_pass", "");
+
+        signatureSpoofSha1 = cfg.optString("signature_spoof_sha1", null);
+        signatureSpoofSha256 = cfg.optString("signature_spoof_sha256", null);
+        signatureSpoofMd5 = cfg.optString("signature_spoof_md5", null);
+
+        accessibleDataDirInternalEnabled = cfg.optBoolean("accessible_data_dir_internal", true);
+        accessibleDataDirExternalEnabled = cfg.optBoolean("accessible_data_dir_external", true);
+        accessibleDataDirMode = cfg.optString("accessible_data_dir_mode", "READ_ONLY");
+        accessibleDataDirAdvancedMode = cfg.optBoolean("accessible_data_dir_advanced_mode", false);
+        accessibleDataDirAdvancedInterval = cfg.optLong("accessible_data_dir_advanced_interval", 60L);
+        bundleAppData = cfg.optBoolean("bundle_app_data", false);
+
+        originalPackageName = cfg.optString("original_package_name", null);
+        userAgentWorkaround = cfg.optBoolean("userAgentWorkaround", false);
+        userAgentWorkaroundUriSchemeWorkaround = cfg.optBoolean("userAgentWorkaroundUriSchemeWorkaround", false);
+        packageNameWorkaround = cfg.optBoolean("package_name_workaround", false);
+        facebookWebViewLoginCookies = cfg.has("facebook_webview_login_cookies")
+                ? cfg.optBoolean("facebook_webview_login_cookies", false) : null;
+
+        fakeCalculatorEnabled = cfg.optBoolean("fake_calculator_enabled", false);
+        fakeCalculatorPasscode = cfg.optString("fake_calculator_passcode", "1234");
+        fakeCalculatorAskOnce = cfg.optBoolean("fake_calculator_ask_once", false);
+
+        buildPropsEnabled = cfg.optBoolean("build_props_enabled", true);
+        buildPropsHookSystemProperties = cfg.optBoolean("build_props_hook_system_properties", true);
+        buildPropsRandomizeFingerprint = cfg.optBoolean("build_props_randomize_fingerprint", false);
+        buildPropsDevicePreset = cfg.optString("build_props_device_preset", null);
+
+        fakeCameraEnabled = cfg.optBoolean("FakeCamera", false);
+        fakeCameraAlternativeMode = cfg.optBoolean("FakeCameraAlternativeMode", false)
+                || cfg.optBoolean("AlternativeMode", false); // Legacy support
+        fakeCameraAppSupport = cfg.optBoolean("FakeCameraAppSupport", false);
+        fakeCameraCloseStreamWorkaround = cfg.optBoolean("FakeCameraCloseStreamWorkaround", false);
+        fakeCameraFixOrientation = cfg.optBoolean("FakeCameraFixOrientation", false);
+        fakeCameraFlipHorizontally = cfg.optBoolean("FlipHorizontally", false);
+        fakeCameraOpenStreamWorkaround = cfg.optBoolean("FakeCameraOpenStreamWorkaround", false)
+                || cfg.optBoolean("OpenStreamWorkaround", false); // Legacy support
+        fakeCameraRandomizeImage = cfg.optBoolean("RandomizeImage", false);
+        fakeCameraRandomizeStrength = cfg.optInt("RandomizeStrength", 25);
+        fakeCameraFloatingMenuEnabled = cfg.optBoolean("FakeCameraFloatingMenu", false);
+        fakeCameraResizeImage = cfg.optBoolean("ResizeImage", false);
+        fakeCameraRotation = cfg.optString("FakeCameraRotation", "NO_CHANGE");
+        fakeCameraUseOriginalImageFile = cfg.optBoolean("FakeCameraUseOriginalImageFile", false);
+        fakeCameraImagePath = cfg.optString("FakeCameraImagePath", "fake_camera.jpg");
+        fakeCameraAddExifAttributes = cfg.optBoolean("AddExifAttributes", true);
+        fakeCameraAddSpoofedLocation = cfg.optBoolean("AddSpoofedLocation", false);
+        forcedBackCamera = cfg.optBoolean("ForcedBackCamera", false);
+        liveVideoHookEnabled = cfg.optBoolean("live_video_hook_enabled", false);
+
+        serialNumber = cfg.optString("serial_number", "");
+        imei = cfg.optString("imei", "");
+        imsi = cfg.optString("imsi", "");
+
+        dialogBlockerEnabled = cfg.optBoolean("dialog_blocker_enabled", false);
+        blockUpdateDialogs = cfg.optBoolean("block_update_dialogs", true);
+        blockRatingDialogs = cfg.optBoolean("block_rating_dialogs", true);
+        blockAdDialogs = cfg.optBoolean("block_ad_dialogs", true);
+        blockSubscriptionDialogs = cfg.optBoolean("block_subscription_dialogs", false);
+        dialogBlockKeywords = cfg.optString("dialog_block_keywords", "");
+
+        skipDialogs = stringList(cfg, "skip_dialogs");
+        skipDialogsStacktraces = stringList(cfg, "skip_dialogs_stacktraces");
+        monitorStacktraces = cfg.optBoolean("monitor_stacktraces", false);
+
+        keepPlayingMedia = cfg.optBoolean("keep_playing_media", false);
+        keepPlayingMediaCompatibilityMode = cfg.optBoolean("keep_playing_media_compatibility_mode", true);
+        customBuildProps = cfg.optString("custom_build_props", "");
+
+        mockWifiConnection = cfg.optString("mock_wifi_connection", null);
+        mockMobileConnection = cfg.optString("mock_mobile_connection", null);
+        mockEthernetConnection = cfg.optString("mock_ethernet_connection", null);
+
+        screenshotDetectionBlockerEnabled = cfg.optBoolean("screenshot_detection_blocker", false);
+        allowScreenshots = cfg.optBoolean("AllowScreenshots", false);
+        disableLicenseValidation = cfg.optBoolean("disable_license_validation", false);
+        localWebConsoleEnabled = cfg.optBoolean("local_web_console_enabled", true);
+        hostMonitorEnabled = cfg.optBoolean("host_monitor_enabled", false);
+        headerMonitorEnabled = cfg.optBoolean("header_monitor_enabled", false);
+        preferencesMonitorEnabled = cfg.optBoolean("preferences_monitor_enabled", false);
+        hostMonitorFilter = stringList(cfg, "host_monitor_filter");
+        hideRoot = cfg.optBoolean("hide_root", false);
+        hideEmulator = cfg.optBoolean("hide_emulator", false);
+        disableNetworkingWithoutVpn = cfg.optBoolean("DisableNetworkingWithoutVpn", false);
+        noBackgroundServices = cfg.optBoolean("NoBackgroundServices", false);
+
+        spoofLocationEnabled = cfg.optBoolean("SpoofLocation", false);
+        spoofLocationLatitude = cfg.optDouble("SpoofLocationLatitude", 0.0);
+        spoofLocationLongitude = cfg.optDouble("SpoofLocationLongitude", 0.0);
+        spoofLocationAltitude = cfg.optDouble("SpoofLocationAltitude", 10.0);
+        spoofLocationAccuracy = (float) cfg.optDouble("SpoofLocationAccuracy", 5.0);
+        spoofLocationRandomize = cfg.optBoolean("SpoofLocationRandomize", false);
+        spoofLocationUseIp = cfg.optBoolean("SpoofLocationUseIp", false);
+
+        disableBackgroundNetworking = cfg.optBoolean("disable_background_networking", false);
+        disableBackgroundNetworkingDelay = cfg.optInt("disable_background_networking_delay", 0);
+        disableBackgroundNetworkingSilent = cfg.optBoolean("disable_background_networking_silent", false);
+        changeSystemUserAgent = cfg.optBoolean("change_system_user_agent", false);
+        systemUserAgent = cfg.optString("system_user_agent", "");
+        hideCpuInfo = cfg.optBoolean("hide_cpu_info", false);
+        customCpuInfo = cfg.optString("custom_cpu_info", "");
+        hideGpuInfo = cfg.optBoolean("hide_gpu_info", false);
+        gpuVendor = cfg.optString("gpu_vendor", "ARM");
+        gpuRenderer = cfg.optString("gpu_renderer", "Mali-G78");
+        gpuVersion = cfg.optString("gpu_version", "OpenGL ES 3.2 v1.r32p1");
+        hideDnsServers = cfg.optBoolean("hide_dns_servers", false);
+        hideDnsServersCompletely = cfg.optBoolean("hide_dns_servers_completely", true);
+        spoofedDnsServers = stringList(cfg, "spoofed_dns_servers");
+        hideSimOperator = cfg.optBoolean("hide_sim_operator", false);
+        spoofedOperatorName = cfg.optString("spoofed_operator_name", "");
+        spoofedOperatorNumeric = cfg.optString("spoofed_operator_numeric", "");
+        spoofedSimCountryIso = cfg.optString("spoofed_sim_country_iso", "");
+
+        overrideSharedPreferences = PreferenceOverride.parseAll(cfg.optJSONArray("override_shared_preferences"));
+        overrideSharedPreferencesPlaceholders = cfg.optBoolean("override_shared_preferences_placeholders", false);
+        urlDataFilters = UrlDataFilter.parseAll(cfg.optJSONArray("url_data_filters"));
+        webViewFilter = cfg.optJSONObject("webview_filter");
+    }
+
+    /**
+     * Reads the packaged settings, preferring the precompiled cloner.bin when it matches the
+     * asset cloner.json, and layers the runtime override file on top. With {@code strict} an
+     * unreadable override is an error instead of being skipped, so a half-written file cannot
+     * replace a good snapshot during a reload.
+     */
+    private static SettingsSource load(Context ctx, boolean strict) {
         try {
-            JSONObject tmpCfg = new JSONObject();
+            SettingsSource base;
 
             // 1) Load from assets (base config)
-            try (InputStream in = mContext.getAssets().open(ASSET_FILE)) {
-                byte[] buf = new byte[in.available()];
-                int read = in.read(buf);
-                if (read > 0) {
-                    tmpCfg = new JSONObject(new String(buf, 0, read));
+            byte[] json = readAsset(ctx, ASSET_FILE);
+            if (json == null) {
+                Log.w(TAG, "cloner.json not found in assets; using defaults");
+                base = new SettingsSource.Json(new JSONObject());
+            } else {
+                base = SettingsBlob.open(ctx, json);
+                if (base != null) {
+                    Log.i(TAG, "Loaded asset settings blob");
+                } else {
+                    base = new SettingsSource.Json(new JSONObject(new String(json, StandardCharsets.UTF_8)));
+                    Log.i(TAG, "Loaded asset JSON");
                 }
-                Log.i("ClonerSettings", "Loaded asset JSON");
-            } catch (FileNotFoundException e) {
-                Log.w("ClonerSettings", "cloner.json not found in assets; using defaults");
             }
 
             // 2) Merge runtime override (for identity regeneration or root/adb push)
-            File runtime = new File(mContext.getFilesDir(), RUNTIME_FILE);
+            File runtime = new File(ctx.getFilesDir(), RUNTIME_FILE);
             if (runtime.exists()) {
-                try (InputStream in = mContext.openFileInput(RUNTIME_FILE)) {
-                    byte[] buf = new byte[(int) runtime.length()];
-                    int read = in.read(buf);
-                    if (read > 0) {
-                        JSONObject runtimeCfg = new JSONObject(new String(buf, 0, read));
-                        // Merge keys from runtime config into base config
-                        java.util.Iterator<String> keys = runtimeCfg.keys();
-                        while (keys.hasNext()) {
-                            String key = keys.next();
-                            tmpCfg.put(key, runtimeCfg.opt(key));
-                        }
-                        Log.i("ClonerSettings", "Merged runtime JSON overrides");
+                try (InputStream in = ctx.openFileInput(RUNTIME_FILE)) {
+                    byte[] buf = readFully(in);
+                    if (buf.length > 0) {
+                        JSONObject runtimeCfg = new JSONObject(new String(buf, StandardCharsets.UTF_8));
+                        base = new SettingsSource.Overlay(runtimeCfg, base);
+                        Log.i(TAG, "Merged runtime JSON overrides");
                     }
                 } catch (Exception e) {
-                    Log.w("ClonerSettings", "Failed to load/merge runtime JSON", e);
+                    if (strict) throw e;
+                    Log.w(TAG, "Failed to load/merge runtime JSON", e);
                 }
             }
 
-            cfg = tmpCfg;
+            return base;
         } catch (Exception e) {
             throw new RuntimeException("Cannot load config", e);
         }
     }
 
-    public static synchronized ClonerSettings get(Context c) {
-        if (INSTANCE == null) {
-            INSTANCE = new ClonerSettings(c);
+    private static byte[] readAsset(Context ctx, String name) throws IOException {
+        try (InputStream in = ctx.getAssets().open(name)) {
+            return readFully(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) > 0) out.write(chunk, 0, n);
+        return out.toByteArray();
+    }
+
+    public static ClonerSettings get(Context c) {
+        ClonerSettings s = INSTANCE;
+        if (s != null) return s;
+        synchronized (ClonerSettings.class) {
+            if (INSTANCE == null) {
+                long start = StartupTrace.now();
+                INSTANCE = new ClonerSettings(c);
+                StartupTrace.record(StartupTrace.CAT_SETTINGS, "ClonerSettings.<init>", start);
+            }
+            return INSTANCE;
+        }
+    }
+
+    /**
+     * Re-reads the settings and, if any key changed, publishes the new snapshot and notifies the
+     * listeners subscribed to those keys on the calling thread. Reloads are serialised, so
+     * listeners see snapshots in order; they must not call reload themselves.
+     *
+     * @return the changed keys; empty if nothing changed or the settings could not be read, in
+     *         which case the current snapshot stays in place
+     */
+    public static Set<String> reload(Context c) {
+        synchronized (RELOAD_LOCK) {
+            ClonerSettings old = INSTANCE;
+            if (old == null) {
+                get(c);
+                return Collections.emptySet();
+            }
+            long start = StartupTrace.now();
+            ClonerSettings fresh;
+            try {
+                fresh = new ClonerSettings(c, load(c.getApplicationContext(), true));
+            } catch (Throwable t) {
+                Log.w(TAG, "Reload failed; keeping settings v" + old.version, t);
+                return Collections.emptySet();
+            }
+            Set<String> changed = changedKeys(old.raw(), fresh.raw());
+            if (changed.isEmpty()) return changed;
+            synchronized (ClonerSettings.class) {
+                INSTANCE = fresh;
+            }
+            Log.i(TAG, "Settings v" + fresh.version + " loaded in "
+                    + (System.nanoTime() - start) / 1000 + " us; changed " + changed);
+
+            for (Subscription sub : sSubscriptions) {
+                if (!sub.matches(changed)) continue;
+                try {
+                    sub.listener.onSettingsChanged(fresh, changed);
+                } catch (Throwable t) {
+                    Log.w(TAG, "Settings listener failed: " + sub.listener, t);
+                }
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Calls {@code listener} after every reload that changes one of {@code keys}, or any key if
+     * none are given. The listener is not called for the current snapshot.
+     */
+    public static void subscribe(Listener listener, String... keys) {
+        sSubscriptions.add(new Subscription(listener, keys));
+    }
+
+    public static void unsubscribe(Listener listener) {
+        for (Subscription sub : sSubscriptions) {
+            if (sub.listener == listener) sSubscriptions.remove(sub);
+        }
+    }
+
+    private static Set<String> changedKeys(JSONObject before, JSONObject after) {
+        Set<String> changed = new TreeSet<>();
+        Iterator<String> it = before.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (!after.has(key) || !String.valueOf(before.opt(key)).equals(String.valueOf(after.opt(key)))) {
+                changed.add(key);
+            }
+        }
+        it = after.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (!before.has(key)) changed.add(key);
+        }
+        return Collections.unmodifiableSet(changed);
+    }
+
+    /** Receives the new snapshot after a reload changed keys it subscribed to. */
+    public interface Listener {
+        void onSettingsChanged(ClonerSettings settings, Set<String> changedKeys);
+    }
+
+    private static final class Subscription {
+        final Listener listener;
+        final String[] keys;
+
+        Subscription(Listener listener, String[] keys) {
+            this.listener = listener;
+            this.keys = keys;
+        }
+
+        boolean matches(Set<String> changed) {
+            if (keys.length == 0) return true;
+            for (String key : keys) {
+                if (changed.contains(key)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static List<String> stringList(SettingsSource cfg, String key) {
+        // Usually a JSON array in cloner.json
+        JSONArray arr = cfg.optJSONArray(key);
+        if (arr == null || arr.length() == 0) return Collections.emptyList();
+        List<String> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) {
+            list.add(arr.optString(i));
         }
-        return INSTANCE;
+        return Collections.unmodifiableList(list);
     }
 
     /* existing helpers */
-    public String androidId()        { return cfg.optString("android_id"); }
-    public String wifiMac()          { return cfg.optString("wifi_mac");   }
-    public String bluetoothMac()     { return cfg.optString("bluetooth_mac"); }
+    public String androidId()        { return androidId; }
+    public String wifiMac()          { return wifiMac;   }
+    public String bluetoothMac()     { return bluetoothMac; }
     public boolean identityNotificationsEnabled() {
-        return cfg.optBoolean("identity_notifications", false);
+        return identityNotificationsEnabled;
     }
     public boolean identityNotificationsClearCache() {
-        return cfg.optBoolean("identity_notifications_clear_cache", true);
+        return identityNotificationsClearCache;
     }
     public boolean identityNotificationsClearData() {
-        return cfg.optBoolean("identity_notifications_clear_data", true);
+        return identityNotificationsClearData;
     }
     public boolean identityNotificationsRestartApp() {
-        return cfg.optBoolean("identity_notifications_restart_app", true);
+        return identityNotificationsRestartApp;
     }
     // Persistent notification (cannot be dismissed, always visible)
     public boolean identityNotificationsPersistent() {
-        return cfg.optBoolean("identity_notifications_persistent", false);
+        return identityNotificationsPersistent;
     }
     // Randomize build props when regenerating identity
     public boolean identityNotificationsRandomizeBuildProps() {
-        return cfg.optBoolean("identity_notifications_randomize_build_props", true);
+        return identityNotificationsRandomizeBuildProps;
     }
-    public String userAgent()        { return cfg.optString("user_agent"); }
-    public boolean userAgentHookEnabled() { return cfg.optBoolean("user_agent_hook_enabled", false); }
-    public boolean internalBrowserEnabled() { return cfg.optBoolean("internal_browser_enabled", false); }
-    public JSONObject raw()          { return cfg; }
+    public String userAgent()        { return userAgent; }
+    public boolean userAgentHookEnabled() { return userAgentHookEnabled; }
+    public boolean internalBrowserEnabled() { return internalBrowserEnabled; }
 
-    public boolean socksProxy()      { return cfg.optBoolean("socks_proxy", false); }
-    public String socksProxyHost()   { return cfg.optString("socks_proxy_host"); }
-    public int    socksProxyPort()   { return cfg.optInt("socks_proxy_port", 1080); }
-    public String socksProxyUser()   { return cfg.optString("socks_proxy_user"); }
-    public String socksProxyPass()   { return cfg.optString("socks_proxy_pass"); }
+    /** Increases with every snapshot built in this process. */
+    public long version()            { return version; }
+
+    /**
+     * The merged cloner.json this snapshot was built from. Escape hatch for keys that have no
+     * typed accessor yet; treat it as read-only and prefer the accessors on hot paths. When the
+     * settings came from cloner.bin the object is built on first use.
+     */
+    public JSONObject raw() {
+        JSONObject r = raw;
+        if (r == null) {
+            synchronized (this) {
+                if ((r = raw) == null) raw = r = cfg.toJSONObject();
+            }
+        }
+        return r;
+    }
+
+    public boolean socksProxy()      { return socksProxy; }
+    public String socksProxyHost()   { return socksProxyHost; }
+    public int    socksProxyPort()   { return socksProxyPort; }
+    public String socksProxyUser()   { return socksProxyUser; }
+    public String socksProxyPass()   { return socksProxyPass; }
 
     // FaceTec / Signature Spoofing Settings
     public String signatureSpoofSha1() {
-        return cfg.optString("signature_spoof_sha1", null);
+        return signatureSpoofSha1;
     }
     public String signatureSpoofSha256() {
-        return cfg.optString("signature_spoof_sha256", null);
+        return signatureSpoofSha256;
     }
     public String signatureSpoofMd5() {
-        return cfg.optString("signature_spoof_md5", null);
+        return signatureSpoofMd5;
     }
 
     /* NEW: settings for AccessibleDataDirHook
@@ -122,282 +586,266 @@ public final class ClonerSettings {
 
     // Enable making the internal data directory accessible (default: true)
     public boolean accessibleDataDirInternalEnabled() {
-        return cfg.optBoolean("accessible_data_dir_internal", true);
+        return accessibleDataDirInternalEnabled;
     }
 
     // Enable making the external data directory accessible (default: true)
     public boolean accessibleDataDirExternalEnabled() {
-        return cfg.optBoolean("accessible_data_dir_external", true);
+        return accessibleDataDirExternalEnabled;
     }
 
     // Access mode: "READ_ONLY" or "READ_WRITE" (default: "READ_ONLY")
     public String accessibleDataDirMode() {
-        return cfg.optString("accessible_data_dir_mode", "READ_ONLY");
+        return accessibleDataDirMode;
     }
 
     // Periodic re-apply enabled? (default: false)
     public boolean accessibleDataDirAdvancedMode() {
-        return cfg.optBoolean("accessible_data_dir_advanced_mode", false);
+        return accessibleDataDirAdvancedMode;
     }
 
     // Interval in seconds for advanced mode (default: 60)
     public long accessibleDataDirAdvancedInterval() {
-        return cfg.optLong("accessible_data_dir_advanced_interval", 60L);
+        return accessibleDataDirAdvancedInterval;
     }
 
     // Enable restoring bundled app data from assets on startup (default: false)
     public boolean bundleAppData() {
-        return cfg.optBoolean("bundle_app_data", false);
+        return bundleAppData;
     }
 
     // Original package name of the app being cloned
     public String originalPackageName() {
-        return cfg.optString("original_package_name", null);
+        return originalPackageName;
     }
 
     // Enable User-Agent workaround (restoring original package name)
     public boolean userAgentWorkaround() {
-        return cfg.optBoolean("userAgentWorkaround", false);
+        return userAgentWorkaround;
     }
 
     // Enable URI scheme workaround in User-Agent workaround
     public boolean userAgentWorkaroundUriSchemeWorkaround() {
-        return cfg.optBoolean("userAgentWorkaroundUriSchemeWorkaround", false);
+        return userAgentWorkaroundUriSchemeWorkaround;
     }
 
     // Enable Package Name workaround
     public boolean packageNameWorkaround() {
-        return cfg.optBoolean("package_name_workaround", false);
+        return packageNameWorkaround;
     }
 
     // Facebook WebView Login Cookies
     public Boolean facebookWebViewLoginCookies() {
-        if (cfg.has("facebook_webview_login_cookies")) {
-            return cfg.optBoolean("facebook_webview_login_cookies");
-        }
-        return null;
+        return facebookWebViewLoginCookies;
     }
 
     /* Fake Calculator Settings */
-    
+
     // Enable fake calculator entrance (default: false)
     public boolean fakeCalculatorEnabled() {
-        return cfg.optBoolean("fake_calculator_enabled", false);
+        return fakeCalculatorEnabled;
     }
-    
+
     // Passcode to access the real app (default: "1234")
     public String fakeCalculatorPasscode() {
-        return cfg.optString("fake_calculator_passcode", "1234");
+        return fakeCalculatorPasscode;
     }
 
     // Ask once for passcode (default: false)
     public boolean fakeCalculatorAskOnce() {
-        return cfg.optBoolean("fake_calculator_ask_once", false);
+        return fakeCalculatorAskOnce;
     }
-    
+
     /* Build Props Hook Settings */
-    
+
     // Enable build props override (default: true)
     public boolean buildPropsEnabled() {
-        return cfg.optBoolean("build_props_enabled", true);
+        return buildPropsEnabled;
     }
-    
+
     // Hook SystemProperties.get() for complete spoofing (default: true)
     public boolean buildPropsHookSystemProperties() {
-        return cfg.optBoolean("build_props_hook_system_properties", true);
+        return buildPropsHookSystemProperties;
     }
-    
+
     // Randomize fingerprint on each launch (default: false)
     public boolean buildPropsRandomizeFingerprint() {
-        return cfg.optBoolean("build_props_randomize_fingerprint", false);
+        return buildPropsRandomizeFingerprint;
     }
-    
+
     // Device preset to use (e.g., "samsung_s24_ultra", "pixel_8_pro")
     public String buildPropsDevicePreset() {
-        return cfg.optString("build_props_device_preset", null);
+        return buildPropsDevicePreset;
     }
-    
+
     /* Fake Camera Settings - organized to match screenshot categories */
-    
+
     // Enable fake camera (default: false)
     public boolean fakeCameraEnabled() {
-        return cfg.optBoolean("FakeCamera", false);
+        return fakeCameraEnabled;
     }
-    
+
     // Alternative Mode (default: false)
     public boolean fakeCameraAlternativeMode() {
-        return cfg.optBoolean("FakeCameraAlternativeMode", false) ||
-               cfg.optBoolean("AlternativeMode", false); // Legacy support
+        return fakeCameraAlternativeMode;
     }
-    
+
     // App Support - hooks for camera-using apps (default: false)
     public boolean fakeCameraAppSupport() {
-        return cfg.optBoolean("FakeCameraAppSupport", false);
+        return fakeCameraAppSupport;
     }
-    
+
     // Close Stream Workaround (default: false)
     public boolean fakeCameraCloseStreamWorkaround() {
-        return cfg.optBoolean("FakeCameraCloseStreamWorkaround", false);
+        return fakeCameraCloseStreamWorkaround;
     }
-    
+
     // Fix Orientation (default: false)
     public boolean fakeCameraFixOrientation() {
-        return cfg.optBoolean("FakeCameraFixOrientation", false);
+        return fakeCameraFixOrientation;
     }
-    
+
     // Flip Horizontally (default: false)
     public boolean fakeCameraFlipHorizontally() {
-        return cfg.optBoolean("FlipHorizontally", false);
+        return fakeCameraFlipHorizontally;
     }
-    
+
     // Open Stream Workaround (default: false)
     public boolean fakeCameraOpenStreamWorkaround() {
-        return cfg.optBoolean("FakeCameraOpenStreamWorkaround", false) ||
-               cfg.optBoolean("OpenStreamWorkaround", false); // Legacy support
+        return fakeCameraOpenStreamWorkaround;
     }
-    
+
     // Randomize the fake image slightly (default: false)
     public boolean fakeCameraRandomizeImage() {
-        return cfg.optBoolean("RandomizeImage", false);
+        return fakeCameraRandomizeImage;
     }
-    
+
     // Randomization strength (default: 25)
     public int fakeCameraRandomizeStrength() {
-        return cfg.optInt("RandomizeStrength", 25);
+        return fakeCameraRandomizeStrength;
     }
-    
+
     // Enable floating menu overlay (default: false)
     public boolean fakeCameraFloatingMenuEnabled() {
-        return cfg.optBoolean("FakeCameraFloatingMenu", false);
+        return fakeCameraFloatingMenuEnabled;
     }
 
     // Resize Picture (default: false)
     public boolean fakeCameraResizeImage() {
-        return cfg.optBoolean("ResizeImage", false);
+        return fakeCameraResizeImage;
     }
-    
+
     // Rotation setting (default: "NO_CHANGE")
     public String fakeCameraRotation() {
-        return cfg.optString("FakeCameraRotation", "NO_CHANGE");
+        return fakeCameraRotation;
     }
-    
+
     // Use Original Image File (default: false)
     public boolean fakeCameraUseOriginalImageFile() {
-        return cfg.optBoolean("FakeCameraUseOriginalImageFile", false);
+        return fakeCameraUseOriginalImageFile;
     }
-    
+
     // Legacy settings for backward compatibility
-    
+
     // Fake camera image path (default: "FakeCameraImagePath", "fake_camera.jpg")
     public String fakeCameraImagePath() {
-        return cfg.optString("FakeCameraImagePath", "fake_camera.jpg");
+        return fakeCameraImagePath;
     }
-    
+
     // Add EXIF attributes to fake photos (default: true)
     public boolean fakeCameraAddExifAttributes() {
-        return cfg.optBoolean("AddExifAttributes", true);
+        return fakeCameraAddExifAttributes;
     }
-    
+
     // Add spoofed location to EXIF (default: false)
     public boolean fakeCameraAddSpoofedLocation() {
-        return cfg.optBoolean("AddSpoofedLocation", false);
+        return fakeCameraAddSpoofedLocation;
+    }
+
+    // Report the back camera for front camera requests (default: false)
+    public boolean forcedBackCamera() {
+        return forcedBackCamera;
     }
 
     /* Live Video Hook Settings */
     public boolean liveVideoHookEnabled() {
-        return cfg.optBoolean("live_video_hook_enabled", false);
+        return liveVideoHookEnabled;
     }
 
     /* Device Identity Spoofing Settings */
-    
+
     // Serial number spoofing (empty means keep original)
     public String serialNumber() {
-        return cfg.optString("serial_number", "");
+        return serialNumber;
     }
-    
+
     // IMEI spoofing (empty means keep original)
     public String imei() {
-        return cfg.optString("imei", "");
+        return imei;
     }
-    
+
     // IMSI spoofing (empty means keep original)
     public String imsi() {
-        return cfg.optString("imsi", "");
+        return imsi;
     }
 
     /* Dialog Blocker Settings */
-    
+
     // Enable dialog blocking (default: false)
     public boolean dialogBlockerEnabled() {
-        return cfg.optBoolean("dialog_blocker_enabled", false);
+        return dialogBlockerEnabled;
     }
-    
+
     // Block update dialogs (default: true when blocker enabled)
     public boolean blockUpdateDialogs() {
-        return cfg.optBoolean("block_update_dialogs", true);
+        return blockUpdateDialogs;
     }
-    
+
     // Block rating dialogs (default: true when blocker enabled)
     public boolean blockRatingDialogs() {
-        return cfg.optBoolean("block_rating_dialogs", true);
+        return blockRatingDialogs;
     }
-    
+
     // Block ad dialogs (default: true when blocker enabled)
     public boolean blockAdDialogs() {
-        return cfg.optBoolean("block_ad_dialogs", true);
+        return blockAdDialogs;
     }
-    
+
     // Block subscription/premium dialogs (default: false)
     public boolean blockSubscriptionDialogs() {
-        return cfg.optBoolean("block_subscription_dialogs", false);
+        return blockSubscriptionDialogs;
     }
-    
+
     // Custom keywords to block (comma-separated)
     public String dialogBlockKeywords() {
-        return cfg.optString("dialog_block_keywords", "");
+        return dialogBlockKeywords;
     }
 
-    /* Skip Dialogs Settings */
-    public java.util.List<String> skipDialogs() {
-        java.util.List<String> list = new java.util.ArrayList<>();
-        // Can be a string array or comma separated string?
-        // Usually JSON array in cloner.json
-        org.json.JSONArray arr = cfg.optJSONArray("skip_dialogs");
-        if (arr != null) {
-            for (int i = 0; i < arr.length(); i++) {
-                list.add(arr.optString(i));
-            }
-        }
-        return list;
+    /* Skip Dialogs Settings (unmodifiable) */
+    public List<String> skipDialogs() {
+        return skipDialogs;
     }
 
-    public java.util.List<String> skipDialogsStacktraces() {
-        java.util.List<String> list = new java.util.ArrayList<>();
-        org.json.JSONArray arr = cfg.optJSONArray("skip_dialogs_stacktraces");
-        if (arr != null) {
-            for (int i = 0; i < arr.length(); i++) {
-                list.add(arr.optString(i));
-            }
-        }
-        return list;
+    public List<String> skipDialogsStacktraces() {
+        return skipDialogsStacktraces;
     }
 
     public boolean monitorStacktraces() {
-        return cfg.optBoolean("monitor_stacktraces", false);
+        return monitorStacktraces;
     }
 
     /* Keep Playing Media */
     public boolean keepPlayingMedia() {
-        return cfg.optBoolean("keep_playing_media", false);
+        return keepPlayingMedia;
     }
 
     public boolean keepPlayingMediaCompatibilityMode() {
-        return cfg.optBoolean("keep_playing_media_compatibility_mode", true);
+        return keepPlayingMediaCompatibilityMode;
     }
 
     /* Custom Build Props File */
     public String customBuildPropsString() {
-        String val = cfg.optString("custom_build_props", "");
+        String val = customBuildProps;
         if (val.isEmpty()) {
             try (InputStream in = mContext.getAssets().open("custom_build_props")) {
                 byte[] buf = new byte[in.available()];
@@ -413,199 +861,293 @@ public final class ClonerSettings {
     }
 
     /* Mock Network Connection */
-    public String mockWifiConnection() { return cfg.optString("mock_wifi_connection", null); }
-    public String mockMobileConnection() { return cfg.optString("mock_mobile_connection", null); }
-    public String mockEthernetConnection() { return cfg.optString("mock_ethernet_connection", null); }
-    
+    public String mockWifiConnection() { return mockWifiConnection; }
+    public String mockMobileConnection() { return mockMobileConnection; }
+    public String mockEthernetConnection() { return mockEthernetConnection; }
+
     /* Internal Browser Settings */
-    
+
     // Internal Browser settings are accessed via the helper method defined above
 
     /* Screenshot Detection Blocker Settings */
-    
+
     // Enable screenshot detection blocking (default: false)
     public boolean screenshotDetectionBlockerEnabled() {
-        return cfg.optBoolean("screenshot_detection_blocker", false);
+        return screenshotDetectionBlockerEnabled;
+    }
+
+    // Strip FLAG_SECURE so screenshots are allowed (default: false)
+    public boolean allowScreenshots() {
+        return allowScreenshots;
     }
 
     /* Disable License Validation */
     public boolean disableLicenseValidation() {
-        return cfg.optBoolean("disable_license_validation", false);
+        return disableLicenseValidation;
     }
 
     /* Local Web Console (default: true) */
     public boolean localWebConsoleEnabled() {
-        return cfg.optBoolean("local_web_console_enabled", true);
+        return localWebConsoleEnabled;
     }
 
     /* Host Monitor (default: false) */
     public boolean hostMonitorEnabled() {
-        return cfg.optBoolean("host_monitor_enabled", false);
+        return hostMonitorEnabled;
     }
 
     /* Header Monitor (default: false) */
     public boolean headerMonitorEnabled() {
-        return cfg.optBoolean("header_monitor_enabled", false);
+        return headerMonitorEnabled;
     }
 
     /* Preferences Monitor (default: false) */
     public boolean preferencesMonitorEnabled() {
-        return cfg.optBoolean("preferences_monitor_enabled", false);
+        return preferencesMonitorEnabled;
     }
 
-    public java.util.List<String> hostMonitorFilter() {
-        java.util.List<String> list = new java.util.ArrayList<>();
-        org.json.JSONArray arr = cfg.optJSONArray("host_monitor_filter");
-        if (arr != null) {
-            for (int i = 0; i < arr.length(); i++) {
-                list.add(arr.optString(i));
-            }
-        }
-        return list;
+    public List<String> hostMonitorFilter() {
+        return hostMonitorFilter;
     }
 
     /* Hide Root */
     public boolean hideRoot() {
-        return cfg.optBoolean("hide_root", false);
+        return hideRoot;
     }
 
     /* Hide Emulator */
     public boolean hideEmulator() {
-        return cfg.optBoolean("hide_emulator", false);
+        return hideEmulator;
     }
 
     /* Disable Networking Without VPN */
     public boolean disableNetworkingWithoutVpn() {
-        return cfg.optBoolean("DisableNetworkingWithoutVpn", false);
+        return disableNetworkingWithoutVpn;
     }
 
     /* No Background Services */
     public boolean noBackgroundServices() {
-        return cfg.optBoolean("NoBackgroundServices", false);
+        return noBackgroundServices;
     }
 
     /* Location Spoofing Settings */
-    
+
     // Enable location spoofing (default: false)
     public boolean spoofLocationEnabled() {
-        return cfg.optBoolean("SpoofLocation", false);
+        return spoofLocationEnabled;
     }
-    
+
     // Spoofed latitude
     public double spoofLocationLatitude() {
-        return cfg.optDouble("SpoofLocationLatitude", 0.0);
+        return spoofLocationLatitude;
     }
-    
+
     // Spoofed longitude
     public double spoofLocationLongitude() {
-        return cfg.optDouble("SpoofLocationLongitude", 0.0);
+        return spoofLocationLongitude;
     }
-    
+
     // Spoofed altitude
     public double spoofLocationAltitude() {
-        return cfg.optDouble("SpoofLocationAltitude", 10.0);
+        return spoofLocationAltitude;
     }
-    
+
     // Location accuracy
     public float spoofLocationAccuracy() {
-        return (float) cfg.optDouble("SpoofLocationAccuracy", 5.0);
+        return spoofLocationAccuracy;
     }
-    
+
     // Randomize location
     public boolean spoofLocationRandomize() {
-        return cfg.optBoolean("SpoofLocationRandomize", false);
+        return spoofLocationRandomize;
     }
-    
+
     // Use IP-based location
     public boolean spoofLocationUseIp() {
-        return cfg.optBoolean("SpoofLocationUseIp", false);
+        return spoofLocationUseIp;
     }
 
     /* Disable Background Networking Settings */
     public boolean disableBackgroundNetworking() {
-        return cfg.optBoolean("disable_background_networking", false);
+        return disableBackgroundNetworking;
     }
-    
+
     public int disableBackgroundNetworkingDelay() {
-        return cfg.optInt("disable_background_networking_delay", 0);
+        return disableBackgroundNetworkingDelay;
     }
-    
+
     public boolean disableBackgroundNetworkingSilent() {
-        return cfg.optBoolean("disable_background_networking_silent", false);
+        return disableBackgroundNetworkingSilent;
     }
 
     /* System User Agent Settings */
     public boolean changeSystemUserAgent() {
-        return cfg.optBoolean("change_system_user_agent", false);
+        return changeSystemUserAgent;
     }
-    
+
     public String systemUserAgent() {
-        return cfg.optString("system_user_agent", "");
+        return systemUserAgent;
     }
 
     /* Hide CPU Info Settings */
     public boolean hideCpuInfo() {
-        return cfg.optBoolean("hide_cpu_info", false);
+        return hideCpuInfo;
     }
-    
+
     public String customCpuInfo() {
-        return cfg.optString("custom_cpu_info", "");
+        return customCpuInfo;
     }
 
     /* Hide GPU Info Settings */
     public boolean hideGpuInfo() {
-        return cfg.optBoolean("hide_gpu_info", false);
+        return hideGpuInfo;
     }
-    
+
     public String gpuVendor() {
-        return cfg.optString("gpu_vendor", "ARM");
+        return gpuVendor;
     }
-    
+
     public String gpuRenderer() {
-        return cfg.optString("gpu_renderer", "Mali-G78");
+        return gpuRenderer;
     }
-    
+
     public String gpuVersion() {
-        return cfg.optString("gpu_version", "OpenGL ES 3.2 v1.r32p1");
+        return gpuVersion;
     }
 
     /* Hide DNS Servers Settings */
     public boolean hideDnsServers() {
-        return cfg.optBoolean("hide_dns_servers", false);
+        return hideDnsServers;
     }
-    
+
     public boolean hideDnsServersCompletely() {
-        return cfg.optBoolean("hide_dns_servers_completely", true);
+        return hideDnsServersCompletely;
     }
-    
-    public java.util.List<String> spoofedDnsServers() {
-        java.util.List<String> list = new java.util.ArrayList<>();
-        org.json.JSONArray arr = cfg.optJSONArray("spoofed_dns_servers");
-        if (arr != null) {
-            for (int i = 0; i < arr.length(); i++) {
-                list.add(arr.optString(i));
-            }
-        }
-        return list;
+
+    public List<String> spoofedDnsServers() {
+        return spoofedDnsServers;
     }
 
     /* Hide SIM Operator Settings */
     public boolean hideSimOperator() {
-        return cfg.optBoolean("hide_sim_operator", false);
+        return hideSimOperator;
     }
-    
+
     public String spoofedOperatorName() {
-        return cfg.optString("spoofed_operator_name", "");
+        return spoofedOperatorName;
     }
-    
+
     public String spoofedOperatorNumeric() {
-        return cfg.optString("spoofed_operator_numeric", "");
+        return spoofedOperatorNumeric;
     }
-    
+
     public String spoofedSimCountryIso() {
-        return cfg.optString("spoofed_sim_country_iso", "");
+        return spoofedSimCountryIso;
     }
-    
+
+    /* Override Shared Preferences */
+
+    // Rules from "override_shared_preferences"; invalid entries are dropped
+    public List<PreferenceOverride> overrideSharedPreferences() {
+        return overrideSharedPreferences;
+    }
+
+    public boolean overrideSharedPreferencesPlaceholders() {
+        return overrideSharedPreferencesPlaceholders;
+    }
+
+    /* WebView URL / POST data filters ("url_data_filters") */
+    public List<UrlDataFilter> urlDataFilters() {
+        return urlDataFilters;
+    }
+
+    /* WebView request/response filter section ("webview_filter"); null if absent, read-only */
+    public JSONObject webViewFilter() {
+        return webViewFilter;
+    }
+
+    /** One "override_shared_preferences" entry; {@link #pattern} is set for regex names. */
+    public static final class PreferenceOverride {
+        public final String name;
+        public final String value;
+        public final Pattern pattern;
+
+        private PreferenceOverride(String name, String value, Pattern pattern) {
+            this.name = name;
+            this.value = value;
+            this.pattern = pattern;
+        }
+
+        static List<PreferenceOverride> parseAll(JSONArray arr) {
+            if (arr == null || arr.length() == 0) return Collections.emptyList();
+            List<PreferenceOverride> list = new ArrayList<>(arr.length());
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject item = arr.optJSONObject(i);
+                if (item == null) continue;
+                String name = item.optString("name", null);
+                String value = item.optString("value", null);
+                if (name == null || value == null) continue;
+                try {
+                    Pattern p = item.optBoolean("nameRegExp", false) ? Pattern.compile(name) : null;
+                    list.add(new PreferenceOverride(name, value, p));
+                } catch (Throwable t) {
+                    Log.w(TAG, "Failed to add override rule: " + name, t);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+    }
+
+    /** One "url_data_filters" entry with its patterns compiled. */
+    public static final class UrlDataFilter {
+        public final Pattern urlPat;
+        public final boolean urlBlock;
+        public final String  urlRepl;
+        public final boolean urlEncode;
+
+        public final Pattern dataPat;
+        public final int     dataFlags;
+        public final boolean dataBlock;
+        public final String  dataRepl;
+        public final boolean dataReplaceAll;
+
+        UrlDataFilter(JSONObject o) {
+            /* URL part */
+            urlPat   = regex(o, "url_regex", 0);
+            urlBlock = o.optBoolean("url_block");
+            urlRepl  = o.optString("url_replacement", null);
+            urlEncode= o.optBoolean("url_encode");
+
+            /* Data part */
+            int flags = o.optBoolean("data_ignore_case") ? Pattern.CASE_INSENSITIVE : 0;
+            dataPat   = regex(o, "data_regex", flags);
+            dataFlags = flags;
+            dataBlock = o.optBoolean("data_block");
+            dataRepl  = o.optString("data_replacement", null);
+            dataReplaceAll = o.optBoolean("data_replace_all", true);
+        }
+
+        private static Pattern regex(JSONObject o, String key, int flags) {
+            String src = o.optString(key, null);
+            return src == null || src.isEmpty() ? null : Pattern.compile(src, flags);
+        }
+
+        static List<UrlDataFilter> parseAll(JSONArray arr) {
+            if (arr == null || arr.length() == 0) return Collections.emptyList();
+            List<UrlDataFilter> list = new ArrayList<>(arr.length());
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject o = arr.optJSONObject(i);
+                if (o == null) continue;
+                try {
+                    list.add(new UrlDataFilter(o));
+                } catch (Throwable t) {
+                    Log.w(TAG, "Skipping invalid url_data_filters entry " + i, t);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+    }
+
     /**
      * Get a human-readable display name for a settings key.
      * This helps show user-friendly names in UI instead of raw config keys.
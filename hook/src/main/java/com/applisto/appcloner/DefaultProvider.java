@@ -31,6 +31,7 @@ import com.applisto.appcloner.HideCpuInfoHook;
 import com.applisto.appcloner.HideGpuInfoHook;
 import com.applisto.appcloner.HideDnsServersHook;
 import com.applisto.appcloner.HideSimOperatorHook;
+import com.applisto.appcloner.hooking.HookStats;
 
 public class DefaultProvider extends AbstractContentProvider {
     private static final String TAG = "DefaultProvider";
@@ -67,137 +68,82 @@ public class DefaultProvider extends AbstractContentProvider {
 
         Log.i(TAG, "Initializing hooks for package: " + context.getPackageName());
 
-        // Register DataExportReceiver
-        try {
-            IntentFilter filter = new IntentFilter(DataExportReceiver.ACTION_EXPORT_DATA);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                context.registerReceiver(new DataExportReceiver(), filter, Context.RECEIVER_EXPORTED);
-            } else {
-                context.registerReceiver(new DataExportReceiver(), filter);
-            }
-        } catch (Throwable t) {
-             Log.e(TAG, "Failed to register DataExportReceiver", t);
-        }
+        long start = StartupTrace.now();
+        HookBootstrap boot = new HookBootstrap();
+        registerHooks(boot, context);
+        boot.start();
+        StartupTrace.record(StartupTrace.CAT_HOOK, "DefaultProvider.onCreate", start);
 
-        // Register IdentityRegenerationReceiver for generating new device identities
-        try {
-            IntentFilter identityFilter = new IntentFilter(IdentityRegenerationReceiver.ACTION_REGENERATE_IDENTITY);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                context.registerReceiver(new IdentityRegenerationReceiver(), identityFilter, Context.RECEIVER_EXPORTED);
-            } else {
-                context.registerReceiver(new IdentityRegenerationReceiver(), identityFilter);
-            }
-            Log.i(TAG, "IdentityRegenerationReceiver registered");
+        Log.i(TAG, "All early hooks initialized.");
+        return true;
+    }
 
-            // Show an opt-in notification in the cloned app to trigger regeneration
-            ClonerSettings settings = ClonerSettings.get(context);
-            if (settings.identityNotificationsEnabled()) {
-                boolean persistent = settings.identityNotificationsPersistent();
-                Log.i(TAG, "Showing identity notification (persistent=" + persistent + ")");
-                
-                if (persistent) {
-                    // Show persistent notification that cannot be dismissed
-                    IdentityRegenerationReceiver.showPersistentIdentityNotification(
-                            context,
-                            settings.identityNotificationsClearCache(),
-                            settings.identityNotificationsClearData(),
-                            settings.identityNotificationsRestartApp()
-                    );
-                } else {
-                    // Show regular dismissible notification
-                    IdentityRegenerationReceiver.showIdentityNotification(
-                            context,
-                            settings.identityNotificationsClearCache(),
-                            settings.identityNotificationsClearData(),
-                            settings.identityNotificationsRestartApp()
-                    );
-                }
-            }
-        } catch (Throwable t) {
-            Log.e(TAG, "Failed to register IdentityRegenerationReceiver", t);
-        }
+    /**
+     * Declares every startup step. EARLY steps must be in place before the host app's
+     * Application.onCreate can observe them; BACKGROUND steps only matter once an activity
+     * exists; LAZY steps are housekeeping nobody waits for.
+     */
+    private static void registerHooks(HookBootstrap boot, Context context) {
+        final ClonerSettings settings = ClonerSettings.get(context);
+        final HookBootstrap.Phase EARLY = HookBootstrap.Phase.EARLY;
+        final HookBootstrap.Phase BACKGROUND = HookBootstrap.Phase.BACKGROUND;
+        final HookBootstrap.Phase LAZY = HookBootstrap.Phase.LAZY;
 
-        // Handle bundled app data restore
-        try {
-             ClonerSettings settings = ClonerSettings.get(context);
-             if (settings.bundleAppData()) {
-                 Log.i(TAG, "bundle_app_data enabled, attempting to import bundled data...");
-                 AppDataManager dataManager = new AppDataManager(context, context.getPackageName(), false);
-                 dataManager.importBundledAppDataIfAvailable();
-             }
-        } catch (Throwable t) {
-             Log.e(TAG, "Failed to handle bundled app data", t);
+        // Bundled data must be restored before the app opens its databases and prefs.
+        if (settings.bundleAppData()) {
+            boot.add("AppDataImport", EARLY, () -> {
+                Log.i(TAG, "bundle_app_data enabled, attempting to import bundled data...");
+                AppDataManager dataManager = new AppDataManager(context, context.getPackageName(), false);
+                dataManager.importBundledAppDataIfAvailable();
+            });
         }
 
-
         /* 1.  initialise the smart engine once */
-        com.applisto.appcloner.hooking.Hooking.setUseNewHooks(true);
-        com.applisto.appcloner.hooking.Hooking.initHooking(context);   // <-- NEW
-        
-        new Socks5ProxyHook().init(context);
-        
-       // new ClonerSettings.get(context);
-
-        /* 2.  all your existing hooks stay identical */
-        new AndroidIdHook().init(context);
-        new WifiMacHook().init(context);
-        new BuildPropsHook().init(context);
-        new UserAgentHook().init(context);
-        // Add after other hooks in onCreate()
-        new BackgroundMediaHook().init(context);
-        
-        FakeCameraHook hook = new FakeCameraHook();
-        hook.init(context);
-
-        // Initialize Fake Calculator Hook
-        FakeCalculatorHook calculatorHook = new FakeCalculatorHook(context);
-        calculatorHook.install(context);
-
-        // Get fresh settings instance since previous one was scoped
-        ClonerSettings settings = ClonerSettings.get(context);
-
-        if (settings.keepPlayingMedia()) {
-            KeepPlayingMedia.install(context, settings.keepPlayingMediaCompatibilityMode());
-        }
-
-        CustomBuildPropsFile.install(context, settings.customBuildPropsString(), true);
-
-        MockNetworkConnection.install(context,
+        boot.add("Hooking", EARLY, () -> {
+            com.applisto.appcloner.hooking.Hooking.setUseNewHooks(true);
+            com.applisto.appcloner.hooking.Hooking.initHooking(context);
+        });
+
+        boot.add("Socks5ProxyHook", EARLY, () -> new Socks5ProxyHook().init(context));
+
+        /* 2.  identity and environment spoofing the app may read from Application.onCreate */
+        boot.add("AndroidIdHook", EARLY, () -> new AndroidIdHook().init(context));
+        boot.add("WifiMacHook", EARLY, () -> new WifiMacHook().init(context));
+        boot.add("BuildPropsHook", EARLY, () -> new BuildPropsHook().init(context));
+        boot.add("UserAgentHook", EARLY, () -> new UserAgentHook().init(context));
+        boot.add("CustomBuildPropsFile", EARLY,
+                () -> CustomBuildPropsFile.install(context, settings.customBuildPropsString(), true));
+        boot.add("MockNetworkConnection", EARLY, () -> MockNetworkConnection.install(context,
                 settings.mockWifiConnection(),
                 settings.mockMobileConnection(),
-                settings.mockEthernetConnection());
-
-        if (settings.disableLicenseValidation()) {
-            DisableLicenseValidation.install(context);
-        }
+                settings.mockEthernetConnection()));
 
         if (settings.hideRoot()) {
-            HideRoot.install(context);
+            boot.add("HideRoot", EARLY, () -> HideRoot.install(context));
         }
-
         if (settings.hideEmulator()) {
-            HideEmulator.install(context);
+            boot.add("HideEmulator", EARLY, () -> HideEmulator.install(context));
         }
 
-        OverridePreferencesHook.install(context);
+        boot.add("OverridePreferencesHook", EARLY, () -> OverridePreferencesHook.install(context));
 
         if (settings.noBackgroundServices()) {
-            new NoBackgroundServicesHook().init(context);
+            boot.add("NoBackgroundServicesHook", EARLY, () -> new NoBackgroundServicesHook().init(context));
         }
-
         if (settings.disableNetworkingWithoutVpn()) {
-            new DisableNetworkingWithoutVpnHook().init(context);
+            boot.add("DisableNetworkingWithoutVpnHook", EARLY,
+                    () -> new DisableNetworkingWithoutVpnHook().init(context));
         }
-        
+
         // Disable Background Networking
         if (settings.disableBackgroundNetworking()) {
-            DisableBackgroundNetworkingHook.install(
+            boot.add("DisableBackgroundNetworkingHook", EARLY, () -> DisableBackgroundNetworkingHook.install(
                 context,
                 settings.disableBackgroundNetworkingDelay(),
                 settings.disableBackgroundNetworkingSilent()
-            );
+            ));
         }
-        
+
         // Change System User Agent
         if (settings.changeSystemUserAgent()) {
             String ua = settings.systemUserAgent();
@@ -205,145 +151,210 @@ public class DefaultProvider extends AbstractContentProvider {
                 ua = settings.userAgent(); // Fallback to regular user agent
             }
             if (ua != null && !ua.isEmpty()) {
-                ChangeSystemUserAgentHook.install(context, ua);
+                final String userAgent = ua;
+                boot.add("ChangeSystemUserAgentHook", EARLY,
+                        () -> ChangeSystemUserAgentHook.install(context, userAgent));
             }
         }
-        
+
         // Hide CPU Info
         if (settings.hideCpuInfo()) {
-            HideCpuInfoHook.install(context, settings.customCpuInfo());
+            boot.add("HideCpuInfoHook", EARLY, () -> HideCpuInfoHook.install(context, settings.customCpuInfo()));
         }
-        
+
         // Hide GPU Info
         if (settings.hideGpuInfo()) {
-            HideGpuInfoHook.install(
+            boot.add("HideGpuInfoHook", EARLY, () -> HideGpuInfoHook.install(
                 context,
                 settings.gpuVendor(),
                 settings.gpuRenderer(),
                 settings.gpuVersion()
-            );
+            ));
         }
-        
+
         // Hide DNS Servers
         if (settings.hideDnsServers()) {
-            HideDnsServersHook.install(
+            boot.add("HideDnsServersHook", EARLY, () -> HideDnsServersHook.install(
                 context,
                 settings.hideDnsServersCompletely(),
                 settings.spoofedDnsServers()
-            );
+            ));
         }
-        
+
         // Hide SIM Operator
         if (settings.hideSimOperator()) {
-            String opName = settings.spoofedOperatorName();
-            String opNumeric = settings.spoofedOperatorNumeric();
-            String countryIso = settings.spoofedSimCountryIso();
-            
-            if ((opName != null && !opName.isEmpty()) || 
-                (opNumeric != null && !opNumeric.isEmpty())) {
-                HideSimOperatorHook.install(context, opName, opNumeric, opName, countryIso, opName, countryIso);
-            } else {
-                HideSimOperatorHook.install(context); // Hide all
-            }
+            boot.add("HideSimOperatorHook", EARLY, () -> {
+                String opName = settings.spoofedOperatorName();
+                String opNumeric = settings.spoofedOperatorNumeric();
+                String countryIso = settings.spoofedSimCountryIso();
+
+                if ((opName != null && !opName.isEmpty()) ||
+                    (opNumeric != null && !opNumeric.isEmpty())) {
+                    HideSimOperatorHook.install(context, opName, opNumeric, opName, countryIso, opName, countryIso);
+                } else {
+                    HideSimOperatorHook.install(context); // Hide all
+                }
+            });
         }
-        
+
+        // Device Identity Hooks
+        boot.add("ImsiHook", EARLY, () -> new ImsiHook().init(context));
+        boot.add("ImeiHook", EARLY, () -> new ImeiHook().init(context));
+        boot.add("SerialHook", EARLY, () -> new SerialHook().init(context));
+        boot.add("BtMacHook", EARLY, () -> new BtMacHook().init(context));
+
+        if (settings.packageNameWorkaround()) {
+            boot.add("PackageNameWorkaround", EARLY, () -> PackageNameWorkaround.install(context));
+        }
+
+        // License checks and location requests are often issued from Application.onCreate,
+        // so these must not race it on the background pool.
+        if (settings.disableLicenseValidation()) {
+            boot.add("DisableLicenseValidation", EARLY, () -> DisableLicenseValidation.install(context));
+        }
+        boot.add("SpoofLocationHook", EARLY, () -> new SpoofLocationHook().init(context));
+
+        /* 3.  hooks that only matter once an activity exists */
+        boot.add("BackgroundMediaHook", BACKGROUND, () -> new BackgroundMediaHook().init(context));
+        boot.add("FakeCameraHook", BACKGROUND, () -> new FakeCameraHook().init(context));
+
+        // Initialize Fake Calculator Hook
+        boot.add("FakeCalculatorHook", BACKGROUND, () -> new FakeCalculatorHook(context).install(context));
+
+        if (settings.keepPlayingMedia()) {
+            boot.add("KeepPlayingMedia", BACKGROUND,
+                    () -> KeepPlayingMedia.install(context, settings.keepPlayingMediaCompatibilityMode()));
+        }
+
         if (settings.liveVideoHookEnabled()) {
-             LiveVideoHook.install(context);
+            boot.add("LiveVideoHook", BACKGROUND, () -> LiveVideoHook.install(context));
         }
 
-        // Initialize location spoofing hook
-        SpoofLocationHook locationHook = new SpoofLocationHook();
-        locationHook.init(context);
         // Optional: Set custom location
         // SpoofLocationHook.setSpoofedLocation(40.7128, -74.0060); // New York
         // SpoofLocationHook.enableLocationSpoofing(true);
 
-        // Device Identity Hooks
-        new ImsiHook().init(context);
-        new ImeiHook().init(context);  // NEW: IMEI spoofing
-        new SerialHook().init(context);
-        new BtMacHook().init(context);
-
         // Dialog Intercept and Blocker (replaced by SkipDialogs logic or kept parallel?)
         // The user implied "skipdialog" is what they want.
         // new DialogInterceptHook().init(context);
 
         // Skip Dialogs
-        java.util.Properties props = new java.util.Properties();
-        // Populate properties from settings if needed, or pass empty if hardcoded checks are enough
-        // properties used for "device_lock_title" etc.
-        // We can load them from cloner.json if they exist
-        try {
-            org.json.JSONObject json = settings.raw();
-            java.util.Iterator<String> keys = json.keys();
-            while(keys.hasNext()) {
-                String key = keys.next();
-                props.setProperty(key, json.optString(key));
-            }
-        } catch (Exception ignored) {}
+        boot.add("SkipDialogs", BACKGROUND, () -> {
+            java.util.Properties props = new java.util.Properties();
+            // properties used for "device_lock_title" etc. are loaded from cloner.json if they exist
+            try {
+                org.json.JSONObject json = settings.raw();
+                java.util.Iterator<String> keys = json.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    props.setProperty(key, json.optString(key));
+                }
+            } catch (Exception ignored) {}
 
-        SkipDialogs.install(context, settings.skipDialogs(), settings.skipDialogsStacktraces(), settings.monitorStacktraces(), props);
+            SkipDialogs.install(context, settings.skipDialogs(), settings.skipDialogsStacktraces(), settings.monitorStacktraces(), props);
+        });
 
         // Internal Browser Hook (for intercepting URLs)
-        InternalBrowserHook browserHook = new InternalBrowserHook(context);
-        browserHook.init();
-        
-        // Initialize AccessibleDataDirHook and keep reference for SharedPrefs operations
-        sAccessibleDirHook = new AccessibleDataDirHook();
-        sAccessibleDirHook.init(context);
+        boot.add("InternalBrowserHook", BACKGROUND, () -> new InternalBrowserHook(context).init());
 
-        ForcedBackCameraHook.install(context);
-        ScreenshotDetectionBlocker.install(context);
+        boot.add("ForcedBackCameraHook", BACKGROUND, () -> ForcedBackCameraHook.install(context));
+        boot.add("ScreenshotDetectionBlocker", BACKGROUND, () -> ScreenshotDetectionBlocker.install(context));
 
         if (settings.userAgentWorkaround()) {
-            UserAgentWorkaround.install(context, settings.userAgentWorkaroundUriSchemeWorkaround());
+            boot.add("UserAgentWorkaround", BACKGROUND,
+                    () -> UserAgentWorkaround.install(context, settings.userAgentWorkaroundUriSchemeWorkaround()));
         }
 
-        if (settings.packageNameWorkaround()) {
-            PackageNameWorkaround.install(context);
-        }
-
-        new FixBundleClassLoaderHook().init(context);
+        boot.add("FixBundleClassLoaderHook", BACKGROUND, () -> new FixBundleClassLoaderHook().init(context));
 
         // Initialize Local Web Console
         // Force enable if Host Monitor is enabled, as it relies on the web server
-        if (settings.localWebConsoleEnabled() || settings.hostMonitorEnabled()) {
-            try {
-                LocalWebConsole.install(context, 18080);
-            } catch (Throwable t) {
-                Log.e(TAG, "Failed to install LocalWebConsole", t);
-            }
+        boolean webConsole = settings.localWebConsoleEnabled() || settings.hostMonitorEnabled();
+        if (webConsole) {
+            boot.add("LocalWebConsole", BACKGROUND, () -> LocalWebConsole.install(context, 18080));
         }
+        String[] afterConsole = webConsole ? new String[] { "LocalWebConsole" } : new String[0];
 
         // Initialize Host Monitor
         if (settings.hostMonitorEnabled()) {
-            try {
-                HostMonitor.install(context, settings.hostMonitorFilter(), 2000, true);
-            } catch (Throwable t) {
-                Log.e(TAG, "Failed to install HostMonitor", t);
-            }
+            boot.add("HostMonitor", BACKGROUND,
+                    () -> HostMonitor.install(context, settings.hostMonitorFilter(), 2000, true), afterConsole);
         }
 
         if (settings.headerMonitorEnabled()) {
-            try {
+            boot.add("HeaderMonitor", BACKGROUND, () -> {
                 HeaderMonitor.install();
                 HostMonitorNotifications.install(context, 2001, "header-monitor", "Header Monitor");
-            } catch (Throwable t) {
-                Log.e(TAG, "Failed to install HeaderMonitor", t);
-            }
+            }, afterConsole);
         }
 
         if (settings.preferencesMonitorEnabled()) {
-            try {
+            boot.add("PreferencesMonitor", BACKGROUND, () -> {
                 PreferencesMonitor.install();
                 HostMonitorNotifications.install(context, 2002, "preferences-monitor", "Preferences Monitor");
-            } catch (Throwable t) {
-                Log.e(TAG, "Failed to install PreferencesMonitor", t);
-            }
+            }, afterConsole);
         }
 
-        Log.i(TAG, "All hooks initialized.");
-        return true;
+        /* 4.  housekeeping nobody waits for */
+        // Runtime overrides written after startup (identity regeneration, adb push) are applied
+        // to the hooks that subscribed to them instead of requiring a restart.
+        boot.add("SettingsWatcher", LAZY, () -> SettingsWatcher.start(context));
+
+        boot.add("DataExportReceiver", LAZY, () -> {
+            long start = StartupTrace.now();
+            IntentFilter filter = new IntentFilter(DataExportReceiver.ACTION_EXPORT_DATA);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                context.registerReceiver(new DataExportReceiver(), filter, Context.RECEIVER_EXPORTED);
+            } else {
+                context.registerReceiver(new DataExportReceiver(), filter);
+            }
+            StartupTrace.record(StartupTrace.CAT_RECEIVER, "DataExportReceiver", start);
+        });
+
+        // Register IdentityRegenerationReceiver for generating new device identities
+        boot.add("IdentityRegenerationReceiver", LAZY, () -> {
+            long start = StartupTrace.now();
+            IntentFilter identityFilter = new IntentFilter(IdentityRegenerationReceiver.ACTION_REGENERATE_IDENTITY);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                context.registerReceiver(new IdentityRegenerationReceiver(), identityFilter, Context.RECEIVER_EXPORTED);
+            } else {
+                context.registerReceiver(new IdentityRegenerationReceiver(), identityFilter);
+            }
+            StartupTrace.record(StartupTrace.CAT_RECEIVER, "IdentityRegenerationReceiver", start);
+            Log.i(TAG, "IdentityRegenerationReceiver registered");
+
+            // Show an opt-in notification in the cloned app to trigger regeneration
+            if (settings.identityNotificationsEnabled()) {
+                boolean persistent = settings.identityNotificationsPersistent();
+                Log.i(TAG, "Showing identity notification (persistent=" + persistent + ")");
+
+                if (persistent) {
+                    // Show persistent notification that cannot be dismissed
+                    IdentityRegenerationReceiver.showPersistentIdentityNotification(
+                            context,
+                            settings.identityNotificationsClearCache(),
+                            settings.identityNotificationsClearData(),
+                            settings.identityNotificationsRestartApp()
+                    );
+                } else {
+                    // Show regular dismissible notification
+                    IdentityRegenerationReceiver.showIdentityNotification(
+                            context,
+                            settings.identityNotificationsClearCache(),
+                            settings.identityNotificationsClearData(),
+                            settings.identityNotificationsRestartApp()
+                    );
+                }
+            }
+        });
+
+        // Initialize AccessibleDataDirHook and keep reference for SharedPrefs operations.
+        // Walking the data directory is slow on large apps, so it runs after startup.
+        boot.add("AccessibleDataDirHook", LAZY, () -> {
+            AccessibleDataDirHook hook = new AccessibleDataDirHook();
+            hook.init(context);
+            sAccessibleDirHook = hook;
+        });
     }
 
     // IPC permission for secure operations
@@ -384,6 +395,14 @@ public class DefaultProvider extends AbstractContentProvider {
             } else if ("get_config".equals(method)) {
                 // Return current configuration
                 return getConfig();
+            } else if ("get_startup_trace".equals(method)) {
+                return getStartupTrace();
+            } else if ("reload_settings".equals(method)) {
+                return reloadSettings();
+            } else if ("get_hook_stats".equals(method)) {
+                return getHookStats(arg);
+            } else if ("get_frame_cache_stats".equals(method)) {
+                return getFrameCacheStats(arg);
             }
         } catch (Throwable t) {
             Log.e(TAG, "Error in call() method=" + method, t);
@@ -483,6 +502,82 @@ public class DefaultProvider extends AbstractContentProvider {
         return result;
     }
 
+    /**
+     * Startup spans as JSON. The same spans are also written in Chrome trace-event format to
+     * files/startup_trace.json, whose path is returned so it can be pulled with adb.
+     */
+    private Bundle getStartupTrace() {
+        Bundle result = new Bundle();
+        try {
+            Context context = getContext();
+            result.putString("trace", StartupTrace.toJson().toString());
+            File chrome = StartupTrace.writeChromeTrace(
+                    new File(context.getFilesDir(), "startup_trace.json"), context.getPackageName());
+            result.putString("chrome_trace_path", chrome.getAbsolutePath());
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error getting startup trace", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Call counts and latency percentiles of every hook, the most expensive first, as JSON.
+     * With arg "reset" the numbers start over after being read.
+     */
+    private Bundle getHookStats(String arg) {
+        Bundle result = new Bundle();
+        try {
+            result.putString("stats", HookStats.toJson().toString());
+            if ("reset".equals(arg)) HookStats.resetAll();
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error getting hook stats", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Hits, misses and memory use of the fake camera's frame cache, as JSON.
+     * With arg "reset" the counters start over after being read.
+     */
+    private Bundle getFrameCacheStats(String arg) {
+        Bundle result = new Bundle();
+        try {
+            result.putString("stats", FakeCameraHook.getFrameCacheStats("reset".equals(arg)).toString());
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error getting frame cache stats", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Re-reads cloner.json and the runtime override right away, without waiting for the file
+     * observer. Returns the new settings version and the keys that changed.
+     */
+    private Bundle reloadSettings() {
+        Bundle result = new Bundle();
+        try {
+            Context context = getContext();
+            Set<String> changed = ClonerSettings.reload(context);
+            result.putLong("version", ClonerSettings.get(context).version());
+            result.putStringArrayList("changed", new ArrayList<>(changed));
+            result.putBoolean("ok", true);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error reloading settings", t);
+            result.putBoolean("ok", false);
+            result.putString("error", t.getMessage());
+        }
+        return result;
+    }
+
     private Bundle listPrefs() {
         Bundle result = new Bundle();
         try {
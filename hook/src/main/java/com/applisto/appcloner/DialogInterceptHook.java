@@ -78,20 +78,20 @@ public final class DialogInterceptHook {
         try {
             // Load settings from ClonerSettings
             ClonerSettings settings = ClonerSettings.get(context);
-            sEnabled = settings.raw().optBoolean("dialog_blocker_enabled", false);
+            sEnabled = settings.dialogBlockerEnabled();
             
             if (!sEnabled) {
                 Log.i(TAG, "Dialog blocker is disabled");
                 return;
             }
             
-            sBlockUpdateDialogs = settings.raw().optBoolean("block_update_dialogs", true);
-            sBlockRatingDialogs = settings.raw().optBoolean("block_rating_dialogs", true);
-            sBlockAdDialogs = settings.raw().optBoolean("block_ad_dialogs", true);
-            sBlockSubscriptionDialogs = settings.raw().optBoolean("block_subscription_dialogs", false);
+            sBlockUpdateDialogs = settings.blockUpdateDialogs();
+            sBlockRatingDialogs = settings.blockRatingDialogs();
+            sBlockAdDialogs = settings.blockAdDialogs();
+            sBlockSubscriptionDialogs = settings.blockSubscriptionDialogs();
             
             // Parse custom keywords
-            String customKeywords = settings.raw().optString("dialog_block_keywords", "");
+            String customKeywords = settings.dialogBlockKeywords();
             if (!customKeywords.isEmpty()) {
                 for (String keyword : customKeywords.split(",")) {
                     String trimmed = keyword.trim().toLowerCase(Locale.US);
@@ -37,7 +37,7 @@ public class DisableNetworkingWithoutVpnHook implements Application.ActivityLife
         mContext = context.getApplicationContext();
 
         try {
-            mEnabled = ClonerSettings.get(context).raw().optBoolean("DisableNetworkingWithoutVpn", false);
+            mEnabled = ClonerSettings.get(context).disableNetworkingWithoutVpn();
         } catch (Throwable t) {
             mEnabled = false;
         }
@@ -43,6 +43,7 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
@@ -101,12 +102,9 @@ public final class FakeCameraHook {
     private static List<Bitmap> sFakeBitmaps = new ArrayList<>();
     private static int sCurrentImageIndex = 0;
 
-    // Cache for processed frame data
-    private static volatile byte[] sCachedYuvData;
-    private static int sCachedWidth;
-    private static int sCachedHeight;
-    private static int sCachedFormat;
-    private static long sCachedBitmapId; // To invalidate cache if bitmap changes
+    // Converted YUV frames per stream size and format, invalidated when the source image changes
+    private static final FrameCache sFrameCache =
+            new FrameCache(Math.min(32L << 20, Runtime.getRuntime().maxMemory() / 8));
 
     // Reusable bitmap to prevent OOM
     private static Bitmap sIntermediateBitmap;
@@ -232,8 +230,7 @@ public final class FakeCameraHook {
                 // Clear the list so getCurrentFakeImage() uses this new bitmap instead of cycling assets
                 sFakeBitmaps.clear();
                 sFakeJpegData = bitmapToJpeg(bitmap);
-                // Invalidate cache by clearing it
-                sCachedYuvData = null;
+                sFrameCache.invalidate();
                 sImageSetMillis = System.currentTimeMillis();
                 Log.i(TAG, "New fake bitmap set. Size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
                 showNotification();
@@ -246,7 +243,7 @@ public final class FakeCameraHook {
             sZoomLevel *= factor;
             if (sZoomLevel < 0.1f) sZoomLevel = 0.1f;
             if (sZoomLevel > 10.0f) sZoomLevel = 10.0f;
-            sCachedYuvData = null; // Invalidate cache
+            sFrameCache.invalidate();
             Log.i(TAG, "Zoom adjusted: " + sZoomLevel);
         }
     }
@@ -255,7 +252,7 @@ public final class FakeCameraHook {
         synchronized (sProcessingLock) {
             sTranslateX += x;
             sTranslateY += y;
-            sCachedYuvData = null; // Invalidate cache
+            sFrameCache.invalidate();
             Log.i(TAG, "Translation adjusted: " + sTranslateX + ", " + sTranslateY);
         }
     }
@@ -265,7 +262,7 @@ public final class FakeCameraHook {
             sZoomLevel = 1.0f;
             sTranslateX = 0;
             sTranslateY = 0;
-            sCachedYuvData = null;
+            sFrameCache.invalidate();
             Log.i(TAG, "Adjustments reset");
         }
     }
@@ -528,7 +525,7 @@ public final class FakeCameraHook {
                             float newZoom = progressToZoom(progress);
                             synchronized (sProcessingLock) {
                                 sZoomLevel = newZoom;
-                                sCachedYuvData = null;
+                                sFrameCache.invalidate();
                             }
                             updateStatusDisplay();
                         }
@@ -796,6 +793,7 @@ public final class FakeCameraHook {
 
     public static void toggleScale() {
         FILL_IMAGE = !FILL_IMAGE;
+        sFrameCache.invalidate();
         showNotification();
         Toast.makeText(sContext, FILL_IMAGE ? "Scale: Fill Screen" : "Scale: Fit Image", Toast.LENGTH_SHORT).show();
     }
@@ -1591,162 +1589,180 @@ public final class FakeCameraHook {
     /* ---------- Helper Methods ---------- */
 
     private void overwriteImageWithFakeData(Image image) {
-        synchronized (sProcessingLock) {
+        try {
+            int format = image.getFormat();
+            int width = image.getWidth();
+            int height = image.getHeight();
+            Image.Plane[] planes = image.getPlanes();
+
+            if (planes == null || planes.length == 0) {
+                // Log.e(TAG, "Image has no planes to overwrite.");
+                return;
+            }
+
+            // Notify face detection bypass hook of frame dimensions
             try {
-                int format = image.getFormat();
-                int width = image.getWidth();
-                int height = image.getHeight();
-                Image.Plane[] planes = image.getPlanes();
+                FaceDetectionBypassHook.updateFrameDimensions(width, height);
+            } catch (Throwable t) {
+                // Hook may not be installed, ignore
+            }
 
-                if (planes == null || planes.length == 0) {
-                    // Log.e(TAG, "Image has no planes to overwrite.");
+            // Check liveness session state for frame delivery timing
+            try {
+                if (!LivenessSessionManager.shouldDeliverFrame("camera")) {
+                    // Frame should be skipped (liveness session not ready)
                     return;
                 }
-                
-                // Notify face detection bypass hook of frame dimensions
-                try {
-                    FaceDetectionBypassHook.updateFrameDimensions(width, height);
-                } catch (Throwable t) {
-                    // Hook may not be installed, ignore
+            } catch (Throwable t) {
+                // Manager may not be installed, proceed with frame
+            }
+
+            // YUV frames come from the frame cache without taking the processing lock, so streams
+            // of different sizes neither evict each other nor wait for each other's conversion.
+            // Random images change every frame and are not cached.
+            boolean yuv = format == ImageUtils.FORMAT_YUV_420_888 || format == ImageUtils.FORMAT_NV21;
+            if (yuv && !USE_RANDOM_IMAGE) {
+                final Bitmap currentBitmap;
+                synchronized (sProcessingLock) {
+                    currentBitmap = getCurrentFakeImage();
                 }
-                
-                // Check liveness session state for frame delivery timing
-                try {
-                    if (!LivenessSessionManager.shouldDeliverFrame("camera")) {
-                        // Frame should be skipped (liveness session not ready)
-                        return;
-                    }
-                } catch (Throwable t) {
-                    // Manager may not be installed, proceed with frame
+                int rotation = ROTATE_IMAGE ? ROTATION_ANGLE : 0;
+                byte[] data = sFrameCache.get(width, height, format, rotation,
+                        () -> renderNV21(currentBitmap, width, height));
+                if (data != null) {
+                    ImageUtils.writeYuvToPlanes(data, width, height, planes);
+                    return;
                 }
+                // Conversion failed (e.g. OOM); fall through to the generic path below
+            }
 
-                // Special handling for YUV_420_888 to use caching (performance optimization)
-                if (format == ImageUtils.FORMAT_YUV_420_888 || format == ImageUtils.FORMAT_NV21) {
-                    Bitmap currentBitmap = getCurrentFakeImage();
-
-                    // If random image is enabled, we cannot cache effectively because the image changes frequently
-                    // So we skip cache to ensure randomness works
-                    boolean useCache = !USE_RANDOM_IMAGE;
-
-                    // Check if cache is valid
-                    boolean cacheValid = useCache &&
-                            sCachedYuvData != null &&
-                            sCachedWidth == width &&
-                            sCachedHeight == height &&
-                            sCachedFormat == format;
-
-                    if (!cacheValid) {
-                        // Resizing is needed, update cache or temporary buffer
-                        // Log.d(TAG, "Processing frame: " + width + "x" + height);
-
-                        ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
-                        Bitmap resizedBitmap = resizeAndAdjustBitmap(currentBitmap, width, height, scaleType);
-
-                        if (resizedBitmap != null) {
-                            try {
-                                if (useCache) {
-                                    // Update static cache
-                                    sCachedYuvData = ImageUtils.bitmapToNV21(resizedBitmap, sCachedPixelBuffer, sCachedYuvData);
-                                    // Update reference to buffers in case they were reallocated
-                                    // (bitmapToNV21 returns the buffer it used)
-                                    sCachedNV21Buffer = sCachedYuvData;
-
-                                    sCachedWidth = width;
-                                    sCachedHeight = height;
-                                    sCachedFormat = format;
-                                } else {
-                                    // Random mode: use temporary buffers but don't save to static cache
-                                    // We still use the static buffers to avoid allocation, but we don't mark cache as valid
-                                    byte[] data = ImageUtils.bitmapToNV21(resizedBitmap, sCachedPixelBuffer, sCachedNV21Buffer);
-
-                                    // Update our buffer references
-                                    sCachedNV21Buffer = data;
-
-                                    // Write directly here for random mode
-                                    ImageUtils.writeYuvToPlanes(data, width, height, planes);
-                                    return;
-                                }
-                            } finally {
-                                // Do NOT recycle sIntermediateBitmap here if it's the reusable one
-                                if (resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
-                                    resizedBitmap.recycle();
-                                }
-                            }
-                        }
-                    }
+            synchronized (sProcessingLock) {
+                overwriteImageLocked(image, format, width, height, planes, yuv && USE_RANDOM_IMAGE);
+            }
+        } catch (Throwable t) {
+            // Catch OOM or other runtime exceptions to prevent app crash
+            Log.e(TAG, "Error in overwriteImageWithFakeData", t);
+        }
+    }
 
-                    if (useCache && sCachedYuvData != null) {
-                        ImageUtils.writeYuvToPlanes(sCachedYuvData, width, height, planes);
-                        return;
-                    }
-                }
+    /** Converts {@code bitmap} to an NV21 frame of the given size, for {@link #sFrameCache}. */
+    private byte[] renderNV21(Bitmap bitmap, int width, int height) {
+        if (bitmap == null || width <= 0 || height <= 0) return null;
+        Bitmap frame;
+        try {
+            // A bitmap of its own, since other streams may be converting at the same time;
+            // misses are rare enough that sIntermediateBitmap is not worth sharing here.
+            frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "OOM creating frame bitmap: " + width + "x" + height);
+            return null;
+        }
+        try {
+            ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
+            drawAdjustedBitmap(bitmap, frame, scaleType);
+            return ImageUtils.bitmapToNV21(frame);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "OOM converting frame: " + width + "x" + height);
+            return null;
+        } finally {
+            frame.recycle();
+        }
+    }
 
-                // Fallback for other formats
-                // Check if format is supported using ImageUtils
-                if (!ImageUtils.isFormatSupported(format)) {
-                    // Try to handle unsupported formats with fallback
-                    // Log.w(TAG, "Attempting fallback for unsupported image format: " + ImageUtils.getFormatName(format));
+    /** Frame cache hits, misses and memory use, as JSON. */
+    public static JSONObject getFrameCacheStats(boolean reset) throws JSONException {
+        JSONObject stats = sFrameCache.toJson();
+        if (reset) sFrameCache.resetStats();
+        return stats;
+    }
 
-                    if (planes.length > 0) {
-                        Bitmap currentBitmap = getCurrentFakeImage();
-                        ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
-                        Bitmap resizedBitmap = resizeAndAdjustBitmap(currentBitmap, width, height, scaleType);
+    private void overwriteImageLocked(Image image, int format, int width, int height,
+                                      Image.Plane[] planes, boolean randomYuv) {
+        // Random mode: convert every frame into the reusable buffers, nothing is cached
+        if (randomYuv) {
+            Bitmap currentBitmap = getCurrentFakeImage();
+            ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
+            Bitmap resizedBitmap = resizeAndAdjustBitmap(currentBitmap, width, height, scaleType);
 
-                        try {
-                            // Try RGBA fallback for single-plane formats
-                            if (planes.length == 1) {
-                                boolean success = ImageUtils.writeRGBAToPlanes(resizedBitmap, planes, width, height);
-                                if (success) return;
-                            }
+            if (resizedBitmap != null) {
+                try {
+                    byte[] data = ImageUtils.bitmapToNV21(resizedBitmap, sCachedPixelBuffer, sCachedNV21Buffer);
 
-                            // Try YUV fallback for multi-plane formats
-                            if (planes.length >= 3) {
-                                try {
-                                    // Use our reusable buffers for fallback too
-                                    byte[] yuvData = ImageUtils.bitmapToNV21(resizedBitmap, sCachedPixelBuffer, sCachedNV21Buffer);
-                                    sCachedNV21Buffer = yuvData; // Save if reallocated
-
-                                    ImageUtils.writeYuvToPlanes(yuvData, width, height, planes);
-                                    return;
-                                } catch (Exception e) {
-                                    Log.w(TAG, "YUV fallback failed", e);
-                                }
-                            }
-                        } finally {
-                            if (resizedBitmap != null && resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
-                                resizedBitmap.recycle();
-                            }
-                        }
-                    }
+                    // Update our buffer references
+                    sCachedNV21Buffer = data;
 
+                    ImageUtils.writeYuvToPlanes(data, width, height, planes);
                     return;
+                } finally {
+                    // Do NOT recycle sIntermediateBitmap here if it's the reusable one
+                    if (resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
+                        resizedBitmap.recycle();
+                    }
                 }
+            }
+        }
+
+        // Fallback for other formats
+        // Check if format is supported using ImageUtils
+        if (!ImageUtils.isFormatSupported(format)) {
+            // Try to handle unsupported formats with fallback
+            // Log.w(TAG, "Attempting fallback for unsupported image format: " + ImageUtils.getFormatName(format));
 
+            if (planes.length > 0) {
                 Bitmap currentBitmap = getCurrentFakeImage();
                 ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
                 Bitmap resizedBitmap = resizeAndAdjustBitmap(currentBitmap, width, height, scaleType);
 
-                if (resizedBitmap == null) {
-                    resizedBitmap = createFallbackImage(width, height);
-                }
-
-                // Use the unified ImageUtils method for all supported formats
-                boolean success = ImageUtils.writeFakeDataToImage(image, resizedBitmap);
+                try {
+                    // Try RGBA fallback for single-plane formats
+                    if (planes.length == 1) {
+                        boolean success = ImageUtils.writeRGBAToPlanes(resizedBitmap, planes, width, height);
+                        if (success) return;
+                    }
 
-                // IMPORTANT: Recycle the resized bitmap to prevent memory leaks,
-                // BUT do not recycle if it is our reusable buffer
-                if (resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
-                    resizedBitmap.recycle();
-                }
+                    // Try YUV fallback for multi-plane formats
+                    if (planes.length >= 3) {
+                        try {
+                            // Use our reusable buffers for fallback too
+                            byte[] yuvData = ImageUtils.bitmapToNV21(resizedBitmap, sCachedPixelBuffer, sCachedNV21Buffer);
+                            sCachedNV21Buffer = yuvData; // Save if reallocated
 
-                if (!success) {
-                    Log.e(TAG, "Failed to overwrite Image buffer for format: " +
-                            ImageUtils.getFormatName(format));
+                            ImageUtils.writeYuvToPlanes(yuvData, width, height, planes);
+                            return;
+                        } catch (Exception e) {
+                            Log.w(TAG, "YUV fallback failed", e);
+                        }
+                    }
+                } finally {
+                    if (resizedBitmap != null && resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
+                        resizedBitmap.recycle();
+                    }
                 }
-            } catch (Throwable t) {
-                // Catch OOM or other runtime exceptions to prevent app crash
-                Log.e(TAG, "Error in overwriteImageWithFakeData", t);
             }
+
+            return;
+        }
+
+        Bitmap currentBitmap = getCurrentFakeImage();
+        ImageUtils.ScaleType scaleType = FILL_IMAGE ? ImageUtils.ScaleType.CENTER_CROP : ImageUtils.ScaleType.CENTER_INSIDE;
+        Bitmap resizedBitmap = resizeAndAdjustBitmap(currentBitmap, width, height, scaleType);
+
+        if (resizedBitmap == null) {
+            resizedBitmap = createFallbackImage(width, height);
+        }
+
+        // Use the unified ImageUtils method for all supported formats
+        boolean success = ImageUtils.writeFakeDataToImage(image, resizedBitmap);
+
+        // IMPORTANT: Recycle the resized bitmap to prevent memory leaks,
+        // BUT do not recycle if it is our reusable buffer
+        if (resizedBitmap != currentBitmap && resizedBitmap != sIntermediateBitmap) {
+            resizedBitmap.recycle();
+        }
+
+        if (!success) {
+            Log.e(TAG, "Failed to overwrite Image buffer for format: " +
+                    ImageUtils.getFormatName(format));
         }
     }
 
@@ -1781,10 +1797,19 @@ public final class FakeCameraHook {
             }
         }
 
+        drawAdjustedBitmap(bitmap, sIntermediateBitmap, scaleType);
+        return sIntermediateBitmap;
+    }
+
+    /** Draws {@code bitmap} into {@code target} with the scale type and the global Zoom and Translation. */
+    private static void drawAdjustedBitmap(Bitmap bitmap, Bitmap target, ImageUtils.ScaleType scaleType) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+
         // Clear the bitmap (important if we reuse it and draw smaller image or transparency)
-        sIntermediateBitmap.eraseColor(Color.TRANSPARENT);
+        target.eraseColor(Color.TRANSPARENT);
 
-        Canvas canvas = new Canvas(sIntermediateBitmap);
+        Canvas canvas = new Canvas(target);
 
         // 2. Calculate base scale (Fit or Fill)
         float scaleX = (float) width / bitmap.getWidth();
@@ -1820,8 +1845,6 @@ public final class FakeCameraHook {
         // 5. Draw
         Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
         canvas.drawBitmap(bitmap, matrix, paint);
-
-        return sIntermediateBitmap;
     }
 
     private Point getCameraResolution(Camera camera) {
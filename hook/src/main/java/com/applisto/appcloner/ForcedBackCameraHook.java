@@ -27,7 +27,7 @@ public final class ForcedBackCameraHook {
 
     public static void install(Context ctx) {
         try {
-            if (!ClonerSettings.get(ctx).raw().optBoolean("ForcedBackCamera", false)) {
+            if (!ClonerSettings.get(ctx).forcedBackCamera()) {
                 return;
             }
 
@@ -0,0 +1,182 @@
+package com.applisto.appcloner;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Converted camera frames, keyed by (source version, width, height, format, rotation), so
+ * that preview and capture streams of different sizes each keep their frame instead of
+ * evicting each other.
+ *
+ * A frame is computed once: the first thread to ask for a key runs the loader outside of any
+ * lock, and threads asking for the same key meanwhile wait for that result, while other keys
+ * are served or converted in parallel. Entries are dropped least recently used first once
+ * their bytes exceed the budget. {@link #invalidate()} starts a new source version and drops
+ * every frame, including ones still being converted from the old source.
+ */
+final class FrameCache {
+    private static final String TAG = "FrameCache";
+
+    interface Loader {
+        /** Returns the converted frame, or null if it could not be made. */
+        byte[] load();
+    }
+
+    private final long maxBytes;
+    // Access order, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long waits;
+    private long evictions;
+
+    FrameCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the frame for the current source version and the given size, format and
+     * rotation, running {@code loader} if no thread has made it yet. The loader must read the
+     * source after this call started, so that a frame never belongs to an older version than
+     * its key. Returns null if the loader failed or the thread was interrupted while waiting.
+     */
+    byte[] get(int width, int height, int format, int rotation, Loader loader) {
+        Entry entry;
+        boolean load;
+        synchronized (this) {
+            Key key = new Key(version, width, height, format, rotation);
+            entry = entries.get(key);
+            load = entry == null;
+            if (load) {
+                entries.put(key, entry = new Entry(key));
+                misses++;
+            } else if (entry.data != null) {
+                hits++;
+            } else {
+                waits++;
+            }
+        }
+        return load ? load(entry, loader) : entry.await();
+    }
+
+    private byte[] load(Entry entry, Loader loader) {
+        byte[] data = null;
+        try {
+            data = loader.load();
+        } finally {
+            synchronized (this) {
+                entry.data = data;
+                if (data == null || entry.key.version != version || data.length > maxBytes) {
+                    // Failed, made from a replaced source, or too large to keep: waiters still get it.
+                    if (entries.get(entry.key) == entry) entries.remove(entry.key);
+                } else {
+                    bytes += data.length;
+                    evict();
+                }
+            }
+            entry.done.countDown();
+        }
+        return data;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry e = it.next();
+            if (e.data == null) continue; // still loading
+            it.remove();
+            bytes -= e.data.length;
+            evictions++;
+        }
+    }
+
+    /** Starts a new source version: drops every cached frame and ignores loads still running. */
+    synchronized void invalidate() {
+        version++;
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** Hits, misses, waits on a frame another thread was converting, evictions and usage. */
+    synchronized JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("version", version);
+        o.put("entries", entries.size());
+        o.put("bytes", bytes);
+        o.put("max_bytes", maxBytes);
+        o.put("hits", hits);
+        o.put("misses", misses);
+        o.put("waits", waits);
+        o.put("evictions", evictions);
+        long lookups = hits + misses + waits;
+        o.put("hit_rate", lookups == 0 ? 0 : (double) (hits + waits) / lookups);
+        return o;
+    }
+
+    synchronized void resetStats() {
+        hits = misses = waits = evictions = 0;
+    }
+
+    private static final class Key {
+        final long version;
+        final int width;
+        final int height;
+        final int format;
+        final int rotation;
+
+        Key(long version, int width, int height, int format, int rotation) {
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.rotation = rotation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return version == k.version && width == k.width && height == k.height &&
+                    format == k.format && rotation == k.rotation;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int) (version ^ (version >>> 32));
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + format;
+            return 31 * h + rotation;
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile byte[] data;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+
+        byte[] await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted waiting for frame " + key.width + "x" + key.height);
+                return null;
+            }
+            return data;
+        }
+    }
+}
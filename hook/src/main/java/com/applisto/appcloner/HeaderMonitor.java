@@ -4,29 +4,20 @@ import android.text.TextUtils;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 public final class HeaderMonitor {
 
-    private static final AtomicLong INDEX = new AtomicLong(0);
-    private static final TreeMap<Long, Map<String, Object>> MAP = new TreeMap<>();
+    static final int COL_NAME = 0;
+    static final int COL_VALUE = 1;
 
     private static int maxEntries = 2000;
+    private static volatile MonitorRing ring = new MonitorRing(maxEntries, 2);
     private static int valueTruncateLength = 512;
 
     // Optional filters (substring match)
-    private static final Set<String> positiveNameFilter = new HashSet<>();
-    private static final Set<String> negativeNameFilter = new HashSet<>();
-    private static final Set<String> positiveValueFilter = new HashSet<>();
-    private static final Set<String> negativeValueFilter = new HashSet<>();
+    private static volatile MonitorFilter.Filter nameFilter = MonitorFilter.Filter.ALLOW_ALL;
+    private static volatile MonitorFilter.Filter valueFilter = MonitorFilter.Filter.ALLOW_ALL;
 
     private HeaderMonitor() {}
 
@@ -43,80 +34,45 @@ public final class HeaderMonitor {
             Collection<String> positiveValue,
             Collection<String> negativeValue
     ) {
-        HeaderMonitor.maxEntries = Math.max(1, maxEntries);
+        if (HeaderMonitor.maxEntries != Math.max(1, maxEntries)) {
+            HeaderMonitor.maxEntries = Math.max(1, maxEntries);
+            ring = new MonitorRing(HeaderMonitor.maxEntries, 2);
+        }
         HeaderMonitor.valueTruncateLength = Math.max(0, valueTruncateLength);
 
-        positiveNameFilter.clear(); negativeNameFilter.clear();
-        positiveValueFilter.clear(); negativeValueFilter.clear();
-
-        if (positiveName != null) positiveNameFilter.addAll(positiveName);
-        if (negativeName != null) negativeNameFilter.addAll(negativeName);
-        if (positiveValue != null) positiveValueFilter.addAll(positiveValue);
-        if (negativeValue != null) negativeValueFilter.addAll(negativeValue);
+        nameFilter = MonitorFilter.compile(positiveName, negativeName, false, false);
+        valueFilter = MonitorFilter.compile(positiveValue, negativeValue, false, false);
     }
 
     public static void clear() {
-        synchronized (MAP) {
-            MAP.clear();
-            INDEX.set(0);
-        }
+        ring.clear();
     }
 
     public static void addEntry(String name, String value) {
-        if (!allow(name, positiveNameFilter, negativeNameFilter)) return;
-        if (!allow(value, positiveValueFilter, negativeValueFilter)) return;
+        if (!nameFilter.allows(name)) return;
+        if (!valueFilter.allows(value)) return;
 
         String v = truncate(value, valueTruncateLength);
         long ts = System.currentTimeMillis();
 
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("timestamp", ts);
-        entry.put("name", name);
-        entry.put("value", v);
-
-        synchronized (MAP) {
-            long idx = INDEX.incrementAndGet();
-            MAP.put(idx, entry);
-            while (MAP.size() > maxEntries) MAP.pollFirstEntry();
-        }
+        ring.add(ts, MonitorRing.NO_NUMBER, name, v);
     }
 
-    public static TreeMap<Long, Map<String, Object>> snapshot() {
-        synchronized (MAP) {
-            return new TreeMap<>(MAP);
-        }
+    static MonitorRing ring() {
+        return ring;
     }
 
     public static void writeMonitorCsv(Writer w, long afterIndexExclusive) throws IOException {
-        List<Map.Entry<Long, Map<String, Object>>> snapshot;
-        synchronized (MAP) {
-            snapshot = new ArrayList<>(MAP.tailMap(afterIndexExclusive, false).entrySet());
-        }
-
         w.write("Index,Timestamp,Name,Value\n");
-        for (Map.Entry<Long, Map<String, Object>> e : snapshot) {
-            long idx = e.getKey();
-            Map<String, Object> m = e.getValue();
-            w.write(Long.toString(idx)); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("timestamp")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("name")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("value")))); w.write('\n');
-        }
+        ring.scan(afterIndexExclusive, Long.MAX_VALUE, Integer.MAX_VALUE, false, (index, timestamp, number, row) -> {
+            w.write(Long.toString(index)); w.write(',');
+            w.write(Long.toString(timestamp)); w.write(',');
+            w.write(csvEscape(String.valueOf(row[COL_NAME]))); w.write(',');
+            w.write(csvEscape(row[COL_VALUE])); w.write('\n');
+        });
         w.flush();
     }
 
-    private static boolean allow(String s, Set<String> positive, Set<String> negative) {
-        if (s == null) s = "";
-        for (String n : negative) {
-            if (n != null && !n.isEmpty() && s.contains(n)) return false;
-        }
-        if (positive.isEmpty()) return true;
-        for (String p : positive) {
-            if (p != null && !p.isEmpty() && s.contains(p)) return true;
-        }
-        return false;
-    }
-
     private static String truncate(String s, int max) {
         if (s == null) return "";
         if (max <= 0) return "";
@@ -0,0 +1,296 @@
+package com.applisto.appcloner;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Installs hooks at startup according to when they are needed.
+ *
+ * <ul>
+ *   <li>{@link Phase#EARLY} steps run inline on the calling (main) thread, in the order they
+ *       were added, before {@link #start()} returns. Use this for anything the host app may
+ *       observe from {@code Application.onCreate}: identity spoofing, build props, proxies,
+ *       root/emulator hiding, data import.</li>
+ *   <li>{@link Phase#BACKGROUND} steps run on a small pool while the host application
+ *       initialises. The main thread waits for them (bounded by {@link #BARRIER_TIMEOUT_MS})
+ *       right after {@code Application.onCreate} returns, before the first activity is
+ *       launched, so activity-level hooks and lifecycle callbacks are still in place.</li>
+ *   <li>{@link Phase#LAZY} steps are released once the main looper first goes idle and also
+ *       run on the pool. Nothing waits for them.</li>
+ * </ul>
+ *
+ * A step may name steps it depends on; those must have been added before it and belong to
+ * the same or an earlier phase, which keeps the graph acyclic. Every step is timed and the
+ * results are logged once the last one finishes and are available from {@link #getTimings()}.
+ */
+public final class HookBootstrap {
+    private static final String TAG = "HookBootstrap";
+    private static final long BARRIER_TIMEOUT_MS = 2000;
+
+    public enum Phase { EARLY, BACKGROUND, LAZY }
+
+    private static volatile HookBootstrap sLast;
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final CountDownLatch backgroundDone = new CountDownLatch(1);
+    private final AtomicInteger backgroundRemaining = new AtomicInteger();
+    private final long originNanos = System.nanoTime();
+    private ExecutorService pool;
+    private boolean started;
+
+    /** The bootstrap started most recently in this process, or null. */
+    public static HookBootstrap getLast() {
+        return sLast;
+    }
+
+    /**
+     * Adds a step.
+     *
+     * @param dependsOn names of previously added steps that must finish first
+     */
+    public synchronized HookBootstrap add(String name, Phase phase, Runnable action, String... dependsOn) {
+        if (started) throw new IllegalStateException("Bootstrap already started");
+        if (steps.containsKey(name)) throw new IllegalArgumentException("Duplicate step " + name);
+        Step step = new Step(name, phase, action);
+        for (String dep : dependsOn) {
+            Step d = steps.get(dep);
+            if (d == null) {
+                throw new IllegalArgumentException(name + " depends on unknown step " + dep);
+            }
+            if (d.phase.ordinal() > phase.ordinal()) {
+                throw new IllegalArgumentException(name + " (" + phase + ") cannot wait for "
+                        + dep + " (" + d.phase + ")");
+            }
+            if (d.phase != Phase.EARLY) {
+                step.pending++;
+                d.dependents.add(step);
+            }
+        }
+        steps.put(name, step);
+        return this;
+    }
+
+    /**
+     * Runs the early steps on this thread and schedules the rest. Must be called on the main
+     * thread, from provider or application initialisation.
+     */
+    public void start() {
+        List<Step> ready = new ArrayList<>();
+        synchronized (this) {
+            if (started) throw new IllegalStateException("Bootstrap already started");
+            started = true;
+            remaining.set(steps.size());
+            for (Step s : steps.values()) {
+                if (s.phase == Phase.BACKGROUND) backgroundRemaining.incrementAndGet();
+            }
+        }
+        sLast = this;
+        if (backgroundRemaining.get() == 0) backgroundDone.countDown();
+
+        for (Step s : steps.values()) {
+            if (s.phase == Phase.EARLY) run(s);
+        }
+
+        int deferred = 0;
+        for (Step s : steps.values()) {
+            if (s.phase == Phase.EARLY) continue;
+            deferred++;
+            if (s.phase == Phase.BACKGROUND && s.pending == 0) ready.add(s);
+        }
+        if (deferred == 0) return;
+
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 2, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BootThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        pool = executor;
+        for (Step s : ready) submit(s);
+
+        Handler main = new Handler(Looper.getMainLooper());
+        // Runs as soon as handleBindApplication returns, i.e. after Application.onCreate and
+        // before the launch of the first activity is processed.
+        main.postAtFrontOfQueue(() -> {
+            awaitBackground();
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    releaseLazy();
+                    return false;
+                }
+            });
+        });
+    }
+
+    /**
+     * Blocks until all background steps have finished or the barrier timeout expires.
+     *
+     * @return true if every background step finished
+     */
+    public boolean awaitBackground() {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            if (!backgroundDone.await(BARRIER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Background hooks still installing after " + BARRIER_TIMEOUT_MS
+                        + " ms; continuing startup");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        long waited = SystemClock.elapsedRealtime() - start;
+        if (waited > 0) Log.i(TAG, "Waited " + waited + " ms for background hooks");
+        return true;
+    }
+
+    /** Per-step timings in insertion order; steps that have not run report a negative duration. */
+    public synchronized List<Timing> getTimings() {
+        List<Timing> out = new ArrayList<>(steps.size());
+        for (Step s : steps.values()) {
+            out.add(new Timing(s.name, s.phase, s.thread, s.startNanos, s.endNanos, s.error));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private void releaseLazy() {
+        for (Step s : steps.values()) {
+            if (s.phase != Phase.LAZY) continue;
+            boolean ready;
+            synchronized (this) {
+                s.released = true;
+                ready = s.pending == 0;
+            }
+            if (ready) submit(s);
+        }
+    }
+
+    private void submit(Step s) {
+        pool.execute(() -> {
+            run(s);
+            List<Step> ready = new ArrayList<>();
+            synchronized (this) {
+                for (Step d : s.dependents) {
+                    if (--d.pending == 0 && (d.phase != Phase.LAZY || d.released)) ready.add(d);
+                }
+            }
+            for (Step d : ready) submit(d);
+        });
+    }
+
+    private void run(Step s) {
+        long start = StartupTrace.now();
+        Throwable error = null;
+        try {
+            s.action.run();
+        } catch (Throwable t) {
+            error = t;
+            Log.e(TAG, "Failed to install " + s.name, t);
+        }
+        long end = System.nanoTime();
+        StartupTrace.record(StartupTrace.CAT_HOOK, s.name, start);
+        synchronized (this) {
+            s.thread = Thread.currentThread().getName();
+            s.startNanos = start - originNanos;
+            s.endNanos = end - originNanos;
+            s.error = error;
+        }
+        Log.d(TAG, s.name + " [" + s.phase + "] installed in " + (end - start) / 1000 + " us");
+
+        if (s.phase == Phase.BACKGROUND && backgroundRemaining.decrementAndGet() == 0) {
+            backgroundDone.countDown();
+        }
+        if (remaining.decrementAndGet() == 0) {
+            logSummary();
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    private void logSummary() {
+        long[] phaseNanos = new long[Phase.values().length];
+        Timing slowest = null;
+        for (Timing t : getTimings()) {
+            phaseNanos[t.phase.ordinal()] += t.getDurationNanos();
+            if (slowest == null || t.getDurationNanos() > slowest.getDurationNanos()) slowest = t;
+        }
+        StringBuilder sb = new StringBuilder("Hook bootstrap finished: ");
+        for (Phase p : Phase.values()) {
+            sb.append(p.name().toLowerCase()).append('=')
+                    .append(phaseNanos[p.ordinal()] / 1_000_000).append("ms ");
+        }
+        if (slowest != null) {
+            sb.append("slowest=").append(slowest.name)
+                    .append(" (").append(slowest.getDurationNanos() / 1_000_000).append("ms)");
+        }
+        Log.i(TAG, sb.toString());
+    }
+
+    /** Immutable timing record for one step; offsets are relative to bootstrap creation. */
+    public static final class Timing {
+        public final String name;
+        public final Phase phase;
+        public final String thread;
+        public final long startNanos;
+        public final long endNanos;
+        public final Throwable error;
+
+        Timing(String name, Phase phase, String thread, long startNanos, long endNanos, Throwable error) {
+            this.name = name;
+            this.phase = phase;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.error = error;
+        }
+
+        public long getDurationNanos() {
+            return thread != null ? endNanos - startNanos : -1;
+        }
+    }
+
+    private static final class Step {
+        final String name;
+        final Phase phase;
+        final Runnable action;
+        final List<Step> dependents = new ArrayList<>();
+        int pending;
+        boolean released;
+        String thread;
+        long startNanos;
+        long endNanos;
+        Throwable error;
+
+        Step(String name, Phase phase, Runnable action) {
+            this.name = name;
+            this.phase = phase;
+            this.action = action;
+        }
+    }
+
+    private static final class BootThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "hook-boot-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.applisto.appcloner;
+
+import com.applisto.appcloner.hooking.HookStats;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * /hook-stats: the installed hooks ranked by the time they have cost the app so far, with
+ * /hook-stats.json as export and POST /hook-stats/reset to start measuring afresh.
+ */
+public final class HookStatsRoutes {
+    private static final String BASE = "hook-stats";
+
+    private HookStatsRoutes() {}
+
+    /** Call this from your server's handleRequest(...) */
+    public static SimpleHttpServer.Response tryHandle(SimpleHttpServer.Request req) {
+        String path = req.path;
+        int q = path.indexOf('?');
+        if (q >= 0) path = path.substring(0, q);
+        if (path.startsWith("/")) path = path.substring(1);
+
+        try {
+            if (BASE.equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) return renderPage(HookStats.toJson());
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
+            }
+            if ((BASE + ".json").equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) {
+                    return new SimpleHttpServer.Response(200, "application/json", HookStats.toJson().toString());
+                }
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
+            }
+        } catch (JSONException e) {
+            return new SimpleHttpServer.Response(500, "text/plain", "error: " + e.getMessage());
+        }
+        if ((BASE + "/reset").equals(path)) {
+            if ("POST".equalsIgnoreCase(req.method)) {
+                HookStats.resetAll();
+                return new SimpleHttpServer.Response(200, "application/json", "{\"ok\":true}");
+            }
+            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
+        }
+        return null; // not handled
+    }
+
+    private static SimpleHttpServer.Response renderPage(JSONObject root) throws JSONException {
+        JSONArray stats = root.getJSONArray("stats");
+        return new SimpleHttpServer.Response(200, "text/html", w -> {
+            w.write("<!doctype html><meta charset=utf-8>" +
+                    "<title>Hook Stats</title>" +
+                    "<style>" +
+                    "body{font-family:system-ui,monospace;margin:0;padding:12px;background:#0b0f14;color:#e6edf3}" +
+                    "a,button{color:#e6edf3} .bar{display:flex;gap:8px;align-items:center;flex-wrap:wrap;margin-bottom:10px}" +
+                    "button{background:#1f2a37;border:1px solid #334155;border-radius:10px;padding:8px 12px;cursor:pointer}" +
+                    "button:hover{background:#253244}" +
+                    "table{width:100%;border-collapse:collapse;border:1px solid #334155;border-radius:12px;overflow:hidden;margin-bottom:10px}" +
+                    "th,td{border-bottom:1px solid #334155;padding:8px;font-size:13px}" +
+                    "th{background:#111827;text-align:left} td.n{text-align:right}" +
+                    ".muted{opacity:.75}" +
+                    "</style>" +
+
+                    "<div class=bar><div><b>Hook Stats</b></div>" +
+                    "<div class=muted>hooks: " + root.optInt("hooks") +
+                    " | calls: " + root.optLong("calls") +
+                    " | total: " + millis(root.optLong("total_ns")) + "</div>" +
+                    "<button onclick='location.reload()'>Refresh</button>" +
+                    "<button onclick='location.href=\"/" + BASE + ".json\"'>Download JSON</button>" +
+                    "<button onclick='fetch(\"/" + BASE + "/reset\",{method:\"POST\"}).then(()=>location.reload())'>Reset</button>" +
+                    "</div>" +
+
+                    "<table><thead><tr><th>Hook</th><th>Callback</th><th>Calls</th><th>Total</th>" +
+                    "<th>Mean</th><th>p50</th><th>p99</th><th>p99.9</th><th>Max</th></tr></thead><tbody>\n");
+            for (int i = 0; i < stats.length(); i++) {
+                JSONObject s = stats.optJSONObject(i);
+                w.write("<tr><td>");
+                MonitorHttpRoutes.writeHtml(w, s.optString("hook"));
+                w.write("</td><td>");
+                MonitorHttpRoutes.writeHtml(w, s.optString("callback"));
+                w.write("</td><td class=n>" + s.optLong("calls") + "</td>");
+                cell(w, millis(s.optLong("total_ns")));
+                cell(w, micros(s.optLong("mean_ns")));
+                cell(w, micros(s.optLong("p50_ns")));
+                cell(w, micros(s.optLong("p99_ns")));
+                cell(w, micros(s.optLong("p99_9_ns")));
+                cell(w, micros(s.optLong("max_ns")));
+                w.write("</tr>\n");
+            }
+            w.write("</tbody></table>");
+        });
+    }
+
+    private static void cell(Writer w, String s) throws IOException {
+        w.write("<td class=n>");
+        w.write(s);
+        w.write("</td>");
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.1f ms", nanos / 1e6);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.US, "%.1f µs", nanos / 1e3);
+    }
+}
@@ -6,25 +6,20 @@ import android.text.TextUtils;
 import java.io.IOException;
 import java.io.Writer;
 import java.net.InetAddress;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public final class HostMonitor {
     private static final int NOTIFICATION_ID = 986711463;
 
-    private static final AtomicLong sIndex = new AtomicLong(0);
-    private static final Set<String> sPositiveHostFilter = new HashSet<>();
-    private static final Set<String> sNegativeHostFilter = new HashSet<>();
+    private static volatile MonitorFilter.Filter sHostFilter = MonitorFilter.Filter.ALLOW_ALL;
 
-    private static volatile TreeMap<Long, Map<String, Object>> sMap;
-    private static volatile int sMaxEntries = 2000;
+    // Columns of the ring: the host; the port goes in the numeric column.
+    static final int COL_HOST = 0;
+
+    private static volatile MonitorRing sRing;
     private static volatile int sCountDown = -1; // jar: -1 default, set to 10 if not monitoringSuite
     private static volatile String sLastHost;
 
@@ -40,14 +35,13 @@ public final class HostMonitor {
     private HostMonitor() {}
 
     public static void install(Context context, List<String> hostFilter, int maxEntries, boolean monitoringSuite) {
-        sMaxEntries = maxEntries;
         if (monitoringSuite) {
-            MonitorFilter.parseFilter(hostFilter, sPositiveHostFilter, sNegativeHostFilter);
+            sHostFilter = MonitorFilter.parseFilter(hostFilter);
         } else {
             sCountDown = 10; // jar behavior
         }
 
-        sMap = new TreeMap<>();
+        sRing = new MonitorRing(maxEntries, 1);
 
         // Hook DNS resolution
         new InetAddressGetByNameHook() {
@@ -83,21 +77,14 @@ public final class HostMonitor {
         HostMonitorNotifications.install(context, NOTIFICATION_ID, "host-monitor?packageName=" + context.getPackageName(), "Host Monitor");
     }
 
-    public static java.util.TreeMap<Long, java.util.Map<String, Object>> snapshot() {
-        java.util.TreeMap<Long, java.util.Map<String, Object>> map = sMap;
-        if (map == null) return new java.util.TreeMap<>();
-        synchronized (map) {
-            return new java.util.TreeMap<>(map);
-        }
+    /** The event store, or null before {@link #install}. */
+    static MonitorRing ring() {
+        return sRing;
     }
 
     public static void deleteEntries() {
-        TreeMap<Long, Map<String, Object>> map = sMap;
-        if (map == null) return;
-        synchronized (map) {
-            map.clear();
-            sIndex.set(0);
-        }
+        MonitorRing ring = sRing;
+        if (ring != null) ring.clear();
     }
 
     private static void addEntry(long timestamp, String host, Integer port) {
@@ -117,53 +104,28 @@ public final class HostMonitor {
         }
 
         // filters like jar
-        if (!MonitorFilter.allowAdding(h, sPositiveHostFilter, sNegativeHostFilter)) return;
+        if (!sHostFilter.allows(h)) return;
 
         // dedupe consecutive
         if (h.equals(sLastHost)) return;
 
-        TreeMap<Long, Map<String, Object>> map = sMap;
-        if (map == null) return;
-
-        long idx = sIndex.incrementAndGet();
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("timestamp", timestamp);
-        entry.put("host", h);
-        if (port != null) entry.put("port", port);
-
-        synchronized (map) {
-            map.put(idx, entry);
-            while (map.size() > sMaxEntries) {
-                map.pollFirstEntry();
-            }
-        }
+        MonitorRing ring = sRing;
+        if (ring == null) return;
+        ring.add(timestamp, port != null ? port : MonitorRing.NO_NUMBER, h);
 
         sLastHost = h;
     }
 
     public static void writeMonitorCsv(Writer w, long afterIndex) throws IOException {
-        TreeMap<Long, Map<String, Object>> map = sMap;
-        if (map == null) return;
-
-        final java.util.List<Map.Entry<Long, Map<String, Object>>> rows;
-        synchronized (map) {
-            rows = new java.util.ArrayList<>(map.tailMap(afterIndex, false).entrySet());
-        }
-
+        MonitorRing ring = sRing;
+        if (ring == null) return;
         w.write("Index,Timestamp,Host,Port\n");
-        for (Map.Entry<Long, Map<String, Object>> e : rows) {
-            long idx = e.getKey();
-            Map<String, Object> v = e.getValue();
-
-            String ts = String.valueOf(v.get("timestamp"));
-            String host = String.valueOf(v.get("host"));
-            String port = Objects.toString(v.get("port"), "");
-
-            w.write(Long.toString(idx)); w.write(',');
-            w.write(csvEscape(ts)); w.write(',');
-            w.write(csvEscape(host)); w.write(',');
-            w.write(csvEscape(port)); w.write('\n');
-        }
+        ring.scan(afterIndex, Long.MAX_VALUE, Integer.MAX_VALUE, false, (index, timestamp, port, row) -> {
+            w.write(Long.toString(index)); w.write(',');
+            w.write(Long.toString(timestamp)); w.write(',');
+            w.write(csvEscape(row[COL_HOST])); w.write(',');
+            w.write(port == MonitorRing.NO_NUMBER ? "" : Long.toString(port)); w.write('\n');
+        });
         w.flush();
     }
 
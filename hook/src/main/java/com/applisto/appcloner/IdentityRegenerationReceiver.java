@@ -242,9 +242,8 @@ public class IdentityRegenerationReceiver extends BroadcastReceiver {
                         clearAppData(context);
                     }
                     
-                    // 4. Update hook instances with new values
-                    updateHookInstances(context, newAndroidId, newImei, newImsi,
-                        newSerial, newWifiMac, newBluetoothMac);
+                    // 4. Publish the new values; subscribed hooks switch over right away
+                    ClonerSettings.reload(context);
 
                     // 5. Randomize build props so device profile changes with new identity
                     if (randomizeBuildProps) {
@@ -322,50 +321,6 @@ public class IdentityRegenerationReceiver extends BroadcastReceiver {
         }
     }
 
-    /**
-     * Updates the static values in hook instances.
-     */
-    private void updateHookInstances(Context context, String androidId, String imei,
-            String imsi, String serial, String wifiMac, String bluetoothMac) {
-        try {
-            // Update AndroidIdHook
-            if (androidId != null && !androidId.isEmpty()) {
-                // The hooks use static fields, so we need to reinitialize them
-                // For now, just log - actual update requires app restart
-                Log.d(TAG, "New Android ID set: " + androidId);
-            }
-            
-            // Update ImeiHook
-            if (imei != null && !imei.isEmpty()) {
-                ImeiHook.setImei(imei);
-            }
-            
-            // Update ImsiHook
-            if (imsi != null && !imsi.isEmpty()) {
-                ImsiHook.setImsi(imsi);
-            }
-            
-            // Update SerialHook
-            if (serial != null && !serial.isEmpty()) {
-                SerialHook.setSerial(serial);
-            }
-            
-            // Update WifiMacHook
-            if (wifiMac != null && !wifiMac.isEmpty()) {
-                WifiMacHook.setMac(wifiMac);
-            }
-            
-            // Update BtMacHook
-            if (bluetoothMac != null && !bluetoothMac.isEmpty()) {
-                BtMacHook.setMac(bluetoothMac);
-            }
-            
-            Log.i(TAG, "Hook instances updated with new identity values");
-        } catch (Throwable t) {
-            Log.e(TAG, "Error updating hook instances", t);
-        }
-    }
-
     /**
      * Randomizes build properties so device profile changes together with identity.
      * This selects a random device preset and generates a new fingerprint.
@@ -289,61 +289,7 @@ public final class ImageUtils {
      * @return NV21 formatted byte array
      */
     public static byte[] rgbToNV21(int[] argb, int width, int height, byte[] reusableOutput) {
-        // NV21 size: Y plane (width * height) + UV plane (width * height / 2)
-        int frameSize = width * height;
-        int chromaSize = frameSize / 2;
-        int totalSize = frameSize + chromaSize;
-
-        byte[] nv21 = reusableOutput;
-        if (nv21 == null || nv21.length < totalSize) {
-            nv21 = new byte[totalSize];
-        }
-
-        int yIndex = 0;
-        int uvIndex = frameSize;
-
-        // Optimization: Cache frame size/width in local vars for loop speed?
-        // Actually, direct array access is fast. The main cost is the math and loop.
-
-        for (int j = 0; j < height; j++) {
-            int rowOffset = j * width;
-            for (int i = 0; i < width; i++) {
-                int pixel = argb[rowOffset + i];
-
-                // Extract RGB components
-                int r = (pixel >> 16) & 0xFF;
-                int g = (pixel >> 8) & 0xFF;
-                int b = pixel & 0xFF;
-
-                // Convert RGB to YUV (BT.601)
-                // y = 0.299R + 0.587G + 0.114B
-                // u = -0.169R - 0.331G + 0.500B + 128
-                // v = 0.500R - 0.419G - 0.081B + 128
-
-                // Integer math approximation:
-                int y = ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
-                int u = ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
-                int v = ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
-
-                // Clamp values
-                // Manual clamp is faster than Math.max/min call overhead in tight loop
-                y = (y < 16) ? 16 : ((y > 235) ? 235 : y);
-                u = (u < 16) ? 16 : ((u > 240) ? 240 : u);
-                v = (v < 16) ? 16 : ((v > 240) ? 240 : v);
-
-                // Store Y value
-                nv21[yIndex++] = (byte) y;
-
-                // Store UV values (subsampled 2x2)
-                // NV21 format: VU VU VU... (V first, then U)
-                if ((j & 1) == 0 && (i & 1) == 0 && uvIndex < totalSize - 1) {
-                    nv21[uvIndex++] = (byte) v;
-                    nv21[uvIndex++] = (byte) u;
-                }
-            }
-        }
-
-        return nv21;
+        return YuvConverter.convert(argb, width, height, YuvConverter.Layout.NV21, reusableOutput);
     }
 
     /**
@@ -360,125 +306,13 @@ public final class ImageUtils {
             return;
         }
 
-        int frameSize = width * height;
-
         try {
-            // Y plane
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            int yRowStride = planes[0].getRowStride();
-            int yPixelStride = planes[0].getPixelStride();
-
-            // U plane (Cb)
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            int uRowStride = planes[1].getRowStride();
-            int uPixelStride = planes[1].getPixelStride();
-
-            // V plane (Cr)
-            ByteBuffer vBuffer = planes[2].getBuffer();
-            int vRowStride = planes[2].getRowStride();
-            int vPixelStride = planes[2].getPixelStride();
-
-            // Write Y plane
-            writeYPlane(yuvData, yBuffer, width, height, yRowStride, yPixelStride);
-
-            // Write UV planes from NV21 data
-            // NV21 format: YYYYYYYY VUVUVU (V and U interleaved after Y)
-            writeUVPlanesFromNV21(yuvData, frameSize, uBuffer, vBuffer,
-                    width, height, uRowStride, uPixelStride, vRowStride, vPixelStride);
-
-            // Removed verbose log: Log.d(TAG, "Successfully wrote YUV data to planes");
-
+            YuvConverter.writePlanes(yuvData, width, height, YuvConverter.Layout.NV21, planes);
         } catch (Exception e) {
             Log.e(TAG, "Error writing YUV data to planes", e);
         }
     }
 
-    private static void writeYPlane(byte[] nv21, ByteBuffer yBuffer,
-                                    int width, int height, int rowStride, int pixelStride) {
-        yBuffer.rewind();
-
-        if (rowStride == width && pixelStride == 1) {
-            // Simple case: no padding, contiguous data
-            int ySize = Math.min(width * height, yBuffer.remaining());
-            yBuffer.put(nv21, 0, ySize);
-        } else {
-            // Handle row stride and pixel stride
-            for (int row = 0; row < height; row++) {
-                int srcOffset = row * width;
-                for (int col = 0; col < width; col++) {
-                    if (yBuffer.hasRemaining()) {
-                        yBuffer.put(nv21[srcOffset + col]);
-                    }
-                }
-                // Skip padding bytes at end of row
-                int paddingBytes = rowStride - (width * pixelStride);
-                if (paddingBytes > 0 && yBuffer.remaining() >= paddingBytes) {
-                    // Skip padding bytes instead of overwriting with 0
-                    yBuffer.position(yBuffer.position() + paddingBytes);
-                }
-            }
-        }
-
-        yBuffer.rewind();
-    }
-
-    private static void writeUVPlanesFromNV21(byte[] nv21, int ySize,
-                                              ByteBuffer uBuffer, ByteBuffer vBuffer,
-                                              int width, int height,
-                                              int uRowStride, int uPixelStride,
-                                              int vRowStride, int vPixelStride) {
-        uBuffer.rewind();
-        vBuffer.rewind();
-
-        int uvHeight = height / 2;
-        int uvWidth = width / 2;
-
-        // NV21: V comes first, then U (interleaved)
-        for (int row = 0; row < uvHeight; row++) {
-            for (int col = 0; col < uvWidth; col++) {
-                int nv21Index = ySize + (row * width) + (col * 2);
-
-                if (nv21Index + 1 < nv21.length) {
-                    byte v = nv21[nv21Index];     // V
-                    byte u = nv21[nv21Index + 1]; // U
-
-                    if (vBuffer.hasRemaining()) {
-                        vBuffer.put(v);
-                    }
-                    if (uBuffer.hasRemaining()) {
-                        uBuffer.put(u);
-                    }
-
-                    // Handle pixel stride > 1 (skip bytes between pixels)
-                    // Skip bytes instead of overwriting with 0 to preserve interleaved data
-                    int uSkip = uPixelStride - 1;
-                    if (uSkip > 0 && uBuffer.remaining() >= uSkip) {
-                        uBuffer.position(uBuffer.position() + uSkip);
-                    }
-
-                    int vSkip = vPixelStride - 1;
-                    if (vSkip > 0 && vBuffer.remaining() >= vSkip) {
-                        vBuffer.position(vBuffer.position() + vSkip);
-                    }
-                }
-            }
-
-            // Handle row stride (skip padding at end of row)
-            int uPadding = uRowStride - (uvWidth * uPixelStride);
-            if (uPadding > 0 && uBuffer.remaining() >= uPadding) {
-                uBuffer.position(uBuffer.position() + uPadding);
-            }
-
-            int vPadding = vRowStride - (uvWidth * vPixelStride);
-            if (vPadding > 0 && vBuffer.remaining() >= vPadding) {
-                vBuffer.position(vBuffer.position() + vPadding);
-            }
-        }
-
-        uBuffer.rewind();
-        vBuffer.rewind();
-    }
-
     /**
      * Converts a Bitmap to YUV_420_888 format byte array.
      * Similar to NV21 but with different UV plane arrangement.
@@ -496,45 +330,7 @@ public final class ImageUtils {
         int[] pixels = new int[width * height];
         bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
 
-        int frameSize = width * height;
-        int chromaSize = frameSize / 4;
-
-        byte[] yuv = new byte[frameSize + chromaSize * 2];
-
-        int yIndex = 0;
-        int uIndex = frameSize;
-        int vIndex = frameSize + chromaSize;
-
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
-                int pixel = pixels[j * width + i];
-
-                int r = (pixel >> 16) & 0xFF;
-                int g = (pixel >> 8) & 0xFF;
-                int b = pixel & 0xFF;
-
-                // Convert RGB to YUV
-                int y = ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
-                int u = ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
-                int v = ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
-
-                yuv[yIndex++] = (byte) clamp(y, 16, 235);
-
-                if (j % 2 == 0 && i % 2 == 0) {
-                    yuv[uIndex++] = (byte) clamp(u, 16, 240);
-                    yuv[vIndex++] = (byte) clamp(v, 16, 240);
-                }
-            }
-        }
-
-        return yuv;
-    }
-
-    /**
-     * Clamps a value between min and max.
-     */
-    private static int clamp(int value, int min, int max) {
-        return Math.max(min, Math.min(max, value));
+        return YuvConverter.convert(pixels, width, height, YuvConverter.Layout.I420, null);
     }
     
     /**
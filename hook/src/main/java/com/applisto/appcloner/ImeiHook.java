@@ -28,16 +28,23 @@ public final class ImeiHook {
     private static final String TAG = "ImeiHook";
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
-    private static String sFakeImei = null;
+    private static volatile String sFakeImei = null;
+    private static boolean sHooked;
 
     public void init(Context context) {
         Log.i(TAG, "Initializing IMEI hook...");
         
         // Load IMEI from settings
-        String configImei = ClonerSettings.get(context).imei();
-        
+        apply(ClonerSettings.get(context).imei());
+
+        // A regenerated or pushed IMEI takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings.imei()), "imei");
+    }
+
+    private synchronized void apply(String configImei) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configImei) || MODE_NO_CHANGE.equalsIgnoreCase(configImei)) {
+            sFakeImei = null;
             Log.i(TAG, "IMEI set to NO_CHANGE, using system value.");
             return;
         }
@@ -50,6 +57,8 @@ public final class ImeiHook {
             sFakeImei = configImei;
             Log.i(TAG, "IMEI set to CUSTOM: " + sFakeImei);
         }
+        if (sHooked) return;
+        sHooked = true;
         
         Log.i(TAG, "Installing IMEI hook → " + sFakeImei);
 
@@ -80,9 +89,11 @@ public final class ImeiHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeImei;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeImei);
-                    Log.d(TAG, methodName + " spoofed: " + orig + " → " + sFakeImei);
+                    cf.setResult(fake);
+                    Log.d(TAG, methodName + " spoofed: " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked TelephonyManager." + methodName + "()");
@@ -99,9 +110,11 @@ public final class ImeiHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeImei;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeImei);
-                    Log.d(TAG, methodName + "(int) spoofed: " + orig + " → " + sFakeImei);
+                    cf.setResult(fake);
+                    Log.d(TAG, methodName + "(int) spoofed: " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked TelephonyManager." + methodName + "(int)");
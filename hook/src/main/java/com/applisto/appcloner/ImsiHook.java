@@ -24,16 +24,23 @@ public class ImsiHook {
     private static final String TAG = "ImsiHook";
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
-    private static String sFakeImsi = null;
+    private static volatile String sFakeImsi = null;
+    private static boolean sHooked;
 
     public void init(Context context) {
         Log.i(TAG, "Initializing IMSI hook...");
         
         // Load IMSI from settings
-        String configImsi = ClonerSettings.get(context).imsi();
-        
+        apply(ClonerSettings.get(context).imsi());
+
+        // A regenerated or pushed IMSI takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings.imsi()), "imsi");
+    }
+
+    private synchronized void apply(String configImsi) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configImsi) || MODE_NO_CHANGE.equalsIgnoreCase(configImsi)) {
+            sFakeImsi = null;
             Log.i(TAG, "IMSI set to NO_CHANGE, using system value.");
             return;
         }
@@ -46,6 +53,8 @@ public class ImsiHook {
             sFakeImsi = configImsi;
             Log.i(TAG, "IMSI set to CUSTOM: " + sFakeImsi);
         }
+        if (sHooked) return;
+        sHooked = true;
         
         Log.i(TAG, "Installing IMSI hook → " + sFakeImsi);
 
@@ -55,9 +64,11 @@ public class ImsiHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeImsi;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeImsi);
-                    Log.d(TAG, "IMSI spoofed: " + orig + " → " + sFakeImsi);
+                    cf.setResult(fake);
+                    Log.d(TAG, "IMSI spoofed: " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked TelephonyManager.getSubscriberId()");
@@ -71,9 +82,11 @@ public class ImsiHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeImsi;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeImsi);
-                    Log.d(TAG, "IMSI spoofed (subId): " + orig + " → " + sFakeImsi);
+                    cf.setResult(fake);
+                    Log.d(TAG, "IMSI spoofed (subId): " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked TelephonyManager.getSubscriberId(int)");
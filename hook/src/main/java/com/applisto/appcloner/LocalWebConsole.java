@@ -45,12 +45,20 @@ public final class LocalWebConsole {
             @Override protected Response handleRequest(Request req) {
                 // Monitor Routes (Host, Header, Preferences)
                 try {
-                     SimpleHttpServer.Response mon = MonitorHttpRoutes.tryHandle(new SimpleHttpServer.Request(req.method, req.path));
-                     if (mon != null) return new Response(mon.statusCode, mon.contentType, mon.body);
+                     SimpleHttpServer.Response mon = MonitorHttpRoutes.tryHandle(req);
+                     if (mon != null) return mon;
                 } catch (Throwable t) {
                     // MonitorHttpRoutes might not be compatible or accessible
                 }
 
+                // GET /hook-stats: what each installed hook costs
+                try {
+                    SimpleHttpServer.Response stats = HookStatsRoutes.tryHandle(req);
+                    if (stats != null) return stats;
+                } catch (Throwable t) {
+                    Log.w(TAG, "Hook stats failed", t);
+                }
+
                 // GET /
                 if ("GET".equals(req.method)) {
                     if (req.path.equals("/") || req.path.equals("/index.html")) {
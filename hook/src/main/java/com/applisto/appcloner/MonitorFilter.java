@@ -1,59 +1,331 @@
 package com.applisto.appcloner;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Include/exclude filters of the monitors, compiled once into automata so that checking an
+ * event is a single linear pass over the value that allocates nothing, however many entries
+ * the filter has.
+ *
+ * Plain entries match anywhere in the value (an Aho-Corasick automaton over all of them).
+ * In host filters, entries of the form "*.example.com" are domain rules instead: they match
+ * example.com and its subdomains, via a trie over the reversed domains.
+ */
 public final class MonitorFilter {
     private MonitorFilter() {}
 
-    /** Parses list entries like: "+google", "-ads", "example.com" (defaults to positive). */
-    public static void parseFilter(List<String> items, Set<String> positive, Set<String> negative) {
-        positive.clear();
-        negative.clear();
-        if (items == null) return;
-
-        for (String raw : items) {
-            if (raw == null) continue;
-            String s = raw.trim();
-            if (s.isEmpty()) continue;
+    /**
+     * Parses host filter entries like: "+google", "-ads", "example.com" (defaults to positive),
+     * "-*.doubleclick.net". Matching ignores case.
+     */
+    public static Filter parseFilter(List<String> items) {
+        List<String> positive = new ArrayList<>();
+        List<String> negative = new ArrayList<>();
+        if (items != null) {
+            for (String raw : items) {
+                if (raw == null) continue;
+                String s = raw.trim();
+                if (s.isEmpty()) continue;
 
-            boolean neg = false;
-            if (s.startsWith("!") || s.startsWith("-")) {
-                neg = true;
-                s = s.substring(1).trim();
-            } else if (s.startsWith("+")) {
-                s = s.substring(1).trim();
-            }
+                boolean neg = false;
+                if (s.startsWith("!") || s.startsWith("-")) {
+                    neg = true;
+                    s = s.substring(1).trim();
+                } else if (s.startsWith("+")) {
+                    s = s.substring(1).trim();
+                }
 
-            if (s.isEmpty()) continue;
-            s = s.toLowerCase(Locale.US);
+                if (s.isEmpty()) continue;
+                s = s.toLowerCase(Locale.US);
 
-            if (neg) negative.add(s);
-            else positive.add(s);
+                if (neg) negative.add(s);
+                else positive.add(s);
+            }
         }
+        return compile(positive, negative, true, true);
     }
 
     /**
-     * If positive set is empty => allow unless it matches negative.
-     * If positive set not empty => allow only if it matches a positive AND doesn't match negative.
-     * Match rule = case-insensitive "contains".
+     * If positive is empty => allow unless the value matches a negative entry.
+     * If positive is not empty => allow only if it matches a positive AND no negative entry.
+     * Null and empty entries are ignored.
      */
-    public static boolean allowAdding(String value, Set<String> positive, Set<String> negative) {
-        if (value == null) return false;
-        String v = value.toLowerCase(Locale.US);
+    public static Filter compile(Collection<String> positive, Collection<String> negative,
+                                 boolean ignoreCase, boolean domainRules) {
+        return new Filter(Matcher.build(positive, ignoreCase, domainRules),
+                Matcher.build(negative, ignoreCase, domainRules));
+    }
+
+    /** Immutable; safe to share between threads. */
+    public static final class Filter {
+        public static final Filter ALLOW_ALL = new Filter(null, null);
+
+        private final Matcher positive;
+        private final Matcher negative;
+
+        Filter(Matcher positive, Matcher negative) {
+            this.positive = positive;
+            this.negative = negative;
+        }
+
+        /** Whether an event with {@code value} (null counts as "") passes the filter. */
+        public boolean allows(String value) {
+            if (value == null) value = "";
+            if (negative != null && negative.matches(value)) return false;
+            return positive == null || positive.matches(value);
+        }
+    }
 
-        if (negative != null) {
-            for (String n : negative) {
-                if (n != null && !n.isEmpty() && v.contains(n)) return false;
+    /** Matches a value against a set of substrings and domain rules. */
+    static final class Matcher {
+        private final boolean ignoreCase;
+
+        // Substrings: character classes, then an Aho-Corasick automaton over the classes.
+        // Class 0 stands for every character that occurs in no pattern.
+        private final int[] asciiClass = new int[128];
+        private final char[] otherChars;
+        private final int[] otherClasses;
+        private final int[] rootNext;
+        private final int[] edgeStart;
+        private final int[] edgeClass;
+        private final int[] edgeTarget;
+        private final int[] fail;
+        private final boolean[] accept;
+
+        // Domain rules: a trie over the reversed domains, edges sorted by character.
+        private final int[] domainEdgeStart;
+        private final char[] domainEdgeChar;
+        private final int[] domainEdgeTarget;
+        private final boolean[] domainAccept;
+
+        /** Returns null if {@code entries} has nothing to match. */
+        static Matcher build(Collection<String> entries, boolean ignoreCase, boolean domainRules) {
+            List<String> substrings = new ArrayList<>();
+            List<String> domains = new ArrayList<>();
+            if (entries != null) {
+                for (String e : entries) {
+                    if (e == null || e.isEmpty()) continue;
+                    String p = ignoreCase ? fold(e) : e;
+                    if (domainRules && p.startsWith("*.") && p.length() > 2) domains.add(p.substring(2));
+                    else substrings.add(p);
+                }
             }
+            if (substrings.isEmpty() && domains.isEmpty()) return null;
+            return new Matcher(substrings, domains, ignoreCase);
         }
 
-        if (positive == null || positive.isEmpty()) return true;
+        private Matcher(List<String> substrings, List<String> domains, boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+
+            // Character classes, in order of first appearance.
+            TreeMap<Character, Integer> others = new TreeMap<>();
+            int classes = 1;
+            for (String p : substrings) {
+                for (int i = 0; i < p.length(); i++) {
+                    char ch = p.charAt(i);
+                    if (ch < 128) {
+                        if (asciiClass[ch] == 0) asciiClass[ch] = classes++;
+                    } else if (!others.containsKey(ch)) {
+                        others.put(ch, classes++);
+                    }
+                }
+            }
+            otherChars = new char[others.size()];
+            otherClasses = new int[others.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> e : others.entrySet()) {
+                otherChars[k] = e.getKey();
+                otherClasses[k++] = e.getValue();
+            }
+
+            // Trie of the substrings.
+            List<TreeMap<Integer, Integer>> children = new ArrayList<>();
+            List<Boolean> terminal = new ArrayList<>();
+            children.add(new TreeMap<>());
+            terminal.add(false);
+            for (String p : substrings) {
+                int node = 0;
+                for (int i = 0; i < p.length(); i++) {
+                    int c = classOf(p.charAt(i));
+                    Integer next = children.get(node).get(c);
+                    if (next == null) {
+                        next = children.size();
+                        children.add(new TreeMap<>());
+                        terminal.add(false);
+                        children.get(node).put(c, next);
+                    }
+                    node = next;
+                }
+                terminal.set(node, true);
+            }
+
+            int states = children.size();
+            edgeStart = new int[states + 1];
+            int edges = 0;
+            for (int s = 0; s < states; s++) {
+                edgeStart[s] = edges;
+                edges += children.get(s).size();
+            }
+            edgeStart[states] = edges;
+            edgeClass = new int[edges];
+            edgeTarget = new int[edges];
+            for (int s = 0; s < states; s++) {
+                int e = edgeStart[s];
+                for (Map.Entry<Integer, Integer> c : children.get(s).entrySet()) {
+                    edgeClass[e] = c.getKey();
+                    edgeTarget[e++] = c.getValue();
+                }
+            }
+            rootNext = new int[classes];
+            for (Map.Entry<Integer, Integer> c : children.get(0).entrySet()) {
+                rootNext[c.getKey()] = c.getValue();
+            }
+
+            // Failure links, breadth first; a state accepts if any suffix of it is a pattern.
+            fail = new int[states];
+            accept = new boolean[states];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int t : children.get(0).values()) {
+                queue.add(t);
+                accept[t] = terminal.get(t);
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                for (Map.Entry<Integer, Integer> c : children.get(s).entrySet()) {
+                    int t = c.getValue();
+                    int f = fail[s];
+                    int next;
+                    while ((next = step(f, c.getKey())) < 0) f = fail[f];
+                    fail[t] = next;
+                    accept[t] = terminal.get(t) || accept[next];
+                    queue.add(t);
+                }
+            }
+
+            // Reversed-domain trie.
+            List<TreeMap<Character, Integer>> dChildren = new ArrayList<>();
+            List<Boolean> dTerminal = new ArrayList<>();
+            dChildren.add(new TreeMap<>());
+            dTerminal.add(false);
+            for (String d : domains) {
+                int node = 0;
+                for (int i = d.length() - 1; i >= 0; i--) {
+                    Integer next = dChildren.get(node).get(d.charAt(i));
+                    if (next == null) {
+                        next = dChildren.size();
+                        dChildren.add(new TreeMap<>());
+                        dTerminal.add(false);
+                        dChildren.get(node).put(d.charAt(i), next);
+                    }
+                    node = next;
+                }
+                dTerminal.set(node, true);
+            }
+            int dStates = dChildren.size();
+            domainEdgeStart = new int[dStates + 1];
+            domainAccept = new boolean[dStates];
+            int dEdges = 0;
+            for (int s = 0; s < dStates; s++) {
+                domainEdgeStart[s] = dEdges;
+                dEdges += dChildren.get(s).size();
+                domainAccept[s] = dTerminal.get(s);
+            }
+            domainEdgeStart[dStates] = dEdges;
+            domainEdgeChar = new char[dEdges];
+            domainEdgeTarget = new int[dEdges];
+            for (int s = 0; s < dStates; s++) {
+                int e = domainEdgeStart[s];
+                for (Map.Entry<Character, Integer> c : dChildren.get(s).entrySet()) {
+                    domainEdgeChar[e] = c.getKey();
+                    domainEdgeTarget[e++] = c.getValue();
+                }
+            }
+        }
+
+        boolean matches(String value) {
+            return matchesSubstring(value) || matchesDomain(value);
+        }
+
+        private boolean matchesSubstring(String value) {
+            if (edgeClass.length == 0) return false;
+            int state = 0;
+            for (int i = 0, n = value.length(); i < n; i++) {
+                char ch = value.charAt(i);
+                int c = classOf(ignoreCase ? fold(ch) : ch);
+                if (c == 0) {
+                    state = 0; // no pattern contains this character
+                    continue;
+                }
+                int next;
+                while ((next = step(state, c)) < 0) state = fail[state];
+                state = next;
+                if (accept[state]) return true;
+            }
+            return false;
+        }
+
+        private boolean matchesDomain(String value) {
+            if (domainEdgeChar.length == 0) return false;
+            int node = 0;
+            for (int i = value.length() - 1; i >= 0; i--) {
+                char ch = value.charAt(i);
+                node = domainChild(node, ignoreCase ? fold(ch) : ch);
+                if (node < 0) return false;
+                if (domainAccept[node] && (i == 0 || value.charAt(i - 1) == '.')) return true;
+            }
+            return false;
+        }
+
+        /** Goto function; the root never fails. */
+        private int step(int state, int c) {
+            if (state == 0) return rootNext[c];
+            int lo = edgeStart[state];
+            int hi = edgeStart[state + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int mc = edgeClass[mid];
+                if (mc < c) lo = mid + 1;
+                else if (mc > c) hi = mid - 1;
+                else return edgeTarget[mid];
+            }
+            return -1;
+        }
+
+        private int domainChild(int node, char ch) {
+            int lo = domainEdgeStart[node];
+            int hi = domainEdgeStart[node + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char mc = domainEdgeChar[mid];
+                if (mc < ch) lo = mid + 1;
+                else if (mc > ch) hi = mid - 1;
+                else return domainEdgeTarget[mid];
+            }
+            return -1;
+        }
+
+        private int classOf(char ch) {
+            if (ch < 128) return asciiClass[ch];
+            int i = Arrays.binarySearch(otherChars, ch);
+            return i >= 0 ? otherClasses[i] : 0;
+        }
+
+        private static char fold(char ch) {
+            if (ch < 128) return ch >= 'A' && ch <= 'Z' ? (char) (ch + 32) : ch;
+            return Character.toLowerCase(ch);
+        }
 
-        for (String p : positive) {
-            if (p != null && !p.isEmpty() && v.contains(p)) return true;
+        private static String fold(String s) {
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) sb.append(fold(s.charAt(i)));
+            return sb.toString();
         }
-        return false;
     }
 }
@@ -2,241 +2,305 @@ package com.applisto.appcloner;
 
 import android.text.TextUtils;
 
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.TreeMap;
 
 public final class MonitorHttpRoutes {
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Column sources: a string column of the ring, or its numeric column.
+    private static final int NUMBER = -1;
+
+    private static final MonitorRing EMPTY = new MonitorRing(1, 0);
+
+    private static final Table HOSTS = new Table("Host Monitor", "host-monitor",
+            HostMonitor::ring, HostMonitor::writeMonitorCsv, HostMonitor::deleteEntries,
+            new String[] {"Host", "Port"},
+            new String[] {"host", "port"},
+            new int[] {HostMonitor.COL_HOST, NUMBER});
+
+    private static final Table HEADERS = new Table("Header Monitor", "header-monitor",
+            HeaderMonitor::ring, HeaderMonitor::writeMonitorCsv, HeaderMonitor::clear,
+            new String[] {"Name", "Value"},
+            new String[] {"name", "value"},
+            new int[] {HeaderMonitor.COL_NAME, HeaderMonitor.COL_VALUE});
+
+    private static final Table PREFERENCES = new Table("Preferences Monitor", "preferences-monitor",
+            PreferencesMonitor::ring, PreferencesMonitor::writeMonitorCsv, PreferencesMonitor::clear,
+            new String[] {"Method", "FileName", "Key", "Value", "DefaultValue"},
+            new String[] {"method", "fileName", "key", "value", "defaultValue"},
+            new int[] {PreferencesMonitor.COL_METHOD, PreferencesMonitor.COL_FILE_NAME,
+                    PreferencesMonitor.COL_KEY, PreferencesMonitor.COL_VALUE,
+                    PreferencesMonitor.COL_DEFAULT_VALUE});
+
+    private static final Table[] TABLES = {HOSTS, HEADERS, PREFERENCES};
+
     private MonitorHttpRoutes() {}
 
     /** Call this from your server's handleRequest(...) */
     public static SimpleHttpServer.Response tryHandle(SimpleHttpServer.Request req) {
         String raw = req.path; // includes query
         String path = stripQuery(raw);
+        if (path.startsWith("/")) path = path.substring(1);
 
-        // Host Monitor
-        if ("/host-monitor".equals(path) || "host-monitor".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return renderHostMonitorPage(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/host-monitor.csv".equals(path) || "host-monitor.csv".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return exportHostCsv(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/host-monitor/clear".equals(path) || "host-monitor/clear".equals(path)) {
-            if ("POST".equalsIgnoreCase(req.method)) {
-                HostMonitor.deleteEntries();
-                return new SimpleHttpServer.Response(200, "application/json", "{\"ok\":true}");
+        for (Table t : TABLES) {
+            if (t.basePath.equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) return renderPage(t, req.path);
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
             }
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-
-        // Header Monitor
-        if ("/header-monitor".equals(path) || "header-monitor".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return renderHeaderMonitorPage(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/header-monitor.csv".equals(path) || "header-monitor.csv".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return exportHeaderCsv(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/header-monitor/clear".equals(path) || "header-monitor/clear".equals(path)) {
-            if ("POST".equalsIgnoreCase(req.method)) {
-                HeaderMonitor.clear();
-                return new SimpleHttpServer.Response(200, "application/json", "{\"ok\":true}");
+            if ((t.basePath + ".csv").equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) return exportCsv(t, req.path);
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
             }
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-
-        // Preferences Monitor
-        if ("/preferences-monitor".equals(path) || "preferences-monitor".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return renderPreferencesMonitorPage(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/preferences-monitor.csv".equals(path) || "preferences-monitor.csv".equals(path)) {
-            if ("GET".equalsIgnoreCase(req.method)) return exportPreferencesCsv(req.path);
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
-        }
-        if ("/preferences-monitor/clear".equals(path) || "preferences-monitor/clear".equals(path)) {
-            if ("POST".equalsIgnoreCase(req.method)) {
-                PreferencesMonitor.clear();
-                return new SimpleHttpServer.Response(200, "application/json", "{\"ok\":true}");
+            if ((t.basePath + ".json").equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) return exportJson(t, req.path);
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
+            }
+            if ((t.basePath + "/events").equals(path)) {
+                if ("GET".equalsIgnoreCase(req.method)) return openEvents(t, req);
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
+            }
+            if ((t.basePath + "/clear").equals(path)) {
+                if ("POST".equalsIgnoreCase(req.method)) {
+                    t.clear.run();
+                    return new SimpleHttpServer.Response(200, "application/json", "{\"ok\":true}");
+                }
+                return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
             }
-            return new SimpleHttpServer.Response(405, "text/plain", "method not allowed");
         }
 
         return null; // not handled
     }
 
-    // ------------------ Host Monitor ------------------
-
-    private static SimpleHttpServer.Response renderHostMonitorPage(String fullPathWithQuery) {
-        Map<String, String> q = parseQuery(fullPathWithQuery);
-        String pkg = q.get("packageName");
-        if (pkg == null) pkg = "";
+    /** One monitor: where its events live and how they are laid out. */
+    static final class Table {
+        final String title;
+        final String basePath;
+        final RingSource ring;
+        final CsvExport csv;
+        final Runnable clear;
+        final String[] headers;
+        final String[] keys;
+        final int[] sources;
+
+        Table(String title, String basePath, RingSource ring, CsvExport csv, Runnable clear,
+              String[] headers, String[] keys, int[] sources) {
+            this.title = title;
+            this.basePath = basePath;
+            this.ring = ring;
+            this.csv = csv;
+            this.clear = clear;
+            this.headers = headers;
+            this.keys = keys;
+            this.sources = sources;
+        }
 
-        TreeMap<Long, Map<String, Object>> snap = HostMonitor.snapshot();
-        long lastIndex = snap.isEmpty() ? 0L : snap.lastKey();
-
-        StringBuilder rows = new StringBuilder();
-        for (Map.Entry<Long, Map<String, Object>> e : snap.descendingMap().entrySet()) {
-            long idx = e.getKey();
-            Map<String, Object> v = e.getValue();
-            rows.append("<tr>")
-                .append("<td>").append(idx).append("</td>")
-                .append("<td>").append(escapeHtml(String.valueOf(v.get("timestamp")))).append("</td>")
-                .append("<td>").append(escapeHtml(String.valueOf(v.get("host")))).append("</td>")
-                .append("<td>").append(v.get("port") == null ? "" : escapeHtml(String.valueOf(v.get("port")))).append("</td>")
-                .append("</tr>\n");
+        MonitorRing ring() {
+            MonitorRing r = ring.get();
+            return r != null ? r : EMPTY;
         }
 
-        String html = renderPage("Host Monitor", pkg, snap.size(), lastIndex,
-                "<th>Index</th><th>Timestamp</th><th>Host</th><th>Port</th>", rows.toString(),
-                "host-monitor");
-        return new SimpleHttpServer.Response(200, "text/html", html);
-    }
+        /** Writes one event as a JSON object, as listed by the .json export. */
+        void writeJson(Writer w, long index, long timestamp, long number, String[] row) throws IOException {
+            w.write("{\"index\":");
+            w.write(Long.toString(index));
+            w.write(",\"timestamp\":");
+            w.write(Long.toString(timestamp));
+            for (int i = 0; i < keys.length; i++) {
+                String v = cell(i, number, row);
+                if (v == null) continue;
+                w.write(",\"");
+                w.write(keys[i]);
+                w.write("\":");
+                if (sources[i] == NUMBER) w.write(v);
+                else writeJsonString(w, v);
+            }
+            w.write('}');
+        }
 
-    private static SimpleHttpServer.Response exportHostCsv(String fullPathWithQuery) {
-        Map<String, String> q = parseQuery(fullPathWithQuery);
-        long after = parseLong(q.get("after"), 0L);
-        try {
-            StringWriter sw = new StringWriter();
-            HostMonitor.writeMonitorCsv(sw, after);
-            return new SimpleHttpServer.Response(200, "text/csv; charset=utf-8", sw.toString());
-        } catch (Throwable t) {
-            return new SimpleHttpServer.Response(500, "text/plain", "csv error: " + t);
+        /** Text of column {@code i}, or null if the event has no value for it. */
+        String cell(int i, long number, String[] row) {
+            int src = sources[i];
+            if (src != NUMBER) return row[src];
+            return number == MonitorRing.NO_NUMBER ? null : Long.toString(number);
         }
     }
 
-    // ------------------ Header Monitor ------------------
+    private interface RingSource {
+        MonitorRing get();
+    }
 
-    private static SimpleHttpServer.Response renderHeaderMonitorPage(String fullPathWithQuery) {
-        Map<String, String> q = parseQuery(fullPathWithQuery);
-        String pkg = q.get("packageName");
-        if (pkg == null) pkg = "";
+    private interface CsvExport {
+        void write(Writer w, long afterIndex) throws IOException;
+    }
 
-        TreeMap<Long, Map<String, Object>> snap = HeaderMonitor.snapshot();
-        long lastIndex = snap.isEmpty() ? 0L : snap.lastKey();
-
-        StringBuilder rows = new StringBuilder();
-        for (Map.Entry<Long, Map<String, Object>> e : snap.descendingMap().entrySet()) {
-            long idx = e.getKey();
-            Map<String, Object> v = e.getValue();
-            rows.append("<tr>")
-                    .append("<td>").append(idx).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("timestamp")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("name")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("value")))).append("</td>")
-                    .append("</tr>\n");
-        }
+    // ------------------ Exports ------------------
 
-        String html = renderPage("Header Monitor", pkg, snap.size(), lastIndex,
-                "<th>Index</th><th>Timestamp</th><th>Name</th><th>Value</th>", rows.toString(),
-                "header-monitor");
-        return new SimpleHttpServer.Response(200, "text/html", html);
+    private static SimpleHttpServer.Response exportCsv(Table t, String fullPathWithQuery) {
+        Map<String, String> q = parseQuery(fullPathWithQuery);
+        long after = parseLong(q.get("after"), 0L);
+        return new SimpleHttpServer.Response(200, "text/csv; charset=utf-8", w -> t.csv.write(w, after));
     }
 
-    private static SimpleHttpServer.Response exportHeaderCsv(String fullPathWithQuery) {
+    /** {"lastIndex":n,"entries":[...]}; pass lastIndex back as after= to get only newer events. */
+    private static SimpleHttpServer.Response exportJson(Table t, String fullPathWithQuery) {
         Map<String, String> q = parseQuery(fullPathWithQuery);
         long after = parseLong(q.get("after"), 0L);
-        try {
-            StringWriter sw = new StringWriter();
-            HeaderMonitor.writeMonitorCsv(sw, after);
-            return new SimpleHttpServer.Response(200, "text/csv; charset=utf-8", sw.toString());
-        } catch (Throwable t) {
-            return new SimpleHttpServer.Response(500, "text/plain", "csv error: " + t);
-        }
+        return new SimpleHttpServer.Response(200, "application/json", w -> {
+            MonitorRing ring = t.ring();
+            // Not past events still being written, or the next poll would miss them.
+            long lastIndex = ring.committedIndex(after);
+            w.write("{\"lastIndex\":");
+            w.write(Long.toString(lastIndex));
+            w.write(",\"entries\":[");
+            boolean[] first = {true};
+            ring.scan(after, lastIndex + 1, Integer.MAX_VALUE, false, (index, timestamp, number, row) -> {
+                if (!first[0]) w.write(',');
+                first[0] = false;
+                t.writeJson(w, index, timestamp, number, row);
+            });
+            w.write("]}");
+        });
+    }
+
+    /**
+     * Server-Sent Events: batches of new events as JSON arrays, at most every
+     * {@link MonitorPush#BATCH_MS} ms. Resumes after Last-Event-ID (sent by EventSource when it
+     * reconnects) or after=.
+     */
+    private static SimpleHttpServer.Response openEvents(Table t, SimpleHttpServer.Request req) {
+        Map<String, String> q = parseQuery(req.path);
+        long after = parseLong(req.headers.get("last-event-id"), parseLong(q.get("after"), 0L));
+        return SimpleHttpServer.Response.push(200, "text/event-stream",
+                channel -> MonitorPush.subscribe(t, channel, after));
     }
 
-    // ------------------ Preferences Monitor ------------------
+    // ------------------ Pages ------------------
 
-    private static SimpleHttpServer.Response renderPreferencesMonitorPage(String fullPathWithQuery) {
+    /**
+     * Newest events first, one page at a time: {@code limit} rows per page, {@code before} is
+     * the exclusive index the page starts below.
+     */
+    private static SimpleHttpServer.Response renderPage(Table t, String fullPathWithQuery) {
         Map<String, String> q = parseQuery(fullPathWithQuery);
         String pkg = q.get("packageName");
         if (pkg == null) pkg = "";
-
-        TreeMap<Long, Map<String, Object>> snap = PreferencesMonitor.snapshot();
-        long lastIndex = snap.isEmpty() ? 0L : snap.lastKey();
-
-        StringBuilder rows = new StringBuilder();
-        for (Map.Entry<Long, Map<String, Object>> e : snap.descendingMap().entrySet()) {
-            long idx = e.getKey();
-            Map<String, Object> v = e.getValue();
-            rows.append("<tr>")
-                    .append("<td>").append(idx).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("timestamp")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("method")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("fileName")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("key")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("value")))).append("</td>")
-                    .append("<td>").append(escapeHtml(String.valueOf(v.get("defaultValue")))).append("</td>")
-                    .append("</tr>\n");
-        }
-
-        String html = renderPage("Preferences Monitor", pkg, snap.size(), lastIndex,
-                "<th>Index</th><th>Timestamp</th><th>Method</th><th>FileName</th><th>Key</th><th>Value</th><th>DefaultValue</th>",
-                rows.toString(),
-                "preferences-monitor");
-        return new SimpleHttpServer.Response(200, "text/html", html);
-    }
-
-    private static SimpleHttpServer.Response exportPreferencesCsv(String fullPathWithQuery) {
-        Map<String, String> q = parseQuery(fullPathWithQuery);
-        long after = parseLong(q.get("after"), 0L);
-        try {
-            StringWriter sw = new StringWriter();
-            PreferencesMonitor.writeMonitorCsv(sw, after);
-            return new SimpleHttpServer.Response(200, "text/csv; charset=utf-8", sw.toString());
-        } catch (Throwable t) {
-            return new SimpleHttpServer.Response(500, "text/plain", "csv error: " + t);
-        }
+        long before = parseLong(q.get("before"), Long.MAX_VALUE);
+        int limit = (int) Math.max(1, Math.min(MAX_PAGE_SIZE, parseLong(q.get("limit"), DEFAULT_PAGE_SIZE)));
+        String packageName = pkg;
+
+        return new SimpleHttpServer.Response(200, "text/html", w -> {
+            MonitorRing ring = t.ring();
+            long lastIndex = ring.lastIndex();
+            writePageHead(w, t, packageName, ring.size(), lastIndex);
+
+            long[] shown = {Long.MAX_VALUE, Long.MIN_VALUE}; // oldest, newest
+            long end = Math.min(before, lastIndex + 1);
+            int rows = ring.scan(0L, end, limit, true, (index, timestamp, number, row) -> {
+                shown[0] = Math.min(shown[0], index);
+                shown[1] = Math.max(shown[1], index);
+                w.write("<tr><td>");
+                w.write(Long.toString(index));
+                w.write("</td><td>");
+                w.write(Long.toString(timestamp));
+                w.write("</td>");
+                for (int i = 0; i < t.headers.length; i++) {
+                    w.write("<td>");
+                    writeHtml(w, t.cell(i, number, row));
+                    w.write("</td>");
+                }
+                w.write("</tr>\n");
+            });
+
+            w.write("</tbody></table><div class=bar>");
+            String self = "/" + t.basePath + "?packageName=" + urlEncode(packageName) + "&limit=" + limit;
+            if (before != Long.MAX_VALUE) {
+                w.write("<a href='" + self + "'>Newest</a>");
+                long newer = rows > 0 ? shown[1] + limit + 1 : before + limit;
+                w.write("<a href='" + self + "&before=" + newer + "'>Newer</a>");
+            }
+            if (rows == limit && shown[0] > 1) {
+                w.write("<a href='" + self + "&before=" + shown[0] + "'>Older</a>");
+            }
+            w.write("</div>");
+            writePageScript(w, t, before == Long.MAX_VALUE ? lastIndex : -1, limit);
+        });
     }
 
-    // ------------------ Common Helpers ------------------
-
-    private static String renderPage(String title, String pkg, int entries, long lastIndex, String thead, String rows, String basePath) {
-        return "<!doctype html><meta charset=utf-8>" +
-                "<title>" + title + "</title>" +
+    private static void writePageHead(Writer w, Table t, String pkg, int entries, long lastIndex) throws IOException {
+        w.write("<!doctype html><meta charset=utf-8>" +
+                "<title>" + t.title + "</title>" +
                 "<style>" +
                 "body{font-family:system-ui,monospace;margin:0;padding:12px;background:#0b0f14;color:#e6edf3}" +
                 "a,button{color:#e6edf3} .bar{display:flex;gap:8px;align-items:center;flex-wrap:wrap;margin-bottom:10px}" +
                 "button{background:#1f2a37;border:1px solid #334155;border-radius:10px;padding:8px 12px;cursor:pointer}" +
                 "button:hover{background:#253244}" +
-                "table{width:100%;border-collapse:collapse;border:1px solid #334155;border-radius:12px;overflow:hidden}" +
+                "table{width:100%;border-collapse:collapse;border:1px solid #334155;border-radius:12px;overflow:hidden;margin-bottom:10px}" +
                 "th,td{border-bottom:1px solid #334155;padding:8px;font-size:13px}" +
                 "th{background:#111827;text-align:left}" +
                 ".muted{opacity:.75}" +
                 "</style>" +
 
                 "<div class=bar>" +
-                "<div><b>" + title + "</b> <span class=muted>pkg:</span> " + escapeHtml(pkg) + "</div>" +
-                "<div class=muted>entries: " + entries + " | lastIndex: " + lastIndex + "</div>" +
+                "<div><b>" + t.title + "</b> <span class=muted>pkg:</span> ");
+        writeHtml(w, pkg);
+        w.write("</div>" +
+                "<div class=muted>entries: <span id=entries>" + entries + "</span>" +
+                " | lastIndex: <span id=lastIndex>" + lastIndex + "</span></div>" +
                 "<button onclick='location.reload()'>Refresh</button>" +
-                "<button onclick='downloadCsv()'>Download CSV</button>" +
+                "<button onclick='download(\"csv\")'>Download CSV</button>" +
+                "<button onclick='download(\"json\")'>Download JSON</button>" +
                 "<button onclick='clearEntries()'>Clear</button>" +
                 "</div>" +
 
-                "<table><thead><tr>" + thead + "</tr></thead><tbody>" +
-                rows +
-                "</tbody></table>" +
+                "<table><thead><tr><th>Index</th><th>Timestamp</th>");
+        for (String h : t.headers) w.write("<th>" + h + "</th>");
+        w.write("</tr></thead><tbody>\n");
+    }
 
-                "<script>" +
-                "function downloadCsv(){ " +
+    /** {@code liveAfter} >= 0 adds new events to the top of the table as they arrive. */
+    private static void writePageScript(Writer w, Table t, long liveAfter, int limit) throws IOException {
+        w.write("<script>" +
+                "function download(ext){ " +
                 "  const u=new URL(location.href); " +
                 "  const a=u.searchParams.get('after')||'0'; " +
-                "  const csv='/" + basePath + ".csv?after='+encodeURIComponent(a);" +
-                "  location.href=csv;" +
+                "  location.href='/" + t.basePath + ".'+ext+'?after='+encodeURIComponent(a);" +
                 "}" +
                 "async function clearEntries(){ " +
                 "  if(!confirm('Clear all entries?')) return;" +
-                "  const r=await fetch('/" + basePath + "/clear',{method:'POST'});" +
+                "  const r=await fetch('/" + t.basePath + "/clear',{method:'POST'});" +
                 "  if(r.ok) location.reload(); else alert('Failed');" +
-                "}" +
-                "</script>";
+                "}");
+        if (liveAfter >= 0) {
+            w.write("const KEYS=[");
+            for (int i = 0; i < t.keys.length; i++) {
+                if (i > 0) w.write(',');
+                writeJsonString(w, t.keys[i]);
+            }
+            w.write("];" +
+                    "const es=new EventSource('/" + t.basePath + "/events?after=" + liveAfter + "');" +
+                    "es.onmessage=function(e){" +
+                    "  const tb=document.querySelector('tbody');" +
+                    "  for(const r of JSON.parse(e.data)){" +
+                    "    const tr=document.createElement('tr');" +
+                    "    for(const v of [r.index,r.timestamp].concat(KEYS.map(k=>r[k]))){" +
+                    "      const td=document.createElement('td'); td.textContent=v==null?'':v; tr.appendChild(td);" +
+                    "    }" +
+                    "    tb.insertBefore(tr,tb.firstChild);" +
+                    "    document.getElementById('lastIndex').textContent=r.index;" +
+                    "  }" +
+                    "  while(tb.rows.length>" + limit + ") tb.deleteRow(-1);" +
+                    "};");
+        }
+        w.write("</script>");
     }
 
+    // ------------------ Common Helpers ------------------
+
     private static String stripQuery(String p) {
         if (p == null) return "";
         int i = p.indexOf('?');
@@ -271,16 +335,57 @@ public final class MonitorHttpRoutes {
         }
     }
 
+    private static String urlEncode(String s) {
+        try {
+            return java.net.URLEncoder.encode(s, StandardCharsets.UTF_8.name());
+        } catch (Throwable t) {
+            return "";
+        }
+    }
+
     private static long parseLong(String s, long def) {
         try { return Long.parseLong(s); } catch (Throwable t) { return def; }
     }
 
-    private static String escapeHtml(String s) {
-        if (s == null) return "";
-        return s.replace("&","&amp;")
-                .replace("<","&lt;")
-                .replace(">","&gt;")
-                .replace("\"","&quot;")
-                .replace("'","&#39;");
+    /** HTML-escapes {@code s} onto {@code w} without building an intermediate string. */
+    static void writeHtml(Writer w, String s) throws IOException {
+        if (s == null) return;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            String rep;
+            switch (s.charAt(i)) {
+                case '&': rep = "&amp;"; break;
+                case '<': rep = "&lt;"; break;
+                case '>': rep = "&gt;"; break;
+                case '"': rep = "&quot;"; break;
+                case '\'': rep = "&#39;"; break;
+                default: continue;
+            }
+            w.write(s, start, i - start);
+            w.write(rep);
+            start = i + 1;
+        }
+        w.write(s, start, s.length() - start);
+    }
+
+    private static void writeJsonString(Writer w, String s) throws IOException {
+        w.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != 0x2028 && c != 0x2029) continue;
+            w.write(s, start, i - start);
+            switch (c) {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default: w.write(String.format("\\u%04x", (int) c)); break;
+            }
+            start = i + 1;
+        }
+        w.write(s, start, s.length() - start);
+        w.write('"');
     }
 }
@@ -0,0 +1,177 @@
+package com.applisto.appcloner;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pushes new monitor events to open /…-monitor/events streams (Server-Sent Events).
+ *
+ * A single thread polls the monitors' cursors every {@link #BATCH_MS} ms, so recording an event
+ * costs the app nothing extra however many dashboards are open. Subscribers of the same monitor
+ * that are at the same cursor - normally all of them - share one encoded batch per tick; the
+ * selector thread of the server then copies those bytes to each socket. A subscriber that
+ * resumes from an older cursor catches up in batches of at most {@link #MAX_BATCH_ROWS} rows
+ * and {@link #MAX_BATCH_BYTES} bytes, one per tick.
+ */
+final class MonitorPush {
+    private static final String TAG = "MonitorPush";
+
+    static final long BATCH_MS = 100;
+    private static final long HEARTBEAT_MS = 15_000;
+    private static final int MAX_BATCH_ROWS = 500;
+    // A quarter of what SimpleHttpServer lets a push connection fall behind, so a full batch
+    // never gets a client that is keeping up dropped.
+    private static final int MAX_BATCH_BYTES = 16 * 1024;
+
+    // Reconnect quickly after the app restarts; the comment makes the headers go out at once.
+    private static final byte[] OPEN = "retry: 1000\n: open\n\n".getBytes(StandardCharsets.UTF_8);
+    // Also how vanished clients are noticed: writing to them fails.
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_OPEN = "data: [".getBytes(StandardCharsets.UTF_8);
+    // "]\nid: <cursor>\n\n" and chunked framing.
+    private static final int BATCH_OVERHEAD = 64;
+
+    private static final List<Subscriber> sSubscribers = new ArrayList<>();
+    private static Thread sThread;
+
+    private MonitorPush() {}
+
+    private static final class Subscriber {
+        final MonitorHttpRoutes.Table table;
+        final SimpleHttpServer.PushChannel channel;
+        long cursor;
+
+        Subscriber(MonitorHttpRoutes.Table table, SimpleHttpServer.PushChannel channel, long cursor) {
+            this.table = table;
+            this.channel = channel;
+            this.cursor = cursor;
+        }
+    }
+
+    /** Encoded events (cursor, next cursor]. */
+    private static final class Batch {
+        final byte[] data;
+        final long next;
+
+        Batch(byte[] data, long next) {
+            this.data = data;
+            this.next = next;
+        }
+    }
+
+    static void subscribe(MonitorHttpRoutes.Table table, SimpleHttpServer.PushChannel channel, long after) {
+        if (!channel.send(OPEN)) return;
+        synchronized (MonitorPush.class) {
+            sSubscribers.add(new Subscriber(table, channel, Math.max(0, after)));
+            if (sThread == null) {
+                sThread = new Thread(MonitorPush::run, "monitor-push");
+                sThread.setDaemon(true);
+                sThread.start();
+            }
+        }
+    }
+
+    private static void run() {
+        long lastHeartbeat = System.currentTimeMillis();
+        Map<MonitorHttpRoutes.Table, Map<Long, Batch>> batches = new HashMap<>();
+        List<Subscriber> subs = new ArrayList<>();
+        try {
+            while (true) {
+                subs.clear();
+                synchronized (MonitorPush.class) {
+                    if (sSubscribers.isEmpty()) {
+                        sThread = null;
+                        return;
+                    }
+                    subs.addAll(sSubscribers);
+                }
+
+                long now = System.currentTimeMillis();
+                boolean heartbeat = now - lastHeartbeat >= HEARTBEAT_MS;
+                if (heartbeat) lastHeartbeat = now;
+                batches.clear();
+
+                for (Subscriber s : subs) {
+                    MonitorRing ring = s.table.ring();
+                    long last = ring.lastIndex();
+                    // Ahead of the monitor: the app was restarted and the indices with it.
+                    if (s.cursor > last) s.cursor = 0;
+
+                    // Stops short of events still being written; the next tick resumes there.
+                    long ready = s.cursor < last ? ring.committedIndex(s.cursor) : s.cursor;
+
+                    boolean alive = true;
+                    if (s.cursor < ready) {
+                        Map<Long, Batch> byCursor = batches.get(s.table);
+                        if (byCursor == null) batches.put(s.table, byCursor = new HashMap<>());
+                        Batch b = byCursor.get(s.cursor);
+                        if (b == null) byCursor.put(s.cursor, b = encode(s.table, ring, s.cursor, ready));
+                        if (b.data != null) alive = s.channel.send(b.data);
+                        s.cursor = b.next;
+                    } else if (heartbeat) {
+                        alive = s.channel.send(HEARTBEAT);
+                    }
+                    if (!alive) {
+                        synchronized (MonitorPush.class) {
+                            sSubscribers.remove(s);
+                        }
+                    }
+                }
+
+                Thread.sleep(BATCH_MS);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "Event push stopped", t);
+            synchronized (MonitorPush.class) {
+                for (Subscriber s : sSubscribers) s.channel.close();
+                sSubscribers.clear();
+                sThread = null;
+            }
+        }
+    }
+
+    /**
+     * One SSE message: id is the new cursor, data a JSON array of the events. Rows that do not
+     * fit are left for the next batch; a single row too large for any batch is skipped.
+     */
+    private static Batch encode(MonitorHttpRoutes.Table table, MonitorRing ring, long after, long last) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(256);
+        Writer rw = new OutputStreamWriter(rowBytes, StandardCharsets.UTF_8);
+        long[] newest = {after};
+        boolean[] full = {false};
+        int[] written = {0};
+        bytes.write(DATA_OPEN, 0, DATA_OPEN.length);
+        int rows = ring.scan(after, last + 1, MAX_BATCH_ROWS, false, (index, timestamp, number, row) -> {
+            if (full[0]) return;
+            rowBytes.reset();
+            // JSON strings escape line breaks, so the array stays on one data: line.
+            table.writeJson(rw, index, timestamp, number, row);
+            rw.flush();
+            if (rowBytes.size() > MAX_BATCH_BYTES - BATCH_OVERHEAD) {
+                Log.w(TAG, "Skipping " + rowBytes.size() + " byte event " + index + " too large to push");
+            } else if (bytes.size() + 1 + rowBytes.size() > MAX_BATCH_BYTES - BATCH_OVERHEAD) {
+                full[0] = true; // this row starts the next batch
+                return;
+            } else {
+                if (written[0]++ > 0) bytes.write(',');
+                rowBytes.writeTo(bytes);
+            }
+            newest[0] = index;
+        });
+        // A full batch may have more behind it; otherwise everything up to last has been seen.
+        long next = full[0] || rows == MAX_BATCH_ROWS ? newest[0] : last;
+        if (written[0] == 0) return new Batch(null, next);
+        bytes.write(("]\nid: " + next + "\n\n").getBytes(StandardCharsets.UTF_8));
+        return new Batch(bytes.toByteArray(), next);
+    }
+}
@@ -0,0 +1,174 @@
+package com.applisto.appcloner;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity event store shared by the host, header and preferences monitors.
+ *
+ * Events are stored column by column (timestamp, one numeric column and a few string columns)
+ * in preallocated arrays indexed by {@code sequence & mask}. Producers claim a sequence with a
+ * single atomic increment and then write their slot, so {@link #add} takes no lock and
+ * allocates nothing; old events are simply overwritten. Every slot carries the sequence it
+ * holds, negated while it is being written, which lets readers skip slots that are in flight
+ * or were overwritten while being copied (a seqlock per slot).
+ *
+ * Sequences start at 1 and never go back, so they double as the {@code after=} cursor of the
+ * monitor pages: {@link #scan} with that cursor visits exactly the retained events newer than it.
+ */
+final class MonitorRing {
+    /** Value of the numeric column for events that have none. */
+    static final long NO_NUMBER = Long.MIN_VALUE;
+
+    // Strings repeat a lot (header names, preference files, hosts); share one copy of each
+    // while the pool is small, so a full ring does not pin thousands of equal strings.
+    private static final int MAX_POOLED = 4096;
+    private static final int MAX_POOLED_LENGTH = 256;
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private final int limit;
+    private final int mask;
+    private final int columns;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray numbers;
+    private final AtomicReferenceArray<String> strings;
+
+    /**
+     * @param limit   number of most recent events that stay visible
+     * @param columns number of string columns per event
+     */
+    MonitorRing(int limit, int columns) {
+        this.limit = Math.max(1, limit);
+        this.columns = columns;
+        int capacity = Integer.highestOneBit(this.limit);
+        if (capacity < this.limit) capacity <<= 1;
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        timestamps = new AtomicLongArray(capacity);
+        numbers = new AtomicLongArray(capacity);
+        strings = new AtomicReferenceArray<>(capacity * columns);
+    }
+
+    long add(long timestamp, long number, String c0) {
+        return add(timestamp, number, c0, null, null, null, null);
+    }
+
+    long add(long timestamp, long number, String c0, String c1) {
+        return add(timestamp, number, c0, c1, null, null, null);
+    }
+
+    /** Records an event and returns its sequence. Columns beyond {@code columns} are ignored. */
+    long add(long timestamp, long number, String c0, String c1, String c2, String c3, String c4) {
+        long seq = cursor.incrementAndGet();
+        int slot = (int) seq & mask;
+        sequences.set(slot, -seq);
+        timestamps.lazySet(slot, timestamp);
+        numbers.lazySet(slot, number);
+        int base = slot * columns;
+        switch (columns) {
+            default:
+            case 5: strings.lazySet(base + 4, intern(c4));
+            case 4: strings.lazySet(base + 3, intern(c3));
+            case 3: strings.lazySet(base + 2, intern(c2));
+            case 2: strings.lazySet(base + 1, intern(c1));
+            case 1: strings.lazySet(base, intern(c0));
+            case 0: break;
+        }
+        // Fails only if a writer a whole ring ahead took the slot meanwhile; its event wins.
+        sequences.compareAndSet(slot, -seq, seq);
+        return seq;
+    }
+
+    /** Hides every event recorded so far. Sequences keep counting up. */
+    void clear() {
+        long c = cursor.get();
+        long f;
+        while ((f = floor.get()) < c && !floor.compareAndSet(f, c)) {
+            // retry
+        }
+    }
+
+    /** Sequence of the newest event claimed so far, or 0. */
+    long lastIndex() {
+        return cursor.get();
+    }
+
+    /**
+     * The newest sequence a reader at {@code after} can move its cursor to without losing
+     * events: every event in between is either committed or gone (overwritten or cleared). It
+     * stops before the first event that is claimed but still being written, which {@link #scan}
+     * would skip. Equals {@link #lastIndex} when {@code after} is not behind it.
+     */
+    long committedIndex(long after) {
+        long last = cursor.get();
+        if (after >= last) return last;
+        long seq = Math.max(Math.max(after, floor.get()), last - limit) + 1;
+        for (; seq <= last; seq++) {
+            long held = sequences.get((int) seq & mask);
+            // -seq while written; an older event until its writer gets to the slot.
+            if (held != seq && Math.abs(held) <= seq) break;
+        }
+        return seq - 1;
+    }
+
+    /** Number of events currently retained (including any still being written). */
+    int size() {
+        long last = cursor.get();
+        return (int) (last - Math.max(floor.get(), last - limit));
+    }
+
+    /**
+     * Feeds retained events with {@code after < sequence < before} to {@code visitor}, oldest
+     * or newest first, stopping after {@code max} of them. Nothing is copied up front, so this
+     * can stream straight to a socket; events overwritten before the scan reaches them are
+     * skipped. Returns the number of events visited.
+     */
+    int scan(long after, long before, int max, boolean newestFirst, RowVisitor visitor) throws IOException {
+        long last = Math.min(cursor.get(), before - 1);
+        String[] row = new String[columns];
+        int visited = 0;
+        long seq = newestFirst ? last : Long.MIN_VALUE;
+        while (visited < max) {
+            // Re-evaluated every row: a slow reader is overtaken by writers.
+            long first = Math.max(Math.max(after, floor.get()), cursor.get() - limit) + 1;
+            if (newestFirst) {
+                if (seq < first) break;
+            } else {
+                seq = Math.max(seq, first);
+                if (seq > last) break;
+            }
+            int slot = (int) seq & mask;
+            if (sequences.get(slot) == seq) {
+                long ts = timestamps.get(slot);
+                long number = numbers.get(slot);
+                for (int c = 0; c < columns; c++) row[c] = strings.get(slot * columns + c);
+                if (sequences.get(slot) == seq) { // not overwritten while copying
+                    visitor.row(seq, ts, number, row);
+                    visited++;
+                }
+            }
+            seq += newestFirst ? -1 : 1;
+        }
+        return visited;
+    }
+
+    private static String intern(String s) {
+        if (s == null || s.length() > MAX_POOLED_LENGTH) return s;
+        String pooled = POOL.get(s);
+        if (pooled != null) return pooled;
+        if (POOL.size() >= MAX_POOLED) return s;
+        pooled = POOL.putIfAbsent(s, s);
+        return pooled != null ? pooled : s;
+    }
+
+    interface RowVisitor {
+        /** {@code strings} is reused for the next row; copy what must be kept. */
+        void row(long index, long timestamp, long number, String[] strings) throws IOException;
+    }
+}
@@ -58,7 +58,7 @@ public class NoBackgroundServicesHook implements Application.ActivityLifecycleCa
         mContext = context.getApplicationContext();
 
         try {
-            mEnabled = ClonerSettings.get(context).raw().optBoolean("NoBackgroundServices", false);
+            mEnabled = ClonerSettings.get(context).noBackgroundServices();
         } catch (Throwable t) {
             mEnabled = false;
         }
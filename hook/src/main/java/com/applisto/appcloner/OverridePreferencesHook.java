@@ -7,9 +7,6 @@ import android.util.Pair;
 import com.applisto.appcloner.hooking.Hooking;
 import com.applisto.appcloner.ReflectionUtil;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -45,27 +42,16 @@ public class OverridePreferencesHook {
     public static void install(Context context) {
         if (sHooked || context == null) return;
 
-        JSONObject cfg = ClonerSettings.get(context).raw();
-        JSONArray overrides = cfg.optJSONArray("override_shared_preferences");
-        boolean enablePlaceholders = cfg.optBoolean("override_shared_preferences_placeholders", false);
-        if (overrides == null || overrides.length() == 0) return;
-
-        for (int i = 0; i < overrides.length(); i++) {
-            JSONObject item = overrides.optJSONObject(i);
-            if (item == null) continue;
-            String name = item.optString("name", null);
-            String value = item.optString("value", null);
-            if (name == null || value == null) continue;
+        ClonerSettings settings = ClonerSettings.get(context);
+        List<ClonerSettings.PreferenceOverride> overrides = settings.overrideSharedPreferences();
+        boolean enablePlaceholders = settings.overrideSharedPreferencesPlaceholders();
+        if (overrides.isEmpty()) return;
 
-            boolean regex = item.optBoolean("nameRegExp", false);
-            try {
-                if (regex) {
-                    sList.add(Pair.create(Pattern.compile(name), value));
-                } else {
-                    sMap.put(name, value);
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "Failed to add override rule: " + name, t);
+        for (ClonerSettings.PreferenceOverride rule : overrides) {
+            if (rule.pattern != null) {
+                sList.add(Pair.create(rule.pattern, rule.value));
+            } else {
+                sMap.put(rule.name, rule.value);
             }
         }
 
@@ -4,28 +4,25 @@ import android.content.SharedPreferences;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 public final class PreferencesMonitor {
 
-    private static final AtomicLong INDEX = new AtomicLong(0);
-    private static final TreeMap<Long, Map<String, Object>> MAP = new TreeMap<>();
+    static final int COL_METHOD = 0;
+    static final int COL_FILE_NAME = 1;
+    static final int COL_KEY = 2;
+    static final int COL_VALUE = 3;
+    static final int COL_DEFAULT_VALUE = 4;
 
     private static int maxEntries = 2000;
+    private static volatile MonitorRing ring = new MonitorRing(maxEntries, 5);
     private static int valueTruncateLength = 512;
 
-    private static final Set<String> positiveKeyFilter = new HashSet<>();
-    private static final Set<String> negativeKeyFilter = new HashSet<>();
-    private static final Set<String> positiveValueFilter = new HashSet<>();
-    private static final Set<String> negativeValueFilter = new HashSet<>();
+    private static volatile MonitorFilter.Filter keyFilter = MonitorFilter.Filter.ALLOW_ALL;
+    private static volatile MonitorFilter.Filter valueFilter = MonitorFilter.Filter.ALLOW_ALL;
 
     private PreferencesMonitor() {}
 
@@ -41,83 +38,45 @@ public final class PreferencesMonitor {
             Collection<String> positiveValue,
             Collection<String> negativeValue
     ) {
-        PreferencesMonitor.maxEntries = Math.max(1, maxEntries);
+        if (PreferencesMonitor.maxEntries != Math.max(1, maxEntries)) {
+            PreferencesMonitor.maxEntries = Math.max(1, maxEntries);
+            ring = new MonitorRing(PreferencesMonitor.maxEntries, 5);
+        }
         PreferencesMonitor.valueTruncateLength = Math.max(0, valueTruncateLength);
 
-        positiveKeyFilter.clear(); negativeKeyFilter.clear();
-        positiveValueFilter.clear(); negativeValueFilter.clear();
-
-        if (positiveKey != null) positiveKeyFilter.addAll(positiveKey);
-        if (negativeKey != null) negativeKeyFilter.addAll(negativeKey);
-        if (positiveValue != null) positiveValueFilter.addAll(positiveValue);
-        if (negativeValue != null) negativeValueFilter.addAll(negativeValue);
+        keyFilter = MonitorFilter.compile(positiveKey, negativeKey, false, false);
+        valueFilter = MonitorFilter.compile(positiveValue, negativeValue, false, false);
     }
 
     public static void clear() {
-        synchronized (MAP) {
-            MAP.clear();
-            INDEX.set(0);
-        }
+        ring.clear();
     }
 
-    public static TreeMap<Long, Map<String, Object>> snapshot() {
-        synchronized (MAP) {
-            return new TreeMap<>(MAP);
-        }
+    static MonitorRing ring() {
+        return ring;
     }
 
     public static void writeMonitorCsv(Writer w, long afterIndexExclusive) throws IOException {
-        List<Map.Entry<Long, Map<String, Object>>> snapshot;
-        synchronized (MAP) {
-            snapshot = new ArrayList<>(MAP.tailMap(afterIndexExclusive, false).entrySet());
-        }
-
         w.write("Index,Timestamp,Method,FileName,Key,Value,DefaultValue\n");
-        for (Map.Entry<Long, Map<String, Object>> e : snapshot) {
-            long idx = e.getKey();
-            Map<String, Object> m = e.getValue();
-            w.write(Long.toString(idx)); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("timestamp")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("method")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("fileName")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("key")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("value")))); w.write(',');
-            w.write(csvEscape(String.valueOf(m.get("defaultValue")))); w.write('\n');
-        }
+        ring.scan(afterIndexExclusive, Long.MAX_VALUE, Integer.MAX_VALUE, false, (index, timestamp, number, row) -> {
+            w.write(Long.toString(index)); w.write(',');
+            w.write(Long.toString(timestamp)); w.write(',');
+            w.write(csvEscape(String.valueOf(row[COL_METHOD]))); w.write(',');
+            w.write(csvEscape(String.valueOf(row[COL_FILE_NAME]))); w.write(',');
+            w.write(csvEscape(String.valueOf(row[COL_KEY]))); w.write(',');
+            w.write(csvEscape(row[COL_VALUE])); w.write(',');
+            w.write(csvEscape(String.valueOf(row[COL_DEFAULT_VALUE]))); w.write('\n');
+        });
         w.flush();
     }
 
     public static void addEntry(String method, String fileName, String key, String value, String defaultValue) {
-        if (!allow(key, positiveKeyFilter, negativeKeyFilter)) return;
-        if (!allow(value, positiveValueFilter, negativeValueFilter)) return;
+        if (!keyFilter.allows(key)) return;
+        if (!valueFilter.allows(value)) return;
 
         String v = truncate(value, valueTruncateLength);
 
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("timestamp", System.currentTimeMillis());
-        entry.put("method", method);
-        entry.put("fileName", fileName);
-        entry.put("key", key);
-        entry.put("value", v);
-        entry.put("defaultValue", defaultValue);
-
-        synchronized (MAP) {
-            long idx = INDEX.incrementAndGet();
-            MAP.put(idx, entry);
-            while (MAP.size() > maxEntries) MAP.pollFirstEntry();
-        }
-    }
-
-    private static boolean allow(String s, Set<String> positive, Set<String> negative) {
-        if (s == null) s = "";
-        for (String n : negative) {
-            if (n != null && !n.isEmpty() && s.contains(n)) return false;
-        }
-        if (positive.isEmpty()) return true;
-        for (String p : positive) {
-            if (p != null && !p.isEmpty() && s.contains(p)) return true;
-        }
-        return false;
+        ring.add(System.currentTimeMillis(), MonitorRing.NO_NUMBER, method, fileName, key, v, defaultValue);
     }
 
     private static String truncate(String s, int max) {
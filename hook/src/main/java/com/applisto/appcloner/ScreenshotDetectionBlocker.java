@@ -25,7 +25,7 @@ public class ScreenshotDetectionBlocker {
 
     public static void install(Context context) {
         try {
-            if (!ClonerSettings.get(context).raw().optBoolean("AllowScreenshots", false)) {
+            if (!ClonerSettings.get(context).allowScreenshots()) {
                 return;
             }
 
@@ -27,14 +27,24 @@ public final class SerialHook {
     private static final String TAG = "SerialHook";
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
-    private static String sFakeSerial = null;
+    private static volatile String sFakeSerial = null;
+    private static boolean sHooked;
+    private static Object sOriginalSerialField;
+    private static boolean sSerialFieldOverridden;
 
     public void init(Context ctx) {
         // Load serial from settings
-        String configSerial = ClonerSettings.get(ctx).serialNumber();
-        
+        apply(ClonerSettings.get(ctx).serialNumber());
+
+        // A regenerated or pushed serial takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings.serialNumber()), "serial_number");
+    }
+
+    private synchronized void apply(String configSerial) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configSerial) || MODE_NO_CHANGE.equalsIgnoreCase(configSerial)) {
+            sFakeSerial = null;
+            if (sSerialFieldOverridden) setBuildSerialField(sOriginalSerialField);
             Log.i(TAG, "Serial set to NO_CHANGE, using system value.");
             return;
         }
@@ -47,6 +57,12 @@ public final class SerialHook {
             sFakeSerial = configSerial;
             Log.i(TAG, "Serial set to CUSTOM: " + sFakeSerial);
         }
+
+        // Also try to override the static Build.SERIAL field for older APIs
+        setBuildSerialField(sFakeSerial);
+
+        if (sHooked) return;
+        sHooked = true;
         
         Log.i(TAG, "Installing Serial hook → " + sFakeSerial);
         
@@ -56,17 +72,20 @@ public final class SerialHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeSerial;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeSerial);
-                    Log.d(TAG, "Serial spoofed (getSerial) " + orig + " → " + sFakeSerial);
+                    cf.setResult(fake);
+                    Log.d(TAG, "Serial spoofed (getSerial) " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked Build.getSerial()");
         } catch (Throwable t) {
             Log.w(TAG, "Build.getSerial() not available", t);
         }
-        
-        // Also try to override the static Build.SERIAL field for older APIs
+    }
+
+    private static void setBuildSerialField(Object value) {
         try {
             Field serialField = Build.class.getDeclaredField("SERIAL");
             serialField.setAccessible(true);
@@ -79,8 +98,12 @@ public final class SerialHook {
             } catch (NoSuchFieldException ignored) {}
             
             Object oldValue = serialField.get(null);
-            serialField.set(null, sFakeSerial);
-            Log.i(TAG, "✓ overrode Build.SERIAL: " + oldValue + " → " + sFakeSerial);
+            if (!sSerialFieldOverridden) {
+                sOriginalSerialField = oldValue;
+                sSerialFieldOverridden = true;
+            }
+            serialField.set(null, value);
+            Log.i(TAG, "✓ overrode Build.SERIAL: " + oldValue + " → " + value);
         } catch (Throwable t) {
             Log.w(TAG, "Failed to override Build.SERIAL field", t);
         }
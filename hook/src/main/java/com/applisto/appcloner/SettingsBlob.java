@@ -0,0 +1,322 @@
+package com.applisto.appcloner;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * Reader for assets/cloner.bin, the precompiled form of cloner.json written next to it by the
+ * cloner app.
+ *
+ * <pre>
+ * header (32 bytes, little-endian)
+ *   0  u32 magic "CLB1"          16  u32 string count
+ *   4  u16 version               20  u32 string index offset ({u32 offset, u32 length} each)
+ *   6  u16 header size           24  u32 string data offset (UTF-8)
+ *   8  u32 CRC-32 of the JSON    28  u32 root value offset
+ *  12  u32 length of the JSON
+ * value = u8 tag, 3 bytes padding, payload:
+ *   NULL, FALSE, TRUE            -
+ *   LONG / DOUBLE                8 bytes
+ *   STRING                       u32 string id
+ *   ARRAY                        u32 n, n x u32 value offset
+ *   OBJECT                       u32 n, n x {u32 key id, u32 value offset}, sorted by key
+ * </pre>
+ *
+ * The asset is stored uncompressed so it can be mapped straight out of the APK; lookups are a
+ * binary search over the object's keys, and strings are decoded at most once. The CRC and
+ * length of the JSON it was compiled from let {@link #open} reject a blob that no longer
+ * matches cloner.json, in which case the caller parses the JSON as before.
+ */
+final class SettingsBlob implements SettingsSource {
+    private static final String TAG = "SettingsBlob";
+    static final String ASSET_FILE = "cloner.bin";
+
+    static final int MAGIC = 0x31424C43; // "CLB1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_FALSE = 1;
+    static final int TAG_TRUE = 2;
+    static final int TAG_LONG = 3;
+    static final int TAG_DOUBLE = 4;
+    static final int TAG_STRING = 5;
+    static final int TAG_ARRAY = 6;
+    static final int TAG_OBJECT = 7;
+
+    private final ByteBuffer buf;
+    private final int stringCount;
+    private final int stringIndex;
+    private final int stringData;
+    private final int root;
+    private final AtomicReferenceArray<String> strings;
+
+    private SettingsBlob(ByteBuffer buf) throws IOException {
+        this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        stringCount = buf.getInt(16);
+        stringIndex = buf.getInt(20);
+        stringData = buf.getInt(24);
+        root = buf.getInt(28);
+        if (stringCount < 0 || !inBounds(stringIndex, stringCount * 8L)
+                || !inBounds(stringData, 0) || !inBounds(root, 8) || tag(root) != TAG_OBJECT) {
+            throw new IOException("Corrupt settings blob");
+        }
+        strings = new AtomicReferenceArray<>(stringCount);
+    }
+
+    /**
+     * Opens the blob matching {@code json} (the bytes of the packaged cloner.json), or returns
+     * null if there is none, it is from a different format version, or it is stale.
+     */
+    static SettingsBlob open(Context ctx, byte[] json) {
+        try {
+            ByteBuffer buf = map(ctx);
+            if (buf == null) return null;
+            if (buf.capacity() < HEADER_SIZE) throw new IOException("Truncated settings blob");
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(0) != MAGIC) throw new IOException("Bad settings blob magic");
+            int version = buf.getShort(4) & 0xFFFF;
+            if (version != VERSION) {
+                Log.i(TAG, "Ignoring settings blob version " + version);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(json, 0, json.length);
+            if (buf.getInt(12) != json.length || buf.getInt(8) != (int) crc.getValue()) {
+                Log.i(TAG, "Settings blob is stale; falling back to cloner.json");
+                return null;
+            }
+            return new SettingsBlob(buf);
+        } catch (Throwable t) {
+            Log.w(TAG, "Cannot read settings blob; falling back to cloner.json", t);
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(Context ctx) throws IOException {
+        try (AssetFileDescriptor afd = ctx.getAssets().openFd(ASSET_FILE);
+             FileInputStream in = new FileInputStream(afd.getFileDescriptor())) {
+            // The mapping stays valid after the descriptor is closed.
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    afd.getStartOffset(), afd.getLength());
+        } catch (FileNotFoundException e) {
+            // Either missing, or compressed (openFd only works for stored entries).
+        }
+        try (InputStream in = ctx.getAssets().open(ASSET_FILE)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) > 0) out.write(chunk, 0, n);
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    // ---- SettingsSource ----
+
+    @Override
+    public boolean has(String key) {
+        return find(root, key) >= 0;
+    }
+
+    @Override
+    public boolean optBoolean(String key, boolean fallback) {
+        int v = find(root, key);
+        if (v < 0) return fallback;
+        switch (tag(v)) {
+            case TAG_TRUE: return true;
+            case TAG_FALSE: return false;
+            case TAG_STRING: {
+                String s = string(buf.getInt(v + 4));
+                if ("true".equalsIgnoreCase(s)) return true;
+                if ("false".equalsIgnoreCase(s)) return false;
+                return fallback;
+            }
+            default: return fallback;
+        }
+    }
+
+    @Override
+    public int optInt(String key, int fallback) {
+        int v = find(root, key);
+        if (v < 0) return fallback;
+        switch (tag(v)) {
+            case TAG_LONG: return (int) buf.getLong(v + 4);
+            case TAG_DOUBLE: return (int) buf.getDouble(v + 4);
+            case TAG_STRING: {
+                try {
+                    return (int) Double.parseDouble(string(buf.getInt(v + 4)));
+                } catch (NumberFormatException e) {
+                    return fallback;
+                }
+            }
+            default: return fallback;
+        }
+    }
+
+    @Override
+    public long optLong(String key, long fallback) {
+        int v = find(root, key);
+        if (v < 0) return fallback;
+        switch (tag(v)) {
+            case TAG_LONG: return buf.getLong(v + 4);
+            case TAG_DOUBLE: return (long) buf.getDouble(v + 4);
+            case TAG_STRING: {
+                try {
+                    return (long) Double.parseDouble(string(buf.getInt(v + 4)));
+                } catch (NumberFormatException e) {
+                    return fallback;
+                }
+            }
+            default: return fallback;
+        }
+    }
+
+    @Override
+    public double optDouble(String key, double fallback) {
+        int v = find(root, key);
+        if (v < 0) return fallback;
+        switch (tag(v)) {
+            case TAG_LONG: return buf.getLong(v + 4);
+            case TAG_DOUBLE: return buf.getDouble(v + 4);
+            case TAG_STRING: {
+                try {
+                    return Double.parseDouble(string(buf.getInt(v + 4)));
+                } catch (NumberFormatException e) {
+                    return fallback;
+                }
+            }
+            default: return fallback;
+        }
+    }
+
+    @Override
+    public String optString(String key, String fallback) {
+        int v = find(root, key);
+        if (v < 0) return fallback;
+        switch (tag(v)) {
+            case TAG_STRING: return string(buf.getInt(v + 4));
+            case TAG_NULL: return "null";
+            case TAG_TRUE: return "true";
+            case TAG_FALSE: return "false";
+            case TAG_LONG: return Long.toString(buf.getLong(v + 4));
+            case TAG_DOUBLE: return numberToString(buf.getDouble(v + 4));
+            default: return materialize(v).toString();
+        }
+    }
+
+    @Override
+    public JSONArray optJSONArray(String key) {
+        int v = find(root, key);
+        return v >= 0 && tag(v) == TAG_ARRAY ? (JSONArray) materialize(v) : null;
+    }
+
+    @Override
+    public JSONObject optJSONObject(String key) {
+        int v = find(root, key);
+        return v >= 0 && tag(v) == TAG_OBJECT ? (JSONObject) materialize(v) : null;
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return (JSONObject) materialize(root);
+    }
+
+    // ---- decoding ----
+
+    private int tag(int value) {
+        return buf.get(value) & 0xFF;
+    }
+
+    /** Offset of {@code key}'s value in the object at {@code obj}, or -1. */
+    private int find(int obj, String key) {
+        int lo = 0;
+        int hi = buf.getInt(obj + 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = obj + 8 + mid * 8;
+            int cmp = string(buf.getInt(entry)).compareTo(key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return buf.getInt(entry + 4);
+        }
+        return -1;
+    }
+
+    private String string(int id) {
+        String s = strings.get(id);
+        if (s != null) return s;
+        int off = buf.getInt(stringIndex + id * 8);
+        int len = buf.getInt(stringIndex + id * 8 + 4);
+        byte[] bytes = new byte[len];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(stringData + off);
+        dup.get(bytes);
+        s = new String(bytes, StandardCharsets.UTF_8);
+        strings.lazySet(id, s);
+        return s;
+    }
+
+    private Object materialize(int v) {
+        try {
+            switch (tag(v)) {
+                case TAG_NULL: return JSONObject.NULL;
+                case TAG_FALSE: return Boolean.FALSE;
+                case TAG_TRUE: return Boolean.TRUE;
+                case TAG_LONG: {
+                    long l = buf.getLong(v + 4);
+                    return l == (int) l ? (Object) (int) l : (Object) l;
+                }
+                case TAG_DOUBLE: return buf.getDouble(v + 4);
+                case TAG_STRING: return string(buf.getInt(v + 4));
+                case TAG_ARRAY: {
+                    int n = buf.getInt(v + 4);
+                    JSONArray arr = new JSONArray();
+                    for (int i = 0; i < n; i++) arr.put(materialize(buf.getInt(v + 8 + i * 4)));
+                    return arr;
+                }
+                case TAG_OBJECT: {
+                    int n = buf.getInt(v + 4);
+                    JSONObject obj = new JSONObject();
+                    for (int i = 0; i < n; i++) {
+                        int entry = v + 8 + i * 8;
+                        obj.put(string(buf.getInt(entry)), materialize(buf.getInt(entry + 4)));
+                    }
+                    return obj;
+                }
+                default:
+                    throw new IllegalStateException("Bad value tag at " + v);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean inBounds(long off, long len) {
+        return off >= HEADER_SIZE && off + len <= buf.capacity();
+    }
+
+    /** Same text org.json produces for a double: integral values lose the ".0". */
+    private static String numberToString(double d) {
+        long l = (long) d;
+        return d == l ? Long.toString(l) : Double.toString(d);
+    }
+}
@@ -0,0 +1,103 @@
+package com.applisto.appcloner;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Read-only key/value view that {@link ClonerSettings} is built from. The opt* methods follow
+ * {@link JSONObject}'s coercion rules, so a setting reads the same whether it comes from parsed
+ * JSON or from the precompiled {@link SettingsBlob}.
+ */
+interface SettingsSource {
+    boolean has(String key);
+    boolean optBoolean(String key, boolean fallback);
+    int optInt(String key, int fallback);
+    long optLong(String key, long fallback);
+    double optDouble(String key, double fallback);
+    String optString(String key, String fallback);
+    JSONArray optJSONArray(String key);
+    JSONObject optJSONObject(String key);
+
+    /**
+     * The whole view as a JSONObject, for {@link ClonerSettings#raw()}. May be the source's own
+     * object, so only the owner of the source may modify it.
+     */
+    JSONObject toJSONObject();
+
+    /** Parsed cloner.json. */
+    final class Json implements SettingsSource {
+        private final JSONObject cfg;
+
+        Json(JSONObject cfg) {
+            this.cfg = cfg;
+        }
+
+        @Override public boolean has(String key) { return cfg.has(key); }
+        @Override public boolean optBoolean(String key, boolean fallback) { return cfg.optBoolean(key, fallback); }
+        @Override public int optInt(String key, int fallback) { return cfg.optInt(key, fallback); }
+        @Override public long optLong(String key, long fallback) { return cfg.optLong(key, fallback); }
+        @Override public double optDouble(String key, double fallback) { return cfg.optDouble(key, fallback); }
+        @Override public String optString(String key, String fallback) { return cfg.optString(key, fallback); }
+        @Override public JSONArray optJSONArray(String key) { return cfg.optJSONArray(key); }
+        @Override public JSONObject optJSONObject(String key) { return cfg.optJSONObject(key); }
+        @Override public JSONObject toJSONObject() { return cfg; }
+    }
+
+    /** Runtime overrides (files/cloner.json) layered over the packaged settings. */
+    final class Overlay implements SettingsSource {
+        private final JSONObject top;
+        private final SettingsSource base;
+
+        Overlay(JSONObject top, SettingsSource base) {
+            this.top = top;
+            this.base = base;
+        }
+
+        @Override public boolean has(String key) { return top.has(key) || base.has(key); }
+
+        @Override public boolean optBoolean(String key, boolean fallback) {
+            return top.has(key) ? top.optBoolean(key, fallback) : base.optBoolean(key, fallback);
+        }
+
+        @Override public int optInt(String key, int fallback) {
+            return top.has(key) ? top.optInt(key, fallback) : base.optInt(key, fallback);
+        }
+
+        @Override public long optLong(String key, long fallback) {
+            return top.has(key) ? top.optLong(key, fallback) : base.optLong(key, fallback);
+        }
+
+        @Override public double optDouble(String key, double fallback) {
+            return top.has(key) ? top.optDouble(key, fallback) : base.optDouble(key, fallback);
+        }
+
+        @Override public String optString(String key, String fallback) {
+            return top.has(key) ? top.optString(key, fallback) : base.optString(key, fallback);
+        }
+
+        @Override public JSONArray optJSONArray(String key) {
+            return top.has(key) ? top.optJSONArray(key) : base.optJSONArray(key);
+        }
+
+        @Override public JSONObject optJSONObject(String key) {
+            return top.has(key) ? top.optJSONObject(key) : base.optJSONObject(key);
+        }
+
+        @Override public JSONObject toJSONObject() {
+            JSONObject merged = base.toJSONObject();
+            Iterator<String> keys = top.keys();
+            try {
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    merged.put(key, top.opt(key));
+                }
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.applisto.appcloner;
+
+import android.content.Context;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * Reloads {@link ClonerSettings} when files/cloner.json is written, replaced or deleted, e.g. by
+ * identity regeneration or an {@code adb push}. Bursts of events are coalesced into one reload
+ * that runs {@link #DEBOUNCE_MS} after the last of them, on a dedicated thread.
+ */
+public final class SettingsWatcher {
+    private static final String TAG = "SettingsWatcher";
+    private static final String RUNTIME_FILE = "cloner.json";
+    private static final long DEBOUNCE_MS = 100;
+
+    // FileObserver stops delivering events once it is garbage collected.
+    private static SettingsWatcher sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final FileObserver mObserver;
+    private final Runnable mReload = this::reload;
+
+    @SuppressWarnings("deprecation") // FileObserver(File) needs API 29
+    private SettingsWatcher(Context context) {
+        mContext = context.getApplicationContext();
+        HandlerThread thread = new HandlerThread("settings-watcher");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        int mask = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE;
+        mObserver = new FileObserver(mContext.getFilesDir().getAbsolutePath(), mask) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (!RUNTIME_FILE.equals(path)) return;
+                mHandler.removeCallbacks(mReload);
+                mHandler.postDelayed(mReload, DEBOUNCE_MS);
+            }
+        };
+    }
+
+    public static synchronized void start(Context context) {
+        if (sInstance != null) return;
+        sInstance = new SettingsWatcher(context);
+        sInstance.mObserver.startWatching();
+        Log.i(TAG, "Watching " + context.getFilesDir() + "/" + RUNTIME_FILE);
+    }
+
+    private void reload() {
+        try {
+            ClonerSettings.reload(mContext);
+        } catch (Throwable t) {
+            Log.w(TAG, "Settings reload failed", t);
+        }
+    }
+}
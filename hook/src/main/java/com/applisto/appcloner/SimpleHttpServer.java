@@ -1,31 +1,129 @@
 package com.applisto.appcloner;
 
-import android.text.TextUtils;
 import android.util.Log;
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Small HTTP/1.1 server for the local web console and monitor pages.
+ *
+ * One selector thread accepts connections and does all socket I/O; complete requests (request
+ * line, headers and a Content-Length body) are handed to a small fixed worker pool that calls
+ * {@link #handleRequest}. Connections are kept alive between requests, so a polling dashboard
+ * costs neither a thread nor a handshake per request.
+ *
+ * Everything is bounded: connections ({@link #MAX_CONNECTIONS}), request size, queued work
+ * (excess requests get a 503) and response bytes waiting for a slow client - a worker that
+ * gets more than {@link #MAX_PENDING_OUTPUT} ahead of the socket blocks until it drains.
+ */
 public abstract class SimpleHttpServer {
     private static final String TAG = "SimpleHttpServer";
+
+    private static final int MAX_CONNECTIONS = 32;
+    private static final int WORKERS = 2;
+    private static final int MAX_QUEUED_REQUESTS = 16;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+    private static final long KEEP_ALIVE_MS = 15_000;
+    private static final long WRITE_TIMEOUT_MS = 30_000;
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
     private final int port;
-    private Thread thread;
+    private volatile Thread thread;
+    private volatile Selector selector;
+    private final ConcurrentLinkedQueue<Connection> wakeups = new ConcurrentLinkedQueue<>();
+
+    // Selector thread only.
+    private ThreadPoolExecutor workers;
+    private int connections;
 
     public static final class Request {
         public final String method;
         public final String path;
-        public Request(String method, String path) { this.method = method; this.path = path; }
+        /** Header names are lower case. */
+        public final Map<String, String> headers;
+        public final byte[] body;
+        public Request(String method, String path) {
+            this(method, path, Collections.<String, String>emptyMap(), new byte[0]);
+        }
+        public Request(String method, String path, Map<String, String> headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    /** Produces a response body incrementally, straight onto the connection. */
+    public interface BodyWriter {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * Open-ended response body fed from any thread, e.g. a Server-Sent Events stream. It does not
+     * hold a worker while open.
+     */
+    public interface PushChannel {
+        /**
+         * Queues {@code data} without blocking. Returns false, and drops the connection, once the
+         * client is gone or more than {@link #MAX_PENDING_OUTPUT} bytes behind. {@code data} is
+         * not copied and must not be modified afterwards.
+         */
+        boolean send(byte[] data);
+
+        /** Ends the response and closes the connection. */
+        void close();
+    }
+
+    public interface PushHandler {
+        /** Called on a worker once the response headers are queued. */
+        void onOpen(PushChannel channel);
     }
 
     public static final class Response {
         public final int statusCode;
         public final String contentType;
         public final String body;
+        public final BodyWriter stream;
+        public final PushHandler push;
         public Response(int statusCode, String contentType, String body) {
+            this(statusCode, contentType, body, null, null);
+        }
+        /** A response sent with Transfer-Encoding: chunked as {@code stream} writes it. */
+        public Response(int statusCode, String contentType, BodyWriter stream) {
+            this(statusCode, contentType, null, stream, null);
+        }
+        private Response(int statusCode, String contentType, String body, BodyWriter stream, PushHandler push) {
             this.statusCode = statusCode;
             this.contentType = contentType;
             this.body = body;
+            this.stream = stream;
+            this.push = push;
+        }
+        /** A response that stays open and is written through the {@link PushChannel} given to {@code push}. */
+        public static Response push(int statusCode, String contentType, PushHandler push) {
+            return new Response(statusCode, contentType, null, null, push);
         }
     }
 
@@ -41,48 +139,573 @@ public abstract class SimpleHttpServer {
     public void stop() {
         Thread t = thread;
         thread = null;
+        Selector s = selector;
+        if (s != null) s.wakeup();
         if (t != null) t.interrupt();
     }
 
     protected abstract Response handleRequest(Request req);
 
+    // ---- selector thread ----
+
     private void runLoop() {
-        try (ServerSocket server = new ServerSocket(port)) {
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS),
+                r -> new Thread(r, "SimpleHttpServer-Worker-" + workerIds.incrementAndGet()));
+        workers.allowCoreThreadTimeOut(true);
+
+        try (Selector sel = Selector.open();
+             ServerSocketChannel server = ServerSocketChannel.open()) {
+            selector = sel;
+            server.socket().setReuseAddress(true);
+            server.socket().bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(sel, SelectionKey.OP_ACCEPT);
             Log.i(TAG, "Started on port " + port);
+
             while (thread != null && !Thread.currentThread().isInterrupted()) {
-                Socket s = server.accept();
-                new Thread(() -> handleClient(s), "SimpleHttpServer-Client").start();
+                sel.select(1000);
+
+                Connection woken;
+                while ((woken = wakeups.poll()) != null) {
+                    try {
+                        if (woken.key.isValid()) flush(woken);
+                    } catch (Throwable t) {
+                        close(woken);
+                    }
+                }
+
+                Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept(server, sel);
+                        } else {
+                            Connection c = (Connection) key.attachment();
+                            if (key.isWritable()) flush(c);
+                            if (key.isValid() && key.isReadable()) read(c);
+                        }
+                    } catch (Throwable t) {
+                        if (key.attachment() instanceof Connection) close((Connection) key.attachment());
+                    }
+                }
+
+                closeIdle(sel);
+            }
+            for (SelectionKey key : sel.keys()) {
+                if (key.attachment() instanceof Connection) close((Connection) key.attachment());
             }
         } catch (Throwable t) {
             Log.w(TAG, "Server stopped/crashed", t);
+        } finally {
+            selector = null;
+            workers.shutdownNow();
+            wakeups.clear();
+            connections = 0;
         }
     }
 
-    private void handleClient(Socket socket) {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             OutputStream os = socket.getOutputStream();
-             PrintWriter pw = new PrintWriter(os, true)) {
+    private void accept(ServerSocketChannel server, Selector sel) throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            if (connections >= MAX_CONNECTIONS) {
+                // Best effort: the socket buffer of a fresh connection takes a short reply.
+                ch.write(ByteBuffer.wrap(simpleResponse(503, "too many connections", false)));
+                ch.close();
+                continue;
+            }
+            ch.socket().setTcpNoDelay(true);
+            Connection c = new Connection(ch);
+            c.key = ch.register(sel, SelectionKey.OP_READ, c);
+            connections++;
+        }
+    }
 
-            String line = br.readLine(); // only first request line (like jar)
-            if (TextUtils.isEmpty(line)) return;
+    private void read(Connection c) throws IOException {
+        if (!c.in.hasRemaining()) c.growInput();
+        int n = c.channel.read(c.in);
+        if (n < 0) {
+            close(c);
+            return;
+        }
+        c.lastActive = System.currentTimeMillis();
+        dispatch(c);
+    }
 
-            String[] parts = line.split(" ");
-            if (parts.length < 2) return;
+    /** Hands the next complete request in {@code c}'s input buffer to a worker. */
+    private void dispatch(Connection c) throws IOException {
+        Request req;
+        try {
+            req = c.parse();
+        } catch (BadRequest e) {
+            c.busy = true;
+            c.keepAlive = false;
+            c.key.interestOps(0);
+            c.enqueueDirect(simpleResponse(e.status, e.getMessage(), false));
+            c.done = true;
+            flush(c);
+            return;
+        }
+        if (req == null) {
+            if (c.expectContinue) {
+                c.expectContinue = false;
+                c.channel.write(ByteBuffer.wrap("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+            }
+            return;
+        }
 
-            Response resp = handleRequest(new Request(parts[0], parts[1]));
+        // One request at a time per connection: stop reading until it has been answered.
+        c.busy = true;
+        c.key.interestOps(0);
+        try {
+            workers.execute(() -> serve(c, req));
+        } catch (RejectedExecutionException e) {
+            c.keepAlive = false;
+            c.enqueueDirect(simpleResponse(503, "server busy", false));
+            c.done = true;
+            flush(c);
+        }
+    }
 
-            pw.println("HTTP/1.1 " + resp.statusCode + " OK");
-            if (!TextUtils.isEmpty(resp.contentType)) {
-                pw.println("Content-Type: " + resp.contentType + "; charset=utf-8");
+    /** Writes queued output; once a response is fully sent, closes or awaits the next request. */
+    private void flush(Connection c) throws IOException {
+        if (c.abort) {
+            close(c);
+            return;
+        }
+        boolean drained;
+        synchronized (c) {
+            while (!c.out.isEmpty()) {
+                ByteBuffer b = c.out.peek();
+                int n = c.channel.write(b);
+                c.pending -= n;
+                if (b.hasRemaining()) break;
+                c.out.poll();
             }
-            pw.println("Cache-Control: no-store");
-            pw.println();
-            if (!TextUtils.isEmpty(resp.body)) pw.println(resp.body);
+            drained = c.out.isEmpty();
+            c.notifyAll();
+        }
+        c.lastActive = System.currentTimeMillis();
+        if (!drained) {
+            c.key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        if (!c.done) {
+            // A worker send() and serve() each queue a wakeup, so one can arrive after the
+            // response has completed; an idle connection must keep reading then.
+            if (c.busy) c.key.interestOps(0);
+            return;
+        }
+        if (!c.keepAlive) {
+            close(c);
+            return;
+        }
+        c.busy = false;
+        c.done = false;
+        c.key.interestOps(SelectionKey.OP_READ);
+        // Pipelined requests may already be buffered.
+        if (c.in.position() > 0) dispatch(c);
+    }
+
+    private void closeIdle(Selector sel) {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : sel.keys()) {
+            Object a = key.attachment();
+            if (!(a instanceof Connection)) continue;
+            Connection c = (Connection) a;
+            if (c.busy && !c.done) continue; // handleRequest may take a while
+            // A finished response still queued means the client stopped reading.
+            long timeout = c.busy ? WRITE_TIMEOUT_MS : KEEP_ALIVE_MS;
+            if (now - c.lastActive > timeout) close(c);
+        }
+    }
+
+    private void close(Connection c) {
+        synchronized (c) {
+            if (c.closed) return;
+            c.closed = true;
+            c.out.clear();
+            c.notifyAll();
+        }
+        connections--;
+        c.key.cancel();
+        try { c.channel.close(); } catch (IOException ignored) {}
+    }
+
+    // ---- workers ----
 
+    private void serve(Connection c, Request req) {
+        ConnectionOutputStream os = new ConnectionOutputStream(c);
+        try {
+            Response resp;
+            try {
+                resp = handleRequest(req);
+            } catch (Throwable t) {
+                Log.w(TAG, "handleRequest failed", t);
+                resp = new Response(500, "text/plain", "internal error");
+            }
+            if (resp == null) resp = new Response(404, "text/plain", "not found");
+            if (resp.push != null) {
+                c.keepAlive = false;
+                writeResponse(os, resp, false, c.http11);
+                os.flush();
+                // The handler owns the connection from here on; it ends with PushChannel.close().
+                resp.push.onOpen(new ConnectionPushChannel(c));
+                return;
+            }
+            // An HTTP/1.0 client only sees the end of a streamed body when the connection closes.
+            if (resp.stream != null && !c.http11) c.keepAlive = false;
+            writeResponse(os, resp, c.keepAlive, c.http11);
+            os.flush();
         } catch (Throwable t) {
-            Log.w(TAG, "handleClient failed", t);
-        } finally {
-            try { socket.close(); } catch (IOException ignored) {}
+            Log.w(TAG, "Sending response failed", t);
+            c.keepAlive = false;
+        }
+        c.done = true;
+        wakeup(c);
+    }
+
+    private static void writeResponse(OutputStream os, Response resp, boolean keepAlive, boolean http11) throws IOException {
+        // Without chunked encoding (HTTP/1.0) a streamed body ends when the connection does.
+        boolean chunked = (resp.stream != null || resp.push != null) && http11;
+        StringBuilder head = new StringBuilder(160);
+        head.append("HTTP/1.1 ").append(resp.statusCode).append(' ').append(reason(resp.statusCode)).append("\r\n");
+        if (resp.contentType != null && !resp.contentType.isEmpty()) {
+            head.append("Content-Type: ").append(resp.contentType);
+            if (!resp.contentType.contains("charset=")) head.append("; charset=utf-8");
+            head.append("\r\n");
+        }
+        head.append("Cache-Control: no-store\r\n");
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+
+        if (resp.push != null) {
+            if (chunked) head.append("Transfer-Encoding: chunked\r\n");
+            head.append("\r\n");
+            os.write(head.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (resp.stream != null) {
+            if (chunked) head.append("Transfer-Encoding: chunked\r\n");
+            head.append("\r\n");
+            os.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            ChunkedOutputStream body = chunked ? new ChunkedOutputStream(os) : null;
+            Writer w = new OutputStreamWriter(chunked ? body : os, StandardCharsets.UTF_8);
+            resp.stream.writeTo(w);
+            w.flush();
+            if (chunked) body.finish();
+        } else {
+            byte[] body = resp.body == null ? new byte[0] : resp.body.getBytes(StandardCharsets.UTF_8);
+            head.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+            os.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            os.write(body);
+        }
+    }
+
+    private void wakeup(Connection c) {
+        wakeups.add(c);
+        Selector s = selector;
+        if (s != null) s.wakeup();
+    }
+
+    private static byte[] simpleResponse(int status, String message, boolean keepAlive) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\n" +
+                "Content-Type: text/plain; charset=utf-8\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+        byte[] h = head.getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[h.length + body.length];
+        System.arraycopy(h, 0, out, 0, h.length);
+        System.arraycopy(body, 0, out, h.length, body.length);
+        return out;
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 411: return "Length Required";
+            case 413: return "Payload Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "OK";
+        }
+    }
+
+    // ---- connection state ----
+
+    private static final class BadRequest extends Exception {
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        long lastActive = System.currentTimeMillis();
+
+        // Selector thread only, except where noted.
+        boolean busy;
+        boolean expectContinue;
+        boolean continueSent;
+        volatile boolean keepAlive = true;
+        volatile boolean http11 = true;
+        volatile boolean done;
+        volatile boolean abort;
+
+        // Guarded by this.
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        int pending;
+        boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void growInput() throws IOException {
+            if (in.capacity() >= MAX_HEADER_BYTES + MAX_BODY_BYTES) throw new IOException("Request too large");
+            ByteBuffer grown = ByteBuffer.allocate(Math.min(in.capacity() * 2, MAX_HEADER_BYTES + MAX_BODY_BYTES));
+            in.flip();
+            grown.put(in);
+            in = grown;
+        }
+
+        /** Removes one complete request from the input buffer, or returns null if incomplete. */
+        Request parse() throws BadRequest {
+            byte[] buf = in.array();
+            int len = in.position();
+            int headerEnd = -1;
+            for (int i = 3; i < len; i++) {
+                if (buf[i] == '\n' && buf[i - 1] == '\r' && buf[i - 2] == '\n' && buf[i - 3] == '\r') {
+                    headerEnd = i + 1;
+                    break;
+                }
+            }
+            if (headerEnd < 0) {
+                if (len >= MAX_HEADER_BYTES) throw new BadRequest(431, "request header too large");
+                return null;
+            }
+
+            String[] lines = new String(buf, 0, headerEnd - 4, StandardCharsets.ISO_8859_1).split("\r\n");
+            String[] parts = lines[0].split(" ");
+            if (parts.length < 2) throw new BadRequest(400, "bad request line");
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) continue;
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        lines[i].substring(colon + 1).trim());
+            }
+            if (headers.containsKey("transfer-encoding")) {
+                throw new BadRequest(501, "chunked request bodies are not supported");
+            }
+            int bodyLength = 0;
+            String cl = headers.get("content-length");
+            if (cl != null) {
+                try {
+                    bodyLength = Integer.parseInt(cl);
+                } catch (NumberFormatException e) {
+                    throw new BadRequest(400, "bad content-length");
+                }
+                if (bodyLength < 0) throw new BadRequest(400, "bad content-length");
+                if (bodyLength > MAX_BODY_BYTES) throw new BadRequest(413, "request body too large");
+            }
+            if (len < headerEnd + bodyLength) {
+                if (!continueSent && "100-continue".equalsIgnoreCase(headers.get("expect"))) {
+                    continueSent = true;
+                    expectContinue = true;
+                }
+                return null;
+            }
+
+            byte[] body = new byte[bodyLength];
+            System.arraycopy(buf, headerEnd, body, 0, bodyLength);
+            in.flip();
+            in.position(headerEnd + bodyLength);
+            in.compact();
+            continueSent = false;
+
+            String version = parts.length > 2 ? parts[2] : "HTTP/1.0";
+            String connection = headers.get("connection");
+            http11 = !"HTTP/1.0".equals(version);
+            keepAlive = http11
+                    ? !"close".equalsIgnoreCase(connection)
+                    : "keep-alive".equalsIgnoreCase(connection);
+            return new Request(parts[0], parts[1], Collections.unmodifiableMap(headers), body);
+        }
+
+        /** Queues bytes from the selector thread, which flushes them itself. */
+        synchronized void enqueueDirect(byte[] bytes) {
+            out.add(ByteBuffer.wrap(bytes));
+            pending += bytes.length;
+        }
+    }
+
+    /** Worker side of a connection: queues bytes and waits while too many are unsent. */
+    private final class ConnectionOutputStream extends OutputStream {
+        private final Connection c;
+        private final byte[] buf = new byte[8192];
+        private int count;
+
+        ConnectionOutputStream(Connection c) {
+            this.c = c;
+        }
+
+        @Override public void write(int b) throws IOException {
+            if (count == buf.length) send();
+            buf[count++] = (byte) b;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length) send();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            send();
+        }
+
+        private void send() throws IOException {
+            if (count == 0) return;
+            byte[] chunk = new byte[count];
+            System.arraycopy(buf, 0, chunk, 0, count);
+            count = 0;
+            long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MS;
+            synchronized (c) {
+                while (c.pending > MAX_PENDING_OUTPUT && !c.closed) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) throw new IOException("Client is not reading");
+                    try {
+                        c.wait(left);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (c.closed) throw new IOException("Connection closed");
+                c.out.add(ByteBuffer.wrap(chunk));
+                c.pending += chunk.length;
+            }
+            wakeup(c);
+        }
+    }
+
+    private final class ConnectionPushChannel implements PushChannel {
+        private final Connection c;
+        private final boolean chunked;
+        private boolean ended;
+
+        ConnectionPushChannel(Connection c) {
+            this.c = c;
+            this.chunked = c.http11;
+        }
+
+        @Override public boolean send(byte[] data) {
+            if (data.length == 0) return true;
+            ByteBuffer prefix = chunked
+                    ? ByteBuffer.wrap((Integer.toHexString(data.length) + "\r\n").getBytes(StandardCharsets.US_ASCII))
+                    : null;
+            synchronized (c) {
+                if (c.closed || ended) return false;
+                if (c.pending + data.length > MAX_PENDING_OUTPUT) {
+                    ended = true;
+                    c.abort = true;
+                } else {
+                    if (prefix != null) {
+                        c.out.add(prefix);
+                        c.pending += prefix.remaining();
+                    }
+                    c.out.add(ByteBuffer.wrap(data));
+                    c.pending += data.length;
+                    if (chunked) {
+                        c.out.add(ByteBuffer.wrap(CRLF));
+                        c.pending += CRLF.length;
+                    }
+                }
+            }
+            wakeup(c);
+            return !c.abort;
+        }
+
+        @Override public void close() {
+            synchronized (c) {
+                if (c.closed || ended) return;
+                ended = true;
+                if (chunked) {
+                    byte[] last = {'0', '\r', '\n', '\r', '\n'};
+                    c.out.add(ByteBuffer.wrap(last));
+                    c.pending += last.length;
+                }
+            }
+            c.done = true;
+            wakeup(c);
+        }
+    }
+
+    /** HTTP/1.1 chunked framing; every flush of the writer above becomes one chunk. */
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buf = new byte[8192];
+        private int count;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override public void write(int b) throws IOException {
+            if (count == buf.length) writeChunk();
+            buf[count++] = (byte) b;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length) writeChunk();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            writeChunk();
+            out.flush();
+        }
+
+        /** Writes the pending chunk and the terminating zero-length chunk. */
+        void finish() throws IOException {
+            writeChunk();
+            out.write('0');
+            out.write(CRLF);
+            out.write(CRLF);
+        }
+
+        private void writeChunk() throws IOException {
+            if (count == 0) return;
+            out.write(Integer.toHexString(count).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(buf, 0, count);
+            out.write(CRLF);
+            count = 0;
         }
     }
 }
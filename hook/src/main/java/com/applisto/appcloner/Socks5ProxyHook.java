@@ -39,10 +39,9 @@ import com.applisto.appcloner.hooking.Hooking;
 public final class Socks5ProxyHook {
 
     private static final String TAG = "Socks5ProxyHook";
-    private static String proxyHost;
-    private static int    proxyPort;
-    private static String proxyUser;
-    private static String proxyPass;
+    // Null while the proxy is disabled. Replaced as a whole, so readers never mix old and new values.
+    private static volatile ProxyConfig sConfig;
+    private static boolean sHooked;
 
     // Cache for UDP relays: Key = Local DatagramSocket, Value = RelayWorker
     private static final Map<DatagramSocket, UdpRelayWorker> udpRelays = new ConcurrentHashMap<>();
@@ -51,47 +50,75 @@ public final class Socks5ProxyHook {
     private static final Set<DatagramSocket> internalDatagramSockets = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public void init(Context context) {
-        ClonerSettings settings = ClonerSettings.get(context);
-        boolean enabled = settings.socksProxy();
-        proxyHost = settings.socksProxyHost();
-        proxyPort = settings.socksProxyPort();
-        proxyUser = settings.socksProxyUser();
-        proxyPass = settings.socksProxyPass();
-
-        if (!enabled || TextUtils.isEmpty(proxyHost)) {
-            Log.i(TAG, "SOCKS5 not configured or disabled – skipping hook");
+        apply(ClonerSettings.get(context));
+
+        // Proxy changes apply to new connections without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings),
+                "socks_proxy", "socks_proxy_host", "socks_proxy_port", "socks_proxy_user", "socks_proxy_pass");
+    }
+
+    private synchronized void apply(ClonerSettings settings) {
+        ProxyConfig config = new ProxyConfig(settings.socksProxyHost(), settings.socksProxyPort(),
+                settings.socksProxyUser(), settings.socksProxyPass());
+
+        if (!settings.socksProxy() || TextUtils.isEmpty(config.host)) {
+            sConfig = null;
+            // Relays are bound to the previous proxy; sockets reconnect directly.
+            closeRelays();
+            if (sHooked) {
+                System.clearProperty("socksProxyHost");
+                System.clearProperty("socksProxyPort");
+                System.clearProperty("java.net.socks.username");
+                System.clearProperty("java.net.socks.password");
+                Log.i(TAG, "SOCKS5 proxy disabled");
+            } else {
+                Log.i(TAG, "SOCKS5 not configured or disabled – skipping hook");
+            }
+            return;
+        }
+        sConfig = config;
+        // Relays are bound to the previous proxy; sockets reconnect through the new one.
+        closeRelays();
+
+        // Set System Properties for WebView / Default Java handling
+        System.setProperty("socksProxyHost", config.host);
+        System.setProperty("socksProxyPort", String.valueOf(config.port));
+        if (!TextUtils.isEmpty(config.user)) {
+            System.setProperty("java.net.socks.username", config.user);
+            System.setProperty("java.net.socks.password", config.pass);
+        } else {
+            System.clearProperty("java.net.socks.username");
+            System.clearProperty("java.net.socks.password");
+        }
+
+        if (sHooked) {
+            Log.i(TAG, "SOCKS5 proxy updated → " + config.host + ":" + config.port);
             return;
         }
+        sHooked = true;
 
-        Log.i(TAG, "Installing SOCKS5 proxy → " + proxyHost + ":" + proxyPort);
+        Log.i(TAG, "Installing SOCKS5 proxy → " + config.host + ":" + config.port);
 
         // 1. Set Authenticator for global auth
-        if (!TextUtils.isEmpty(proxyUser)) {
-            Authenticator.setDefault(new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    if (getRequestorType() == RequestorType.PROXY) {
-                        return new PasswordAuthentication(proxyUser, proxyPass.toCharArray());
-                    }
-                    return null;
+        Authenticator.setDefault(new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                ProxyConfig c = sConfig;
+                if (c != null && getRequestorType() == RequestorType.PROXY && !TextUtils.isEmpty(c.user)) {
+                    return new PasswordAuthentication(c.user, c.pass.toCharArray());
                 }
-            });
-        }
-
-        // 2. Set System Properties for WebView / Default Java handling
-        System.setProperty("socksProxyHost", proxyHost);
-        System.setProperty("socksProxyPort", String.valueOf(proxyPort));
-        if (!TextUtils.isEmpty(proxyUser)) {
-            System.setProperty("java.net.socks.username", proxyUser);
-            System.setProperty("java.net.socks.password", proxyPass);
-        }
+                return null;
+            }
+        });
 
-        // 3. Set Default ProxySelector
+        // 2. Set Default ProxySelector
         ProxySelector.setDefault(new ProxySelector() {
             @Override
             public List<Proxy> select(URI uri) {
+                ProxyConfig c = sConfig;
+                if (c == null) return Collections.singletonList(Proxy.NO_PROXY);
                 return Collections.singletonList(
-                        new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved(proxyHost, proxyPort))
+                        new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved(c.host, c.port))
                 );
             }
 
@@ -101,16 +128,23 @@ public final class Socks5ProxyHook {
             }
         });
 
-        // 4. Hook SocketFactory and Socket Constructors
+        // 3. Hook SocketFactory and Socket Constructors
         hookSocketFactory();
         hookSocketConstructors();
 
-        // 5. Hook DatagramSocket for UDP support
+        // 4. Hook DatagramSocket for UDP support
         hookDatagramSocket();
 
         Log.i(TAG, "SOCKS5 hook installed (TCP + UDP + Auth + RemoteDNS)");
     }
 
+    private static void closeRelays() {
+        for (DatagramSocket socket : udpRelays.keySet()) {
+            UdpRelayWorker worker = udpRelays.remove(socket);
+            if (worker != null) worker.close();
+        }
+    }
+
     /* ----------------------------------------------------------
        TCP Hooks
        ---------------------------------------------------------- */
@@ -119,18 +153,22 @@ public final class Socks5ProxyHook {
             Method mSF1 = SocketFactory.class.getDeclaredMethod("createSocket", String.class, int.class);
             Hooking.pineHook(mSF1, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame frame) throws Throwable {
+                    ProxyConfig c = sConfig;
+                    if (c == null) return;
                     String host = (String) frame.args[0];
                     int    port = (int)    frame.args[1];
-                    frame.setResult(createProxySocket(host, port));
+                    frame.setResult(createProxySocket(c, host, port));
                 }
             });
 
             Method mSF2 = SocketFactory.class.getDeclaredMethod("createSocket", InetAddress.class, int.class);
             Hooking.pineHook(mSF2, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame frame) throws Throwable {
+                    ProxyConfig c = sConfig;
+                    if (c == null) return;
                     InetAddress addr = (InetAddress) frame.args[0];
                     int         port = (int)        frame.args[1];
-                    frame.setResult(createProxySocket(addr.getHostAddress(), port));
+                    frame.setResult(createProxySocket(c, addr.getHostAddress(), port));
                 }
             });
 
@@ -167,8 +205,8 @@ public final class Socks5ProxyHook {
         }
     }
 
-    private Socket createProxySocket(String host, int port) throws IOException {
-        Socket sock = new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxyHost, proxyPort)));
+    private Socket createProxySocket(ProxyConfig c, String host, int port) throws IOException {
+        Socket sock = new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(c.host, c.port)));
         sock.connect(InetSocketAddress.createUnresolved(host, port));
         return sock;
     }
@@ -183,6 +221,7 @@ public final class Socks5ProxyHook {
             Method mSend = DatagramSocket.class.getDeclaredMethod("send", DatagramPacket.class);
             Hooking.pineHook(mSend, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame frame) throws Throwable {
+                    if (sConfig == null) return;
                     DatagramSocket socket = (DatagramSocket) frame.thisObject;
                     if (internalDatagramSockets.contains(socket)) return; // Skip internal sockets
 
@@ -200,6 +239,7 @@ public final class Socks5ProxyHook {
             Method mReceive = DatagramSocket.class.getDeclaredMethod("receive", DatagramPacket.class);
             Hooking.pineHook(mReceive, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame frame) throws Throwable {
+                    if (sConfig == null) return;
                     DatagramSocket socket = (DatagramSocket) frame.thisObject;
                     if (internalDatagramSockets.contains(socket)) return; // Skip internal sockets
 
@@ -236,8 +276,11 @@ public final class Socks5ProxyHook {
         if (udpRelays.containsKey(source)) {
             return udpRelays.get(source);
         }
+        // Read under the lock apply() holds, so a relay is never opened to a proxy it just replaced.
+        ProxyConfig c = sConfig;
+        if (c == null) return null;
         try {
-            UdpRelayWorker worker = new UdpRelayWorker(proxyHost, proxyPort, proxyUser, proxyPass);
+            UdpRelayWorker worker = new UdpRelayWorker(c.host, c.port, c.user, c.pass);
             udpRelays.put(source, worker);
             return worker;
         } catch (Exception e) {
@@ -246,6 +289,20 @@ public final class Socks5ProxyHook {
         }
     }
 
+    private static final class ProxyConfig {
+        final String host;
+        final int port;
+        final String user;
+        final String pass;
+
+        ProxyConfig(String host, int port, String user, String pass) {
+            this.host = host;
+            this.port = port;
+            this.user = user;
+            this.pass = pass;
+        }
+    }
+
     /* ----------------------------------------------------------
        Inner Class: UDP Relay Worker
        ---------------------------------------------------------- */
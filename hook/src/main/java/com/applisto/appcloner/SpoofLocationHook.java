@@ -79,11 +79,21 @@ public final class SpoofLocationHook {
     public static final String EXTRA_ALTITUDE = "altitude";
 
     private static volatile boolean sHooked = false;
+    private static boolean sInstalled;
     private static Context sContext;
     private static String sAppClonerPackage;
 
     /* ---------- Settings loaded from cloner.json ---------- */
-    private static boolean ENABLED;
+    private static volatile boolean ENABLED;
+
+    // Keys whose changes are applied to the running hooks by a settings reload
+    private static final String[] LIVE_KEYS = {
+            "SpoofLocation", "SpoofLocationLatitude", "SpoofLocationLongitude",
+            "SpoofLocationAltitude", "SpoofLocationAccuracy", "SpoofLocationRandomize",
+            "SpoofLocationUseIp", "SpoofLocationUseIpLocation", "SpoofLocationSpeed",
+            "SpoofLocationBearing", "SpoofLocationCalculateBearing",
+            "SpoofLocationSimulatePositionalUncertainty"
+    };
     private static volatile double sSpoofLocationLatitude;
     private static volatile double sSpoofLocationLongitude;
     private static volatile double sSpoofLocationAltitude = 10.0;
@@ -141,6 +151,9 @@ public final class SpoofLocationHook {
             fetchIpLocationAsync();
         }
 
+        // New coordinates or switching spoofing on/off take effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> onSettingsChanged(), LIVE_KEYS);
+
         if (!ENABLED) {
             Log.i(TAG, "SpoofLocation disabled");
             return;
@@ -152,6 +165,30 @@ public final class SpoofLocationHook {
             return;
         }
 
+        installHooks(ctx);
+    }
+
+    private synchronized void onSettingsChanged() {
+        // The configured location replaces any earlier runtime override.
+        loadSettings(sContext);
+        if (sSpoofLocationUseIpLocation && !hasCoordinates()) {
+            fetchIpLocationAsync();
+        }
+        if (!getEnabled()) {
+            Log.i(TAG, "SpoofLocation now inactive");
+            return;
+        }
+        if (!sInstalled) {
+            installHooks(sContext);
+        } else {
+            sendLocationUpdates();
+            Log.i(TAG, "SpoofLocation moved to " + sSpoofLocationLatitude + ", " + sSpoofLocationLongitude);
+        }
+    }
+
+    private synchronized void installHooks(Context ctx) {
+        if (sInstalled) return;
+        sInstalled = true;
         try {
             // Initialize GMS LocationAvailability constant
             initLocationAvailability();
@@ -700,8 +737,8 @@ public final class SpoofLocationHook {
     }
 
     private boolean isOurLocation(Object obj) {
-        // Always spoof - we want all Location objects to report our coordinates
-        return true;
+        // Spoof every Location while enabled; settings reloads can turn this off at runtime
+        return getEnabled();
     }
 
     /* ========== FusedLocationProviderClient Hooks ========== */
@@ -0,0 +1,171 @@
+package com.applisto.appcloner;
+
+import android.os.Process;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide recorder of nanosecond spans for startup work: settings loading, hook
+ * installation, individual {@code pineHook} calls and receiver registration.
+ *
+ * Recording is lock-free and allocation-light: callers take {@link #now()} before the work
+ * and pass it to {@link #record} afterwards. The buffer holds {@link #MAX_SPANS} spans;
+ * later ones are counted but dropped, so hooks installed long after startup cannot grow it.
+ * Offsets are relative to the first use of this class, which happens in the provider's
+ * onCreate or earlier.
+ */
+public final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private static final int MAX_SPANS = 4096;
+
+    public static final String CAT_SETTINGS = "settings";
+    public static final String CAT_HOOK = "hook";
+    public static final String CAT_PINE = "pine";
+    public static final String CAT_RECEIVER = "receiver";
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final long ORIGIN_WALL_MILLIS = System.currentTimeMillis();
+
+    private static final AtomicReferenceArray<Span> sSpans = new AtomicReferenceArray<>(MAX_SPANS);
+    private static final AtomicInteger sCount = new AtomicInteger();
+
+    private StartupTrace() {}
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /** Records a span that started at {@code startNanos} (from {@link #now()}) and ends now. */
+    public static void record(String category, String name, long startNanos) {
+        long end = System.nanoTime();
+        int i = sCount.getAndIncrement();
+        if (i >= MAX_SPANS) return;
+        Thread t = Thread.currentThread();
+        sSpans.set(i, new Span(category, name, t.getId(), t.getName(),
+                startNanos - ORIGIN_NANOS, end - startNanos));
+    }
+
+    /** Number of spans recorded, including the ones dropped once the buffer was full. */
+    public static int size() {
+        return sCount.get();
+    }
+
+    /** Summary plus every span, for the {@code get_startup_trace} provider call. */
+    public static JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        root.put("origin_epoch_ms", ORIGIN_WALL_MILLIS);
+        root.put("recorded", Math.min(sCount.get(), MAX_SPANS));
+        root.put("dropped", Math.max(0, sCount.get() - MAX_SPANS));
+
+        Map<String, long[]> byCategory = new LinkedHashMap<>();
+        JSONArray spans = new JSONArray();
+        int n = Math.min(sCount.get(), MAX_SPANS);
+        for (int i = 0; i < n; i++) {
+            Span s = sSpans.get(i);
+            if (s == null) continue; // slot claimed but not yet published
+            JSONObject o = new JSONObject();
+            o.put("cat", s.category);
+            o.put("name", s.name);
+            o.put("thread", s.threadName);
+            o.put("start_ns", s.startNanos);
+            o.put("dur_ns", s.durNanos);
+            spans.put(o);
+
+            long[] agg = byCategory.get(s.category);
+            if (agg == null) byCategory.put(s.category, agg = new long[2]);
+            agg[0]++;
+            agg[1] += s.durNanos;
+        }
+        JSONObject totals = new JSONObject();
+        for (Map.Entry<String, long[]> e : byCategory.entrySet()) {
+            totals.put(e.getKey(), new JSONObject()
+                    .put("count", e.getValue()[0])
+                    .put("total_ns", e.getValue()[1]));
+        }
+        root.put("totals", totals);
+        root.put("spans", spans);
+        return root;
+    }
+
+    /**
+     * Writes the spans in Chrome trace-event format, loadable in chrome://tracing or
+     * Perfetto. Timestamps are microseconds with nanosecond fractions.
+     */
+    public static void writeChromeTrace(Writer w, String processName) throws IOException {
+        int pid = Process.myPid();
+        Map<Long, String> threads = new LinkedHashMap<>();
+        w.write("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[\n");
+        w.write("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":" + pid
+                + ",\"args\":{\"name\":" + JSONObject.quote(processName) + "}}");
+        int n = Math.min(sCount.get(), MAX_SPANS);
+        for (int i = 0; i < n; i++) {
+            Span s = sSpans.get(i);
+            if (s == null) continue;
+            threads.put(s.tid, s.threadName);
+            w.write(",\n{\"ph\":\"X\",\"cat\":");
+            w.write(JSONObject.quote(s.category));
+            w.write(",\"name\":");
+            w.write(JSONObject.quote(s.name));
+            w.write(",\"pid\":" + pid + ",\"tid\":" + s.tid);
+            w.write(",\"ts\":" + micros(s.startNanos) + ",\"dur\":" + micros(s.durNanos) + "}");
+        }
+        for (Map.Entry<Long, String> e : threads.entrySet()) {
+            w.write(",\n{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":" + pid + ",\"tid\":" + e.getKey()
+                    + ",\"args\":{\"name\":" + JSONObject.quote(e.getValue()) + "}}");
+        }
+        w.write("\n]}\n");
+    }
+
+    /** Writes the Chrome trace to {@code file}, replacing it atomically. */
+    public static File writeChromeTrace(File file, String processName) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            writeChromeTrace(w, processName);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        Log.i(TAG, "Wrote startup trace to " + file);
+        return file;
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "." + String.format(Locale.US, "%03d", nanos % 1000);
+    }
+
+    private static final class Span {
+        final String category;
+        final String name;
+        final long tid;
+        final String threadName;
+        final long startNanos;
+        final long durNanos;
+
+        Span(String category, String name, long tid, String threadName, long startNanos, long durNanos) {
+            this.category = category;
+            this.name = name;
+            this.tid = tid;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+            this.durNanos = durNanos;
+        }
+    }
+}
@@ -10,21 +10,17 @@ import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import top.canyie.pine.Pine;
 import top.canyie.pine.callback.MethodHook;
+import com.applisto.appcloner.ClonerSettings.UrlDataFilter;
 import com.applisto.appcloner.hooking.Hooking;
 
 /** Intercepts every URL & POST body flowing through any WebView and
@@ -36,7 +32,7 @@ public final class WebViewFilterHook {
     /* ------------------------------ PUBLIC ENTRY ------------------------- */
     public void init(Context ctx) {
         try {
-            List<Rule> rules = loadRules(ctx);
+            List<UrlDataFilter> rules = loadRules(ctx);
             if (rules.isEmpty()) {
                 Log.i(TAG, "No URL/data filter rules configured");
                 return;
@@ -51,59 +47,20 @@ public final class WebViewFilterHook {
     }
 
     /* ------------------------------ LOAD RULES -------------------------- */
-    private List<Rule> loadRules(Context c) throws Exception {
-        JSONArray arr = ClonerSettings.get(c).raw().optJSONArray(CFG_KEY);
-        List<Rule> list = new ArrayList<>();
-        if (arr == null) return list;
-
-        for (int i = 0; i < arr.length(); i++)
-            list.add(new Rule(arr.getJSONObject(i)));
-        return list;
-    }
-
-    /* a single filter rule */
-    private static final class Rule {
-        final Pattern urlPat;
-        final boolean urlBlock;
-        final String  urlRepl;
-        final boolean urlEncode;
-
-        final Pattern dataPat;
-        final int     dataFlags;
-        final boolean dataBlock;
-        final String  dataRepl;
-        final boolean dataReplaceAll;
-
-        Rule(JSONObject o) {
-            /* URL part */
-            urlPat   = regex(o, "url_regex", 0);
-            urlBlock = o.optBoolean("url_block");
-            urlRepl  = o.optString("url_replacement", null);
-            urlEncode= o.optBoolean("url_encode");
-
-            /* Data part */
-            int flags = o.optBoolean("data_ignore_case") ? Pattern.CASE_INSENSITIVE : 0;
-            dataPat   = regex(o, "data_regex", flags);
-            dataFlags = flags;
-            dataBlock = o.optBoolean("data_block");
-            dataRepl  = o.optString("data_replacement", null);
-            dataReplaceAll = o.optBoolean("data_replace_all", true);
-        }
-        private static Pattern regex(JSONObject o, String key, int flags) {
-            String src = o.optString(key, null);
-            return src == null || src.isEmpty() ? null : Pattern.compile(src, flags);
-        }
+    /* rules are parsed and compiled once, when cloner.json is loaded */
+    private List<UrlDataFilter> loadRules(Context c) {
+        return ClonerSettings.get(c).urlDataFilters();
     }
 
     /* ------------------------------ HOOKS ------------------------------- */
-    private void hookLoadUrl(List<Rule> rules) throws Exception {
+    private void hookLoadUrl(List<UrlDataFilter> rules) throws Exception {
         Method m1 = WebView.class.getDeclaredMethod("loadUrl", String.class);
         Method m2 = WebView.class.getDeclaredMethod("loadUrl", String.class, Map.class);
 
         MethodHook hook = new MethodHook() {
             @Override public void beforeCall(Pine.CallFrame f) {
                 String in = (String) f.args[0];
-                for (Rule r : rules) {
+                for (UrlDataFilter r : rules) {
                     if (r.urlPat != null && r.urlPat.matcher(in).find()) {
                         if (r.urlBlock) {
                             Log.d(TAG, "Blocked URL: " + in);
@@ -126,13 +83,13 @@ public final class WebViewFilterHook {
         Hooking.pineHook(m2, hook);
     }
 
-    private void hookPostUrl(List<Rule> rules) throws Exception {
+    private void hookPostUrl(List<UrlDataFilter> rules) throws Exception {
         Method post = WebView.class.getDeclaredMethod("postUrl", String.class, byte[].class);
         Hooking.pineHook(post, new MethodHook() {
             @Override public void beforeCall(Pine.CallFrame f) {
                 /* 1. Treat URL part exactly like loadUrl */
                 String url = (String) f.args[0];
-                for (Rule r : rules) {
+                for (UrlDataFilter r : rules) {
                     if (r.urlPat != null && r.urlPat.matcher(url).find()) {
                         if (r.urlBlock) { f.setResult(null); return; }
                         if (r.urlRepl != null) {
@@ -146,7 +103,7 @@ public final class WebViewFilterHook {
                 byte[] bodyBytes = (byte[]) f.args[1];
                 String body = new String(bodyBytes, StandardCharsets.UTF_8);
 
-                for (Rule r : rules) {
+                for (UrlDataFilter r : rules) {
                     if (r.dataPat != null && r.dataPat.matcher(body).find()) {
                         if (r.dataBlock) { f.setResult(null); return; }
                         if (r.dataRepl != null) {
@@ -163,7 +120,7 @@ public final class WebViewFilterHook {
 
     /* shouldInterceptRequest gives us every sub-resource, response can be
        replaced with empty stream to BLOCK. */
-    private void hookWebViewClient(List<Rule> rules) throws Exception {
+    private void hookWebViewClient(List<UrlDataFilter> rules) throws Exception {
         /* We need to wrap whatever WebViewClient the app installs */
         Method setClient = WebView.class.getDeclaredMethod(
                 "setWebViewClient", WebViewClient.class);
@@ -188,15 +145,15 @@ public final class WebViewFilterHook {
     /* -------------------------------------------------------------------- */
     private static final class FilteringClient extends WebViewClient {
         private final WebViewClient orig;
-        private final List<Rule> rules;
-        FilteringClient(WebViewClient o, List<Rule> r) { orig = o; rules = r; }
+        private final List<UrlDataFilter> rules;
+        FilteringClient(WebViewClient o, List<UrlDataFilter> r) { orig = o; rules = r; }
 
         @Override
         public WebResourceResponse shouldInterceptRequest(WebView v, WebResourceRequest req) {
             String url = req.getUrl().toString();
 
             /* ---- URL part ------------------------------------------------ */
-            for (Rule r : rules) {
+            for (UrlDataFilter r : rules) {
                 if (r.urlPat != null && r.urlPat.matcher(url).find()) {
                     if (r.urlBlock) {
                         Log.d(TAG, "Blocked sub-resource: " + url);
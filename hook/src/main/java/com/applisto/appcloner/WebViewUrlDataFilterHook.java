@@ -580,22 +580,12 @@ public final class WebViewUrlDataFilterHook {
     // -------------------- Config loading --------------------
 
     private static void loadConfig(Context ctx) throws Exception {
-        String json = readAssetIfExists(ctx, "cloner.json");
-        if (json == null) {
+        JSONObject cfg = ClonerSettings.get(ctx).webViewFilter();
+        if (cfg == null) {
             // Fallback names if you prefer a different asset file.
-            json = readAssetIfExists(ctx, "appcloner.json");
-        }
-        if (json == null) {
-            ENABLED = false;
-            DEBUG = false;
-            REWRITE_RESPONSES = false;
-            RULES = Collections.emptyList();
-            if (DEBUG) Log.i(TAG, "No config asset found; filter disabled.");
-            return;
+            String json = readAssetIfExists(ctx, "appcloner.json");
+            if (json != null) cfg = new JSONObject(json).optJSONObject("webview_filter");
         }
-
-        JSONObject root = new JSONObject(json);
-        JSONObject cfg = root.optJSONObject("webview_filter");
         if (cfg == null) {
             ENABLED = false;
             DEBUG = false;
@@ -31,14 +31,21 @@ public final class WifiMacHook {
     private static final String MODE_NO_CHANGE = "nochange";
     private static final String MODE_RANDOM = "random";
     private static final String DEFAULT_FAKE_MAC = "02:00:00:00:00:00";
-    private static String sFakeMac = null;
+    private static volatile String sFakeMac = null;
+    private static boolean sHooked;
 
     public void init(Context ctx) {
         // Load MAC from settings
-        String configMac = ClonerSettings.get(ctx).wifiMac();
-        
+        apply(ClonerSettings.get(ctx).wifiMac());
+
+        // A regenerated or pushed MAC takes effect without a restart
+        ClonerSettings.subscribe((settings, changed) -> apply(settings.wifiMac()), "wifi_mac");
+    }
+
+    private synchronized void apply(String configMac) {
         // Handle different modes: nochange, random, or custom value
         if (TextUtils.isEmpty(configMac) || MODE_NO_CHANGE.equalsIgnoreCase(configMac) || "NO_CHANGE".equals(configMac)) {
+            sFakeMac = null;
             Log.i(TAG, "WiFi MAC set to NO_CHANGE, using system value.");
             return;
         }
@@ -51,6 +58,8 @@ public final class WifiMacHook {
             sFakeMac = configMac.toUpperCase();
             Log.i(TAG, "WiFi MAC set to CUSTOM: " + sFakeMac);
         }
+        if (sHooked) return;
+        sHooked = true;
         
         Log.i(TAG, "Installing WiFi MAC hook → " + sFakeMac);
 
@@ -64,13 +73,14 @@ public final class WifiMacHook {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
                     WifiInfo info = (WifiInfo) cf.getResult();
-                    if (info != null) {
+                    String fake = sFakeMac;
+                    if (info != null && fake != null) {
                         Log.d(TAG, "Spoofing MAC inside WifiInfo object");
                         // reflect into the private mMacAddress field
                         try {
                             Field f = WifiInfo.class.getDeclaredField("mMacAddress");
                             f.setAccessible(true);
-                            f.set(info, sFakeMac);
+                            f.set(info, fake);
                         } catch (Throwable t) {
                             Log.w(TAG, "Failed to set mMacAddress field", t);
                         }
@@ -94,9 +104,10 @@ public final class WifiMacHook {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
                     byte[] orig = (byte[]) cf.getResult();
-                    if (orig != null && orig.length == 6) {
+                    String fake = sFakeMac;
+                    if (orig != null && orig.length == 6 && fake != null) {
                         // Convert fake MAC string to bytes
-                        byte[] fakeMacBytes = macStringToBytes(sFakeMac);
+                        byte[] fakeMacBytes = macStringToBytes(fake);
                         if (fakeMacBytes != null) {
                             cf.setResult(fakeMacBytes);
                             Log.d(TAG, "NetworkInterface MAC spoofed");
@@ -116,9 +127,11 @@ public final class WifiMacHook {
             Hooking.pineHook(m, new MethodHook() {
                 @Override public void beforeCall(Pine.CallFrame cf) {}
                 @Override public void afterCall(Pine.CallFrame cf) {
+                    String fake = sFakeMac;
+                    if (fake == null) return;
                     Object orig = cf.getResult();
-                    cf.setResult(sFakeMac);
-                    Log.d(TAG, "Wi-Fi MAC spoofed " + orig + " → " + sFakeMac);
+                    cf.setResult(fake);
+                    Log.d(TAG, "Wi-Fi MAC spoofed " + orig + " → " + fake);
                 }
             });
             Log.i(TAG, "✓ hooked " + cls.getSimpleName() + '.' + name);
@@ -0,0 +1,167 @@
+package com.applisto.appcloner;
+
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Row-at-a-time RGB to YUV 4:2:0 conversion for the synthetic camera frames.
+ *
+ * One kernel serves every layout: the layouts only differ in where the chroma samples go,
+ * which {@link #chromaTable} describes as U and V offsets, the step between samples of a row
+ * and the distance between chroma rows. Each ARGB scanline is converted in a single pass
+ * that writes its Y row and, on even rows, the chroma of every other pixel (the top-left
+ * pixel of each 2x2 block, as the camera paths always did). The BT.601 studio-swing
+ * coefficients cannot leave [16, 235] and [16, 240] for 8-bit input, so nothing is clamped
+ * and the inner loops have no branches.
+ *
+ * Frames are packed tightly: YV12 rows are not padded to 16 bytes as android.graphics.YuvImage
+ * would expect. Odd sizes round the chroma planes up.
+ */
+public final class YuvConverter {
+    public enum Layout {
+        /** Y, then interleaved V/U (Android camera preview default). */
+        NV21,
+        /** Y, then interleaved U/V. */
+        NV12,
+        /** Y, then the V plane, then the U plane. */
+        YV12,
+        /** Y, then the U plane, then the V plane. */
+        I420
+    }
+
+    // Columns of the chroma table.
+    private static final int U_OFFSET = 0;
+    private static final int V_OFFSET = 1;
+    private static final int STEP = 2;
+    private static final int ROW = 3;
+
+    private YuvConverter() {}
+
+    public static int frameSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Converts {@code argb} (width * height pixels, row by row) to {@code layout}, into
+     * {@code reusableOutput} if it is large enough. Returns the array written.
+     */
+    public static byte[] convert(int[] argb, int width, int height, Layout layout, byte[] reusableOutput) {
+        byte[] out = reusableOutput;
+        if (out == null || out.length < frameSize(width, height)) {
+            out = new byte[frameSize(width, height)];
+        }
+        int[] chroma = chromaTable(layout, width, height);
+        int step = chroma[STEP];
+        for (int row = 0; row < height; row++) {
+            int src = row * width;
+            for (int i = src, end = src + width; i < end; i++) {
+                int p = argb[i];
+                out[i] = (byte) (((66 * ((p >> 16) & 0xFF) + 129 * ((p >> 8) & 0xFF) + 25 * (p & 0xFF) + 128) >> 8) + 16);
+            }
+            if ((row & 1) != 0) continue;
+            int c = (row >> 1) * chroma[ROW];
+            int u = chroma[U_OFFSET] + c;
+            int v = chroma[V_OFFSET] + c;
+            for (int i = src, end = src + width; i < end; i += 2, u += step, v += step) {
+                int p = argb[i];
+                int r = (p >> 16) & 0xFF;
+                int g = (p >> 8) & 0xFF;
+                int b = p & 0xFF;
+                out[u] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                out[v] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Copies a {@code layout} frame into the planes of a YUV_420_888 Image, honouring their
+     * row and pixel strides. Rows with a pixel stride of 1 are copied with bulk puts; wider
+     * strides are written sample by sample at absolute positions. Buffers are left rewound.
+     */
+    public static void writePlanes(byte[] yuv, int width, int height, Layout layout, Image.Plane[] planes) {
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        int[] rowStrides = new int[3];
+        int[] pixelStrides = new int[3];
+        for (int i = 0; i < 3; i++) {
+            buffers[i] = planes[i].getBuffer();
+            rowStrides[i] = planes[i].getRowStride();
+            pixelStrides[i] = planes[i].getPixelStride();
+        }
+        writePlanes(yuv, width, height, layout, buffers, rowStrides, pixelStrides);
+    }
+
+    /** {@link #writePlanes(byte[], int, int, Layout, Image.Plane[])} on the Y, U and V buffers. */
+    static void writePlanes(byte[] yuv, int width, int height, Layout layout,
+                            ByteBuffer[] buffers, int[] rowStrides, int[] pixelStrides) {
+        int cw = (width + 1) / 2;
+        int ch = (height + 1) / 2;
+        writePlane(yuv, 0, 1, width, width, height, buffers[0], rowStrides[0], pixelStrides[0]);
+
+        int[] chroma = chromaTable(layout, width, height);
+        byte[] row = chroma[STEP] == 1 ? null : new byte[cw];
+        writeChromaPlane(yuv, chroma[U_OFFSET], chroma[STEP], chroma[ROW], cw, ch,
+                buffers[1], rowStrides[1], pixelStrides[1], row);
+        writeChromaPlane(yuv, chroma[V_OFFSET], chroma[STEP], chroma[ROW], cw, ch,
+                buffers[2], rowStrides[2], pixelStrides[2], row);
+    }
+
+    /** {U offset, V offset, step between samples, chroma row length} of {@code layout}. */
+    private static int[] chromaTable(Layout layout, int width, int height) {
+        int ySize = width * height;
+        int cw = (width + 1) / 2;
+        int planeSize = cw * ((height + 1) / 2);
+        switch (layout) {
+            case NV21: return new int[] {ySize + 1, ySize, 2, 2 * cw};
+            case NV12: return new int[] {ySize, ySize + 1, 2, 2 * cw};
+            case YV12: return new int[] {ySize + planeSize, ySize, 1, cw};
+            case I420: return new int[] {ySize, ySize + planeSize, 1, cw};
+            default: throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+    }
+
+    private static void writeChromaPlane(byte[] yuv, int offset, int step, int rowLength,
+                                         int cw, int ch, ByteBuffer buf, int rowStride, int pixelStride,
+                                         byte[] row) {
+        if (step == 1 || pixelStride != 1) {
+            writePlane(yuv, offset, step, rowLength, cw, ch, buf, rowStride, pixelStride);
+            return;
+        }
+        // Interleaved source, planar destination: gather each row, then put it in one go.
+        int limit = buf.limit();
+        for (int r = 0; r < ch; r++) {
+            int pos = r * rowStride;
+            if (pos >= limit) break;
+            for (int i = 0, s = offset + r * rowLength; i < cw; i++, s += step) row[i] = yuv[s];
+            buf.position(pos);
+            buf.put(row, 0, Math.min(cw, limit - pos));
+        }
+        buf.rewind();
+    }
+
+    /** Copies a w x h plane whose samples are {@code step} apart in {@code yuv}. */
+    private static void writePlane(byte[] yuv, int offset, int step, int rowLength,
+                                   int w, int h, ByteBuffer buf, int rowStride, int pixelStride) {
+        int limit = buf.limit();
+        buf.rewind();
+        if (step == 1 && pixelStride == 1 && rowStride == w && rowLength == w) {
+            buf.put(yuv, offset, Math.min(w * h, limit));
+        } else if (step == 1 && pixelStride == 1) {
+            for (int r = 0; r < h; r++) {
+                int pos = r * rowStride;
+                if (pos >= limit) break;
+                buf.position(pos);
+                buf.put(yuv, offset + r * rowLength, Math.min(w, limit - pos));
+            }
+        } else {
+            for (int r = 0; r < h; r++) {
+                int s = offset + r * rowLength;
+                for (int i = 0, pos = r * rowStride; i < w && pos < limit; i++, s += step, pos += pixelStride) {
+                    buf.put(pos, yuv[s]);
+                }
+            }
+        }
+        buf.rewind();
+    }
+}
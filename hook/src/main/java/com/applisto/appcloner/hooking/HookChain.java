@@ -0,0 +1,103 @@
+package com.applisto.appcloner.hooking;
+
+import android.util.Log;
+
+import java.lang.reflect.Member;
+
+import top.canyie.pine.Pine;
+import top.canyie.pine.callback.MethodHook;
+
+/**
+ * The callbacks registered for one hooked member, behind its single native hook.
+ *
+ * beforeCall runs in priority order (highest first, then in registration order) and stops at
+ * the first callback that sets a result or throwable, which also skips the original method.
+ * afterCall then unwinds in reverse order from that callback, like Pine and Xposed do: a
+ * callback whose beforeCall was skipped does not get afterCall either. The chain is
+ * copy-on-write: dispatch reads one volatile array and takes no lock, and callbacks can be
+ * added or removed while calls are in flight; afterCall walks the array its beforeCall saw.
+ * Every callback run is counted in the {@link HookStats} of its registration, and timed when
+ * the dispatcher picked the call as a sample.
+ */
+final class HookChain extends MethodHook {
+    private static final String TAG = "HookChain";
+    private static final Hooking.Registration[] NONE = new Hooking.Registration[0];
+
+    final Member member;
+    private volatile Hooking.Registration[] links = NONE;
+
+    HookChain(Member member) {
+        this.member = member;
+    }
+
+    synchronized Hooking.Registration add(MethodHook callback, int priority) {
+        Hooking.Registration r = new Hooking.Registration(this, callback, priority);
+        Hooking.Registration[] old = links;
+        int at = old.length;
+        while (at > 0 && old[at - 1].priority < priority) at--;
+        Hooking.Registration[] next = new Hooking.Registration[old.length + 1];
+        System.arraycopy(old, 0, next, 0, at);
+        next[at] = r;
+        System.arraycopy(old, at, next, at + 1, old.length - at);
+        links = next;
+        return r;
+    }
+
+    synchronized void remove(Hooking.Registration r) {
+        Hooking.Registration[] old = links;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] != r) continue;
+            if (old.length == 1) {
+                links = NONE;
+            } else {
+                Hooking.Registration[] next = new Hooking.Registration[old.length - 1];
+                System.arraycopy(old, 0, next, 0, i);
+                System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                links = next;
+            }
+            return;
+        }
+    }
+
+    /** {@code frame} is always a {@link HookDispatcher.Frame}. */
+    @Override
+    public void beforeCall(Pine.CallFrame frame) {
+        HookDispatcher.Frame f = (HookDispatcher.Frame) frame;
+        Hooking.Registration[] l = links;
+        int i = 0;
+        while (i < l.length) {
+            Hooking.Registration r = l[i++];
+            if (r.removed || !r.hasBefore) continue;
+            r.stats.count();
+            long start = f.timed ? System.nanoTime() : 0;
+            try {
+                r.callback.beforeCall(f);
+            } catch (Throwable t) {
+                Log.w(TAG, "beforeCall failed; member: " + member, t);
+            }
+            if (f.timed) r.stats.record(System.nanoTime() - start);
+            if (f.returnEarly) break;
+        }
+        f.links = l;
+        f.reached = i;
+    }
+
+    /** {@code frame} is the {@link HookDispatcher.Frame} the matching beforeCall filled in. */
+    @Override
+    public void afterCall(Pine.CallFrame frame) {
+        HookDispatcher.Frame f = (HookDispatcher.Frame) frame;
+        Hooking.Registration[] l = f.links;
+        for (int i = f.reached - 1; i >= 0; i--) {
+            Hooking.Registration r = l[i];
+            if (r.removed || !r.hasAfter) continue;
+            r.stats.count();
+            long start = f.timed ? System.nanoTime() : 0;
+            try {
+                r.callback.afterCall(frame);
+            } catch (Throwable t) {
+                Log.w(TAG, "afterCall failed; member: " + member, t);
+            }
+            if (f.timed) r.stats.record(System.nanoTime() - start);
+        }
+    }
+}
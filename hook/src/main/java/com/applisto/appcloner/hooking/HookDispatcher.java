@@ -0,0 +1,127 @@
+package com.applisto.appcloner.hooking;
+
+import java.util.Arrays;
+
+import top.canyie.pine.Pine;
+
+/**
+ * Runs the {@link HookChain} of one hooked member from its native hook. The Xposed-style
+ * backends (AliuHook, AndHook) hand over a MethodHookParam and Pine a CallFrame whose
+ * returnEarly flag is private; both are copied into and out of a frame of our own.
+ *
+ * The HookRecord is made once per member, and each thread keeps a stack of frames for it,
+ * so an intercepted call allocates nothing and uses no reflection. A call keeps its frame from
+ * {@link #before} to {@link #after}, which is how afterCall learns how far beforeCall got;
+ * every backend calls after exactly once for each before, on the same thread. Frames remember
+ * themselves whether a callback set a result or throwable. The stack makes re-entrant calls
+ * safe: the original method calling the hooked member again gets a frame of its own.
+ *
+ * Only one call in {@link #SAMPLE_INTERVAL} per thread is timed into {@link HookStats}; the
+ * others are only counted. Two clock reads per callback and phase cost more than a typical
+ * callback, so timing every call would make hooking slower than the reflective bridge was.
+ */
+final class HookDispatcher {
+    // Grows for deeper re-entrant calls.
+    private static final int INITIAL_DEPTH = 4;
+    static final int SAMPLE_INTERVAL = 32;
+
+    private final Pine.HookRecord hookRecord;
+    private final HookChain chain;
+    private final ThreadLocal<FrameStack> frames = new ThreadLocal<FrameStack>() {
+        @Override
+        protected FrameStack initialValue() {
+            return new FrameStack();
+        }
+    };
+
+    HookDispatcher(Pine.HookRecord hookRecord, HookChain chain) {
+        this.hookRecord = hookRecord;
+        this.chain = chain;
+    }
+
+    /**
+     * Runs {@link HookChain#beforeCall}, or returns null if the chain is empty. The returned
+     * frame stays valid until the matching {@link #after}, long enough to copy its outcome to
+     * the param.
+     */
+    Frame before(Object thisObject, Object[] args) {
+        // Pushed even for an empty chain, so that after() always has a frame to pop.
+        FrameStack stack = frames.get();
+        Frame frame = stack.push(hookRecord);
+        frame.reset(thisObject, args, null, null);
+        frame.timed = stack.sample();
+        chain.beforeCall(frame);
+        return frame.reached == 0 ? null : frame;
+    }
+
+    /**
+     * Runs {@link HookChain#afterCall} on the outcome of the original method, for the callbacks
+     * the matching {@link #before} reached; returns null if there were none.
+     */
+    Frame after(Object thisObject, Object[] args, Object result, Throwable throwable) {
+        Frame frame = frames.get().pop();
+        if (frame == null || frame.reached == 0) return null;
+        frame.reset(thisObject, args, result, throwable);
+        chain.afterCall(frame);
+        frame.links = null;
+        return frame;
+    }
+
+    static final class Frame extends Pine.CallFrame {
+        boolean returnEarly;
+        // Set by HookChain.beforeCall: the callbacks it saw, and how many of them it reached.
+        Hooking.Registration[] links;
+        int reached;
+        // Whether HookChain times this call, in both phases, or only counts it.
+        boolean timed;
+
+        Frame(Pine.HookRecord hookRecord) {
+            super(hookRecord, null, null);
+        }
+
+        void reset(Object thisObject, Object[] args, Object result, Throwable throwable) {
+            this.thisObject = thisObject;
+            this.args = args;
+            if (throwable != null) super.setThrowable(throwable);
+            else super.setResult(result);
+            returnEarly = false;
+        }
+
+        @Override
+        public void setResult(Object result) {
+            super.setResult(result);
+            returnEarly = true;
+        }
+
+        @Override
+        public void setThrowable(Throwable throwable) {
+            super.setThrowable(throwable);
+            returnEarly = true;
+        }
+    }
+
+    private static final class FrameStack {
+        Frame[] frames = new Frame[INITIAL_DEPTH];
+        int depth;
+        // Calls left until the next timed one; the first call of a thread is timed.
+        int untilSample = 1;
+
+        boolean sample() {
+            if (--untilSample > 0) return false;
+            untilSample = SAMPLE_INTERVAL;
+            return true;
+        }
+
+        Frame push(Pine.HookRecord hookRecord) {
+            if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+            Frame frame = frames[depth];
+            if (frame == null) frames[depth] = frame = new Frame(hookRecord);
+            depth++;
+            return frame;
+        }
+
+        Frame pop() {
+            return depth == 0 ? null : frames[--depth];
+        }
+    }
+}
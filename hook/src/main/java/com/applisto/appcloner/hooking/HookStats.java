@@ -0,0 +1,244 @@
+package com.applisto.appcloner.hooking;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import top.canyie.pine.callback.MethodHook;
+
+/**
+ * Call counts and latencies of one hook callback, recorded around its beforeCall and afterCall
+ * by {@link HookChain}. Every run is counted, but only the calls {@link HookDispatcher} samples
+ * are timed; totals are scaled back up by calls / samples. All hooks of the process are listed
+ * by {@link #toJson()}, the most expensive first, for the {@code get_hook_stats} provider call
+ * and the web console.
+ *
+ * Latencies go into a log-linear histogram in the style of HdrHistogram: 8 linear
+ * sub-buckets per power of two, so every value is known within 1/8 of itself, from 1 ns up to
+ * {@link #MAX_NANOS}. Recording is lock-free and allocates nothing: threads are spread over
+ * {@link #STRIPES} stripes by id, each a single AtomicLongArray created on first use, so the
+ * threads of a busy hook rarely touch the same counters. Readers merge the stripes.
+ */
+public final class HookStats {
+    private static final int STRIPES = 4; // power of two
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final long MAX_NANOS = (1L << 36) - 1; // ~68 s; longer calls count as this
+    private static final int BUCKETS = (64 - Long.numberOfLeadingZeros(MAX_NANOS) - SUB_BITS + 1) * SUB_BUCKETS;
+
+    // Layout of a stripe: the counters, then the histogram buckets. COUNT is every run, TOTAL,
+    // MAX and the buckets only the timed ones. SAMPLES, the sum of the buckets, only exists in
+    // merged arrays.
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+    private static final int FIRST_BUCKET = 3;
+    private static final int SAMPLES = FIRST_BUCKET + BUCKETS;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // Keyed by hook, so a callback that is unhooked and hooked again keeps its numbers.
+    private static final Map<String, HookStats> sAll = new LinkedHashMap<>();
+
+    private final String hook;
+    private final String callback;
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    private HookStats(String hook, String callback) {
+        this.hook = hook;
+        this.callback = callback;
+    }
+
+    static HookStats of(Member member, MethodHook callback) {
+        String hook = describe(member);
+        String cb = callback.getClass().getName();
+        cb = cb.substring(cb.lastIndexOf('.') + 1);
+        String key = hook + "#" + cb;
+        synchronized (sAll) {
+            HookStats stats = sAll.get(key);
+            if (stats == null) sAll.put(key, stats = new HookStats(hook, cb));
+            return stats;
+        }
+    }
+
+    void count() {
+        stripe().incrementAndGet(COUNT);
+    }
+
+    /** Adds one timed run; it must also have been {@link #count() counted}. */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        else if (nanos > MAX_NANOS) nanos = MAX_NANOS;
+        AtomicLongArray stripe = stripe();
+        stripe.addAndGet(TOTAL, nanos);
+        stripe.incrementAndGet(FIRST_BUCKET + bucket(nanos));
+        long max;
+        while (nanos > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, nanos)) {
+            // retry
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int s = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(s);
+        if (stripe == null) {
+            stripes.compareAndSet(s, null, new AtomicLongArray(FIRST_BUCKET + BUCKETS));
+            stripe = stripes.get(s);
+        }
+        return stripe;
+    }
+
+    /** Zeroes the numbers of every hook. Calls in flight may still land in the old counts. */
+    public static void resetAll() {
+        for (HookStats stats : all()) {
+            for (int s = 0; s < STRIPES; s++) {
+                AtomicLongArray stripe = stats.stripes.get(s);
+                if (stripe == null) continue;
+                for (int i = 0; i < stripe.length(); i++) stripe.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Every hook that was called, the highest total time first: hook, callback, calls, timed
+     * samples, the estimated total, mean, max and percentiles in nanoseconds, and the non-empty
+     * histogram buckets of the samples as [upper bound, count] pairs.
+     */
+    public static JSONObject toJson() throws JSONException {
+        List<long[]> merged = new ArrayList<>();
+        List<HookStats> hooks = new ArrayList<>();
+        for (HookStats stats : all()) {
+            long[] m = stats.merge();
+            if (m[SAMPLES] == 0) continue;
+            merged.add(m);
+            hooks.add(stats);
+        }
+        Integer[] order = new Integer[hooks.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(estimatedTotal(merged.get(b)), estimatedTotal(merged.get(a))));
+
+        JSONArray list = new JSONArray();
+        long calls = 0;
+        long total = 0;
+        for (int i : order) {
+            long[] m = merged.get(i);
+            long hookTotal = estimatedTotal(m);
+            calls += m[COUNT];
+            total += hookTotal;
+            JSONObject o = new JSONObject();
+            o.put("hook", hooks.get(i).hook);
+            o.put("callback", hooks.get(i).callback);
+            o.put("calls", m[COUNT]);
+            o.put("samples", m[SAMPLES]);
+            o.put("total_ns", hookTotal);
+            o.put("mean_ns", m[TOTAL] / m[SAMPLES]);
+            o.put("max_ns", m[MAX]);
+            for (double p : PERCENTILES) {
+                o.put(percentileKey(p), percentile(m, p));
+            }
+            JSONArray buckets = new JSONArray();
+            for (int b = 0; b < BUCKETS; b++) {
+                long n = m[FIRST_BUCKET + b];
+                if (n != 0) buckets.put(new JSONArray().put(upperBound(b)).put(n));
+            }
+            o.put("histogram", buckets);
+            list.put(o);
+        }
+        JSONObject root = new JSONObject();
+        root.put("hooks", list.length());
+        root.put("calls", calls);
+        root.put("total_ns", total);
+        root.put("stats", list);
+        return root;
+    }
+
+    /** p50_ns, p99_ns, p99_9_ns, ... */
+    private static String percentileKey(double p) {
+        String s = p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p).replace('.', '_');
+        return "p" + s + "_ns";
+    }
+
+    private static List<HookStats> all() {
+        synchronized (sAll) {
+            return Collections.unmodifiableList(new ArrayList<>(sAll.values()));
+        }
+    }
+
+    private long[] merge() {
+        long[] m = new long[SAMPLES + 1];
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) continue;
+            for (int i = 0; i < SAMPLES; i++) {
+                long v = stripe.get(i);
+                m[i] = i == MAX ? Math.max(m[i], v) : m[i] + v;
+            }
+        }
+        long samples = 0;
+        for (int b = 0; b < BUCKETS; b++) samples += m[FIRST_BUCKET + b];
+        m[SAMPLES] = samples;
+        // A reader can see a sample before the count of its run.
+        m[COUNT] = Math.max(m[COUNT], samples);
+        return m;
+    }
+
+    /** The sampled total scaled up to all calls. */
+    private static long estimatedTotal(long[] m) {
+        return m[COUNT] == m[SAMPLES] ? m[TOTAL] : (long) ((double) m[TOTAL] * m[COUNT] / m[SAMPLES]);
+    }
+
+    /** Upper bound of the bucket holding the {@code p}th percentile, capped at the maximum. */
+    private static long percentile(long[] m, double p) {
+        long rank = (long) Math.ceil(m[SAMPLES] * p / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += m[FIRST_BUCKET + b];
+            if (seen >= rank && seen > 0) return Math.min(upperBound(b), m[MAX]);
+        }
+        return m[MAX];
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    private static String describe(Member member) {
+        StringBuilder sb = new StringBuilder(member.getDeclaringClass().getSimpleName());
+        Class<?>[] params;
+        if (member instanceof Constructor) {
+            sb.append(".<init>");
+            params = ((Constructor<?>) member).getParameterTypes();
+        } else {
+            sb.append('.').append(member.getName());
+            params = member instanceof Method ? ((Method) member).getParameterTypes() : new Class<?>[0];
+        }
+        sb.append('(');
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(params[i].getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+}
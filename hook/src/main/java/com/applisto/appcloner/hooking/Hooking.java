@@ -5,12 +5,15 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.os.Build;
 import android.util.Log;
+import com.applisto.appcloner.StartupTrace;
 import com.applisto.appcloner.classes.Utils;
 import com.swift.sandhook.SandHook;
 import com.swift.sandhook.SandHookConfig;
 import com.swift.sandhook.utils.ReflectionUtils;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import top.canyie.pine.Pine;
@@ -149,26 +152,123 @@ public class Hooking {
         }
     }
 
+    /** Priority of callbacks hooked without one. */
+    public static final int PRIORITY_DEFAULT = 50;
+
+    // One chain, and so one native hook, per member; guarded by itself.
+    private static final Map<Member, HookChain> sChains = new HashMap<>();
+
     public static MethodHook.Unhook pineHook(Member member, MethodHook callback) {
         return pineHook(member, callback, true);
     }
 
+    /**
+     * Adds {@code callback} to the hooks of {@code member} with {@link #PRIORITY_DEFAULT}.
+     * Always returns null; use {@link #hook} to be able to remove the callback again.
+     */
     public static MethodHook.Unhook pineHook(Member member, MethodHook callback, boolean isNative) {
+        hook(member, callback, PRIORITY_DEFAULT, isNative);
+        return null;
+    }
+
+    /**
+     * Adds {@code callback} to the hooks of {@code member}. The member is hooked natively only
+     * once; its callbacks run by priority, highest first (see {@link HookChain}). Returns null
+     * if the member cannot be hooked.
+     */
+    public static Registration hook(Member member, MethodHook callback, int priority) {
+        return hook(member, callback, priority, true);
+    }
+
+    private static Registration hook(Member member, MethodHook callback, int priority, boolean isNative) {
         if (member == null || callback == null) {
             return null;
         }
 
-        if (sUseNewHooks) {
-            aliuHookBridge(member, callback);
-            return null;
+        long start = StartupTrace.now();
+        try {
+            HookChain chain;
+            synchronized (sChains) {
+                chain = sChains.get(member);
+                if (chain == null) {
+                    chain = new HookChain(member);
+                    if (!install(chain, isNative)) {
+                        return null;
+                    }
+                    sChains.put(member, chain);
+                }
+            }
+            return chain.add(callback, priority);
+        } finally {
+            StartupTrace.record(StartupTrace.CAT_PINE,
+                    member.getDeclaringClass().getSimpleName() + "." + member.getName(), start);
         }
+    }
 
-        if (!sUseLegacyHooks && !Utils.isX86()) {
-            return Hooking.pineHook(member, callback, isNative);
+    /**
+     * A callback added by {@link #hook}. After {@link #unhook} it is no longer called; once a
+     * member has no callbacks left, its native hook stays in place but only costs a check for
+     * an empty chain.
+     */
+    public static final class Registration {
+        final HookChain chain;
+        final MethodHook callback;
+        final int priority;
+        final HookStats stats;
+        // Phases the callback leaves to MethodHook's empty defaults are skipped, and not timed.
+        final boolean hasBefore;
+        final boolean hasAfter;
+        volatile boolean removed;
+
+        Registration(HookChain chain, MethodHook callback, int priority) {
+            this.chain = chain;
+            this.callback = callback;
+            this.priority = priority;
+            stats = HookStats.of(chain.member, callback);
+            hasBefore = overrides(callback, "beforeCall");
+            hasAfter = overrides(callback, "afterCall");
         }
 
-        andHookBridge(member, callback);
-        return null;
+        public Member getMember() {
+            return chain.member;
+        }
+
+        public void unhook() {
+            removed = true;
+            chain.remove(this);
+        }
+    }
+
+    private static boolean overrides(MethodHook callback, String phase) {
+        try {
+            return callback.getClass().getMethod(phase, Pine.CallFrame.class).getDeclaringClass() != MethodHook.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static boolean install(HookChain chain, boolean isNative) {
+        Member member = chain.member;
+        if (!sUseNewHooks && (sUseLegacyHooks || Utils.isX86())
+                && member.getDeclaringClass().equals(Class.class)) {
+            Log.w(TAG, "andHookBridge; cannot hook class: " + member.getDeclaringClass());
+            return false;
+        }
+        top.canyie.pine.Pine.HookRecord hookRecord = createHookRecord(member);
+        if (hookRecord == null) {
+            Log.w(TAG, "install; not hooking " + member);
+            return false;
+        }
+        HookDispatcher dispatcher = new HookDispatcher(hookRecord, chain);
+
+        if (sUseNewHooks) {
+            aliuHookBridge(member, dispatcher);
+        } else if (!sUseLegacyHooks && !Utils.isX86()) {
+            pineBridge(member, dispatcher, isNative);
+        } else {
+            andHookBridge(member, dispatcher);
+        }
+        return true;
     }
 
     private static top.canyie.pine.Pine.HookRecord createHookRecord(Member member) {
@@ -183,127 +283,101 @@ public class Hooking {
         }
     }
 
-    private static void aliuHookBridge(Member member, MethodHook callback) {
+    private static void pineBridge(Member member, HookDispatcher dispatcher, boolean isNative) {
+        Pine.hook(member, new MethodHook() {
+            @Override
+            public void beforeCall(Pine.CallFrame callFrame) throws Throwable {
+                HookDispatcher.Frame frame = dispatcher.before(callFrame.thisObject, callFrame.args);
+                if (frame == null) {
+                    return;
+                }
+                if (frame.getThrowable() != null) {
+                    callFrame.setThrowable(frame.getThrowable());
+                } else if (frame.returnEarly) {
+                    callFrame.setResult(frame.getResult());
+                }
+            }
+            @Override
+            public void afterCall(Pine.CallFrame callFrame) throws Throwable {
+                HookDispatcher.Frame frame = dispatcher.after(callFrame.thisObject, callFrame.args,
+                        callFrame.getResult(), callFrame.getThrowable());
+                if (frame == null) {
+                    return;
+                }
+                if (frame.getThrowable() != null) {
+                    callFrame.setThrowable(frame.getThrowable());
+                } else if (frame.returnEarly) {
+                    callFrame.setResult(frame.getResult());
+                }
+            }
+        }, isNative);
+        Log.i(TAG, "pineBridge; hooked " + member);
+    }
+
+    private static void aliuHookBridge(Member member, HookDispatcher dispatcher) {
         initHooking(Utils.getApplication());
-        top.canyie.pine.Pine.HookRecord hookRecord = createHookRecord(member);
         de.robv.android.xposed.XposedBridge.hookMethod(member, new de.robv.android.xposed.XC_MethodHook() {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                 if (hookRecord != null) {
-                     top.canyie.pine.Pine.CallFrame frame = new top.canyie.pine.Pine.CallFrame(hookRecord, param.thisObject, param.args);
-                     callback.beforeCall(frame);
-
-                     Throwable frameThrowable = (Throwable) getObjectField(frame, "throwable");
-                     if (frameThrowable != null) {
-                         param.setThrowable(frameThrowable);
-                     } else {
-                         Object frameResult = getObjectField(frame, "result");
-                         boolean returnEarly = (boolean) getObjectField(frame, "returnEarly");
-                         if (returnEarly) {
-                             param.setResult(frameResult);
-                         }
-                     }
-                 }
+                HookDispatcher.Frame frame = dispatcher.before(param.thisObject, param.args);
+                if (frame == null) {
+                    return;
+                }
+                if (frame.getThrowable() != null) {
+                    param.setThrowable(frame.getThrowable());
+                } else if (frame.returnEarly) {
+                    param.setResult(frame.getResult());
+                }
             }
             @Override
             protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                 if (hookRecord != null) {
-                     top.canyie.pine.Pine.CallFrame frame = new top.canyie.pine.Pine.CallFrame(hookRecord, param.thisObject, param.args);
-
-                     setObjectField(frame, "result", param.getResult());
-                     setObjectField(frame, "throwable", param.getThrowable());
-
-                     callback.afterCall(frame);
-
-                     Throwable frameThrowable = (Throwable) getObjectField(frame, "throwable");
-                     if (frameThrowable != null) {
-                         param.setThrowable(frameThrowable);
-                     } else {
-                         Object frameResult = getObjectField(frame, "result");
-                         boolean returnEarly = (boolean) getObjectField(frame, "returnEarly");
-                         if (returnEarly) {
-                             param.setResult(frameResult);
-                         }
-                     }
-                 }
+                HookDispatcher.Frame frame = dispatcher.after(param.thisObject, param.args,
+                        param.getResult(), param.getThrowable());
+                if (frame == null) {
+                    return;
+                }
+                if (frame.getThrowable() != null) {
+                    param.setThrowable(frame.getThrowable());
+                } else if (frame.returnEarly) {
+                    param.setResult(frame.getResult());
+                }
             }
         });
         Log.i(TAG, "aliuHookBridge; hooked " + member);
     }
 
-    private static void andHookBridge(Member member, MethodHook callback) {
-        if (member.getDeclaringClass().equals(Class.class)) {
-            Log.w(TAG, "andHookBridge; cannot hook class: " + member.getDeclaringClass());
-            return;
-        }
+    private static void andHookBridge(Member member, HookDispatcher dispatcher) {
         initHooking(Utils.getApplication());
-        top.canyie.pine.Pine.HookRecord hookRecord = createHookRecord(member);
         andhook.lib.xposed.XposedBridge.hookMethod(member, new andhook.lib.xposed.XC_MethodHook() {
              @Override
              protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                 if (hookRecord != null) {
-                     top.canyie.pine.Pine.CallFrame frame = new top.canyie.pine.Pine.CallFrame(hookRecord, param.thisObject, param.args);
-                     callback.beforeCall(frame);
-
-                     Throwable frameThrowable = (Throwable) getObjectField(frame, "throwable");
-                     if (frameThrowable != null) {
-                         param.setThrowable(frameThrowable);
-                     } else {
-                         Object frameResult = getObjectField(frame, "result");
-                         boolean returnEarly = (boolean) getObjectField(frame, "returnEarly");
-                         if (returnEarly) {
-                             param.setResult(frameResult);
-                         }
-                     }
+                 HookDispatcher.Frame frame = dispatcher.before(param.thisObject, param.args);
+                 if (frame == null) {
+                     return;
+                 }
+                 if (frame.getThrowable() != null) {
+                     param.setThrowable(frame.getThrowable());
+                 } else if (frame.returnEarly) {
+                     param.setResult(frame.getResult());
                  }
              }
              @Override
              protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                 if (hookRecord != null) {
-                     top.canyie.pine.Pine.CallFrame frame = new top.canyie.pine.Pine.CallFrame(hookRecord, param.thisObject, param.args);
-
-                     setObjectField(frame, "result", param.getResult());
-                     setObjectField(frame, "throwable", param.getThrowable());
-
-                     callback.afterCall(frame);
-
-                     Throwable frameThrowable = (Throwable) getObjectField(frame, "throwable");
-                     if (frameThrowable != null) {
-                         param.setThrowable(frameThrowable);
-                     } else {
-                         Object frameResult = getObjectField(frame, "result");
-                         boolean returnEarly = (boolean) getObjectField(frame, "returnEarly");
-                         if (returnEarly) {
-                             param.setResult(frameResult);
-                         }
-                     }
+                 HookDispatcher.Frame frame = dispatcher.after(param.thisObject, param.args,
+                         param.getResult(), param.getThrowable());
+                 if (frame == null) {
+                     return;
+                 }
+                 if (frame.getThrowable() != null) {
+                     param.setThrowable(frame.getThrowable());
+                 } else if (frame.returnEarly) {
+                     param.setResult(frame.getResult());
                  }
              }
         });
         Log.i(TAG, "andHookBridge; hooked " + member);
     }
 
-    private static Object getObjectField(Object obj, String fieldName) {
-        try {
-            java.lang.reflect.Field field = obj.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(obj);
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to get field " + fieldName, e);
-            return null;
-        }
-    }
-
-    private static void setObjectField(Object obj, String fieldName, Object value) {
-        try {
-            java.lang.reflect.Field field = obj.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            field.set(obj, value);
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to set field " + fieldName, e);
-        }
-    }
-
     private static void setStaticObjectField(Class<?> clazz, String fieldName, Object value) {
         try {
             java.lang.reflect.Field field = clazz.getDeclaredField(fieldName);
@@ -0,0 +1,192 @@
+package com.applisto.appcloner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The per-pixel YUV code YuvConverter replaced, from ImageUtils (rgbToNV21, bitmapToYUV420 and
+ * writeYuvToPlanes), taking pixel arrays and plane buffers instead of Bitmaps and Images.
+ * Kept as the golden reference for {@link YuvConverterTest} and {@link YuvConverterBenchmark}.
+ *
+ * It assumed even sizes: for odd ones rgbToNV21 drops the last chroma samples, bitmapToYUV420
+ * overruns its array and writeYuvToPlanes reads chroma rows at the wrong offsets.
+ * {@link #perPixel} is the same kernel with the chroma planes rounded up, for those sizes.
+ */
+final class LegacyYuv {
+    private LegacyYuv() {}
+
+    static byte[] rgbToNV21(int[] argb, int width, int height) {
+        int frameSize = width * height;
+        int chromaSize = frameSize / 2;
+        int totalSize = frameSize + chromaSize;
+        byte[] nv21 = new byte[totalSize];
+
+        int yIndex = 0;
+        int uvIndex = frameSize;
+        for (int j = 0; j < height; j++) {
+            int rowOffset = j * width;
+            for (int i = 0; i < width; i++) {
+                int pixel = argb[rowOffset + i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+
+                int y = ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
+                int u = ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
+                int v = ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
+
+                y = (y < 16) ? 16 : ((y > 235) ? 235 : y);
+                u = (u < 16) ? 16 : ((u > 240) ? 240 : u);
+                v = (v < 16) ? 16 : ((v > 240) ? 240 : v);
+
+                nv21[yIndex++] = (byte) y;
+                if ((j & 1) == 0 && (i & 1) == 0 && uvIndex < totalSize - 1) {
+                    nv21[uvIndex++] = (byte) v;
+                    nv21[uvIndex++] = (byte) u;
+                }
+            }
+        }
+        return nv21;
+    }
+
+    /** bitmapToYUV420: Y, then the U plane, then the V plane. */
+    static byte[] rgbToI420(int[] pixels, int width, int height) {
+        int frameSize = width * height;
+        int chromaSize = frameSize / 4;
+        byte[] yuv = new byte[frameSize + chromaSize * 2];
+
+        int yIndex = 0;
+        int uIndex = frameSize;
+        int vIndex = frameSize + chromaSize;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int pixel = pixels[j * width + i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+
+                int y = ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
+                int u = ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
+                int v = ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
+
+                yuv[yIndex++] = (byte) clamp(y, 16, 235);
+                if (j % 2 == 0 && i % 2 == 0) {
+                    yuv[uIndex++] = (byte) clamp(u, 16, 240);
+                    yuv[vIndex++] = (byte) clamp(v, 16, 240);
+                }
+            }
+        }
+        return yuv;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * The same kernel for any size: Y, then chroma planes of ceil(w/2) x ceil(h/2) samples taken
+     * from the top-left pixel of each 2x2 block, placed as {@code layout} places them.
+     */
+    static byte[] perPixel(int[] argb, int width, int height, YuvConverter.Layout layout) {
+        int cw = (width + 1) / 2;
+        int ch = (height + 1) / 2;
+        int ySize = width * height;
+        int planeSize = cw * ch;
+        byte[] out = new byte[ySize + 2 * planeSize];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int pixel = argb[j * width + i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                out[j * width + i] = (byte) clamp(((66 * r + 129 * g + 25 * b + 128) >> 8) + 16, 16, 235);
+                if ((j & 1) != 0 || (i & 1) != 0) continue;
+                int u = clamp(((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128, 16, 240);
+                int v = clamp(((112 * r - 94 * g - 18 * b + 128) >> 8) + 128, 16, 240);
+                int c = (j / 2) * cw + i / 2;
+                switch (layout) {
+                    case NV21: out[ySize + 2 * c] = (byte) v; out[ySize + 2 * c + 1] = (byte) u; break;
+                    case NV12: out[ySize + 2 * c] = (byte) u; out[ySize + 2 * c + 1] = (byte) v; break;
+                    case YV12: out[ySize + c] = (byte) v; out[ySize + planeSize + c] = (byte) u; break;
+                    case I420: out[ySize + c] = (byte) u; out[ySize + planeSize + c] = (byte) v; break;
+                }
+            }
+        }
+        return out;
+    }
+
+    /** writeYuvToPlanes on the Y, U and V buffers of an Image. */
+    static void writeYuvToPlanes(byte[] yuvData, int width, int height,
+                                 ByteBuffer[] buffers, int[] rowStrides, int[] pixelStrides) {
+        int frameSize = width * height;
+        writeYPlane(yuvData, buffers[0], width, height, rowStrides[0], pixelStrides[0]);
+        writeUVPlanesFromNV21(yuvData, frameSize, buffers[1], buffers[2],
+                width, height, rowStrides[1], pixelStrides[1], rowStrides[2], pixelStrides[2]);
+    }
+
+    private static void writeYPlane(byte[] nv21, ByteBuffer yBuffer,
+                                    int width, int height, int rowStride, int pixelStride) {
+        yBuffer.rewind();
+        if (rowStride == width && pixelStride == 1) {
+            int ySize = Math.min(width * height, yBuffer.remaining());
+            yBuffer.put(nv21, 0, ySize);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int srcOffset = row * width;
+                for (int col = 0; col < width; col++) {
+                    if (yBuffer.hasRemaining()) {
+                        yBuffer.put(nv21[srcOffset + col]);
+                    }
+                }
+                int paddingBytes = rowStride - (width * pixelStride);
+                if (paddingBytes > 0 && yBuffer.remaining() >= paddingBytes) {
+                    yBuffer.position(yBuffer.position() + paddingBytes);
+                }
+            }
+        }
+        yBuffer.rewind();
+    }
+
+    private static void writeUVPlanesFromNV21(byte[] nv21, int ySize,
+                                              ByteBuffer uBuffer, ByteBuffer vBuffer,
+                                              int width, int height,
+                                              int uRowStride, int uPixelStride,
+                                              int vRowStride, int vPixelStride) {
+        uBuffer.rewind();
+        vBuffer.rewind();
+        int uvHeight = height / 2;
+        int uvWidth = width / 2;
+        for (int row = 0; row < uvHeight; row++) {
+            for (int col = 0; col < uvWidth; col++) {
+                int nv21Index = ySize + (row * width) + (col * 2);
+                if (nv21Index + 1 < nv21.length) {
+                    byte v = nv21[nv21Index];
+                    byte u = nv21[nv21Index + 1];
+                    if (vBuffer.hasRemaining()) {
+                        vBuffer.put(v);
+                    }
+                    if (uBuffer.hasRemaining()) {
+                        uBuffer.put(u);
+                    }
+                    int uSkip = uPixelStride - 1;
+                    if (uSkip > 0 && uBuffer.remaining() >= uSkip) {
+                        uBuffer.position(uBuffer.position() + uSkip);
+                    }
+                    int vSkip = vPixelStride - 1;
+                    if (vSkip > 0 && vBuffer.remaining() >= vSkip) {
+                        vBuffer.position(vBuffer.position() + vSkip);
+                    }
+                }
+            }
+            int uPadding = uRowStride - (uvWidth * uPixelStride);
+            if (uPadding > 0 && uBuffer.remaining() >= uPadding) {
+                uBuffer.position(uBuffer.position() + uPadding);
+            }
+            int vPadding = vRowStride - (uvWidth * vPixelStride);
+            if (vPadding > 0 && vBuffer.remaining() >= vPadding) {
+                vBuffer.position(vBuffer.position() + vPadding);
+            }
+        }
+        uBuffer.rewind();
+        vBuffer.rewind();
+    }
+}
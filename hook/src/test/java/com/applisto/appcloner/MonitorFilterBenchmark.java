@@ -0,0 +1,125 @@
+package com.applisto.appcloner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host filter checks: the compiled MonitorFilter against the per-pattern contains() loop it
+ * replaced, for filters of growing size over the same hostnames. Run on a desktop JVM with
+ * {@code main} (or any JMH runner) from the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitorFilterBenchmark {
+    private static final int HOSTS = 1024;
+    private static final String[] WORDS = {
+            "api", "cdn", "static", "img", "ads", "track", "metrics", "login", "m", "www",
+            "google", "facebook", "example", "cloudfront", "akamai", "analytics", "push", "edge",
+    };
+    private static final String[] TLDS = {"com", "net", "org", "io", "co.uk", "de"};
+
+    /** Entries in the filter; about one in ten is negative. */
+    @Param({"5", "50", "550"})
+    public int entries;
+
+    private String[] hosts;
+    private MonitorFilter.Filter compiled;
+    private PerPatternFilter perPattern;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        hosts = new String[HOSTS];
+        for (int i = 0; i < HOSTS; i++) {
+            // Mixed case, as apps and servers send them, so both sides pay for folding.
+            String host = randomHost(random);
+            hosts[i] = random.nextInt(4) == 0 ? host.toUpperCase(Locale.US) : host;
+        }
+
+        List<String> items = new ArrayList<>();
+        List<String> positive = new ArrayList<>();
+        List<String> negative = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            // Like a block list: mostly names the app never contacts, so the per-pattern loop
+            // usually has to try every entry; every fifth entry is a word the hosts do use.
+            String p = i % 5 == 0
+                    ? WORDS[random.nextInt(WORDS.length)] + random.nextInt(100)
+                    : randomLabel(random) + "." + TLDS[random.nextInt(TLDS.length)];
+            if (i % 10 == 9) {
+                items.add("-" + p);
+                negative.add(p);
+            } else {
+                items.add(p);
+                positive.add(p);
+            }
+        }
+        compiled = MonitorFilter.parseFilter(items);
+        perPattern = new PerPatternFilter(positive, negative);
+        for (String h : hosts) {
+            if (compiled.allows(h) != perPattern.allows(h)) throw new IllegalStateException("Filters disagree on " + h);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HOSTS)
+    public int compiled() {
+        int allowed = 0;
+        for (String h : hosts) {
+            if (compiled.allows(h)) allowed++;
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HOSTS)
+    public int perPatternLoop() {
+        int allowed = 0;
+        for (String h : hosts) {
+            if (perPattern.allows(h)) allowed++;
+        }
+        return allowed;
+    }
+
+    private static String randomLabel(Random random) {
+        char[] label = new char[5 + random.nextInt(8)];
+        for (int i = 0; i < label.length; i++) label[i] = (char) ('a' + random.nextInt(26));
+        return new String(label);
+    }
+
+    private static String randomHost(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int labels = 1 + random.nextInt(3); labels > 0; labels--) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextBoolean()) sb.append(random.nextInt(100));
+            sb.append('.');
+        }
+        return sb.append(TLDS[random.nextInt(TLDS.length)]).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MonitorFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,161 @@
+package com.applisto.appcloner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+public class MonitorFilterTest {
+
+    private static MonitorFilter.Filter hosts(String... entries) {
+        return MonitorFilter.parseFilter(Arrays.asList(entries));
+    }
+
+    private static MonitorFilter.Filter exact(List<String> positive, List<String> negative) {
+        return MonitorFilter.compile(positive, negative, false, false);
+    }
+
+    @Test
+    public void emptyFilterAllowsEverything() {
+        MonitorFilter.Filter f = hosts(" ", "+", "-");
+        assertTrue(f.allows("anything"));
+        assertTrue(f.allows(null));
+        assertTrue(MonitorFilter.Filter.ALLOW_ALL.allows("x"));
+    }
+
+    @Test
+    public void overlappingPatternsMatchAnywhere() {
+        // The classic Aho-Corasick set: matches end inside each other and share prefixes.
+        MonitorFilter.Filter f = hosts("he", "she", "his", "hers");
+        assertTrue(f.allows("ushers"));
+        assertTrue(f.allows("this"));
+        assertTrue(f.allows("xxhexx"));
+        assertFalse(f.allows("hsi"));
+        assertFalse(f.allows("h"));
+        assertFalse(f.allows(""));
+    }
+
+    @Test
+    public void patternInsideLongerPatternIsFoundThroughFailureLinks() {
+        // "abcx" fails after "abc"; "bc" must still be reported, as must "c" ending a longer path.
+        assertTrue(hosts("abcd", "bc").allows("zabcx"));
+        assertTrue(hosts("aaab", "ab").allows("aaaab"));
+        assertTrue(hosts("abcde", "c").allows("abcx"));
+        assertFalse(hosts("abcd", "bce").allows("abcf"));
+    }
+
+    @Test
+    public void unknownCharactersResetTheMatch() {
+        MonitorFilter.Filter f = hosts("ab");
+        assertTrue(f.allows("xxab"));
+        assertFalse(f.allows("a-b"));
+        assertFalse(f.allows("aéb"));
+    }
+
+    @Test
+    public void negativeEntriesWin() {
+        MonitorFilter.Filter f = hosts("+google", "-ads");
+        assertTrue(f.allows("www.google.com"));
+        assertFalse(f.allows("ads.google.com"));
+        assertFalse(f.allows("example.com"));
+
+        MonitorFilter.Filter onlyNegative = hosts("!tracker");
+        assertTrue(onlyNegative.allows("example.com"));
+        assertFalse(onlyNegative.allows("cdn.tracker.net"));
+    }
+
+    @Test
+    public void hostFiltersFoldCase() {
+        MonitorFilter.Filter f = hosts("Example", "-ADS", "Äpfel");
+        assertTrue(f.allows("WWW.EXAMPLE.COM"));
+        assertTrue(f.allows("www.example.com"));
+        assertFalse(f.allows("Ads.Example.com"));
+        assertTrue(f.allows("äPFEL.de"));
+        assertTrue(f.allows("ÄPFEL.de"));
+    }
+
+    @Test
+    public void exactFiltersKeepCase() {
+        MonitorFilter.Filter f = exact(Collections.singletonList("Authorization"),
+                Collections.singletonList("X-Skip"));
+        assertTrue(f.allows("Authorization"));
+        assertFalse(f.allows("authorization"));
+        assertFalse(f.allows("Authorization X-Skip"));
+        assertTrue(f.allows("Authorization x-skip"));
+    }
+
+    @Test
+    public void domainRulesMatchTheDomainAndItsSubdomains() {
+        MonitorFilter.Filter f = hosts("*.example.com");
+        assertTrue(f.allows("example.com"));
+        assertTrue(f.allows("www.example.com"));
+        assertTrue(f.allows("a.b.Example.COM"));
+        assertFalse(f.allows("badexample.com"));
+        assertFalse(f.allows("example.com.evil.net"));
+        assertFalse(f.allows("xample.com"));
+        assertFalse(f.allows("com"));
+    }
+
+    @Test
+    public void domainRulesNestAndMixWithSubstrings() {
+        MonitorFilter.Filter f = hosts("*.co.uk", "-*.ads.co.uk", "-*.doubleclick.net", "cdn");
+        assertTrue(f.allows("bbc.co.uk"));
+        assertTrue(f.allows("co.uk"));
+        assertFalse(f.allows("x.ads.co.uk"));
+        assertTrue(f.allows("badads.co.uk"));
+        assertFalse(f.allows("cdn.doubleclick.net"));
+        assertTrue(f.allows("cdn.example.org"));
+        assertFalse(f.allows("example.org"));
+    }
+
+    @Test
+    public void domainRuleSyntaxIsASubstringOutsideHostFilters() {
+        MonitorFilter.Filter f = exact(Collections.singletonList("*.example.com"), Collections.<String>emptyList());
+        assertTrue(f.allows("x*.example.comx"));
+        assertFalse(f.allows("www.example.com"));
+    }
+
+    @Test
+    public void sameResultsAsPerPatternLoop() {
+        Random random = new Random(42);
+        // No entry prefixes ("-", "+", "!") or "*", so every entry is a plain substring.
+        String alphabet = "abcdeABCDE._éÉ";
+        for (int round = 0; round < 2000; round++) {
+            List<String> items = new ArrayList<>();
+            List<String> positive = new ArrayList<>();
+            List<String> negative = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                String p = randomString(random, alphabet, 1 + random.nextInt(4));
+                boolean neg = random.nextInt(3) == 0;
+                items.add((neg ? "-" : "") + p);
+                (neg ? negative : positive).add(p.toLowerCase(Locale.US));
+            }
+            MonitorFilter.Filter filter = MonitorFilter.parseFilter(items);
+            PerPatternFilter reference = new PerPatternFilter(positive, negative);
+            for (int v = 0; v < 20; v++) {
+                String value = randomString(random, alphabet, random.nextInt(12));
+                assertEquals(items + " on " + value, reference.allows(value), filter.allows(value));
+            }
+        }
+    }
+
+    @Test
+    public void compileIgnoresNullAndEmptyEntries() {
+        assertTrue(exact(Arrays.asList(null, ""), null).allows("x"));
+        assertFalse(exact(Arrays.asList(null, "", "y"), null).allows("x"));
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+}
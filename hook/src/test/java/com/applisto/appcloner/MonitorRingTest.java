@@ -0,0 +1,84 @@
+package com.applisto.appcloner;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class MonitorRingTest {
+    private final MonitorRing ring = new MonitorRing(8, 1);
+
+    /** Does the first half of {@link MonitorRing#add}: claims a sequence but leaves it unwritten. */
+    private long claim() throws Exception {
+        long seq = ((AtomicLong) field("cursor")).incrementAndGet();
+        ((AtomicLongArray) field("sequences")).set((int) seq & 7, -seq);
+        return seq;
+    }
+
+    private void commit(long seq) throws Exception {
+        ((AtomicLongArray) field("sequences")).set((int) seq & 7, seq);
+    }
+
+    private Object field(String name) throws Exception {
+        Field f = MonitorRing.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(ring);
+    }
+
+    private List<Long> scan(long after, long last) throws Exception {
+        List<Long> seen = new ArrayList<>();
+        ring.scan(after, last + 1, Integer.MAX_VALUE, false, (index, timestamp, number, row) -> seen.add(index));
+        return seen;
+    }
+
+    @Test
+    public void committedIndexStopsBeforeEventsInFlight() throws Exception {
+        ring.add(1, 0, "a");
+        long inFlight = claim();
+        ring.add(3, 0, "c");
+        assertEquals(3, ring.lastIndex());
+        assertEquals(1, ring.committedIndex(0));
+        assertEquals(1, ring.committedIndex(1));
+
+        commit(inFlight);
+        assertEquals(3, ring.committedIndex(1));
+    }
+
+    @Test
+    public void readerFollowingCommittedIndexSeesEveryEvent() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        long cursor = 0;
+        ring.add(1, 0, "a");
+        long inFlight = claim();
+        ring.add(3, 0, "c");
+
+        long ready = ring.committedIndex(cursor);
+        seen.addAll(scan(cursor, ready));
+        cursor = ready;
+
+        commit(inFlight);
+        ready = ring.committedIndex(cursor);
+        seen.addAll(scan(cursor, ready));
+        assertEquals(3, ready);
+        assertEquals(Arrays.asList(1L, 2L, 3L), seen);
+    }
+
+    @Test
+    public void overwrittenAndClearedEventsDoNotHoldTheCursor() throws Exception {
+        claim(); // never finished, and overwritten a ring later
+        for (int i = 0; i < 8; i++) ring.add(i, 0, "x");
+        assertEquals(9, ring.committedIndex(0));
+
+        claim();
+        ring.clear();
+        assertEquals(10, ring.committedIndex(9));
+        // A reader ahead of the ring, e.g. from before a restart, is handed the newest index.
+        assertEquals(10, ring.committedIndex(50));
+    }
+}
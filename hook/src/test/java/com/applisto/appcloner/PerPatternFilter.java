@@ -0,0 +1,31 @@
+package com.applisto.appcloner;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * The filter MonitorFilter replaced: a contains() check per entry on the lower-cased value.
+ * Kept as the reference for {@link MonitorFilterTest} and {@link MonitorFilterBenchmark}.
+ */
+final class PerPatternFilter {
+    private final Collection<String> positive;
+    private final Collection<String> negative;
+
+    /** Entries must already be lower case, as MonitorFilter.parseFilter leaves them. */
+    PerPatternFilter(Collection<String> positive, Collection<String> negative) {
+        this.positive = positive;
+        this.negative = negative;
+    }
+
+    boolean allows(String value) {
+        String v = (value == null ? "" : value).toLowerCase(Locale.US);
+        for (String n : negative) {
+            if (!n.isEmpty() && v.contains(n)) return false;
+        }
+        if (positive.isEmpty()) return true;
+        for (String p : positive) {
+            if (!p.isEmpty() && v.contains(p)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,157 @@
+package com.applisto.appcloner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class SimpleHttpServerTest {
+    // Well below the 15 s keep-alive timeout, so a connection that stalls is reported as such.
+    private static final int READ_TIMEOUT_MS = 5_000;
+
+    private SimpleHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new SimpleHttpServer(port) {
+            @Override
+            protected Response handleRequest(Request req) {
+                if (req.path.startsWith("/big")) {
+                    // Larger than a worker's output buffer, so the response is queued in pieces.
+                    char[] body = new char[40_000];
+                    Arrays.fill(body, 'x');
+                    return new Response(200, "text/plain", new String(body));
+                }
+                if (req.path.startsWith("/stream")) {
+                    return new Response(200, "text/plain", w -> w.write("streamed"));
+                }
+                return new Response(200, "text/plain", "echo " + req.path);
+            }
+        };
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void keepAliveServesSequentialRequests() throws Exception {
+        try (Socket s = connect()) {
+            for (int i = 0; i < 5; i++) {
+                send(s, "GET /r" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                assertEquals("echo /r" + i, readBody(s.getInputStream()));
+            }
+        }
+    }
+
+    @Test
+    public void keepAliveServesRequestAfterMultiPartResponse() throws Exception {
+        try (Socket s = connect()) {
+            send(s, "GET /big HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals(40_000, readBody(s.getInputStream()).length());
+            send(s, "GET /next HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("echo /next", readBody(s.getInputStream()));
+        }
+    }
+
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        try (Socket s = connect()) {
+            send(s, "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\nGET /b HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("echo /a", readBody(s.getInputStream()));
+            assertEquals("echo /b", readBody(s.getInputStream()));
+        }
+    }
+
+    @Test
+    public void streamedResponseToHttp10KeepAliveClosesTheConnection() throws Exception {
+        try (Socket s = connect()) {
+            send(s, "GET /stream HTTP/1.0\r\nConnection: keep-alive\r\n\r\n");
+            // Without chunked framing or a length, EOF ends the body. It must come right away;
+            // waiting for the idle timeout fails the read with SocketTimeoutException first.
+            String response = readToEnd(s.getInputStream());
+            assertTrue(response, response.contains("Connection: close"));
+            assertTrue(response, response.endsWith("\r\n\r\nstreamed"));
+        }
+    }
+
+    private Socket connect() throws Exception {
+        // start() binds on the server thread; retry until it listens.
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT_MS;
+        while (true) {
+            Socket s = new Socket();
+            try {
+                s.connect(new InetSocketAddress("127.0.0.1", server.getPort()), READ_TIMEOUT_MS);
+                s.setSoTimeout(READ_TIMEOUT_MS);
+                return s;
+            } catch (ConnectException e) {
+                s.close();
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static void send(Socket s, String request) throws IOException {
+        OutputStream out = s.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static String readToEnd(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) >= 0) out.write(buf, 0, n);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Reads one Content-Length response and returns its body. */
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            byte[] h = head.toByteArray();
+            int n = h.length;
+            if (n >= 4 && h[n - 4] == '\r' && h[n - 3] == '\n' && h[n - 2] == '\r' && h[n - 1] == '\n') break;
+        }
+        String headers = new String(head.toByteArray(), StandardCharsets.US_ASCII);
+        assertTrue(headers, headers.startsWith("HTTP/1.1 200 "));
+        assertTrue(headers, headers.contains("Connection: keep-alive"));
+        int length = -1;
+        for (String line : headers.split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        assertTrue(headers, length >= 0);
+        byte[] body = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int n = in.read(body, off, length - off);
+            if (n < 0) throw new IOException("Connection closed after " + off + " of " + length + " bytes");
+            off += n;
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+}
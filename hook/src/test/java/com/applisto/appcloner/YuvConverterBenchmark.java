@@ -0,0 +1,114 @@
+package com.applisto.appcloner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 1080p camera frame: RGB to NV21 conversion and the copy into YUV_420_888 planes, with
+ * YuvConverter and with the per-pixel path in {@link LegacyYuv}. The chroma planes are either
+ * planar (pixel stride 1) or two views of one interleaved buffer (pixel stride 2), with padded
+ * rows. Run on a desktop JVM with {@code main} (or any JMH runner) from the unit test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvConverterBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @State(Scope.Thread)
+    public static class Frame {
+        int[] argb;
+        byte[] output;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(1);
+            argb = new int[WIDTH * HEIGHT];
+            for (int i = 0; i < argb.length; i++) argb[i] = random.nextInt();
+            output = new byte[YuvConverter.frameSize(WIDTH, HEIGHT)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Planes {
+        @Param({"1", "2"})
+        public int chromaPixelStride;
+
+        byte[] nv21;
+        final ByteBuffer[] buffers = new ByteBuffer[3];
+        final int[] rowStrides = new int[3];
+        final int[] pixelStrides = new int[3];
+
+        @Setup
+        public void setUp() {
+            Frame frame = new Frame();
+            frame.setUp();
+            nv21 = YuvConverter.convert(frame.argb, WIDTH, HEIGHT, YuvConverter.Layout.NV21, null);
+
+            int cw = WIDTH / 2;
+            int ch = HEIGHT / 2;
+            rowStrides[0] = WIDTH + 64;
+            pixelStrides[0] = 1;
+            buffers[0] = ByteBuffer.allocateDirect(rowStrides[0] * (HEIGHT - 1) + WIDTH);
+            pixelStrides[1] = pixelStrides[2] = chromaPixelStride;
+            if (chromaPixelStride == 1) {
+                rowStrides[1] = rowStrides[2] = cw + 32;
+                buffers[1] = ByteBuffer.allocateDirect(rowStrides[1] * (ch - 1) + cw);
+                buffers[2] = ByteBuffer.allocateDirect(rowStrides[2] * (ch - 1) + cw);
+            } else {
+                // V then U in one buffer, as most camera HALs lay out NV21-like planes.
+                rowStrides[1] = rowStrides[2] = WIDTH + 64;
+                ByteBuffer vu = ByteBuffer.allocateDirect(rowStrides[1] * (ch - 1) + WIDTH);
+                vu.limit(vu.capacity() - 1);
+                buffers[2] = vu.slice();
+                vu.limit(vu.capacity()).position(1);
+                buffers[1] = vu.slice();
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] convertPerPixel(Frame f) {
+        return LegacyYuv.rgbToNV21(f.argb, WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public byte[] convert(Frame f) {
+        return YuvConverter.convert(f.argb, WIDTH, HEIGHT, YuvConverter.Layout.NV21, f.output);
+    }
+
+    @Benchmark
+    public ByteBuffer[] planesPerPixel(Planes p) {
+        LegacyYuv.writeYuvToPlanes(p.nv21, WIDTH, HEIGHT, p.buffers, p.rowStrides, p.pixelStrides);
+        return p.buffers;
+    }
+
+    @Benchmark
+    public ByteBuffer[] planes(Planes p) {
+        YuvConverter.writePlanes(p.nv21, WIDTH, HEIGHT, YuvConverter.Layout.NV21, p.buffers, p.rowStrides, p.pixelStrides);
+        return p.buffers;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(YuvConverterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,256 @@
+package com.applisto.appcloner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Golden tests against the per-pixel path in {@link LegacyYuv}. */
+public class YuvConverterTest {
+    private static final int[][] EVEN_SIZES = {{2, 2}, {4, 6}, {16, 8}, {64, 48}, {320, 240}, {1920, 1080}};
+    private static final int[][] ODD_SIZES = {{1, 1}, {1, 2}, {2, 1}, {3, 3}, {5, 2}, {2, 5}, {7, 9}, {33, 17}, {641, 481}};
+    private static final byte SENTINEL = 0x55;
+
+    private static int[] pixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) argb[i] = random.nextInt();
+        // Extremes first, where dropped clamps would show.
+        int[] extremes = {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFF00, 0xFF00FFFF};
+        System.arraycopy(extremes, 0, argb, 0, Math.min(extremes.length, argb.length));
+        return argb;
+    }
+
+    @Test
+    public void nv21MatchesPerPixelPathForEvenSizes() {
+        for (int[] size : EVEN_SIZES) {
+            int[] argb = pixels(size[0], size[1], size[0] * 31L + size[1]);
+            assertArrayEquals(size[0] + "x" + size[1], LegacyYuv.rgbToNV21(argb, size[0], size[1]),
+                    YuvConverter.convert(argb, size[0], size[1], YuvConverter.Layout.NV21, null));
+        }
+    }
+
+    @Test
+    public void i420MatchesPerPixelPathForEvenSizes() {
+        for (int[] size : EVEN_SIZES) {
+            int[] argb = pixels(size[0], size[1], size[0] * 37L + size[1]);
+            assertArrayEquals(size[0] + "x" + size[1], LegacyYuv.rgbToI420(argb, size[0], size[1]),
+                    YuvConverter.convert(argb, size[0], size[1], YuvConverter.Layout.I420, null));
+        }
+    }
+
+    @Test
+    public void everyLayoutMatchesPerPixelKernelForAllSizes() {
+        for (int[][] sizes : new int[][][] {EVEN_SIZES, ODD_SIZES}) {
+            for (int[] size : sizes) {
+                int[] argb = pixels(size[0], size[1], size[0] * 41L + size[1]);
+                for (YuvConverter.Layout layout : YuvConverter.Layout.values()) {
+                    assertArrayEquals(size[0] + "x" + size[1] + " " + layout,
+                            LegacyYuv.perPixel(argb, size[0], size[1], layout),
+                            YuvConverter.convert(argb, size[0], size[1], layout, null));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nv21AgreesWithWhatThePerPixelPathWroteForOddSizes() {
+        for (int[] size : ODD_SIZES) {
+            int[] argb = pixels(size[0], size[1], size[0] * 43L + size[1]);
+            byte[] old = LegacyYuv.rgbToNV21(argb, size[0], size[1]);
+            byte[] now = YuvConverter.convert(argb, size[0], size[1], YuvConverter.Layout.NV21, null);
+            // The old path stopped once fewer than two bytes of its short buffer were left.
+            int frame = size[0] * size[1];
+            int written = frame + 2 * ((old.length - frame) / 2);
+            assertArrayEquals(size[0] + "x" + size[1],
+                    Arrays.copyOf(old, written), Arrays.copyOf(now, written));
+        }
+    }
+
+    @Test
+    public void reusesLargeEnoughOutput() {
+        int[] argb = pixels(4, 4, 1);
+        byte[] buffer = new byte[YuvConverter.frameSize(4, 4) + 8];
+        byte[] out = YuvConverter.convert(argb, 4, 4, YuvConverter.Layout.NV21, buffer);
+        assertEquals(buffer, out);
+        assertEquals(24, YuvConverter.frameSize(4, 4));
+        assertEquals(9 + 2 * 4, YuvConverter.frameSize(3, 3));
+    }
+
+    @Test
+    public void planesMatchPerPixelPathForEvenSizes() {
+        for (int[] size : EVEN_SIZES) {
+            int w = size[0];
+            int h = size[1];
+            byte[] nv21 = YuvConverter.convert(pixels(w, h, w * 47L + h), w, h, YuvConverter.Layout.NV21, null);
+            for (Planes config : Planes.configs(w, h)) {
+                Planes old = config.copy();
+                LegacyYuv.writeYuvToPlanes(nv21, w, h, old.buffers, old.rowStrides, old.pixelStrides);
+                Planes now = config.copy();
+                YuvConverter.writePlanes(nv21, w, h, YuvConverter.Layout.NV21, now.buffers, now.rowStrides, now.pixelStrides);
+                assertArrayEquals(w + "x" + h + " " + config, old.memory(), now.memory());
+                now.assertRewound();
+            }
+        }
+    }
+
+    @Test
+    public void planesHoldEverySampleAtItsStrideForAllSizes() {
+        for (int[][] sizes : new int[][][] {EVEN_SIZES, ODD_SIZES}) {
+            for (int[] size : sizes) {
+                int w = size[0];
+                int h = size[1];
+                int[] argb = pixels(w, h, w * 53L + h);
+                byte[] i420 = LegacyYuv.perPixel(argb, w, h, YuvConverter.Layout.I420);
+                for (YuvConverter.Layout layout : YuvConverter.Layout.values()) {
+                    byte[] yuv = YuvConverter.convert(argb, w, h, layout, null);
+                    for (Planes config : Planes.configs(w, h)) {
+                        Planes expected = config.copy();
+                        expected.place(i420, w, h);
+                        Planes now = config.copy();
+                        YuvConverter.writePlanes(yuv, w, h, layout, now.buffers, now.rowStrides, now.pixelStrides);
+                        assertArrayEquals(w + "x" + h + " " + layout + " " + config, expected.memory(), now.memory());
+                        now.assertRewound();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * YUV_420_888 planes the way camera HALs hand them out: rows padded to the row stride
+     * except the last, and with a pixel stride of 2 both chroma planes views of one
+     * interleaved buffer, one byte apart.
+     */
+    private static final class Planes {
+        final String name;
+        final byte[] y;
+        final byte[] u;
+        final byte[] v; // null when it shares u's memory
+        final ByteBuffer[] buffers = new ByteBuffer[3];
+        final int[] rowStrides = new int[3];
+        final int[] pixelStrides = new int[3];
+
+        private Planes(String name, byte[] y, byte[] u, byte[] v) {
+            this.name = name;
+            this.y = y;
+            this.u = u;
+            this.v = v;
+        }
+
+        static Planes[] configs(int w, int h) {
+            int cw = (w + 1) / 2;
+            int ch = (h + 1) / 2;
+            return new Planes[] {
+                    planar(w, h, w, cw),
+                    planar(w, h, w + 16, cw + 8),
+                    planar(w, h, w + 3, cw + 1),
+                    interleaved(w, h, w, 2 * cw, true),
+                    interleaved(w, h, w + 64, 2 * cw + 32, true),
+                    interleaved(w, h, w + 5, 2 * cw + 3, false),
+                    // Chroma buffers shorter than a full plane: writes stop at their limit.
+                    new Planes("short", filled(w * h), filled(Math.max(1, cw * ch / 2)), filled(cw * ch - 1))
+                            .strides(w, 1, cw, 1, cw, 1).wrapSeparate(),
+            };
+        }
+
+        private static Planes planar(int w, int h, int yRowStride, int cRowStride) {
+            int cw = (w + 1) / 2;
+            int ch = (h + 1) / 2;
+            int chromaLength = cRowStride * (ch - 1) + cw;
+            return new Planes("planar y" + yRowStride + " c" + cRowStride,
+                    filled(yRowStride * (h - 1) + w), filled(chromaLength), filled(chromaLength))
+                    .strides(yRowStride, 1, cRowStride, 1, cRowStride, 1).wrapSeparate();
+        }
+
+        private static Planes interleaved(int w, int h, int yRowStride, int cRowStride, boolean vFirst) {
+            int cw = (w + 1) / 2;
+            int ch = (h + 1) / 2;
+            Planes p = new Planes((vFirst ? "vu" : "uv") + " y" + yRowStride + " c" + cRowStride,
+                    filled(yRowStride * (h - 1) + w), filled(cRowStride * (ch - 1) + 2 * cw), null)
+                    .strides(yRowStride, 1, cRowStride, 2, cRowStride, 2);
+            p.buffers[0] = ByteBuffer.wrap(p.y);
+            int n = p.u.length - 1;
+            p.buffers[1] = ByteBuffer.wrap(p.u, vFirst ? 1 : 0, n).slice();
+            p.buffers[2] = ByteBuffer.wrap(p.u, vFirst ? 0 : 1, n).slice();
+            return p;
+        }
+
+        private Planes strides(int yRow, int yPixel, int uRow, int uPixel, int vRow, int vPixel) {
+            rowStrides[0] = yRow;
+            pixelStrides[0] = yPixel;
+            rowStrides[1] = uRow;
+            pixelStrides[1] = uPixel;
+            rowStrides[2] = vRow;
+            pixelStrides[2] = vPixel;
+            return this;
+        }
+
+        private Planes wrapSeparate() {
+            buffers[0] = ByteBuffer.wrap(y);
+            buffers[1] = ByteBuffer.wrap(u);
+            buffers[2] = ByteBuffer.wrap(v);
+            return this;
+        }
+
+        private static byte[] filled(int length) {
+            byte[] b = new byte[length];
+            Arrays.fill(b, SENTINEL);
+            return b;
+        }
+
+        Planes copy() {
+            Planes p = new Planes(name, y.clone(), u.clone(), v == null ? null : v.clone());
+            System.arraycopy(rowStrides, 0, p.rowStrides, 0, 3);
+            System.arraycopy(pixelStrides, 0, p.pixelStrides, 0, 3);
+            p.buffers[0] = ByteBuffer.wrap(p.y);
+            if (v != null) return p.wrapSeparate();
+            // Same views on the copy of the shared memory.
+            for (int i = 1; i < 3; i++) {
+                int offset = buffers[i].arrayOffset();
+                p.buffers[i] = ByteBuffer.wrap(p.u, offset, buffers[i].capacity()).slice();
+            }
+            return p;
+        }
+
+        /** Writes each sample of an I420 frame at its row and pixel stride, within the limits. */
+        void place(byte[] i420, int w, int h) {
+            int cw = (w + 1) / 2;
+            int ch = (h + 1) / 2;
+            placePlane(i420, 0, w, h, 0);
+            placePlane(i420, w * h, cw, ch, 1);
+            placePlane(i420, w * h + cw * ch, cw, ch, 2);
+        }
+
+        private void placePlane(byte[] src, int offset, int w, int h, int plane) {
+            ByteBuffer buf = buffers[plane];
+            for (int r = 0; r < h; r++) {
+                for (int c = 0; c < w; c++) {
+                    int pos = r * rowStrides[plane] + c * pixelStrides[plane];
+                    if (pos < buf.limit()) buf.put(pos, src[offset + r * w + c]);
+                }
+            }
+        }
+
+        byte[] memory() {
+            int length = y.length + u.length + (v == null ? 0 : v.length);
+            byte[] all = Arrays.copyOf(y, length);
+            System.arraycopy(u, 0, all, y.length, u.length);
+            if (v != null) System.arraycopy(v, 0, all, y.length + u.length, v.length);
+            return all;
+        }
+
+        void assertRewound() {
+            for (ByteBuffer b : buffers) assertEquals(name, 0, b.position());
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.applisto.appcloner.hooking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.util.concurrent.TimeUnit;
+
+import top.canyie.pine.Pine;
+import top.canyie.pine.callback.MethodHook;
+
+/**
+ * One intercepted call (beforeHookedMethod plus afterHookedMethod) under the Xposed-style
+ * backends: the reflective bridge Hooking used to have, which built a CallFrame per phase and
+ * read its private fields by name, against {@link HookDispatcher}. Both run the same callback,
+ * which reads the arguments and passes the result through. Pine's Java classes load on a desktop
+ * JVM, so this runs from the unit test classpath with {@code main} (or any JMH runner).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HookDispatchBenchmark {
+    private final Object thisObject = new Object();
+    private final Object[] args = {"key", 42};
+    private final Object originalResult = "value";
+
+    private Pine.HookRecord hookRecord;
+    private MethodHook callback;
+    private HookDispatcher dispatcher;
+
+    @Setup
+    public void setUp() throws Exception {
+        Member member = Object.class.getMethod("toString");
+        Constructor<Pine.HookRecord> c = Pine.HookRecord.class.getDeclaredConstructor(Member.class, long.class);
+        c.setAccessible(true);
+        hookRecord = c.newInstance(member, 0L);
+        callback = new MethodHook() {
+            @Override
+            public void beforeCall(Pine.CallFrame frame) {
+                if (frame.args[0] == null) frame.setResult(null);
+            }
+
+            @Override
+            public void afterCall(Pine.CallFrame frame) {
+                if (frame.getResult() == null) frame.setResult("");
+            }
+        };
+        HookChain chain = new HookChain(member);
+        chain.add(callback, Hooking.PRIORITY_DEFAULT);
+        dispatcher = new HookDispatcher(hookRecord, chain);
+
+        if (reflective() != direct()) throw new IllegalStateException("Bridges disagree");
+    }
+
+    @Benchmark
+    public Object reflective() {
+        Param param = new Param();
+        legacyBefore(param);
+        if (!param.returnEarly) param.result = originalResult;
+        legacyAfter(param);
+        return param.result;
+    }
+
+    @Benchmark
+    public Object direct() {
+        Param param = new Param();
+        HookDispatcher.Frame frame = dispatcher.before(thisObject, args);
+        copyOut(frame, param);
+        if (!param.returnEarly) param.result = originalResult;
+        frame = dispatcher.after(thisObject, args, param.result, param.throwable);
+        copyOut(frame, param);
+        return param.result;
+    }
+
+    /** The part of MethodHookParam the bridges touch. */
+    private static final class Param {
+        Object result;
+        Throwable throwable;
+        boolean returnEarly;
+
+        void setResult(Object r) {
+            result = r;
+            throwable = null;
+            returnEarly = true;
+        }
+
+        void setThrowable(Throwable t) {
+            throwable = t;
+            result = null;
+            returnEarly = true;
+        }
+    }
+
+    private static void copyOut(HookDispatcher.Frame frame, Param param) {
+        if (frame.getThrowable() != null) {
+            param.setThrowable(frame.getThrowable());
+        } else if (frame.returnEarly) {
+            param.setResult(frame.getResult());
+        }
+    }
+
+    // The bridge as it was before HookDispatcher, minus the native hook around it.
+
+    private void legacyBefore(Param param) {
+        Pine.CallFrame frame = new Pine.CallFrame(hookRecord, thisObject, args);
+        try {
+            callback.beforeCall(frame);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        legacyCopyOut(frame, param);
+    }
+
+    private void legacyAfter(Param param) {
+        Pine.CallFrame frame = new Pine.CallFrame(hookRecord, thisObject, args);
+        setObjectField(frame, "result", param.result);
+        setObjectField(frame, "throwable", param.throwable);
+        try {
+            callback.afterCall(frame);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        legacyCopyOut(frame, param);
+    }
+
+    private static void legacyCopyOut(Pine.CallFrame frame, Param param) {
+        Throwable frameThrowable = (Throwable) getObjectField(frame, "throwable");
+        if (frameThrowable != null) {
+            param.setThrowable(frameThrowable);
+        } else {
+            Object frameResult = getObjectField(frame, "result");
+            boolean returnEarly = (boolean) getObjectField(frame, "returnEarly");
+            if (returnEarly) {
+                param.setResult(frameResult);
+            }
+        }
+    }
+
+    private static Object getObjectField(Object obj, String fieldName) {
+        try {
+            Field field = obj.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field.get(obj);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setObjectField(Object obj, String fieldName, Object value) {
+        try {
+            Field field = obj.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(obj, value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HookDispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,177 @@
+package com.applisto.appcloner.hooking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import top.canyie.pine.Pine;
+import top.canyie.pine.callback.MethodHook;
+
+public class HookDispatcherTest {
+    private final List<String> calls = new ArrayList<>();
+    private HookChain chain;
+    private HookDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        Member member = Object.class.getMethod("toString");
+        Constructor<Pine.HookRecord> c = Pine.HookRecord.class.getDeclaredConstructor(Member.class, long.class);
+        c.setAccessible(true);
+        chain = new HookChain(member);
+        dispatcher = new HookDispatcher(c.newInstance(member, 0L), chain);
+    }
+
+    /** Records its calls; answers the call in beforeCall when {@code answer} is an argument. */
+    private final class Recorder extends MethodHook {
+        final String name;
+        final Object answer;
+
+        Recorder(String name, Object answer) {
+            this.name = name;
+            this.answer = answer;
+        }
+
+        @Override
+        public void beforeCall(Pine.CallFrame frame) {
+            calls.add(name + ".before");
+            if (answer != null && Arrays.asList(frame.args).contains(answer)) frame.setResult(name);
+        }
+
+        @Override
+        public void afterCall(Pine.CallFrame frame) {
+            calls.add(name + ".after");
+        }
+    }
+
+    private final class AfterOnly extends MethodHook {
+        final String name;
+
+        AfterOnly(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void afterCall(Pine.CallFrame frame) {
+            calls.add(name + ".after");
+        }
+    }
+
+    /** One intercepted call the way the bridges make it; {@code original} stands for the method. */
+    private Object call(Object[] args, Runnable original) {
+        HookDispatcher.Frame frame = dispatcher.before(null, args);
+        Object result = "original";
+        if (frame != null && frame.returnEarly) {
+            result = frame.getResult();
+        } else if (original != null) {
+            original.run();
+        }
+        frame = dispatcher.after(null, args, result, null);
+        return frame != null && frame.returnEarly ? frame.getResult() : result;
+    }
+
+    @Test
+    public void everyCallbackRunsWhenNoneAnswers() {
+        chain.add(new Recorder("a", null), 60);
+        chain.add(new Recorder("b", null), 50);
+        assertEquals("original", call(new Object[]{"x"}, null));
+        assertEquals(Arrays.asList("a.before", "b.before", "b.after", "a.after"), calls);
+    }
+
+    @Test
+    public void afterCallUnwindsFromTheCallbackThatAnswered() {
+        chain.add(new Recorder("a", null), 60);
+        chain.add(new Recorder("b", "stop"), 50);
+        chain.add(new Recorder("c", null), 40);
+        assertEquals("b", call(new Object[]{"stop"}, null));
+        assertEquals(Arrays.asList("a.before", "b.before", "b.after", "a.after"), calls);
+    }
+
+    @Test
+    public void afterOnlyCallbacksFollowTheirPosition() {
+        chain.add(new AfterOnly("first"), 70);
+        chain.add(new Recorder("b", "stop"), 50);
+        chain.add(new AfterOnly("last"), 30);
+        call(new Object[]{"stop"}, null);
+        assertEquals(Arrays.asList("b.before", "b.after", "first.after"), calls);
+    }
+
+    @Test
+    public void reentrantCallsUnwindTheirOwnDepth() {
+        chain.add(new Recorder("a", null), 60);
+        chain.add(new Recorder("b", "stop"), 50);
+        chain.add(new Recorder("c", null), 40);
+        // The outer call runs its original method, which calls the member again and is answered.
+        call(new Object[]{"outer"}, () -> call(new Object[]{"stop"}, null));
+        assertEquals(Arrays.asList(
+                "a.before", "b.before", "c.before",
+                "a.before", "b.before", "b.after", "a.after",
+                "c.after", "b.after", "a.after"), calls);
+    }
+
+    @Test
+    public void deepReentrancyKeepsEveryFrame() {
+        chain.add(new Recorder("a", "stop"), 50);
+        chain.add(new Recorder("b", null), 40);
+        Runnable[] nest = new Runnable[1];
+        int[] depth = {0};
+        nest[0] = () -> {
+            int d = ++depth[0];
+            call(new Object[]{d == 10 ? "stop" : "go"}, d < 10 ? nest[0] : null);
+        };
+        nest[0].run();
+        // Nine calls ran both callbacks, the innermost stopped at a.
+        assertEquals(9 * 4 + 2, calls.size());
+        assertEquals("a.after", calls.get(calls.size() - 1));
+        assertEquals(Arrays.asList("a.before", "a.after", "b.after"), calls.subList(18, 21));
+    }
+
+    @Test
+    public void callbacksAddedDuringACallWaitForTheNextOne() {
+        chain.add(new Recorder("a", null), 50);
+        call(new Object[]{"x"}, () -> chain.add(new Recorder("late", null), 40));
+        assertEquals(Arrays.asList("a.before", "a.after"), calls);
+        calls.clear();
+        call(new Object[]{"x"}, null);
+        assertEquals(Arrays.asList("a.before", "late.before", "late.after", "a.after"), calls);
+    }
+
+    @Test
+    public void callbacksRemovedDuringACallGetNoAfterCall() {
+        chain.add(new Recorder("a", null), 50);
+        Hooking.Registration b = chain.add(new Recorder("b", null), 40);
+        call(new Object[]{"x"}, b::unhook);
+        assertEquals(Arrays.asList("a.before", "b.before", "a.after"), calls);
+    }
+
+    @Test
+    public void emptyChainIsSkipped() {
+        assertNull(dispatcher.before(null, new Object[0]));
+        assertNull(dispatcher.after(null, new Object[0], "r", null));
+        // Unbalanced after() calls are ignored.
+        assertNull(dispatcher.after(null, new Object[0], "r", null));
+    }
+
+    @Test
+    public void oneCallInSampleIntervalIsTimed() {
+        chain.add(new Recorder("a", null), Hooking.PRIORITY_DEFAULT);
+        int timed = 0;
+        for (int i = 0; i < 3 * HookDispatcher.SAMPLE_INTERVAL; i++) {
+            HookDispatcher.Frame frame = dispatcher.before(null, new Object[0]);
+            boolean sampled = frame.timed;
+            if (sampled) timed++;
+            // The first call of a thread is timed, and after() times the same calls before() did.
+            if (i == 0) assertTrue(sampled);
+            assertEquals(sampled, dispatcher.after(null, new Object[0], "r", null).timed);
+        }
+        assertEquals(3, timed);
+    }
+}